@@ -0,0 +1,85 @@
+package dev.maynestream.ledgify.ledger.commit;
+
+import dev.maynestream.ledgify.transaction.Transaction;
+import dev.maynestream.ledgify.transaction.TransactionTestFixtures;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.PooledByteBufAllocator;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.nio.ByteBuffer;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+/**
+ * Compares decoding a batched entry by copying it out of the buffer it was read into, as {@code LedgerEntry.getEntry}
+ * does, against parsing the payloads directly from views of that buffer.
+ * <p>
+ * Run with {@code mvn -Pjmh test-compile} followed by this class's main method on the test classpath; the GC
+ * profiler reports the allocation rate of each path alongside its throughput.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class EntryDecodingBenchmark {
+
+    @Param({"1", "64"})
+    private int batchSize;
+
+    private ByteBuf entry;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        final List<byte[]> payloads = Stream.generate(() -> TransactionTestFixtures.transaction().build().toByteArray())
+                                            .limit(batchSize)
+                                            .toList();
+        final byte[] packed = EntryBatch.pack(payloads);
+        entry = PooledByteBufAllocator.DEFAULT.directBuffer(packed.length).writeBytes(packed);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        entry.release();
+    }
+
+    @Benchmark
+    public void copyingDecode(final Blackhole blackhole) throws Exception {
+        final byte[] bytes = new byte[entry.readableBytes()];
+        entry.getBytes(entry.readerIndex(), bytes);
+        for (byte[] payload : EntryBatch.unpack(bytes)) {
+            blackhole.consume(Transaction.parseFrom(payload));
+        }
+    }
+
+    @Benchmark
+    public void bufferViewDecode(final Blackhole blackhole) throws Exception {
+        for (ByteBuffer payload : EntryBatch.unpack(entry.nioBuffer())) {
+            blackhole.consume(Transaction.parseFrom(payload));
+        }
+    }
+
+    public static void main(final String[] args) throws Exception {
+        new Runner(new OptionsBuilder().include(EntryDecodingBenchmark.class.getSimpleName())
+                                       .addProfiler(GCProfiler.class)
+                                       .build()).run();
+    }
+}
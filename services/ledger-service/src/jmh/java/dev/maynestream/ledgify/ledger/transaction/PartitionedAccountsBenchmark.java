@@ -0,0 +1,141 @@
+package dev.maynestream.ledgify.ledger.transaction;
+
+import dev.maynestream.ledgify.ledger.commit.Ledger.Entry;
+import dev.maynestream.ledgify.transaction.Transaction;
+import dev.maynestream.ledgify.transaction.TransactionTestFixtures;
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Routes commits for a growing number of accounts onto their logs, either one per account or one per partition,
+ * and looks up an account's transactions through its log's index.
+ * <p>
+ * Alongside the throughput of routing and lookup, which should stay flat as the accounts grow, each mode reports
+ * the coordination metadata its logs hold per account for a day: the znodes written and the ledgers created.
+ * Unpartitioned, both are constant per account; partitioned, they fall as the accounts outnumber the partitions.
+ * The metadata is calculated from the number of logs the accounts are routed to and what the committer stack writes
+ * for each log, counted below, rather than measured against ZooKeeper and BookKeeper.
+ * Run with {@code mvn -Pjmh test-compile} followed by this class's main method on the test classpath.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class PartitionedAccountsBenchmark {
+    private static final int TRANSACTIONS_PER_ACCOUNT = 4;
+
+    /*
+     * Written for each log and day by a single committing node whose one ledger, claimed from the standby pool, is
+     * closed at the end of the day. Checkpoint state small enough to be held inline needs no ledger of its own.
+     */
+    private static final int LEDGERS_PER_LOG = 1;
+    // the election node and its participant
+    private static final int ELECTION_ZNODES = 2;
+    // the collection's account container, its root and first chunk
+    private static final int COLLECTION_ZNODES = 3;
+    // the checkpoint's account container and node
+    private static final int CHECKPOINT_ZNODES = 2;
+    // the segments' account and day containers, and each ledger's segment
+    private static final int SEGMENT_ZNODES = 2 + LEDGERS_PER_LOG;
+    // the passwords' account and day containers, and each claimed ledger's password
+    private static final int PASSWORD_ZNODES = 2 + LEDGERS_PER_LOG;
+    // BookKeeper's own metadata node for each ledger
+    private static final int BOOKKEEPER_ZNODES = LEDGERS_PER_LOG;
+    private static final int ZNODES_PER_LOG = ELECTION_ZNODES
+            + COLLECTION_ZNODES
+            + CHECKPOINT_ZNODES
+            + SEGMENT_ZNODES
+            + PASSWORD_ZNODES
+            + BOOKKEEPER_ZNODES;
+
+    @Param({"1000", "100000", "1000000"})
+    private int accounts;
+
+    @Param({"64"})
+    private int partitionCount;
+
+    @Param({"true", "false"})
+    private boolean partitioned;
+
+    private TransactionPartitioner partitioner;
+    private Map<UUID, PartitionIndex> indexes;
+    private UUID[] accountIds;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        partitioner = new TransactionPartitioner(partitionCount);
+        indexes = new HashMap<>();
+        accountIds = new UUID[accounts];
+
+        final Transaction transaction = TransactionTestFixtures.transaction().build();
+        long entryId = 0;
+        for (int i = 0; i < accounts; i++) {
+            accountIds[i] = UUID.randomUUID();
+            final PartitionIndex index = indexes.computeIfAbsent(logOf(accountIds[i]), id -> new PartitionIndex());
+            for (int t = 0; t < TRANSACTIONS_PER_ACCOUNT; t++) {
+                index.record(new Entry<>(1, entryId++, 0, AccountTag.tag(accountIds[i], transaction)));
+            }
+        }
+    }
+
+    @Benchmark
+    public void route(final Metadata metadata, final Blackhole blackhole) {
+        blackhole.consume(logOf(randomAccount()));
+    }
+
+    @Benchmark
+    public void lookup(final Metadata metadata, final Blackhole blackhole) {
+        final UUID accountId = randomAccount();
+        blackhole.consume(indexes.get(logOf(accountId)).positions(accountId));
+    }
+
+    private UUID logOf(final UUID accountId) {
+        return partitioned ? partitioner.partitionOf(accountId) : accountId;
+    }
+
+    private UUID randomAccount() {
+        return accountIds[ThreadLocalRandom.current().nextInt(accounts)];
+    }
+
+    /**
+     * Reports the metadata calculated to be held per account as secondary results of each iteration.
+     */
+    @State(Scope.Thread)
+    @AuxCounters(AuxCounters.Type.EVENTS)
+    public static class Metadata {
+        public double znodesPerAccount;
+        public double ledgersPerAccount;
+
+        @Setup(Level.Iteration)
+        public void report(final PartitionedAccountsBenchmark benchmark) {
+            znodesPerAccount = (double) benchmark.indexes.size() * ZNODES_PER_LOG / benchmark.accounts;
+            ledgersPerAccount = (double) benchmark.indexes.size() * LEDGERS_PER_LOG / benchmark.accounts;
+        }
+    }
+
+    public static void main(final String[] args) throws Exception {
+        new Runner(new OptionsBuilder().include(PartitionedAccountsBenchmark.class.getSimpleName()).build()).run();
+    }
+}
@@ -1,5 +1,7 @@
 package dev.maynestream.ledgify.ledger;
 
+import dev.maynestream.ledgify.ledger.transaction.TransactionLog;
+import jakarta.validation.constraints.Max;
 import jakarta.validation.constraints.Min;
 import jakarta.validation.constraints.NotBlank;
 import lombok.Data;
@@ -27,4 +29,98 @@ public class BookkeeperConfiguration {
 
     @Min(1)
     private int defaultAckQuorumSize = 2;
+
+    // a single add in flight disables pipelining
+    @Min(1)
+    private int maxInFlightAdds = 8;
+
+    // a single entry per group commit disables batching
+    @Min(1)
+    private int groupCommitMaxEntries = 64;
+
+    @Min(1)
+    private int groupCommitMaxBytes = 1024 * 1024;
+
+    @Min(0)
+    private long groupCommitMaxLingerMicros = 2000;
+
+    // number of most recently committed transaction ids remembered per account for idempotent retries
+    @Min(1)
+    private int idempotencyWindow = TransactionLog.DEFAULT_IDEMPOTENCY_WINDOW;
+
+    // upper bound on the memory used to hold each account's committed transactions
+    @Min(64 * 1024)
+    private long commitJournalMaxBytes = TransactionLog.DEFAULT_JOURNAL_MAX_BYTES;
+
+    // read handles shared by all readers on this node
+    @Min(1)
+    private int readHandleCacheMaxSize = 1024;
+
+    // segments of closed ledgers fetched concurrently when catching up; a single segment disables parallel replay
+    @Min(1)
+    private int replayParallelism = 8;
+
+    @Min(1)
+    private int replaySegmentBytes = 1024 * 1024;
+
+    // a leader moves to a new ledger once its current one reaches any of these limits; 0 removes a limit
+    @Min(0)
+    private long rolloverMaxEntries = 0;
+
+    @Min(0)
+    private long rolloverMaxBytes = 256L * 1024 * 1024;
+
+    @Min(0)
+    private long rolloverMaxAgeSecs = 60 * 60;
+
+    // in-memory views of accounts listed on this node without being committed to here
+    @Min(64 * 1024)
+    private long projectionMaxBytes = 256L * 1024 * 1024;
+
+    // in-memory views not listed for this long stop following their account's ledgers and are dropped
+    @Min(1)
+    private long projectionIdleSecs = 10 * 60;
+
+    // shared ledgers that accounts are hashed onto; 0 gives each account its own ledgers. Must not change once set
+    @Min(0)
+    private int partitionCount = 0;
+
+    // host:port at which other nodes reach this node's gRPC server; blank runs this node standalone, owning every account
+    private String advertisedAddress;
+
+    // points each node holds on the account ownership ring, evening out ownership as nodes join and leave
+    @Min(1)
+    private int ownershipVirtualNodes = 128;
+
+    // committers competing to lead each account on its owning node; more give faster takeover should one fail
+    @Min(1)
+    private int committersPerAccount = 3;
+
+    // accounts without requests for this long hibernate, releasing their committers and memory until next used; 0 never
+    @Min(0)
+    private long handlerIdleSecs = 5 * 60;
+
+    // daily ledgers read at once across every multi-day listing on this node
+    @Min(1)
+    private int rangeQueryParallelism = 8;
+
+    // ledgers each node creates ahead of need, so that leaders taking over or rolling over need not wait on BookKeeper
+    @Min(0)
+    private int standbyLedgerPoolSize = 4;
+
+    // standby ledgers are replaced once this old, and registrations over twice this old are collected as orphaned
+    @Min(1)
+    private long standbyLedgerMaxAgeSecs = 10 * 60;
+
+    // commits in flight on this node at most; the limit applied adapts beneath this to observed commit latency
+    @Min(1)
+    private int admissionMaxInFlight = 4096;
+
+    // commits in flight for any one account at most, within the submission queue each account's log holds
+    @Min(1)
+    @Max(TransactionLog.SUBMISSION_QUEUE_CAPACITY)
+    private int admissionAccountMaxInFlight = 256;
+
+    // tags per-committer meters with the account, or partition, they commit for; only for a bounded number of accounts
+    private boolean metricsAccountTags = false;
 }
@@ -0,0 +1,72 @@
+package dev.maynestream.ledgify.ledger;
+
+import io.grpc.Status;
+import io.grpc.stub.ServerCallStreamObserver;
+import io.grpc.stub.StreamObserver;
+
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Sends messages on a server stream from a producer thread, blocking while the transport is not ready to accept
+ * more, so that a slow client applies backpressure to the producer rather than buffering in memory.
+ * <p>
+ * Readiness callbacks are delivered on the call's executor, so the producer must not be the thread that invoked the
+ * service method.
+ */
+final class FlowControlledStream<T> {
+    private final ServerCallStreamObserver<T> observer;
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition ready = lock.newCondition();
+    private volatile boolean cancelled;
+
+    FlowControlledStream(final StreamObserver<T> responseObserver) {
+        this.observer = (ServerCallStreamObserver<T>) responseObserver;
+        this.observer.setOnReadyHandler(this::signal);
+        this.observer.setOnCancelHandler(() -> {
+            cancelled = true;
+            signal();
+        });
+    }
+
+    void send(final T message) throws InterruptedException {
+        lock.lock();
+        try {
+            while (!observer.isReady() && !cancelled) {
+                ready.await();
+            }
+        } finally {
+            lock.unlock();
+        }
+
+        if (cancelled) {
+            throw Status.CANCELLED.withDescription("Stream cancelled by client").asRuntimeException();
+        }
+        observer.onNext(message);
+    }
+
+    boolean isCancelled() {
+        return cancelled;
+    }
+
+    void complete() {
+        if (!cancelled) {
+            observer.onCompleted();
+        }
+    }
+
+    void fail(final Throwable cause) {
+        if (!cancelled) {
+            observer.onError(cause);
+        }
+    }
+
+    private void signal() {
+        lock.lock();
+        try {
+            ready.signalAll();
+        } finally {
+            lock.unlock();
+        }
+    }
+}
@@ -1,28 +1,54 @@
 package dev.maynestream.ledgify.ledger;
 
 import dev.maynestream.ledgify.conversion.ConversionService;
+import dev.maynestream.ledgify.ledger.cluster.LedgerForwarding;
+import dev.maynestream.ledgify.ledger.commit.Ledger.Entry;
 import dev.maynestream.ledgify.ledger.transaction.TransactionCoordinator;
+import dev.maynestream.ledgify.ledger.transaction.TransactionFeed;
 import dev.maynestream.ledgify.transaction.ListTransactionsRequest;
 import dev.maynestream.ledgify.transaction.ListTransactionsResponse;
 import dev.maynestream.ledgify.transaction.Transaction;
+import io.grpc.Status;
+import io.grpc.StatusRuntimeException;
 import io.grpc.stub.StreamObserver;
 import lombok.SneakyThrows;
 import lombok.extern.slf4j.Slf4j;
 import net.devh.boot.grpc.server.service.GrpcService;
 
-import java.util.SortedSet;
+import java.io.Closeable;
+import java.time.LocalDate;
+import java.time.format.DateTimeParseException;
+import java.util.List;
 import java.util.UUID;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
 
 import static dev.maynestream.ledgify.validation.ValidationService.validate;
 
 @Slf4j
 @GrpcService
-class LedgerService extends LedgerGrpc.LedgerImplBase {
+class LedgerService extends LedgerGrpc.LedgerImplBase implements Closeable {
+
+    private static final int SUBSCRIPTION_PAGE_SIZE = 100;
+    private static final int FEED_START_TIMEOUT_SECS = 10;
+
+    private final ExecutorService streamExecutor = Executors.newVirtualThreadPerTaskExecutor();
 
     private final TransactionCoordinator transactionCoordinator;
+    private final LedgerForwarding forwarding;
 
-    LedgerService(final TransactionCoordinator transactionCoordinator) {
+    LedgerService(final TransactionCoordinator transactionCoordinator, final LedgerForwarding forwarding) {
         this.transactionCoordinator = transactionCoordinator;
+        this.forwarding = forwarding;
+    }
+
+    // streams still open on shutdown are interrupted, rather than left to run against a closing coordinator
+    @Override
+    public void close() {
+        streamExecutor.shutdownNow();
     }
 
     @Override
@@ -30,8 +56,11 @@ class LedgerService extends LedgerGrpc.LedgerImplBase {
     public void commitTransaction(LedgerCommitRequest request, StreamObserver<LedgerCommitResponse> responseObserver) {
         validate(request);
 
-        final LedgerCommitResponse response = transactionCoordinator.routeTransaction(accountId(request.getAccountId()),
-                                                                                      request.getTransaction());
+        final UUID accountId = accountId(request.getAccountId());
+        final String owner = remoteOwnerOf(accountId);
+        final LedgerCommitResponse response = owner != null
+                ? forwarding.stub(owner).commitTransaction(request)
+                : transactionCoordinator.routeTransaction(accountId, request.getTransaction());
 
         responseObserver.onNext(response);
         responseObserver.onCompleted();
@@ -43,16 +72,171 @@ class LedgerService extends LedgerGrpc.LedgerImplBase {
                                  final StreamObserver<ListTransactionsResponse> responseObserver) {
         validate(request);
 
-        final SortedSet<Transaction> transactions = transactionCoordinator.listTransactions(accountId(request.getAccountId()));
-        final ListTransactionsResponse response = ListTransactionsResponse.newBuilder()
-                                                                          .addAllTransactions(transactions)
-                                                                          .build();
+        final UUID accountId = accountId(request.getAccountId());
+        final String owner = remoteOwnerOf(accountId);
+        final ListTransactionsResponse response = owner != null
+                ? forwarding.stub(owner).listTransactions(request)
+                : ListTransactionsResponse.newBuilder()
+                                          .addAllTransactions(transactionCoordinator.listTransactions(accountId,
+                                                                                                      date(request.getFromDate(), "fromDate"),
+                                                                                                      date(request.getToDate(), "toDate"),
+                                                                                                      request.getFromCommittedAt(),
+                                                                                                      request.getToCommittedAt() > 0
+                                                                                                              ? request.getToCommittedAt()
+                                                                                                              : Long.MAX_VALUE))
+                                          .build();
 
         responseObserver.onNext(response);
         responseObserver.onCompleted();
     }
 
+    @Override
+    @SneakyThrows
+    public void streamTransactions(final StreamTransactionsRequest request,
+                                   final StreamObserver<TransactionPage> responseObserver) {
+        validate(request);
+
+        final UUID accountId = accountId(request.getAccountId());
+        final String owner = remoteOwnerOf(accountId);
+        if (owner != null) {
+            responseObserver.onError(LedgerForwarding.redirect(owner));
+            return;
+        }
+
+        final Entry<Transaction> after = request.hasAfter() ? entry(request.getAfter()) : Entry.initial();
+        final FlowControlledStream<TransactionPage> stream = new FlowControlledStream<>(responseObserver);
+
+        // read on another thread, as flow control callbacks are delivered on the executor of this call
+        streamExecutor.execute(() -> {
+            final AtomicBoolean sent = new AtomicBoolean();
+            try {
+                transactionCoordinator.streamTransactions(accountId, after, request.getPageSize(), page -> {
+                    send(stream, page(page));
+                    sent.set(true);
+                });
+
+                if (!sent.get()) {
+                    final TransactionPage.Builder empty = TransactionPage.newBuilder();
+                    if (request.hasAfter()) {
+                        empty.setNextCursor(request.getAfter());
+                    }
+                    send(stream, empty.build());
+                }
+                stream.complete();
+            } catch (StatusRuntimeException e) {
+                stream.fail(e);
+            } catch (IllegalArgumentException e) {
+                stream.fail(Status.INVALID_ARGUMENT.withDescription(e.getMessage()).withCause(e).asRuntimeException());
+            } catch (Exception e) {
+                log.error("Failed to stream transactions", e);
+                stream.fail(Status.UNKNOWN.withDescription("Could not stream transactions").withCause(e).asRuntimeException());
+            }
+        });
+    }
+
+    @Override
+    @SneakyThrows
+    public void subscribeTransactions(final SubscribeTransactionsRequest request,
+                                      final StreamObserver<TransactionPage> responseObserver) {
+        validate(request);
+
+        final UUID accountId = accountId(request.getAccountId());
+        final String owner = remoteOwnerOf(accountId);
+        if (owner != null) {
+            responseObserver.onError(LedgerForwarding.redirect(owner));
+            return;
+        }
+
+        final FlowControlledStream<TransactionPage> stream = new FlowControlledStream<>(responseObserver);
+
+        streamExecutor.execute(() -> {
+            // subscribe before catching up, so that nothing committed in the meantime is missed
+            try (final TransactionFeed.Subscription subscription = transactionCoordinator.subscribe(accountId)) {
+                final AtomicReference<Entry<Transaction>> position = new AtomicReference<>();
+                if (request.hasAfter()) {
+                    // the feed publishes only what follows its start, so history is read to at least that point
+                    subscription.awaitStarted(FEED_START_TIMEOUT_SECS, TimeUnit.SECONDS);
+                    position.set(entry(request.getAfter()));
+                    transactionCoordinator.streamTransactions(accountId, position.get(), SUBSCRIPTION_PAGE_SIZE, page -> {
+                        send(stream, page(page));
+                        position.set(page.getLast());
+                    });
+                }
+
+                while (subscription.isActive() && !stream.isCancelled()) {
+                    final List<Entry<Transaction>> entries = subscription.poll(SUBSCRIPTION_PAGE_SIZE, 1, TimeUnit.SECONDS)
+                                                                         .stream()
+                                                                         .filter(e -> position.get() == null || subscription.isAfter(e, position.get()))
+                                                                         .toList();
+                    if (!entries.isEmpty()) {
+                        send(stream, page(entries));
+                        position.set(entries.getLast());
+                    }
+                }
+
+                if (subscription.isOverflowed()) {
+                    stream.fail(Status.RESOURCE_EXHAUSTED.withDescription("Subscriber fell too far behind").asRuntimeException());
+                } else if (!stream.isCancelled()) {
+                    stream.fail(Status.UNAVAILABLE.withDescription("Transaction feed stopped").asRuntimeException());
+                }
+            } catch (StatusRuntimeException e) {
+                stream.fail(e);
+            } catch (IllegalArgumentException e) {
+                stream.fail(Status.INVALID_ARGUMENT.withDescription(e.getMessage()).withCause(e).asRuntimeException());
+            } catch (Exception e) {
+                log.error("Failed to stream subscribed transactions", e);
+                stream.fail(Status.UNKNOWN.withDescription("Could not stream transactions").withCause(e).asRuntimeException());
+            }
+        });
+    }
+
+    /*
+     * Requests forwarded from another node are served here regardless, so that they cannot bounce between nodes
+     * whose views of ownership differ during a rebalance.
+     */
+    private String remoteOwnerOf(final UUID accountId) {
+        return LedgerForwarding.isForwarded() ? null : transactionCoordinator.remoteOwnerOf(accountId);
+    }
+
+    private static TransactionPage page(final List<Entry<Transaction>> entries) {
+        return TransactionPage.newBuilder()
+                              .addAllTransactions(entries.stream().map(Entry::data).toList())
+                              .setNextCursor(cursor(entries.getLast()))
+                              .build();
+    }
+
+    @SneakyThrows
+    private static void send(final FlowControlledStream<TransactionPage> stream, final TransactionPage page) {
+        stream.send(page);
+    }
+
+    private static Entry<Transaction> entry(final LedgerCursor cursor) {
+        return new Entry<>(cursor.getLedgerId(), cursor.getEntryId(), cursor.getEntryIndex(), null);
+    }
+
+    private static LedgerCursor cursor(final Entry<?> entry) {
+        return LedgerCursor.newBuilder()
+                           .setLedgerId(entry.ledgerId())
+                           .setEntryId(entry.entryId())
+                           .setEntryIndex(entry.index())
+                           .build();
+    }
+
     private static UUID accountId(final String accountId) {
         return ConversionService.getUuid(accountId, "accountId");
     }
+
+    /**
+     * @return the ISO-8601 date, or today if it is blank
+     */
+    private static LocalDate date(final String date, final String dateType) {
+        if (date.isBlank()) {
+            return LocalDate.now();
+        }
+        try {
+            return LocalDate.parse(date);
+        } catch (DateTimeParseException e) {
+            throw new IllegalArgumentException("Invalid %s: %s".formatted(dateType, date), e);
+        }
+    }
 }
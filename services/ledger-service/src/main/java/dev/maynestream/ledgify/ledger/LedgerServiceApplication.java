@@ -1,7 +1,11 @@
 package dev.maynestream.ledgify.ledger;
 
 import dev.maynestream.ledgify.error.GrpcExceptionAdvice;
+import dev.maynestream.ledgify.ledger.commit.LedgerHandleCache;
+import dev.maynestream.ledgify.ledger.commit.LedgerMetrics;
+import dev.maynestream.ledgify.ledger.commit.StandbyLedgerPool;
 import dev.maynestream.ledgify.ledger.error.GrpcLedgerExceptionAdvice;
+import io.micrometer.core.instrument.MeterRegistry;
 import org.apache.bookkeeper.client.BKException;
 import org.apache.bookkeeper.client.BookKeeper;
 import org.apache.bookkeeper.conf.ClientConfiguration;
@@ -43,6 +47,24 @@ public class LedgerServiceApplication {
         return BookKeeper.forConfig(config).build();
     }
 
+    @Bean
+    LedgerHandleCache ledgerHandleCache(BookkeeperConfiguration bookkeeperConfiguration) {
+        return new LedgerHandleCache(bookkeeperConfiguration.getReadHandleCacheMaxSize());
+    }
+
+    @Bean
+    LedgerMetrics ledgerMetrics(MeterRegistry meterRegistry) {
+        return new LedgerMetrics(meterRegistry);
+    }
+
+    @Bean
+    StandbyLedgerPool standbyLedgerPool(BookKeeper bookKeeper,
+                                        BookkeeperConfiguration bookkeeperConfiguration,
+                                        LedgerMetrics ledgerMetrics,
+                                        CuratorFramework curator) {
+        return new StandbyLedgerPool(bookKeeper, bookkeeperConfiguration, ledgerMetrics, curator);
+    }
+
     @Bean
     CuratorFramework curatorClient(BookkeeperConfiguration bookkeeperConfiguration) throws InterruptedException {
         final CuratorFramework curator = buildCurator(bookkeeperConfiguration);
@@ -0,0 +1,132 @@
+package dev.maynestream.ledgify.ledger.cluster;
+
+import dev.maynestream.ledgify.ledger.BookkeeperConfiguration;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.curator.framework.CuratorFramework;
+import org.apache.curator.framework.recipes.cache.ChildData;
+import org.apache.curator.framework.recipes.cache.CuratorCache;
+import org.apache.curator.framework.recipes.cache.CuratorCacheListener;
+import org.apache.curator.framework.recipes.nodes.PersistentNode;
+import org.apache.curator.utils.ZKPaths;
+import org.apache.zookeeper.CreateMode;
+import org.springframework.stereotype.Service;
+
+import java.util.List;
+import java.util.Objects;
+import java.util.UUID;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Registers this node with the other ledger-service nodes in ZooKeeper, and maps accounts onto the node that owns
+ * them, so that each account's committers, elections and in-memory state live on exactly one node.
+ * <p>
+ * Nodes without an advertised address run standalone and own every account. While membership is not yet known, or
+ * if this node's own registration is not visible, every account is treated as owned locally rather than refused.
+ */
+@Slf4j
+@Service
+public class ClusterMembership implements AutoCloseable {
+    private static final String LEDGERS_MEMBERS_PATH = "/ledgers-members";
+    private static final long REGISTRATION_TIMEOUT_SECS = 10;
+
+    private final String localAddress;
+    private final int virtualNodes;
+    private final PersistentNode registration;
+    private final CuratorCache members;
+    private final List<Runnable> rebalanceListeners = new CopyOnWriteArrayList<>();
+
+    private volatile HashRing ring;
+
+    public ClusterMembership(final CuratorFramework curator,
+                             final BookkeeperConfiguration bookkeeperConfiguration) throws InterruptedException {
+        final String advertisedAddress = bookkeeperConfiguration.getAdvertisedAddress();
+        this.localAddress = advertisedAddress == null || advertisedAddress.isBlank() ? null : advertisedAddress;
+        this.virtualNodes = bookkeeperConfiguration.getOwnershipVirtualNodes();
+
+        if (localAddress == null) {
+            log.info("No advertised address - running standalone");
+            this.registration = null;
+            this.members = null;
+            this.ring = new HashRing(List.of(), virtualNodes);
+            return;
+        }
+
+        // an ephemeral node that is recreated should the session expire, so that ownership returns on reconnection
+        this.registration = new PersistentNode(curator,
+                                               CreateMode.EPHEMERAL,
+                                               false,
+                                               ZKPaths.makePath(LEDGERS_MEMBERS_PATH, localAddress),
+                                               new byte[0]);
+        this.members = CuratorCache.build(curator, LEDGERS_MEMBERS_PATH);
+        this.ring = new HashRing(List.of(localAddress), virtualNodes);
+
+        members.listenable().addListener(CuratorCacheListener.builder()
+                                                             .forInitialized(this::rebalance)
+                                                             .forCreates(node -> rebalance())
+                                                             .forDeletes(node -> rebalance())
+                                                             .build());
+        registration.start();
+        if (!registration.waitForInitialCreate(REGISTRATION_TIMEOUT_SECS, TimeUnit.SECONDS)) {
+            log.warn("Registration as {} not confirmed within {}s", localAddress, REGISTRATION_TIMEOUT_SECS);
+        }
+        members.start();
+    }
+
+    /**
+     * @return the address of the node that owns the key, or null if it is owned by this node
+     */
+    public String remoteOwnerOf(final UUID key) {
+        final String owner = ring.ownerOf(key);
+        return owner == null || owner.equals(localAddress) ? null : owner;
+    }
+
+    public boolean isLocal(final UUID key) {
+        return remoteOwnerOf(key) == null;
+    }
+
+    /**
+     * Registers an action to run whenever nodes join or leave, after ownership has been recomputed.
+     */
+    public void onRebalance(final Runnable listener) {
+        rebalanceListeners.add(listener);
+    }
+
+    @Override
+    public void close() throws Exception {
+        if (members != null) {
+            members.close();
+        }
+        if (registration != null) {
+            registration.close();
+        }
+    }
+
+    private void rebalance() {
+        final List<String> nodes = members.stream()
+                                          .map(ChildData::getPath)
+                                          .filter(path -> !path.equals(LEDGERS_MEMBERS_PATH))
+                                          .map(ZKPaths::getNodeFromPath)
+                                          .toList();
+        if (!nodes.contains(localAddress)) {
+            // not yet registered, or registration lost: keep serving what arrives here until it is restored
+            log.warn("Node {} is not among registered members {}", localAddress, nodes);
+            return;
+        }
+
+        final HashRing rebalanced = new HashRing(nodes, virtualNodes);
+        if (Objects.equals(rebalanced.nodes(), ring.nodes())) {
+            return;
+        }
+
+        log.info("Rebalancing account ownership across {} node(s): {}", nodes.size(), nodes);
+        ring = rebalanced;
+        for (Runnable listener : rebalanceListeners) {
+            try {
+                listener.run();
+            } catch (Exception e) {
+                log.warn("Rebalance listener failed", e);
+            }
+        }
+    }
+}
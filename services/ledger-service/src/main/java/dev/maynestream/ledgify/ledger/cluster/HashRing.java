@@ -0,0 +1,58 @@
+package dev.maynestream.ledgify.ledger.cluster;
+
+import com.google.common.hash.HashFunction;
+import com.google.common.hash.Hashing;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Collection;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.UUID;
+
+/**
+ * Consistent hash ring mapping keys onto nodes. Each node is hashed to a number of points on the ring, and a key is
+ * owned by the node holding the first point at or after the key's hash, so a node joining or leaving only moves the
+ * keys adjacent to its own points.
+ */
+final class HashRing {
+    private static final HashFunction HASH = Hashing.murmur3_128();
+
+    private final NavigableMap<Long, String> points = new TreeMap<>();
+    private final Set<String> nodes;
+
+    HashRing(final Collection<String> nodes, final int virtualNodes) {
+        if (virtualNodes < 1) {
+            throw new IllegalArgumentException("virtualNodes must be greater than 0");
+        }
+
+        this.nodes = Set.copyOf(nodes);
+        for (String node : this.nodes) {
+            for (int i = 0; i < virtualNodes; i++) {
+                points.put(HASH.hashString(node + "#" + i, StandardCharsets.UTF_8).asLong(), node);
+            }
+        }
+    }
+
+    /**
+     * @return the node that owns the key, or null if the ring has no nodes
+     */
+    String ownerOf(final UUID key) {
+        if (points.isEmpty()) {
+            return null;
+        }
+
+        final long hash = HASH.newHasher()
+                              .putLong(key.getMostSignificantBits())
+                              .putLong(key.getLeastSignificantBits())
+                              .hash()
+                              .asLong();
+        final Map.Entry<Long, String> point = points.ceilingEntry(hash);
+        return point != null ? point.getValue() : points.firstEntry().getValue();
+    }
+
+    Set<String> nodes() {
+        return nodes;
+    }
+}
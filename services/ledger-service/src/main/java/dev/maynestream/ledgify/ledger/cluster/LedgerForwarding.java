@@ -0,0 +1,86 @@
+package dev.maynestream.ledgify.ledger.cluster;
+
+import dev.maynestream.ledgify.ledger.LedgerGrpc;
+import io.grpc.Context;
+import io.grpc.Contexts;
+import io.grpc.ManagedChannel;
+import io.grpc.ManagedChannelBuilder;
+import io.grpc.Metadata;
+import io.grpc.ServerCall;
+import io.grpc.ServerCallHandler;
+import io.grpc.ServerInterceptor;
+import io.grpc.Status;
+import io.grpc.StatusRuntimeException;
+import io.grpc.stub.MetadataUtils;
+import lombok.extern.slf4j.Slf4j;
+import net.devh.boot.grpc.server.interceptor.GrpcGlobalServerInterceptor;
+import org.springframework.stereotype.Service;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Forwards requests for accounts owned by another node to that node.
+ * <p>
+ * Forwarded requests carry a header marking them as such, and are always handled by the node that receives them: a
+ * node whose view of ownership briefly disagrees with the sender's during a rebalance serves the request rather than
+ * bouncing it back. Streams are not proxied, but refused with a hint naming the owner for the client to reconnect to.
+ */
+@Slf4j
+@Service
+public class LedgerForwarding implements AutoCloseable {
+    public static final Metadata.Key<String> FORWARDED_HEADER = Metadata.Key.of("ledger-forwarded",
+                                                                                Metadata.ASCII_STRING_MARSHALLER);
+    public static final Metadata.Key<String> OWNER_HEADER = Metadata.Key.of("ledger-owner",
+                                                                            Metadata.ASCII_STRING_MARSHALLER);
+    public static final int FORWARD_TIMEOUT_SECS = 30;
+
+    private static final Context.Key<Boolean> FORWARDED = Context.key("ledger-forwarded");
+
+    private final ConcurrentHashMap<String, ManagedChannel> channels = new ConcurrentHashMap<>();
+
+    /**
+     * @return true if the current call was forwarded from another node
+     */
+    public static boolean isForwarded() {
+        return Boolean.TRUE.equals(FORWARDED.get());
+    }
+
+    public LedgerGrpc.LedgerBlockingStub stub(final String owner) {
+        final Metadata headers = new Metadata();
+        headers.put(FORWARDED_HEADER, "true");
+        return LedgerGrpc.newBlockingStub(channels.computeIfAbsent(owner, this::connect))
+                         .withInterceptors(MetadataUtils.newAttachHeadersInterceptor(headers))
+                         .withDeadlineAfter(FORWARD_TIMEOUT_SECS, TimeUnit.SECONDS);
+    }
+
+    public static StatusRuntimeException redirect(final String owner) {
+        final Metadata trailers = new Metadata();
+        trailers.put(OWNER_HEADER, owner);
+        return Status.FAILED_PRECONDITION.withDescription("Account is owned by " + owner).asRuntimeException(trailers);
+    }
+
+    @Override
+    public void close() {
+        channels.values().forEach(ManagedChannel::shutdown);
+        channels.clear();
+    }
+
+    private ManagedChannel connect(final String owner) {
+        log.info("Opening channel for forwarding to {}", owner);
+        return ManagedChannelBuilder.forTarget(owner).usePlaintext().build();
+    }
+
+    @GrpcGlobalServerInterceptor
+    static class ForwardedCallInterceptor implements ServerInterceptor {
+        @Override
+        public <Q, R> ServerCall.Listener<Q> interceptCall(final ServerCall<Q, R> call,
+                                                           final Metadata headers,
+                                                           final ServerCallHandler<Q, R> next) {
+            if (!headers.containsKey(FORWARDED_HEADER)) {
+                return next.startCall(call, headers);
+            }
+            return Contexts.interceptCall(Context.current().withValue(FORWARDED, true), call, headers, next);
+        }
+    }
+}
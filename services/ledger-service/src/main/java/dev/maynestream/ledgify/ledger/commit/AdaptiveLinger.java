@@ -0,0 +1,33 @@
+package dev.maynestream.ledgify.ledger.commit;
+
+import java.time.Duration;
+
+/**
+ * Derives how long a leader should linger for further submissions before writing a group commit.
+ * <p>
+ * The linger tracks a moving average of observed add latency: when adds are cheap there is little to gain from
+ * waiting, whereas when adds are slow a short wait fills the next entry for a fraction of the cost of another add.
+ */
+public class AdaptiveLinger {
+    private static final double SMOOTHING_FACTOR = 0.2;
+    private static final double LINGER_RATIO = 0.25;
+
+    private final long maxLingerNanos;
+    private volatile double averageAddNanos;
+
+    public AdaptiveLinger(final Duration maxLinger) {
+        if (maxLinger.isNegative()) {
+            throw new IllegalArgumentException("maxLinger cannot be negative");
+        }
+        this.maxLingerNanos = maxLinger.toNanos();
+    }
+
+    public void record(final long addNanos) {
+        final double average = averageAddNanos;
+        averageAddNanos = average == 0 ? addNanos : average + SMOOTHING_FACTOR * (addNanos - average);
+    }
+
+    public long lingerNanos() {
+        return Math.min(maxLingerNanos, (long) (averageAddNanos * LINGER_RATIO));
+    }
+}
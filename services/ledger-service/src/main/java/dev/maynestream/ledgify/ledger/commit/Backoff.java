@@ -0,0 +1,32 @@
+package dev.maynestream.ledgify.ledger.commit;
+
+import java.time.Duration;
+
+/**
+ * Exponentially increasing wait, reset whenever the awaited activity is observed.
+ */
+final class Backoff {
+    private final long minMillis;
+    private final long maxMillis;
+    private long nextMillis;
+
+    Backoff(final Duration min, final Duration max) {
+        this.minMillis = min.toMillis();
+        this.maxMillis = max.toMillis();
+        this.nextMillis = minMillis;
+    }
+
+    long nextMillis() {
+        final long millis = nextMillis;
+        nextMillis = Math.min(maxMillis, nextMillis * 2);
+        return millis;
+    }
+
+    void reset() {
+        nextMillis = minMillis;
+    }
+
+    void await() throws InterruptedException {
+        Thread.sleep(nextMillis());
+    }
+}
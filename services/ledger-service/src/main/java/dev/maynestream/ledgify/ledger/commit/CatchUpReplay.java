@@ -0,0 +1,170 @@
+package dev.maynestream.ledgify.ledger.commit;
+
+import dev.maynestream.ledgify.ledger.commit.Ledger.Entry;
+import dev.maynestream.ledgify.ledger.commit.Ledger.LedgerException;
+import lombok.extern.slf4j.Slf4j;
+
+import java.nio.ByteBuffer;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.function.Consumer;
+import java.util.function.Function;
+
+/**
+ * Replays closed ledgers by fetching and decoding segments of them concurrently, while handing entries to the
+ * consumer strictly in ledger order.
+ * <p>
+ * Segments are sized from each ledger's average entry size, and at most {@code parallelism} segments are fetched or
+ * awaiting consumption at once, so the memory held by the reorder buffer is bounded by roughly
+ * {@code parallelism * segmentBytes} however many ledgers are replayed. Replay stops at the first ledger that is
+ * not yet closed, which is left for the caller to read.
+ */
+@Slf4j
+final class CatchUpReplay {
+    private final int parallelism;
+    private final int segmentBytes;
+
+    CatchUpReplay(final int parallelism, final int segmentBytes) {
+        if (parallelism < 1 || segmentBytes < 1) {
+            throw new IllegalArgumentException("parallelism and segmentBytes must be positive");
+        }
+        this.parallelism = parallelism;
+        this.segmentBytes = segmentBytes;
+    }
+
+    @FunctionalInterface
+    interface Opener {
+        Ledger open(long ledgerId) throws Exception;
+    }
+
+    /**
+     * @param stoppedAt the ledger at which replay stopped because it was not closed, or null if every ledger was read
+     */
+    record Result<T>(Entry<T> lastRecordedEntry, Long stoppedAt) {
+    }
+
+    /**
+     * @throws LedgerException carrying the last entry consumed if replay fails part way through
+     */
+    <T> Result<T> replay(final Iterable<Long> ledgerIds,
+                         final Entry<T> lastRecordedEntry,
+                         final Opener opener,
+                         final Consumer<Entry<T>> consumer,
+                         final Function<ByteBuffer, T> transformer) throws Exception {
+        final BlockingQueue<Segment<T>> segments = new ArrayBlockingQueue<>(parallelism);
+        final Set<Ledger> opened = ConcurrentHashMap.newKeySet();
+
+        Entry<T> lastEntry = lastRecordedEntry;
+        try (final ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor()) {
+            try {
+                executor.submit(() -> {
+                    produce(ledgerIds, lastRecordedEntry, opener, transformer, executor, segments, opened);
+                    return null;
+                });
+
+                // segments are queued in ledger order, so taking them in turn restores order however they complete
+                Segment<T> segment;
+                while ((segment = segments.take()).ledger != null) {
+                    for (Entry<T> entry : Futures.await(segment.entries)) {
+                        consumer.accept(entry);
+                        lastEntry = entry;
+                    }
+                    if (segment.lastOfLedger) {
+                        close(segment.ledger, opened);
+                    }
+                }
+
+                if (segment.failure != null) {
+                    throw segment.failure;
+                }
+                return new Result<>(lastEntry, segment.stoppedAt);
+            } catch (InterruptedException e) {
+                throw e;
+            } catch (Exception e) {
+                // carry the progress made so that replay may resume from it
+                throw new LedgerException(lastEntry, e);
+            } finally {
+                executor.shutdownNow();
+            }
+        } finally {
+            opened.forEach(ledger -> close(ledger, opened));
+        }
+    }
+
+    private <T> void produce(final Iterable<Long> ledgerIds,
+                             final Entry<T> lastRecordedEntry,
+                             final Opener opener,
+                             final Function<ByteBuffer, T> transformer,
+                             final ExecutorService executor,
+                             final BlockingQueue<Segment<T>> segments,
+                             final Set<Ledger> opened) throws InterruptedException {
+        try {
+            for (long ledgerId : ledgerIds) {
+                final Ledger ledger = opener.open(ledgerId);
+                opened.add(ledger);
+
+                if (!ledger.isClosed()) {
+                    log.debug("Stopping replay at open ledger {}", ledgerId);
+                    close(ledger, opened);
+                    segments.put(Segment.end(ledgerId, null));
+                    return;
+                }
+
+                final long firstEntry = ledgerId == lastRecordedEntry.ledgerId() ? lastRecordedEntry.entryId() + 1 : 0;
+                final long lastEntry = ledger.getLastRecordedEntryId();
+                if (firstEntry > lastEntry) {
+                    log.debug("No remaining entries to replay from ledger {}", ledgerId);
+                    close(ledger, opened);
+                    continue;
+                }
+
+                final long entriesPerSegment = ledger.entriesWithin(segmentBytes, lastEntry + 1);
+                log.debug("Replaying ledger {} from entry {} in segments of {} entries", ledgerId, firstEntry, entriesPerSegment);
+                for (long from = firstEntry; from <= lastEntry; from += entriesPerSegment) {
+                    final long segmentFrom = from;
+                    final long segmentTo = Math.min(lastEntry, from + entriesPerSegment - 1);
+                    segments.put(new Segment<>(ledger,
+                                               ledger.readEntriesAsync(segmentFrom, segmentTo, transformer, executor),
+                                               segmentTo == lastEntry,
+                                               null,
+                                               null));
+                }
+            }
+            segments.put(Segment.end(null, null));
+        } catch (InterruptedException e) {
+            throw e;
+        } catch (Exception e) {
+            segments.put(Segment.end(null, e));
+        }
+    }
+
+    private static void close(final Ledger ledger, final Set<Ledger> opened) {
+        if (opened.remove(ledger)) {
+            try {
+                ledger.close();
+            } catch (Exception e) {
+                log.warn("Failed to close ledger {} after replay", ledger.getId(), e);
+            }
+        }
+    }
+
+    /**
+     * A range of entries being fetched, or the end of replay when it has no ledger.
+     */
+    private record Segment<T>(Ledger ledger,
+                              Future<List<Entry<T>>> entries,
+                              boolean lastOfLedger,
+                              Long stoppedAt,
+                              Exception failure) {
+
+        static <T> Segment<T> end(final Long stoppedAt, final Exception failure) {
+            return new Segment<>(null, null, false, stoppedAt, failure);
+        }
+    }
+}
@@ -0,0 +1,153 @@
+package dev.maynestream.ledgify.ledger.commit;
+
+import com.google.protobuf.ByteString;
+import dev.maynestream.ledgify.ledger.LedgerCheckpoint;
+import dev.maynestream.ledgify.ledger.commit.Ledger.Entry;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.curator.framework.CuratorFramework;
+import org.apache.zookeeper.KeeperException;
+import org.apache.zookeeper.data.Stat;
+
+import java.io.ByteArrayOutputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * The latest checkpoint of the state consumed from a collection's ledgers, from which a new leader or reader resumes
+ * rather than replaying every ledger.
+ * <p>
+ * Small states are held in the checkpoint's node itself. Larger ones are written across the entries of a ledger of
+ * their own, which is deleted once a later checkpoint replaces it.
+ */
+@Slf4j
+public class CheckpointStore {
+    static final int INLINE_STATE_BYTES = 256 * 1024;
+    static final int STATE_ENTRY_BYTES = 512 * 1024;
+
+    private static final String LEDGERS_CHECKPOINTS_PATH_FORMAT = "/ledgers-checkpoints/%s";
+
+    private final CuratorFramework curator;
+    private final String checkpointPath;
+
+    public CheckpointStore(final CuratorFramework curator, final String ledgerPath) {
+        this.curator = curator;
+        this.checkpointPath = LEDGERS_CHECKPOINTS_PATH_FORMAT.formatted(Objects.requireNonNull(ledgerPath, "ledgerPath cannot be null"));
+    }
+
+    /**
+     * Replaces the latest checkpoint, unless it is already at or after the given one, such as one written by a newer
+     * leader.
+     */
+    void write(final LedgerAccessor accessor, final Entry<byte[]> checkpoint) throws Exception {
+        final Stat stat = new Stat();
+        final LedgerCheckpoint previous = read(stat);
+        if (previous != null && !isAfter(checkpoint, previous)) {
+            log.debug("Checkpoint at ledger {} entry {} already superseded", checkpoint.ledgerId(), checkpoint.entryId());
+            return;
+        }
+
+        final LedgerCheckpoint.Builder builder = LedgerCheckpoint.newBuilder()
+                                                                 .setLedgerId(checkpoint.ledgerId())
+                                                                 .setEntryId(checkpoint.entryId())
+                                                                 .setEntryIndex(checkpoint.index())
+                                                                 .setCreatedAt(System.currentTimeMillis());
+        if (checkpoint.data().length <= INLINE_STATE_BYTES) {
+            builder.setInlineState(ByteString.copyFrom(checkpoint.data()));
+        } else {
+            builder.setStateLedgerId(writeState(accessor, checkpoint.data()));
+        }
+        final LedgerCheckpoint written = builder.build();
+
+        try {
+            if (previous == null) {
+                curator.create().creatingParentContainersIfNeeded().forPath(checkpointPath, written.toByteArray());
+            } else {
+                curator.setData().withVersion(stat.getVersion()).forPath(checkpointPath, written.toByteArray());
+            }
+        } catch (KeeperException.NodeExistsException | KeeperException.BadVersionException e) {
+            // another leader checkpointed in the meantime, and its checkpoint stands
+            deleteState(accessor, written);
+            return;
+        }
+
+        if (previous != null) {
+            deleteState(accessor, previous);
+        }
+    }
+
+    /**
+     * @return the state of the latest checkpoint, positioned at the entry it was taken at, or null if there is none
+     */
+    Entry<byte[]> read(final LedgerAccessor accessor) throws Exception {
+        final LedgerCheckpoint checkpoint = read(new Stat());
+        if (checkpoint == null) {
+            return null;
+        }
+
+        final byte[] state = checkpoint.hasStateLedgerId()
+                ? readState(accessor, checkpoint.getStateLedgerId())
+                : checkpoint.getInlineState().toByteArray();
+        return new Entry<>(checkpoint.getLedgerId(), checkpoint.getEntryId(), checkpoint.getEntryIndex(), state);
+    }
+
+    private LedgerCheckpoint read(final Stat stat) throws Exception {
+        try {
+            return LedgerCheckpoint.parseFrom(curator.getData().storingStatIn(stat).forPath(checkpointPath));
+        } catch (KeeperException.NoNodeException e) {
+            return null;
+        }
+    }
+
+    long writeState(final LedgerAccessor accessor, final byte[] state) throws Exception {
+        final Ledger ledger = accessor.create();
+        try (ledger) {
+            final List<CompletableFuture<?>> appended = new ArrayList<>();
+            for (int from = 0; from < state.length; from += STATE_ENTRY_BYTES) {
+                final byte[] chunk = Arrays.copyOfRange(state, from, Math.min(state.length, from + STATE_ENTRY_BYTES));
+                // chunks are arbitrary bytes, so each is framed lest it be read back as a batch
+                appended.add(ledger.addEntriesAsync(List.of(chunk), EntryBatch::frame));
+            }
+            Futures.await(CompletableFuture.allOf(appended.toArray(CompletableFuture[]::new)));
+        } catch (Exception e) {
+            accessor.deleteAsync(ledger.getId());
+            throw e;
+        }
+        return ledger.getId();
+    }
+
+    static byte[] readState(final LedgerAccessor accessor, final long stateLedgerId) throws Exception {
+        try (final Ledger ledger = accessor.openForRead(stateLedgerId)) {
+            final ByteArrayOutputStream state = new ByteArrayOutputStream();
+            final List<Entry<byte[]>> chunks = ledger.readEntries(0, ledger.getLastRecordedEntryId(), buffer -> {
+                final byte[] chunk = new byte[buffer.remaining()];
+                buffer.get(chunk);
+                return chunk;
+            });
+            for (Entry<byte[]> chunk : chunks) {
+                state.writeBytes(chunk.data());
+            }
+            return state.toByteArray();
+        }
+    }
+
+    private static void deleteState(final LedgerAccessor accessor, final LedgerCheckpoint checkpoint) {
+        if (checkpoint.hasStateLedgerId()) {
+            accessor.deleteAsync(checkpoint.getStateLedgerId()).whenComplete((ignore, e) -> {
+                if (e != null) {
+                    log.warn("Failed to delete checkpoint state ledger {}", checkpoint.getStateLedgerId(), e);
+                }
+            });
+        }
+    }
+
+    /*
+     * Checkpoints are only taken at the end of a ledger, and ledger ids are allocated in increasing order.
+     */
+    private static boolean isAfter(final Entry<byte[]> checkpoint, final LedgerCheckpoint previous) {
+        return checkpoint.ledgerId() > previous.getLedgerId()
+                || (checkpoint.ledgerId() == previous.getLedgerId() && checkpoint.entryId() > previous.getEntryId());
+    }
+}
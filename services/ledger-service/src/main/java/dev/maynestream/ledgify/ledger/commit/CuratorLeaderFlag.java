@@ -10,7 +10,7 @@ import java.util.Objects;
 import java.util.UUID;
 
 @Slf4j
-public class CuratorLeaderFlag extends LeaderSelectorListenerAdapter implements AutoCloseable {
+public class CuratorLeaderFlag extends LeaderSelectorListenerAdapter implements LeaderFlag {
     private static final String LEDGERS_ELECT_PATH_FORMAT = "/ledgers-elect/%s";
 
     private final LeaderSelector leaderSelector;
@@ -26,6 +26,7 @@ public class CuratorLeaderFlag extends LeaderSelectorListenerAdapter implements
         this.uniqueId = uniqueId;
     }
 
+    @Override
     public boolean isLeader() {
         return leaderSelector.hasLeadership();
     }
@@ -64,6 +65,7 @@ public class CuratorLeaderFlag extends LeaderSelectorListenerAdapter implements
         return leaderSelector;
     }
 
+    @Override
     public void interrupted() {
         final Thread curatorThread = this.curatorThread;
         if (curatorThread != null) {
@@ -0,0 +1,98 @@
+package dev.maynestream.ledgify.ledger.commit;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Framing for ledger entries that carry more than one payload (group commits).
+ * <p>
+ * A batch frame is laid out as {@code [marker][version][count]([length][payload])*}. Single payloads are written
+ * unframed so that ledgers written before group commit, and by leaders with batching disabled, remain readable.
+ */
+final class EntryBatch {
+    // a protobuf message can never start with a zero tag, so a leading zero byte unambiguously marks a batch frame
+    private static final byte MARKER = 0x00;
+    private static final byte VERSION = 1;
+    private static final int HEADER_SIZE = 2 + Integer.BYTES;
+
+    private EntryBatch() {}
+
+    static byte[] pack(final List<byte[]> payloads) {
+        if (payloads.isEmpty()) {
+            throw new IllegalArgumentException("payloads cannot be empty");
+        }
+
+        if (payloads.size() == 1) {
+            return payloads.getFirst();
+        }
+        return frame(payloads);
+    }
+
+    /**
+     * Frames a single payload as a batch of one, for payloads that are not protobuf messages and so may themselves
+     * start with the marker.
+     */
+    static byte[] frame(final byte[] payload) {
+        return frame(List.of(payload));
+    }
+
+    private static byte[] frame(final List<byte[]> payloads) {
+        int size = HEADER_SIZE;
+        for (byte[] payload : payloads) {
+            size += Integer.BYTES + payload.length;
+        }
+
+        final ByteBuffer bb = ByteBuffer.allocate(size);
+        bb.put(MARKER).put(VERSION).putInt(payloads.size());
+        for (byte[] payload : payloads) {
+            bb.putInt(payload.length).put(payload);
+        }
+        return bb.array();
+    }
+
+    static List<byte[]> unpack(final byte[] bytes) {
+        final List<ByteBuffer> views = unpack(ByteBuffer.wrap(bytes));
+        final List<byte[]> payloads = new ArrayList<>(views.size());
+        for (ByteBuffer view : views) {
+            final byte[] payload = new byte[view.remaining()];
+            view.get(payload);
+            payloads.add(payload);
+        }
+        return payloads;
+    }
+
+    /**
+     * Unpacks the payloads as views of the given buffer, without copying them. The views are only valid for as long
+     * as the buffer's contents are.
+     */
+    static List<ByteBuffer> unpack(final ByteBuffer buffer) {
+        if (!isBatch(buffer)) {
+            return List.of(buffer.slice());
+        }
+
+        final ByteBuffer bb = buffer.duplicate();
+        bb.get(); // marker
+        final byte version = bb.get();
+        if (version != VERSION) {
+            throw new IllegalStateException("Unsupported entry batch version " + version);
+        }
+
+        final int count = bb.getInt();
+        final List<ByteBuffer> payloads = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            final int length = bb.getInt();
+            payloads.add(bb.slice(bb.position(), length));
+            bb.position(bb.position() + length);
+        }
+        return payloads;
+    }
+
+    static boolean isBatch(final byte[] bytes) {
+        return bytes.length >= HEADER_SIZE && bytes[0] == MARKER;
+    }
+
+    static boolean isBatch(final ByteBuffer buffer) {
+        return buffer.remaining() >= HEADER_SIZE && buffer.get(buffer.position()) == MARKER;
+    }
+}
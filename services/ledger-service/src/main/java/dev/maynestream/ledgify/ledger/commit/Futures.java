@@ -0,0 +1,39 @@
+package dev.maynestream.ledgify.ledger.commit;
+
+import lombok.SneakyThrows;
+
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+
+/**
+ * Blocking waits on the asynchronous client, rethrowing the cause of a failure rather than its wrapper.
+ */
+final class Futures {
+
+    private Futures() {}
+
+    static <T> T await(final Future<T> future) throws Exception {
+        try {
+            return future.get();
+        } catch (ExecutionException e) {
+            throw unwrap(e);
+        }
+    }
+
+    /**
+     * Variant of {@link #await} for use where checked exceptions cannot be declared, such as within a stream.
+     */
+    @SneakyThrows
+    static <T> T awaitUnchecked(final Future<T> future) {
+        return await(future);
+    }
+
+    static Exception unwrap(final Throwable failure) {
+        Throwable cause = failure;
+        while ((cause instanceof ExecutionException || cause instanceof CompletionException) && cause.getCause() != null) {
+            cause = cause.getCause();
+        }
+        return cause instanceof Exception exception ? exception : new ExecutionException(cause);
+    }
+}
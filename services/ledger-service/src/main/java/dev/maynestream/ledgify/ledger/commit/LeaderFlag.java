@@ -0,0 +1,20 @@
+package dev.maynestream.ledgify.ledger.commit;
+
+/**
+ * Whether a committer currently leads its ledger collection, and so may write to it.
+ */
+public interface LeaderFlag extends AutoCloseable {
+
+    boolean isLeader();
+
+    /**
+     * Relinquishes leadership, if held, leaving it to be taken up again.
+     */
+    void interrupted();
+
+    /**
+     * Relinquishes leadership, if held, and leaves the election.
+     */
+    @Override
+    void close();
+}
@@ -1,68 +1,340 @@
 package dev.maynestream.ledgify.ledger.commit;
 
-import org.apache.bookkeeper.client.BKException;
-import org.apache.bookkeeper.client.LedgerEntry;
-import org.apache.bookkeeper.client.LedgerHandle;
+import org.apache.bookkeeper.client.api.LastConfirmedAndEntry;
+import org.apache.bookkeeper.client.api.LedgerEntries;
+import org.apache.bookkeeper.client.api.LedgerEntry;
+import org.apache.bookkeeper.client.api.ReadHandle;
+import org.apache.bookkeeper.client.api.WriteHandle;
 
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
 import java.util.Spliterator;
 import java.util.Spliterators;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
 import java.util.function.Consumer;
 import java.util.function.Function;
+import java.util.function.LongConsumer;
+import java.util.stream.IntStream;
 import java.util.stream.Stream;
 import java.util.stream.StreamSupport;
 
 public final class Ledger implements AutoCloseable {
-    private final LedgerHandle ledgerHandle;
+    private static final int CLOSE_AWAIT_OUTSTANDING_SECS = 10;
+    private static final long STREAM_CHUNK_BYTES = 1024 * 1024;
+    private static final long STREAM_CHUNK_MAX_ENTRIES = 256;
 
-    Ledger(final LedgerHandle ledgerHandle) {
-        this.ledgerHandle = ledgerHandle;
+    private final ReadHandle handle;
+    private final WriteHandle writeHandle; // null when opened for reading
+    private final PipelinedAppender appender;
+    private final AutoCloseable closer;
+    private volatile long openedAtNanos = System.nanoTime();
+
+    Ledger(final ReadHandle handle) {
+        this(handle, handle::close);
+    }
+
+    /**
+     * @param closer releases the handle once this ledger is closed, which need not close the handle itself
+     */
+    Ledger(final ReadHandle handle, final AutoCloseable closer) {
+        this.handle = handle;
+        this.writeHandle = null;
+        this.appender = null;
+        this.closer = closer;
+    }
+
+    Ledger(final WriteHandle writeHandle, final int maxInFlightAdds, final LedgerMetrics.TimedOperation adds) {
+        this.handle = writeHandle;
+        this.writeHandle = writeHandle;
+        this.appender = new PipelinedAppender(writeHandle, maxInFlightAdds, adds);
+        this.closer = writeHandle::close;
     }
 
     public long getId() {
-        return ledgerHandle.getId();
+        return handle.getId();
     }
 
     public long getLastRecordedEntryId() {
-        return ledgerHandle.getLastAddConfirmed();
+        return handle.getLastAddConfirmed();
+    }
+
+    /**
+     * @return the number of bytes written to the ledger, as known to this handle
+     */
+    long getLength() {
+        return handle.getLength();
+    }
+
+    /**
+     * @return the time since this handle to the ledger was opened
+     */
+    long getAgeNanos() {
+        return System.nanoTime() - openedAtNanos;
+    }
+
+    /**
+     * Restarts the ledger's age, for a ledger created ahead of the collection it has now been bound to.
+     */
+    Ledger restartAge() {
+        openedAtNanos = System.nanoTime();
+        return this;
     }
 
     public <T> Entry<T> addEntry(final T data, final Function<T, byte[]> transformer) throws Exception {
-        final long entryId = ledgerHandle.addEntry(transformer.apply(data));
+        final long entryId = writable().append(transformer.apply(data));
         return new Entry<>(getId(), entryId, data);
     }
 
+    public <T> List<Entry<T>> addEntries(final List<T> data, final Function<T, byte[]> transformer) throws Exception {
+        final long entryId = writable().append(EntryBatch.pack(data.stream().map(transformer).toList()));
+        return IntStream.range(0, data.size())
+                        .mapToObj(index -> new Entry<>(getId(), entryId, index, data.get(index)))
+                        .toList();
+    }
+
+    /**
+     * Pipelined variant of {@link #addEntries}; blocks only while the maximum number of adds are in flight.
+     * The returned futures complete in entry id order, and fail together from the first failed add onwards.
+     */
+    public <T> CompletableFuture<List<Entry<T>>> addEntriesAsync(final List<T> data,
+                                                                 final Function<T, byte[]> transformer) throws InterruptedException {
+        return addEntriesAsync(data, transformer, null);
+    }
+
+    /**
+     * @param addNanos told how long the add took once issued, excluding any wait for an add to complete beforehand
+     */
+    public <T> CompletableFuture<List<Entry<T>>> addEntriesAsync(final List<T> data,
+                                                                 final Function<T, byte[]> transformer,
+                                                                 final LongConsumer addNanos) throws InterruptedException {
+        writable();
+        return appender.append(EntryBatch.pack(data.stream().map(transformer).toList()), addNanos)
+                       .thenApply(entryId -> IntStream.range(0, data.size())
+                                                      .mapToObj(index -> new Entry<>(getId(), entryId, index, data.get(index)))
+                                                      .toList());
+    }
+
+    public Throwable getAppendFailure() {
+        return appender == null ? null : appender.failure();
+    }
+
     <T> Entry<T> consumeEntries(final long firstEntry,
                                 final Entry<T> lastRecordedEntry,
                                 final Consumer<Entry<T>> consumer,
-                                final Function<byte[], T> transformer) throws Exception {
-        return streamFrom(firstEntry).map(e -> new Entry<>(e.getLedgerId(),
-                                                           e.getEntryId(),
-                                                           transformer.apply(e.getEntry())))
-                                     .peek(consumer)
-                                     .reduce((previous, current) -> current)
-                                     .orElse(lastRecordedEntry); // return the last recorded as a fallback reference
+                                final Function<ByteBuffer, T> transformer) throws Exception {
+        return consumeEntries(firstEntry, getLastRecordedEntryId(), lastRecordedEntry, consumer, transformer);
+    }
+
+    /**
+     * Variant of {@link #consumeEntries(long, Entry, Consumer, Function)} reading no further than the given entry.
+     */
+    <T> Entry<T> consumeEntries(final long firstEntry,
+                                final long lastEntry,
+                                final Entry<T> lastRecordedEntry,
+                                final Consumer<Entry<T>> consumer,
+                                final Function<ByteBuffer, T> transformer) throws Exception {
+        try (final Stream<LedgerEntry> entries = streamBetween(firstEntry, lastEntry)) {
+            return entries.flatMap(e -> unpack(e, transformer).stream())
+                          .peek(consumer)
+                          .reduce((previous, current) -> current)
+                          .orElse(lastRecordedEntry); // return the last recorded as a fallback reference
+        }
+    }
+
+    /**
+     * Reads and decodes the entries in the given range, inclusive of both ends.
+     */
+    <T> List<Entry<T>> readEntries(final long firstEntry,
+                                   final long lastEntry,
+                                   final Function<ByteBuffer, T> transformer) throws Exception {
+        return Futures.await(readEntriesAsync(firstEntry, lastEntry, transformer, Runnable::run));
+    }
+
+    /**
+     * Reads the entries in the given range, inclusive of both ends, and decodes them on the given executor rather
+     * than the client's callback thread.
+     */
+    <T> CompletableFuture<List<Entry<T>>> readEntriesAsync(final long firstEntry,
+                                                           final long lastEntry,
+                                                           final Function<ByteBuffer, T> transformer,
+                                                           final Executor decoder) {
+        return handle.readAsync(firstEntry, lastEntry).thenApplyAsync(ledgerEntries -> {
+            try (ledgerEntries) {
+                final List<Entry<T>> entries = new ArrayList<>();
+                for (LedgerEntry entry : ledgerEntries) {
+                    entries.addAll(unpack(entry, transformer));
+                }
+                return entries;
+            }
+        }, decoder);
+    }
+
+    /**
+     * Long-polls the bookies until the given entry is confirmed, the ledger is closed or the timeout elapses. The
+     * entry is returned along with its confirmation, so is consumed from the poll rather than read again.
+     *
+     * @return the last entry consumed, or the given last recorded entry if the entry was not returned
+     */
+    <T> Entry<T> awaitEntry(final long entryId,
+                            final long timeoutMillis,
+                            final Entry<T> lastRecordedEntry,
+                            final Consumer<Entry<T>> consumer,
+                            final Function<ByteBuffer, T> transformer) throws Exception {
+        final LastConfirmedAndEntry result = Futures.await(handle.readLastAddConfirmedAndEntryAsync(entryId, timeoutMillis, false));
+        // the entry's buffer is released with the result, so it is decoded and consumed before then
+        try (result) {
+            if (!result.hasEntry() || result.getEntry().getEntryId() != entryId) {
+                return lastRecordedEntry;
+            }
+            Entry<T> lastEntry = lastRecordedEntry;
+            for (Entry<T> entry : unpack(result.getEntry(), transformer)) {
+                consumer.accept(entry);
+                lastEntry = entry;
+            }
+            return lastEntry;
+        }
     }
 
     boolean isClosed() {
-        return ledgerHandle.isClosed();
+        return handle.isClosed();
     }
 
     @Override
     public void close() throws Exception {
-        ledgerHandle.close();
+        try {
+            if (appender != null && !appender.awaitOutstanding(CLOSE_AWAIT_OUTSTANDING_SECS, TimeUnit.SECONDS)) {
+                throw new IllegalStateException("Timed out awaiting outstanding adds to ledger " + getId());
+            }
+        } finally {
+            closer.close();
+        }
+    }
+
+    /**
+     * @return the number of entries expected to fit within the given number of bytes, judged by the ledger's average
+     * entry size, or {@code maxEntries} if the size of its entries is not yet known
+     */
+    long entriesWithin(final long bytes, final long maxEntries) {
+        final long entries = getLastRecordedEntryId() + 1;
+        final long length = getLength();
+        if (entries <= 0 || length <= 0) {
+            return maxEntries;
+        }
+        return Math.max(1, Math.min(maxEntries, bytes / Math.max(1, length / entries)));
+    }
+
+    private WriteHandle writable() {
+        if (writeHandle == null) {
+            throw new IllegalStateException("Ledger %s is open for reading only".formatted(getId()));
+        }
+        return writeHandle;
     }
 
-    private Stream<LedgerEntry> streamFrom(final long entry) throws InterruptedException, BKException {
-        return StreamSupport.stream(Spliterators.spliteratorUnknownSize(ledgerHandle.readEntries(entry,
-                                                                                                 getLastRecordedEntryId())
-                                                                                    .asIterator(),
-                                                                        Spliterator.ORDERED),
-                                    false);
+    /**
+     * Lazily streams the entries in the given range, inclusive of both ends, reading them in chunks and fetching the
+     * next chunk while the current one is consumed, so at most two chunks are held in memory at once.
+     */
+    private Stream<LedgerEntry> streamBetween(final long firstEntry, final long lastEntry) {
+        final ChunkedEntryIterator iterator = new ChunkedEntryIterator(firstEntry, lastEntry);
+        return StreamSupport.stream(Spliterators.spliteratorUnknownSize(iterator, Spliterator.ORDERED), false)
+                            .onClose(iterator::close);
     }
 
-    public record Entry<T>(long ledgerId, long entryId, T data) {
+    /**
+     * Decodes the payloads of an entry directly from the buffer it was read into. The entry's buffer is released when
+     * the entries read with it are closed, so the transformer must not retain the view it is given.
+     */
+    private static <T> List<Entry<T>> unpack(final LedgerEntry entry, final Function<ByteBuffer, T> transformer) {
+        final List<ByteBuffer> payloads = EntryBatch.unpack(entry.getEntryNioBuffer());
+        final List<Entry<T>> entries = new ArrayList<>(payloads.size());
+        for (int index = 0; index < payloads.size(); index++) {
+            entries.add(new Entry<>(entry.getLedgerId(), entry.getEntryId(), index, transformer.apply(payloads.get(index))));
+        }
+        return entries;
+    }
+
+    private final class ChunkedEntryIterator implements Iterator<LedgerEntry>, AutoCloseable {
+        private final long lastEntry;
+        private final long chunkEntries;
+        private long nextEntry;
+        private LedgerEntries currentChunk;
+        private Iterator<LedgerEntry> current = Collections.emptyIterator();
+        private CompletableFuture<LedgerEntries> next;
+
+        private ChunkedEntryIterator(final long firstEntry, final long lastEntry) {
+            this.lastEntry = lastEntry;
+            this.chunkEntries = entriesWithin(STREAM_CHUNK_BYTES, STREAM_CHUNK_MAX_ENTRIES);
+            this.nextEntry = firstEntry;
+            this.next = readAhead();
+        }
+
+        @Override
+        public boolean hasNext() {
+            while (!current.hasNext()) {
+                // entries are fully unpacked before the next is requested, so the exhausted chunk may be released
+                closeCurrentChunk();
+                if (next == null) {
+                    return false;
+                }
+                currentChunk = Futures.awaitUnchecked(next);
+                current = currentChunk.iterator();
+                next = readAhead();
+            }
+            return true;
+        }
+
+        @Override
+        public LedgerEntry next() {
+            if (!hasNext()) {
+                throw new NoSuchElementException();
+            }
+            return current.next();
+        }
+
+        @Override
+        public void close() {
+            closeCurrentChunk();
+            if (next != null) {
+                next.thenAccept(LedgerEntries::close);
+                next = null;
+            }
+        }
+
+        private void closeCurrentChunk() {
+            if (currentChunk != null) {
+                currentChunk.close();
+                currentChunk = null;
+                current = Collections.emptyIterator();
+            }
+        }
+
+        private CompletableFuture<LedgerEntries> readAhead() {
+            if (nextEntry > lastEntry) {
+                return null;
+            }
+            final long chunkEnd = Math.min(lastEntry, nextEntry + chunkEntries - 1);
+            final CompletableFuture<LedgerEntries> chunk = handle.readAsync(nextEntry, chunkEnd);
+            nextEntry = chunkEnd + 1;
+            return chunk;
+        }
+    }
+
+    /**
+     * A position in a ledger; {@code index} locates the data within a batched (group commit) entry.
+     */
+    public record Entry<T>(long ledgerId, long entryId, int index, T data) {
         private static final int NOT_EXISTS = -1;
 
+        public Entry(final long ledgerId, final long entryId, final T data) {
+            this(ledgerId, entryId, 0, data);
+        }
+
         public static <T> Entry<T> initial() {
             return new Entry<>(NOT_EXISTS, NOT_EXISTS, null);
         }
@@ -1,40 +1,214 @@
 package dev.maynestream.ledgify.ledger.commit;
 
 import dev.maynestream.ledgify.ledger.BookkeeperConfiguration;
+import lombok.extern.slf4j.Slf4j;
 import org.apache.bookkeeper.client.BookKeeper;
+import org.apache.bookkeeper.client.api.DigestType;
+import org.apache.bookkeeper.client.api.ReadHandle;
 
+import java.time.Duration;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Creates and opens ledgers through the asynchronous client, so that no thread is held while BookKeeper and its
+ * metadata store respond. The blocking variants await the asynchronous ones, and are intended for virtual threads.
+ */
+@Slf4j
 public class LedgerAccessor {
-    private static final BookKeeper.DigestType DIGEST_TYPE = BookKeeper.DigestType.MAC;
+    private static final DigestType DIGEST_TYPE = DigestType.MAC;
 
     private final BookKeeper bookKeeper;
     private final BookkeeperConfiguration bookkeeperConfiguration;
     private final byte[] ledgerPassword;
+    private final LedgerMetrics metrics;
+    private final LedgerHandleCache readHandleCache;
+    private final StandbyLedgerPool standbyPool;
+    private final LedgerPasswordStore passwords;
+    private final CatchUpReplay replay;
+    private final RolloverPolicy rollover;
 
     public LedgerAccessor(final BookKeeper bookKeeper,
                           final BookkeeperConfiguration bookkeeperConfiguration,
+                          final LedgerMetrics metrics,
                           final byte[] ledgerPassword) {
+        this(bookKeeper, bookkeeperConfiguration, metrics, ledgerPassword, null, null, null);
+    }
+
+    /**
+     * @param readHandleCache shared cache of read handles, or null to open a new handle for every read
+     * @param standbyPool node-wide pool of pre-created ledgers to claim from, or null to create every ledger on demand
+     * @param passwords   passwords of the collection's ledgers created with their own, or null if all use the given one.
+     *                    Ledgers are only claimed from the standby pool where their passwords can be recorded
+     */
+    public LedgerAccessor(final BookKeeper bookKeeper,
+                          final BookkeeperConfiguration bookkeeperConfiguration,
+                          final LedgerMetrics metrics,
+                          final byte[] ledgerPassword,
+                          final LedgerHandleCache readHandleCache,
+                          final StandbyLedgerPool standbyPool,
+                          final LedgerPasswordStore passwords) {
         this.bookKeeper = bookKeeper;
         this.bookkeeperConfiguration = bookkeeperConfiguration;
         this.ledgerPassword = ledgerPassword;
+        this.metrics = metrics;
+        this.readHandleCache = readHandleCache;
+        this.standbyPool = passwords == null ? null : standbyPool;
+        this.passwords = passwords;
+        this.replay = new CatchUpReplay(bookkeeperConfiguration.getReplayParallelism(),
+                                        bookkeeperConfiguration.getReplaySegmentBytes());
+        this.rollover = new RolloverPolicy(bookkeeperConfiguration.getRolloverMaxEntries(),
+                                           bookkeeperConfiguration.getRolloverMaxBytes(),
+                                           Duration.ofSeconds(bookkeeperConfiguration.getRolloverMaxAgeSecs()));
+    }
+
+    LedgerMetrics metrics() {
+        return metrics;
+    }
+
+    CatchUpReplay replay() {
+        return replay;
+    }
+
+    RolloverPolicy rollover() {
+        return rollover;
     }
 
     Ledger create() throws Exception {
-        return new Ledger(bookKeeper.createLedger(bookkeeperConfiguration.getDefaultEnsembleSize(),
-                                                  bookkeeperConfiguration.getDefaultWriteQuorumSize(),
-                                                  bookkeeperConfiguration.getDefaultAckQuorumSize(),
-                                                  DIGEST_TYPE,
-                                                  ledgerPassword));
+        return Futures.await(createAsync());
+    }
+
+    CompletableFuture<Ledger> createAsync() {
+        return createAsync(ledgerPassword);
+    }
+
+    Ledger create(final byte[] password) throws Exception {
+        return Futures.await(createAsync(password));
+    }
+
+    CompletableFuture<Ledger> createAsync(final byte[] password) {
+        return metrics.create.time(bookKeeper.newCreateLedgerOp()
+                                             .withEnsembleSize(bookkeeperConfiguration.getDefaultEnsembleSize())
+                                             .withWriteQuorumSize(bookkeeperConfiguration.getDefaultWriteQuorumSize())
+                                             .withAckQuorumSize(bookkeeperConfiguration.getDefaultAckQuorumSize())
+                                             .withDigestType(DIGEST_TYPE)
+                                             .withPassword(password)
+                                             .execute())
+                      .thenApply(handle -> new Ledger(handle, bookkeeperConfiguration.getMaxInFlightAdds(), metrics.add));
+    }
+
+    /**
+     * Claims a ledger from the standby pool, or creates one if none is available, to be added to a ledger collection.
+     */
+    Ledger claim() throws Exception {
+        final StandbyLedgerPool.Standby standby = standbyPool == null ? null : standbyPool.claim();
+        return standby != null ? recordPassword(standby) : create();
+    }
+
+    CompletableFuture<Ledger> claimAsync() {
+        final StandbyLedgerPool.Standby standby = standbyPool == null ? null : standbyPool.claim();
+        if (standby == null) {
+            return createAsync();
+        }
+
+        final CompletableFuture<Ledger> claimed = new CompletableFuture<>();
+        Thread.ofVirtual().start(() -> {
+            try {
+                claimed.complete(recordPassword(standby));
+            } catch (Exception e) {
+                claimed.completeExceptionally(e);
+            }
+        });
+        return claimed;
+    }
+
+    /**
+     * Deletes a ledger that was created but never added to a ledger collection.
+     */
+    CompletableFuture<Void> deleteAsync(final long ledgerId) {
+        return bookKeeper.newDeleteLedgerOp().withLedgerId(ledgerId).execute();
+    }
+
+    /**
+     * Deletes a ledger that was claimed or created but never added to a ledger collection, along with any password
+     * recorded for it.
+     */
+    CompletableFuture<Void> discardAsync(final long ledgerId) {
+        if (passwords == null) {
+            return deleteAsync(ledgerId);
+        }
+        return deleteAsync(ledgerId).thenCompose(ignore -> {
+            final CompletableFuture<Void> forgotten = new CompletableFuture<>();
+            Thread.ofVirtual().start(() -> {
+                try {
+                    passwords.delete(ledgerId);
+                    forgotten.complete(null);
+                } catch (Exception e) {
+                    forgotten.completeExceptionally(e);
+                }
+            });
+            return forgotten;
+        });
+    }
+
+    Ledger openAsLeader(final long ledgerId) throws Exception {
+        return Futures.await(openAsLeaderAsync(ledgerId));
+    }
+
+    /**
+     * Opens the ledger with recovery, fencing out its previous writer and closing it.
+     */
+    CompletableFuture<Ledger> openAsLeaderAsync(final long ledgerId) {
+        return open(ledgerId, true).thenApply(Ledger::new);
     }
 
-    Ledger openAsLeader(final Long entry) throws Exception {
-        return new Ledger(bookKeeper.openLedger(entry,
-                                                BookKeeper.DigestType.MAC,
-                                                ledgerPassword));
+    Ledger openForRead(final long ledgerId) throws Exception {
+        if (readHandleCache == null) {
+            return Futures.await(open(ledgerId, false).thenApply(Ledger::new));
+        }
+
+        final LedgerHandleCache.Lease lease = readHandleCache.acquire(ledgerId, () -> Futures.await(open(ledgerId, false)));
+        return new Ledger(lease.handle(), lease);
+    }
+
+    /*
+     * The password of a ledger claimed from the standby pool is recorded before it joins the collection, so that it
+     * can only ever be opened with the password it was created with.
+     */
+    private Ledger recordPassword(final StandbyLedgerPool.Standby standby) throws Exception {
+        final Ledger ledger = standby.ledger();
+        try {
+            passwords.write(ledger.getId(), standby.password());
+        } catch (Exception e) {
+            ledger.close();
+            deleteAsync(ledger.getId()).whenComplete((ignore, de) -> {
+                if (de != null) {
+                    log.warn("Failed to delete unrecorded standby ledger {}", ledger.getId(), de);
+                }
+            });
+            throw e;
+        }
+        return ledger;
+    }
+
+    private CompletableFuture<ReadHandle> open(final long ledgerId, final boolean recovery) {
+        final byte[] password;
+        try {
+            final byte[] recorded = passwords == null ? null : passwords.read(ledgerId);
+            password = recorded != null ? recorded : ledgerPassword;
+        } catch (Exception e) {
+            return CompletableFuture.failedFuture(e);
+        }
+
+        final LedgerMetrics.TimedOperation timed = recovery ? metrics.openRecovery : metrics.openRead;
+        return timed.time(open(ledgerId, recovery, password));
     }
 
-    Ledger openForRead(final long previous) throws Exception {
-        return new Ledger(bookKeeper.openLedgerNoRecovery(previous,
-                                                          BookKeeper.DigestType.MAC,
-                                                          ledgerPassword));
+    CompletableFuture<ReadHandle> open(final long ledgerId, final boolean recovery, final byte[] password) {
+        return bookKeeper.newOpenLedgerOp()
+                         .withLedgerId(ledgerId)
+                         .withRecovery(recovery)
+                         .withDigestType(DIGEST_TYPE)
+                         .withPassword(password)
+                         .execute();
     }
 }
@@ -1,52 +1,202 @@
 package dev.maynestream.ledgify.ledger.commit;
 
-import lombok.ToString;
-
+import java.io.ByteArrayOutputStream;
 import java.nio.ByteBuffer;
-import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Iterator;
-import java.util.List;
+import java.util.NoSuchElementException;
 
-@ToString
+/**
+ * The ledgers of a collection in the order they were appended.
+ * <p>
+ * Ids are held as primitives, and are stored by {@link LedgerCollectionStore} in chunks, each encoded as the
+ * zigzag-varint deltas between consecutive ids: ids allocated in sequence cost a byte or two apiece, rather than the
+ * eight of the original format, which is still read.
+ */
 class LedgerCollection implements Iterable<Long> {
+    private static final int INITIAL_CAPACITY = 8;
 
     static LedgerCollection fromBytes(byte[] bytes) {
         final LedgerCollection ledgerCollection = new LedgerCollection();
         ByteBuffer bb = ByteBuffer.wrap(bytes);
         while (bb.remaining() > 0) {
-            ledgerCollection.ledgerIds.add(bb.getLong());
+            ledgerCollection.append(bb.getLong());
         }
         return ledgerCollection;
     }
 
     // insertion order important
-    private final List<Long> ledgerIds = new ArrayList<>();
+    private long[] ledgerIds;
+    private int size;
+
+    // ids already written to the store, and the chunk capacity they were written with (0 if in the original format)
+    private int storedSize;
+    private int storedChunkCapacity;
+
+    LedgerCollection() {
+        this(new long[INITIAL_CAPACITY], 0);
+    }
+
+    private LedgerCollection(final long[] ledgerIds, final int size) {
+        this.ledgerIds = ledgerIds;
+        this.size = size;
+    }
 
     @Override
     public Iterator<Long> iterator() {
-        return ledgerIds.iterator();
+        return new Iterator<>() {
+            private int next;
+
+            @Override
+            public boolean hasNext() {
+                return next < size;
+            }
+
+            @Override
+            public Long next() {
+                if (next >= size) {
+                    throw new NoSuchElementException();
+                }
+                return ledgerIds[next++];
+            }
+        };
     }
 
     boolean isEmpty() {
-        return ledgerIds.isEmpty();
+        return size == 0;
+    }
+
+    int size() {
+        return size;
     }
 
     void append(long ledgerId) {
-        ledgerIds.add(ledgerId);
+        if (size == ledgerIds.length) {
+            ledgerIds = Arrays.copyOf(ledgerIds, Math.max(INITIAL_CAPACITY, size * 2));
+        }
+        ledgerIds[size++] = ledgerId;
+    }
+
+    boolean isLast(long ledgerId) {
+        return size > 0 && ledgerIds[size - 1] == ledgerId;
     }
 
-    byte[] toBytes() {
-        ByteBuffer bb = ByteBuffer.allocate((Long.SIZE * ledgerIds.size()) / 8);
-        for (Long l : ledgerIds) {
-            bb.putLong(l);
+    long last() {
+        if (size == 0) {
+            throw new NoSuchElementException();
         }
-        return bb.array();
+        return ledgerIds[size - 1];
     }
 
+    LedgerCollection exceptLast() {
+        return range(0, Math.max(0, size - 1));
+    }
+
+    boolean contains(long ledgerId) {
+        return indexOf(ledgerId) >= 0;
+    }
+
+    LedgerCollection from(long ledgerId) {
+        final int index = indexOf(ledgerId);
+        if (index < 0) {
+            throw new IllegalArgumentException("ledger %s is not part of the collection".formatted(ledgerId));
+        }
+        return range(index, size);
+    }
+
+    /**
+     * @return the ledgers following the given ledger, or every ledger if it is not part of the collection
+     */
     LedgerCollection since(long ledgerId) {
-        final LedgerCollection ledgerCollection = new LedgerCollection();
-        final List<Long> idsSince = ledgerIds.subList(ledgerIds.indexOf(ledgerId) + 1, ledgerIds.size());
-        ledgerCollection.ledgerIds.addAll(idsSince);
-        return ledgerCollection;
+        return range(indexOf(ledgerId) + 1, size);
+    }
+
+    /**
+     * Encodes the ids in the given range as a chunk, each as the zigzag-varint delta from its predecessor in the
+     * chunk, the first from zero, so that each chunk may be decoded alone.
+     */
+    byte[] encodeChunk(final int from, final int to) {
+        final ByteArrayOutputStream out = new ByteArrayOutputStream((to - from) * 2);
+        long previous = 0;
+        for (int i = from; i < to; i++) {
+            writeVarint(out, zigzag(ledgerIds[i] - previous));
+            previous = ledgerIds[i];
+        }
+        return out.toByteArray();
+    }
+
+    /**
+     * Appends up to limit ids decoded from a chunk.
+     */
+    void appendChunk(final byte[] chunk, final int limit) {
+        final ByteBuffer in = ByteBuffer.wrap(chunk);
+        long previous = 0;
+        for (int i = 0; i < limit && in.hasRemaining(); i++) {
+            previous += unzigzag(readVarint(in));
+            append(previous);
+        }
+    }
+
+    int storedSize() {
+        return storedSize;
+    }
+
+    int storedChunkCapacity() {
+        return storedChunkCapacity;
+    }
+
+    void stored(final int chunkCapacity) {
+        this.storedSize = size;
+        this.storedChunkCapacity = chunkCapacity;
+    }
+
+    @Override
+    public String toString() {
+        return "LedgerCollection(ledgerIds=" + Arrays.toString(Arrays.copyOf(ledgerIds, size)) + ")";
+    }
+
+    /*
+     * Positions sought are almost always towards the end of the collection, so it is searched from there.
+     */
+    private int indexOf(final long ledgerId) {
+        for (int i = size - 1; i >= 0; i--) {
+            if (ledgerIds[i] == ledgerId) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    private LedgerCollection range(final int from, final int to) {
+        final long[] ids = Arrays.copyOfRange(ledgerIds, from, Math.max(from + INITIAL_CAPACITY, to));
+        return new LedgerCollection(ids, to - from);
+    }
+
+    static void writeVarint(final ByteArrayOutputStream out, long value) {
+        while ((value & ~0x7FL) != 0) {
+            out.write((int) ((value & 0x7F) | 0x80));
+            value >>>= 7;
+        }
+        out.write((int) value);
+    }
+
+    static long readVarint(final ByteBuffer in) {
+        long value = 0;
+        for (int shift = 0; shift < Long.SIZE; shift += 7) {
+            final byte b = in.get();
+            value |= (long) (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) {
+                return value;
+            }
+        }
+        throw new IllegalArgumentException("malformed varint");
+    }
+
+    private static long zigzag(final long value) {
+        return (value << 1) ^ (value >> 63);
+    }
+
+    private static long unzigzag(final long value) {
+        return (value >>> 1) ^ -(value & 1);
     }
 }
@@ -1,39 +1,78 @@
 package dev.maynestream.ledgify.ledger.commit;
 
 import org.apache.curator.framework.CuratorFramework;
+import org.apache.curator.framework.api.CuratorWatcher;
+import org.apache.curator.framework.api.transaction.CuratorOp;
+import org.apache.curator.framework.api.transaction.CuratorTransactionResult;
+import org.apache.curator.utils.ZKPaths;
 import org.apache.zookeeper.KeeperException;
 import org.apache.zookeeper.data.Stat;
 
+import java.io.ByteArrayOutputStream;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
 import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
 
 public class LedgerCollectionStore {
     private static final String LEDGERS_COLLECTION_PATH_FORMAT = "/ledgers-collection/%s";
+    private static final String CHUNK_NAME_FORMAT = "%010d";
+    private static final byte[] MAGIC = {'L', 'C', 'v', '2'};
+
+    // ids per chunk, keeping each chunk node to tens of kilobytes at most
+    static final int CHUNK_CAPACITY = 4096;
 
     private final CuratorFramework curator;
     private final String collectionPath;
+    private final LedgerMetrics metrics;
+    private final Map<Integer, byte[]> fullChunks = new ConcurrentHashMap<>();
+
+    // a single watcher is re-armed as needed, so waiting readers never accumulate watches on the collection
+    private final AtomicLong changes = new AtomicLong();
+    private final AtomicBoolean watching = new AtomicBoolean();
+    private final CuratorWatcher watcher = event -> {
+        watching.set(false);
+        changes.incrementAndGet();
+        synchronized (this) {
+            notifyAll();
+        }
+    };
 
-    public LedgerCollectionStore(final CuratorFramework curator, final String ledgerPath) {
+    public LedgerCollectionStore(final CuratorFramework curator, final String ledgerPath, final LedgerMetrics metrics) {
         this.curator = curator;
         this.collectionPath = buildLedgerPath(ledgerPath);
+        this.metrics = metrics;
     }
 
     void create(final Stat stat, final LedgerCollection ledgers) throws Exception {
-        curator.create()
-               .creatingParentContainersIfNeeded()
-               .storingStatIn(stat)
-               .forPath(collectionPath, ledgers.toBytes());
+        metrics.collectionCreate.time(() -> {
+            curator.createContainers(ZKPaths.getPathAndNode(collectionPath).getPath());
+            write(stat, ledgers, true);
+            return null;
+        });
     }
 
+    /**
+     * Writes the ids appended since the collection was loaded or last written if it is unchanged since the given
+     * stat was read, then refreshes the stat so that the collection may be updated again. Only the tail chunk is
+     * rewritten, along with any chunks that follow it, unless the collection is being converted from the original
+     * format.
+     */
     void update(final Stat stat, final LedgerCollection ledgers) throws Exception {
-        curator.setData()
-               .withVersion(stat.getVersion())
-               .forPath(collectionPath, ledgers.toBytes());
+        metrics.collectionUpdate.time(() -> {
+            write(stat, ledgers, false);
+            return null;
+        });
     }
 
     LedgerCollection load(final Stat stat) throws Exception {
         try {
-            byte[] ledgerListBytes = curator.getData().storingStatIn(stat).forPath(collectionPath);
-            return LedgerCollection.fromBytes(ledgerListBytes);
+            return metrics.collectionLoad.time(() -> read(stat));
         } catch (KeeperException.NoNodeException nne) {
             // ledger collection doesn't yet exist
             return new LedgerCollection();
@@ -41,8 +80,131 @@ public class LedgerCollectionStore {
     }
 
     LedgerCollection load() throws Exception {
-        byte[] ledgerListBytes = curator.getData().forPath(collectionPath);
-        return LedgerCollection.fromBytes(ledgerListBytes);
+        return metrics.collectionLoad.time(() -> read(new Stat()));
+    }
+
+    /**
+     * Ensures the collection is being watched for creation, update or deletion.
+     *
+     * @return a marker to pass to {@link #awaitChange} in order to wait for any change after this call
+     */
+    long watch() throws Exception {
+        final long current = changes.get();
+        if (watching.compareAndSet(false, true)) {
+            try {
+                curator.checkExists().usingWatcher(watcher).forPath(collectionPath);
+            } catch (Exception e) {
+                watching.set(false);
+                throw e;
+            }
+        }
+        return current;
+    }
+
+    /**
+     * @return true if the collection changed after the given marker was obtained, within the timeout
+     */
+    boolean awaitChange(final long marker, final long timeoutMillis) throws InterruptedException {
+        final long deadline = System.currentTimeMillis() + timeoutMillis;
+        synchronized (this) {
+            long remaining;
+            while (changes.get() == marker && (remaining = deadline - System.currentTimeMillis()) > 0) {
+                wait(remaining);
+            }
+        }
+        return changes.get() != marker;
+    }
+
+    /*
+     * The collection node holds a header naming the number of ids and the capacity of each chunk, and its chunks are
+     * its children. Chunks are only ever appended to, and the header is written in the same transaction as them, so a
+     * reader that reads the header first sees a consistent prefix of the collection however it races with writes.
+     */
+    private LedgerCollection read(final Stat stat) throws Exception {
+        final byte[] root = curator.getData().storingStatIn(stat).forPath(collectionPath);
+        if (!isChunked(root)) {
+            final LedgerCollection ledgers = LedgerCollection.fromBytes(root);
+            ledgers.stored(0);
+            return ledgers;
+        }
+
+        final ByteBuffer header = ByteBuffer.wrap(root, MAGIC.length, root.length - MAGIC.length);
+        final int chunkCapacity = (int) LedgerCollection.readVarint(header);
+        final int size = (int) LedgerCollection.readVarint(header);
+
+        final LedgerCollection ledgers = new LedgerCollection();
+        for (int chunk = 0; chunk < chunkCount(size, chunkCapacity); chunk++) {
+            final int ids = Math.min(chunkCapacity, size - chunk * chunkCapacity);
+            ledgers.appendChunk(readChunk(chunk, ids == chunkCapacity), ids);
+        }
+        ledgers.stored(chunkCapacity);
+        return ledgers;
+    }
+
+    private byte[] readChunk(final int chunk, final boolean full) throws Exception {
+        // a full chunk is never written again, so need only be fetched once
+        final byte[] cached = fullChunks.get(chunk);
+        if (cached != null) {
+            return cached;
+        }
+
+        final byte[] data = curator.getData().forPath(chunkPath(chunk));
+        if (full) {
+            fullChunks.put(chunk, data);
+        }
+        return data;
+    }
+
+    private void write(final Stat stat, final LedgerCollection ledgers, final boolean create) throws Exception {
+        final boolean chunked = ledgers.storedChunkCapacity() > 0;
+        final int chunkCapacity = chunked ? ledgers.storedChunkCapacity() : CHUNK_CAPACITY;
+        final int storedChunks = chunked ? chunkCount(ledgers.storedSize(), chunkCapacity) : 0;
+        final int firstChunk = chunked ? ledgers.storedSize() / chunkCapacity : 0;
+
+        final List<CuratorOp> operations = new ArrayList<>();
+        final byte[] header = header(chunkCapacity, ledgers.size());
+        operations.add(create
+                               ? curator.transactionOp().create().forPath(collectionPath, header)
+                               : curator.transactionOp().setData().withVersion(stat.getVersion()).forPath(collectionPath, header));
+        for (int chunk = firstChunk; chunk < chunkCount(ledgers.size(), chunkCapacity); chunk++) {
+            final byte[] data = ledgers.encodeChunk(chunk * chunkCapacity,
+                                                    Math.min(ledgers.size(), (chunk + 1) * chunkCapacity));
+            operations.add(chunk < storedChunks
+                                   ? curator.transactionOp().setData().forPath(chunkPath(chunk), data)
+                                   : curator.transactionOp().create().forPath(chunkPath(chunk), data));
+        }
+
+        for (CuratorTransactionResult result : curator.transaction().forOperations(operations)) {
+            if (result.getForPath().equals(collectionPath)) {
+                // a newly created node is at its initial version
+                stat.setVersion(result.getResultStat() != null ? result.getResultStat().getVersion() : 0);
+            }
+        }
+        ledgers.stored(chunkCapacity);
+    }
+
+    private String chunkPath(final int chunk) {
+        return ZKPaths.makePath(collectionPath, CHUNK_NAME_FORMAT.formatted(chunk));
+    }
+
+    private static byte[] header(final int chunkCapacity, final int size) {
+        final ByteArrayOutputStream out = new ByteArrayOutputStream();
+        out.writeBytes(MAGIC);
+        LedgerCollection.writeVarint(out, chunkCapacity);
+        LedgerCollection.writeVarint(out, size);
+        return out.toByteArray();
+    }
+
+    /*
+     * The original format is a bare sequence of ids, so it could only be mistaken for a header if its first id began
+     * with the magic bytes, which would need an id beyond any that BookKeeper allocates in practice.
+     */
+    private static boolean isChunked(final byte[] root) {
+        return root.length >= MAGIC.length && Arrays.equals(root, 0, MAGIC.length, MAGIC, 0, MAGIC.length);
+    }
+
+    private static int chunkCount(final int size, final int chunkCapacity) {
+        return (size + chunkCapacity - 1) / chunkCapacity;
     }
 
     private static String buildLedgerPath(final String ledgerPath) {
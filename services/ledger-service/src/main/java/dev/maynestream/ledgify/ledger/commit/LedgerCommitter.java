@@ -3,31 +3,76 @@ package dev.maynestream.ledgify.ledger.commit;
 import dev.maynestream.ledgify.ledger.commit.Ledger.Entry;
 import dev.maynestream.ledgify.ledger.commit.Ledger.LedgerException;
 import dev.maynestream.ledgify.ledger.commit.logging.LedgerLoggingContext;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Tags;
 import lombok.SneakyThrows;
 import org.apache.zookeeper.KeeperException;
 import org.apache.zookeeper.data.Stat;
 
+import java.nio.ByteBuffer;
+import java.time.Duration;
+import java.util.List;
 import java.util.Objects;
 import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.function.Consumer;
 import java.util.function.Function;
 
 public abstract class LedgerCommitter<T> extends LedgerReader<T> implements AutoCloseable, Runnable {
 
+    private static final Duration MIN_RETRY_AWAIT = Duration.ofMillis(10);
+    private static final Duration MAX_RETRY_AWAIT = Duration.ofSeconds(1);
+
     private final AtomicBoolean running = new AtomicBoolean(false);
+    private final AtomicBoolean checkpointing = new AtomicBoolean(false);
 
-    private final CuratorLeaderFlag flag;
+    private final LeaderFlag flag;
+    private final RolloverPolicy rollover;
+    private final CheckpointStore checkpoints;
+    private final ReplayCounter<T> replayed;
+    private volatile SegmentTracker<T> segment;
     private volatile Thread workerThread;
 
     protected LedgerCommitter(final UUID uniqueId,
                               final LedgerAccessor accessor,
                               final LedgerCollectionStore store,
-                              final CuratorLeaderFlag flag,
+                              final LeaderFlag flag,
+                              final Consumer<Entry<T>> consumer,
+                              final Function<ByteBuffer, T> transformer) {
+        this(uniqueId, accessor, store, null, null, null, flag, consumer, transformer);
+    }
+
+    /**
+     * @param checkpoints the latest checkpoint of the consumed state, or null if none is kept
+     */
+    protected LedgerCommitter(final UUID uniqueId,
+                              final LedgerAccessor accessor,
+                              final LedgerCollectionStore store,
+                              final SegmentStore segments,
+                              final SegmentKeys<T> segmentKeys,
+                              final CheckpointStore checkpoints,
+                              final LeaderFlag flag,
                               final Consumer<Entry<T>> consumer,
-                              final Function<byte[], T> transformer) {
-        super(uniqueId, accessor, store, consumer, transformer);
+                              final Function<ByteBuffer, T> transformer) {
+        this(uniqueId, accessor, store, segments, segmentKeys, checkpoints, flag, new ReplayCounter<>(consumer), transformer);
+    }
+
+    private LedgerCommitter(final UUID uniqueId,
+                            final LedgerAccessor accessor,
+                            final LedgerCollectionStore store,
+                            final SegmentStore segments,
+                            final SegmentKeys<T> segmentKeys,
+                            final CheckpointStore checkpoints,
+                            final LeaderFlag flag,
+                            final ReplayCounter<T> replayed,
+                            final Function<ByteBuffer, T> transformer) {
+        super(uniqueId, accessor, store, segments, segmentKeys, replayed, transformer);
         this.flag = Objects.requireNonNull(flag, "flag cannot be null");
+        this.rollover = accessor.rollover();
+        this.checkpoints = checkpoints;
+        this.replayed = replayed;
     }
 
     @Override
@@ -54,11 +99,20 @@ public abstract class LedgerCommitter<T> extends LedgerReader<T> implements Auto
 
         workerThread = Thread.currentThread();
 
-        Entry<T> lastDisplayedEntry = Entry.initial();
+        final Tags tags = metricTags();
+        replayed.counter = accessor.metrics().replayedEntries(tags);
+
+        final Backoff backoff = new Backoff(MIN_RETRY_AWAIT, MAX_RETRY_AWAIT);
+        Entry<T> lastDisplayedEntry = restoreCheckpoint();
+        boolean wasLeader = false;
 
         while (!Thread.interrupted()) {
             try {
                 final boolean leader = isLeader();
+                if (leader != wasLeader) {
+                    accessor.metrics().leaderTransitions(leader, tags).increment();
+                    wasLeader = leader;
+                }
                 try (final var ignore = LedgerLoggingContext.ledger(leader, uniqueId)) {
                     if (leader) {
                         log.info("Operating as leader from {}", lastDisplayedEntry);
@@ -67,6 +121,7 @@ public abstract class LedgerCommitter<T> extends LedgerReader<T> implements Auto
                         log.info("Operating as follower from {}", lastDisplayedEntry);
                         lastDisplayedEntry = readFrom(lastDisplayedEntry, true);
                     }
+                    backoff.reset();
                 } catch (LedgerException e) {
                     if (e.interrupted()) {
                         Thread.currentThread().interrupt();
@@ -74,7 +129,7 @@ public abstract class LedgerCommitter<T> extends LedgerReader<T> implements Auto
                     lastDisplayedEntry = e.getLastRecordedEntry();
                 }
 
-                Thread.sleep(1000);
+                backoff.await();
             } catch (InterruptedException e) {
                 Thread.currentThread().interrupt();
 
@@ -92,6 +147,38 @@ public abstract class LedgerCommitter<T> extends LedgerReader<T> implements Auto
 
     protected abstract Entry<T> attemptCommit(final Ledger ledger, Entry<T> lastRecordedEntry);
 
+    /**
+     * @return tags distinguishing this committer's meters, which must be drawn from a bounded set of values
+     */
+    protected Tags metricTags() {
+        return Tags.empty();
+    }
+
+    /**
+     * To be called with entries as they are confirmed, in entry order, so that the segment metadata of the ledger
+     * they were committed to can be recorded once it rolls over.
+     */
+    protected void committed(final List<Entry<T>> entries) {
+        final SegmentTracker<T> tracker = segment;
+        if (tracker != null) {
+            entries.forEach(tracker::record);
+        }
+    }
+
+    /**
+     * @return the consumer's state as of the last entry it consumed, positioned at that entry, or null if there is
+     * none to checkpoint
+     */
+    protected Entry<byte[]> checkpoint() {
+        return null;
+    }
+
+    /**
+     * Restores the consumer's state from a checkpoint, before any entry following it is consumed.
+     */
+    protected void restore(final Entry<byte[]> checkpoint) {
+    }
+
     protected Entry<T> lead(final Entry<T> entry) throws Exception {
         Entry<T> lastRecordedEntry = entry;
 
@@ -101,56 +188,206 @@ public abstract class LedgerCommitter<T> extends LedgerReader<T> implements Auto
 
         try {
             lastRecordedEntry = consumeUnrecorded(lastRecordedEntry, ledgers);
+        } catch (LedgerException e) {
+            throw e;
         } catch (Exception e) {
             throw new LedgerException(lastRecordedEntry, e);
         }
+        if (lastRecordedEntry != entry && lastRecordedEntry.exists()) {
+            // the replayed ledgers were closed by recovery, so the last entry replayed ends its ledger
+            checkpointAt(lastRecordedEntry.ledgerId(), lastRecordedEntry.entryId());
+        }
+        caughtUp(lastRecordedEntry);
 
-        try (final Ledger ledger = createNewLedger(stat, ledgers, lastRecordedEntry)) {
+        Ledger ledger = createNewLedger(stat, ledgers, lastRecordedEntry);
+        segment = segmentKeys == null ? null : new SegmentTracker<>(ledger.getId(), segmentKeys);
+        CompletableFuture<Ledger> next = null;
+        try {
             while (isLeader()) {
                 lastRecordedEntry = attemptCommit(ledger, lastRecordedEntry);
+
+                if (next == null && rollover.isNear(ledger)) {
+                    next = accessor.claimAsync();
+                }
+                // commits continue to the current ledger until the next is ready, so rollover never waits on its creation
+                if (next != null && next.isDone() && rollover.isDue(ledger)) {
+                    final Ledger created = Futures.await(next);
+                    next = null;
+                    ledger = rollOver(stat, ledgers, ledger, created);
+                }
             }
         } catch (Exception e) {
             throw new LedgerException(lastRecordedEntry, e);
+        } finally {
+            // a ledger closed by its own leader, such as when its account hibernates, ends with the last entry consumed.
+            // One already closed by a rollover that then failed to publish the next has been checkpointed. A leader
+            // stopped by interruption still awaits its outstanding adds, so that the ledger is closed rather than
+            // left to be recovered
+            final boolean interrupted = Thread.interrupted();
+            try {
+                if (!ledger.isClosed() && closeQuietly(ledger)) {
+                    checkpointAt(ledger.getId(), ledger.getLastRecordedEntryId());
+                }
+                discard(next);
+            } finally {
+                if (interrupted) {
+                    Thread.currentThread().interrupt();
+                }
+            }
         }
 
         return lastRecordedEntry;
     }
 
-    private Entry<T> consumeUnrecorded(Entry<T> lastRecordedEntry, final LedgerCollection ledgers) throws Exception {
-        final LedgerCollection missedLedgers = missedLedgers(lastRecordedEntry, ledgers);
-        log.info("Consuming entries from missed ledgers {}", missedLedgers);
+    /*
+     * The current ledger is closed before the next is published, so that every entry appended to it is recorded
+     * before any appended to the next, and readers move on only once it is sealed.
+     */
+    private Ledger rollOver(final Stat stat,
+                            final LedgerCollection ledgers,
+                            final Ledger current,
+                            final Ledger next) throws Exception {
+        log.info("Rolling over from ledger {} ({} entries, {} bytes) to ledger {}",
+                 current.getId(), current.getLastRecordedEntryId() + 1, current.getLength(), next.getId());
+        try {
+            current.close();
+            recordSegment(current);
+            checkpointAt(current.getId(), current.getLastRecordedEntryId());
+            segment = segmentKeys == null ? null : new SegmentTracker<>(next.getId(), segmentKeys);
+            ledgers.append(next.getId());
+            store.update(stat, ledgers);
+        } catch (KeeperException.BadVersionException e) {
+            // the collection was changed by another leader, so the next ledger never joined it
+            discard(next);
+            throw e;
+        } catch (Exception e) {
+            // the next ledger may have been published if the update's outcome is unknown, so it is not deleted
+            closeQuietly(next);
+            throw e;
+        }
+        return next;
+    }
 
-        long startingEntry = lastRecordedEntry.entryId() + 1;
+    /*
+     * Segment metadata only speeds up reads, so failing to record it is not a reason to give up leadership.
+     */
+    private void recordSegment(final Ledger closed) {
+        final SegmentTracker<T> tracker = segment;
+        if (tracker == null || !tracker.isComplete(closed.getLastRecordedEntryId())) {
+            return;
+        }
+        try {
+            segments.write(tracker.toSegment(closed.getLength()));
+        } catch (Exception e) {
+            log.warn("Failed to record segment of ledger {}", closed.getId(), e);
+        }
+    }
+
+    /*
+     * Checkpoints are only taken at the end of a closed ledger, so that resuming after one never skips entries, and
+     * are written in the background, skipping any due while the last is still being written.
+     */
+    private void checkpointAt(final long ledgerId, final long entryId) {
+        if (checkpoints == null || !checkpointing.compareAndSet(false, true)) {
+            return;
+        }
+
+        final Entry<byte[]> checkpoint = checkpoint();
+        if (checkpoint == null || checkpoint.ledgerId() != ledgerId || checkpoint.entryId() != entryId) {
+            log.debug("Not checkpointing at ledger {} entry {} - consumed state is not at its end", ledgerId, entryId);
+            checkpointing.set(false);
+            return;
+        }
 
-        for (Long ledgerId : missedLedgers) {
-            //try to open the missed ledger
-            Ledger ledger;
+        Thread.ofVirtual().start(() -> {
             try {
-                log.debug("Reading ledger {} to consume from entry {}", ledgerId, startingEntry);
-                ledger = accessor.openAsLeader(ledgerId);
+                checkpoints.write(accessor, checkpoint);
+                log.info("Checkpointed {} bytes of state at ledger {} entry {}", checkpoint.data().length, ledgerId, entryId);
             } catch (Exception e) {
-                throw new LedgerException(lastRecordedEntry, e);
+                log.warn("Failed to checkpoint at ledger {} entry {}", ledgerId, entryId, e);
+            } finally {
+                checkpointing.set(false);
             }
+        });
+    }
+
+    /*
+     * A checkpoint is only of use while its ledger remains in the collection; otherwise every ledger is replayed.
+     */
+    private Entry<T> restoreCheckpoint() {
+        if (checkpoints == null) {
+            return Entry.initial();
+        }
 
-            // reset and continue if the end of the ledger has been reached
-            if (startingEntry > ledger.getLastRecordedEntryId()) {
-                log.debug("No remaining entries to consume from ledger {}", ledgerId);
-                startingEntry = 0;
-                continue;
+        try {
+            final Entry<byte[]> checkpoint = checkpoints.read(accessor);
+            if (checkpoint == null || !store.load().contains(checkpoint.ledgerId())) {
+                return Entry.initial();
             }
 
-            // otherwise read and record the remaining entries in the ledger
-            lastRecordedEntry = consumeEntries(ledger, lastRecordedEntry, startingEntry);
+            restore(checkpoint);
+            log.info("Resuming from checkpoint at ledger {} entry {}", checkpoint.ledgerId(), checkpoint.entryId());
+            return new Entry<>(checkpoint.ledgerId(), checkpoint.entryId(), checkpoint.index(), null);
+        } catch (KeeperException.NoNodeException e) {
+            return Entry.initial();
+        } catch (Exception e) {
+            log.warn("Failed to restore checkpoint - replaying every ledger", e);
+            return Entry.initial();
         }
+    }
 
-        return lastRecordedEntry;
+    private void discard(final CompletableFuture<Ledger> next) {
+        if (next != null) {
+            next.thenAccept(this::discard);
+        }
+    }
+
+    /*
+     * Only a ledger certain never to have joined the collection is discarded, as one that has may hold commits.
+     */
+    private void discard(final Ledger unused) {
+        closeQuietly(unused);
+        accessor.discardAsync(unused.getId()).whenComplete((ignore, e) -> {
+            if (e != null) {
+                log.warn("Failed to delete unused ledger {}", unused.getId(), e);
+            }
+        });
+    }
+
+    private boolean closeQuietly(final Ledger ledger) {
+        try {
+            ledger.close();
+            return true;
+        } catch (Exception e) {
+            log.warn("Failed to close ledger {}", ledger.getId(), e);
+            return false;
+        }
+    }
+
+    private Entry<T> consumeUnrecorded(final Entry<T> lastRecordedEntry, final LedgerCollection ledgers) throws Exception {
+        final LedgerCollection missedLedgers = missedLedgers(lastRecordedEntry, ledgers);
+        log.info("Consuming entries from missed ledgers {}", missedLedgers);
+
+        // opening as leader recovers and closes each ledger, so all of them may be replayed concurrently
+        final CatchUpReplay.Result<T> replayed = accessor.replay().replay(missedLedgers,
+                                                                          lastRecordedEntry,
+                                                                          accessor::openAsLeader,
+                                                                          consumer,
+                                                                          transformer);
+        if (replayed.stoppedAt() != null) {
+            throw new LedgerException(replayed.lastRecordedEntry(),
+                                      new IllegalStateException("Ledger %s still open after recovery".formatted(replayed.stoppedAt())));
+        }
+
+        return replayed.lastRecordedEntry();
     }
 
     private Ledger createNewLedger(final Stat stat,
                                    final LedgerCollection ledgers,
                                    final Entry<T> lastRecordedEntry) throws Exception {
-        final Ledger ledger = accessor.create();
-        log.info("Created new ledger {}", ledger.getId());
+        final long start = System.nanoTime();
+        final Ledger ledger = accessor.claim();
+        log.info("Obtained new ledger {} in {}us", ledger.getId(), TimeUnit.NANOSECONDS.toMicros(System.nanoTime() - start));
 
         try {
             boolean newLedgerCollection = ledgers.isEmpty();
@@ -162,17 +399,16 @@ public abstract class LedgerCommitter<T> extends LedgerReader<T> implements Auto
                 store.update(stat, ledgers);
             }
         } catch (KeeperException.BadVersionException | KeeperException.NodeExistsException e) {
+            // the collection was changed by another leader, so the ledger never joined it
+            discard(ledger);
             throw new LedgerException(lastRecordedEntry, e);
+        } catch (Exception e) {
+            closeQuietly(ledger);
+            throw e;
         }
         return ledger;
     }
 
-    private Entry<T> consumeEntries(final Ledger ledger,
-                                    final Entry<T> lastRecordedEntry,
-                                    final long nextEntry) throws Exception {
-        return ledger.consumeEntries(nextEntry, lastRecordedEntry, consumer, transformer);
-    }
-
     private static <T> LedgerCollection missedLedgers(final Entry<T> lastRecordedEntry,
                                                       final LedgerCollection ledgers) {
         LedgerCollection toRead = ledgers;
@@ -181,4 +417,25 @@ public abstract class LedgerCommitter<T> extends LedgerReader<T> implements Auto
         }
         return toRead;
     }
+
+    /*
+     * Counts the entries replayed, whether following or taking over, once the committer's tags are known.
+     */
+    private static final class ReplayCounter<T> implements Consumer<Entry<T>> {
+        private final Consumer<Entry<T>> consumer;
+        private volatile Counter counter;
+
+        private ReplayCounter(final Consumer<Entry<T>> consumer) {
+            this.consumer = Objects.requireNonNull(consumer, "consumer cannot be null");
+        }
+
+        @Override
+        public void accept(final Entry<T> entry) {
+            consumer.accept(entry);
+            final Counter replayed = counter;
+            if (replayed != null) {
+                replayed.increment();
+            }
+        }
+    }
 }
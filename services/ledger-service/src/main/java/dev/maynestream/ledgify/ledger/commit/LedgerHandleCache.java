@@ -0,0 +1,156 @@
+package dev.maynestream.ledgify.ledger.commit;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.CacheStats;
+import com.google.common.cache.RemovalListener;
+import com.google.common.util.concurrent.UncheckedExecutionException;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.bookkeeper.client.api.ReadHandle;
+
+import java.time.Duration;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+
+/**
+ * Node-wide cache of read-only ledger handles, shared by every reader on the node.
+ * <p>
+ * Handles are reference counted, so a handle evicted while in use is only closed once its last user releases it.
+ * A cached handle for a ledger that is still open has its last confirmed entry refreshed from the bookies when it
+ * is reused, rather than reopening the ledger through the metadata store.
+ */
+@Slf4j
+public class LedgerHandleCache implements AutoCloseable {
+    private static final Duration EXPIRE_AFTER_ACCESS = Duration.ofMinutes(10);
+
+    private final Cache<Long, CachedHandle> handles;
+
+    public LedgerHandleCache(final int maximumSize) {
+        this.handles = CacheBuilder.newBuilder()
+                                   .maximumSize(maximumSize)
+                                   .expireAfterAccess(EXPIRE_AFTER_ACCESS)
+                                   .recordStats()
+                                   .removalListener((RemovalListener<Long, CachedHandle>) notification -> {
+                                       notification.getValue().evict();
+                                   })
+                                   .build();
+    }
+
+    Lease acquire(final long ledgerId, final Callable<ReadHandle> opener) throws Exception {
+        while (true) {
+            final CachedHandle cached;
+            try {
+                cached = handles.get(ledgerId, () -> new CachedHandle(opener.call()));
+            } catch (ExecutionException | UncheckedExecutionException e) {
+                // failures to open are thrown as they were, whether checked or not
+                throw e.getCause() instanceof Exception cause ? cause : e;
+            }
+
+            if (cached.retain()) {
+                final Lease lease = new Lease(cached);
+                try {
+                    if (cached.refreshed) {
+                        cached.refresh();
+                    }
+                    cached.refreshed = true;
+                } catch (Exception e) {
+                    lease.close();
+                    handles.asMap().remove(ledgerId, cached);
+                    throw e;
+                }
+                return lease;
+            }
+
+            // evicted and closed between lookup and retain
+            handles.asMap().remove(ledgerId, cached);
+        }
+    }
+
+    /**
+     * @return hit, miss and eviction counts since the cache was created
+     */
+    public CacheStats stats() {
+        return handles.stats();
+    }
+
+    public long size() {
+        return handles.size();
+    }
+
+    @Override
+    public void close() {
+        handles.invalidateAll();
+    }
+
+    static final class Lease implements AutoCloseable {
+        private final CachedHandle cached;
+        private boolean released;
+
+        private Lease(final CachedHandle cached) {
+            this.cached = cached;
+        }
+
+        ReadHandle handle() {
+            return cached.handle;
+        }
+
+        @Override
+        public synchronized void close() {
+            if (!released) {
+                released = true;
+                cached.release();
+            }
+        }
+    }
+
+    private static final class CachedHandle {
+        private final ReadHandle handle;
+        private volatile boolean refreshed;
+
+        // guarded by this
+        private int references;
+        private boolean evicted;
+        private boolean closed;
+
+        private CachedHandle(final ReadHandle handle) {
+            this.handle = handle;
+        }
+
+        private void refresh() throws Exception {
+            if (!handle.isClosed()) {
+                handle.readLastAddConfirmed();
+            }
+        }
+
+        private synchronized boolean retain() {
+            if (closed) {
+                return false;
+            }
+            references++;
+            return true;
+        }
+
+        private synchronized void release() {
+            references--;
+            closeIfUnused();
+        }
+
+        private synchronized void evict() {
+            evicted = true;
+            closeIfUnused();
+        }
+
+        private void closeIfUnused() {
+            if (evicted && references == 0 && !closed) {
+                closed = true;
+                try {
+                    handle.close();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                } catch (Exception e) {
+                    log.warn("Failed to close evicted handle for ledger {}", handle.getId(), e);
+                }
+            }
+        }
+    }
+}
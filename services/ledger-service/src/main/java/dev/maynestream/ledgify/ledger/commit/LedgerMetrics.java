@@ -0,0 +1,110 @@
+package dev.maynestream.ledgify.ledger.commit;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Tags;
+import io.micrometer.core.instrument.Timer;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Meters of the commit and read pipeline, registered with the registry Spring Boot configures, and handed down from the
+ * committer factory to the ledgers, stores and committers that record them.
+ * <p>
+ * Timers publish histograms, from which percentiles are aggregated across nodes. Meters are tagged by collection only
+ * where their owner supplies bounded tags, such as accounts when opted in to.
+ */
+public class LedgerMetrics {
+    private final MeterRegistry registry;
+
+    final TimedOperation add;
+    final TimedOperation create;
+    final TimedOperation openRecovery;
+    final TimedOperation openRead;
+    final TimedOperation collectionLoad;
+    final TimedOperation collectionCreate;
+    final TimedOperation collectionUpdate;
+
+    public LedgerMetrics(final MeterRegistry registry) {
+        this.registry = registry;
+        this.add = timed("ledgify.ledger.add", "Ledger adds, from issue to acknowledgement by the ack quorum");
+        this.create = timed("ledgify.ledger.create", "Ledger creation, including ensemble selection");
+        this.openRecovery = timed("ledgify.ledger.open", "Ledger opens", "recovery", "true");
+        this.openRead = timed("ledgify.ledger.open", "Ledger opens", "recovery", "false");
+        this.collectionLoad = collectionOperation("load");
+        this.collectionCreate = collectionOperation("create");
+        this.collectionUpdate = collectionOperation("update");
+    }
+
+    public TimedOperation timed(final String name, final String description, final String... tags) {
+        return new TimedOperation(timer(name, description, Tags.of(tags).and("outcome", "success")),
+                                  timer(name, description, Tags.of(tags).and("outcome", "failure")));
+    }
+
+    public Timer timer(final String name, final String description, final Tags tags) {
+        return Timer.builder(name)
+                    .description(description)
+                    .tags(tags)
+                    .publishPercentileHistogram()
+                    .register(registry);
+    }
+
+    Counter leaderTransitions(final boolean leader, final Tags tags) {
+        return Counter.builder("ledgify.ledger.leader.transitions")
+                      .description("Changes of role by committers")
+                      .tags(tags)
+                      .tag("role", leader ? "leader" : "follower")
+                      .register(registry);
+    }
+
+    Counter replayedEntries(final Tags tags) {
+        return Counter.builder("ledgify.ledger.replayed.entries")
+                      .description("Entries read back from ledgers and consumed")
+                      .tags(tags)
+                      .register(registry);
+    }
+
+    private TimedOperation collectionOperation(final String operation) {
+        return timed("ledgify.ledger.collection", "ZooKeeper operations on ledger collections", "operation", operation);
+    }
+
+    /**
+     * An operation timed separately by whether it succeeded, so that fast failures do not flatter the latency.
+     */
+    public static final class TimedOperation {
+        private final Timer succeeded;
+        private final Timer failed;
+
+        private TimedOperation(final Timer succeeded, final Timer failed) {
+            this.succeeded = succeeded;
+            this.failed = failed;
+        }
+
+        public void record(final long startNanos, final Throwable failure) {
+            (failure == null ? succeeded : failed).record(System.nanoTime() - startNanos, TimeUnit.NANOSECONDS);
+        }
+
+        public <T> T time(final Callable<T> operation) throws Exception {
+            final long start = System.nanoTime();
+            try {
+                final T result = operation.call();
+                record(start, null);
+                return result;
+            } catch (Exception e) {
+                record(start, e);
+                throw e;
+            }
+        }
+
+        /**
+         * @return the given future, which is timed until it completes
+         */
+        public <T> CompletableFuture<T> time(final CompletableFuture<T> operation) {
+            final long start = System.nanoTime();
+            operation.whenComplete((ignore, e) -> record(start, e));
+            return operation;
+        }
+    }
+}
@@ -0,0 +1,65 @@
+package dev.maynestream.ledgify.ledger.commit;
+
+import org.apache.curator.framework.CuratorFramework;
+import org.apache.curator.utils.ZKPaths;
+import org.apache.zookeeper.KeeperException;
+
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Passwords of the ledgers of a collection that were created with one of their own rather than the collection's, such
+ * as those claimed from the standby pool. A ledger's password is recorded before the ledger joins the collection, so
+ * one found in the collection without a password uses the collection's. Passwords never change once written, so are
+ * cached after they are first read, as is their absence.
+ */
+public class LedgerPasswordStore {
+    private static final String LEDGERS_PASSWORDS_PATH_FORMAT = "/ledgers-passwords/%s";
+    private static final byte[] NONE = new byte[0];
+
+    private final CuratorFramework curator;
+    private final String passwordsPath;
+    private final Map<Long, byte[]> passwords = new ConcurrentHashMap<>();
+
+    public LedgerPasswordStore(final CuratorFramework curator, final String ledgerPath) {
+        this.curator = curator;
+        this.passwordsPath = LEDGERS_PASSWORDS_PATH_FORMAT.formatted(Objects.requireNonNull(ledgerPath, "ledgerPath cannot be null"));
+    }
+
+    void write(final long ledgerId, final byte[] password) throws Exception {
+        curator.create().creatingParentContainersIfNeeded().forPath(passwordPath(ledgerId), password);
+        passwords.put(ledgerId, password);
+    }
+
+    /**
+     * Removes the password of a ledger that never joined the collection, once the ledger itself has been deleted.
+     */
+    void delete(final long ledgerId) throws Exception {
+        try {
+            curator.delete().forPath(passwordPath(ledgerId));
+        } catch (KeeperException.NoNodeException ignored) {
+        }
+        passwords.remove(ledgerId);
+    }
+
+    /**
+     * @return the ledger's own password, or null if it uses the collection's
+     */
+    byte[] read(final long ledgerId) throws Exception {
+        byte[] password = passwords.get(ledgerId);
+        if (password == null) {
+            try {
+                password = curator.getData().forPath(passwordPath(ledgerId));
+            } catch (KeeperException.NoNodeException e) {
+                password = NONE;
+            }
+            passwords.put(ledgerId, password);
+        }
+        return password == NONE ? null : password;
+    }
+
+    private String passwordPath(final long ledgerId) {
+        return ZKPaths.makePath(passwordsPath, Long.toString(ledgerId));
+    }
+}
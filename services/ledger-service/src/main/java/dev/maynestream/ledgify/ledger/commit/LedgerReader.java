@@ -1,34 +1,61 @@
 package dev.maynestream.ledgify.ledger.commit;
 
+import dev.maynestream.ledgify.ledger.LedgerSegment;
 import dev.maynestream.ledgify.ledger.commit.Ledger.Entry;
+import org.apache.bookkeeper.client.api.BKException;
 import org.apache.zookeeper.KeeperException;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.nio.ByteBuffer;
+import java.time.Duration;
 import java.util.Objects;
 import java.util.UUID;
 import java.util.function.Consumer;
 import java.util.function.Function;
 
 public abstract class LedgerReader<T> {
-    private static final int LEDGER_COMMIT_AWAIT_MILLIS = 1000;
+    // waits end as soon as there is something to read, so these only bound how long a change of leader goes unseen
+    private static final long ENTRY_LONG_POLL_MILLIS = 1000;
+    private static final Duration MIN_ENTRY_AWAIT = Duration.ofMillis(10);
+    private static final Duration MAX_ENTRY_AWAIT = Duration.ofSeconds(1);
+    private static final Duration MIN_COLLECTION_AWAIT = Duration.ofMillis(50);
+    private static final Duration MAX_COLLECTION_AWAIT = Duration.ofSeconds(1);
 
     protected final Logger log = LoggerFactory.getLogger(getClass());
 
     protected final UUID uniqueId;
     final LedgerAccessor accessor;
     final LedgerCollectionStore store;
+    final SegmentStore segments;
+    final SegmentKeys<T> segmentKeys;
     final Consumer<Entry<T>> consumer;
-    final Function<byte[], T> transformer;
+    final Function<ByteBuffer, T> transformer;
 
     protected LedgerReader(final UUID uniqueId,
                            final LedgerAccessor accessor,
                            final LedgerCollectionStore store,
                            final Consumer<Entry<T>> consumer,
-                           final Function<byte[], T> transformer) {
+                           final Function<ByteBuffer, T> transformer) {
+        this(uniqueId, accessor, store, null, null, consumer, transformer);
+    }
+
+    /**
+     * @param segments    segment metadata of the collection's ledgers, or null if none is kept
+     * @param segmentKeys describes committed data for segment metadata, or null if none is kept
+     */
+    protected LedgerReader(final UUID uniqueId,
+                           final LedgerAccessor accessor,
+                           final LedgerCollectionStore store,
+                           final SegmentStore segments,
+                           final SegmentKeys<T> segmentKeys,
+                           final Consumer<Entry<T>> consumer,
+                           final Function<ByteBuffer, T> transformer) {
         this.uniqueId = Objects.requireNonNull(uniqueId, "uniqueId cannot be null");
         this.accessor = Objects.requireNonNull(accessor, "accessor cannot be null");
         this.store = Objects.requireNonNull(store, "store cannot be null");
+        this.segments = segments;
+        this.segmentKeys = segmentKeys;
         this.consumer = Objects.requireNonNull(consumer, "consumer cannot be null");
         this.transformer = Objects.requireNonNull(transformer, "transformer cannot be null");
     }
@@ -45,11 +72,174 @@ public abstract class LedgerReader<T> {
         readFrom(Entry.initial(), follow);
     }
 
+    /**
+     * @return the position of the last entry confirmed so far, without its data, or the initial entry if there is
+     * none, from which a following reader may continue without reading anything earlier
+     */
+    public Entry<T> tail() throws Exception {
+        LedgerCollection ledgers;
+        try {
+            ledgers = store.load();
+        } catch (KeeperException.NoNodeException nne) {
+            log.debug("No ledger collection found - following from the start");
+            return Entry.initial();
+        }
+
+        // a ledger is empty until its leader first commits to it, in which case the tail ends the ledger before it
+        while (!ledgers.isEmpty()) {
+            final long ledgerId = ledgers.last();
+            try (final Ledger ledger = accessor.openForRead(ledgerId)) {
+                final long lastEntry = ledger.getLastRecordedEntryId();
+                if (lastEntry >= 0) {
+                    // positioned after every transaction of the entry, as each is read as a whole
+                    return new Entry<>(ledgerId, lastEntry, Integer.MAX_VALUE, null);
+                }
+            }
+            ledgers = ledgers.exceptLast();
+        }
+        return Entry.initial();
+    }
+
+    /**
+     * Reads every entry committed after the given position, up to the last confirmed entry of each ledger, without
+     * following. The position may fall within a batched entry, in which case only the remainder of it is read.
+     *
+     * @return the last entry read, or the given position if there was nothing to read
+     */
+    public Entry<T> readAfter(final Entry<T> position) throws Exception {
+        final LedgerCollection ledgers;
+        try {
+            ledgers = store.load();
+        } catch (KeeperException.NoNodeException nne) {
+            log.debug("No ledger collection found - nothing to read");
+            return position;
+        }
+
+        if (position.exists() && !ledgers.contains(position.ledgerId())) {
+            throw new IllegalArgumentException("ledger %s is not part of the collection".formatted(position.ledgerId()));
+        }
+
+        final Consumer<Entry<T>> remaining = e -> {
+            if (e.ledgerId() != position.ledgerId() || e.entryId() != position.entryId() || e.index() > position.index()) {
+                consumer.accept(e);
+            }
+        };
+
+        Entry<T> lastReadEntry = position;
+        for (long ledgerId : position.exists() ? ledgers.from(position.ledgerId()) : ledgers) {
+            final long firstEntry = ledgerId == position.ledgerId() ? position.entryId() : 0;
+            try (final Ledger ledger = accessor.openForRead(ledgerId)) {
+                if (firstEntry <= ledger.getLastRecordedEntryId()) {
+                    log.debug("Reading ledger {} from entry {}", ledgerId, firstEntry);
+                    lastReadEntry = ledger.consumeEntries(firstEntry, lastReadEntry, remaining, transformer);
+                }
+            }
+        }
+
+        return lastReadEntry;
+    }
+
+    /**
+     * Reads every entry committed up to and including the given position, without following, handing each to the
+     * given consumer rather than this reader's own, such as to recover the entries preceding a checkpoint.
+     */
+    public void readUntil(final Entry<?> position, final Consumer<Entry<T>> preceding) throws Exception {
+        final LedgerCollection ledgers;
+        try {
+            ledgers = store.load();
+        } catch (KeeperException.NoNodeException nne) {
+            log.debug("No ledger collection found - nothing to read");
+            return;
+        }
+
+        if (!ledgers.contains(position.ledgerId())) {
+            throw new IllegalArgumentException("ledger %s is not part of the collection".formatted(position.ledgerId()));
+        }
+
+        final Consumer<Entry<T>> upToPosition = e -> {
+            if (e.ledgerId() != position.ledgerId() || e.entryId() != position.entryId() || e.index() <= position.index()) {
+                preceding.accept(e);
+            }
+        };
+
+        Entry<T> lastReadEntry = Entry.initial();
+        for (long ledgerId : ledgers) {
+            try (final Ledger ledger = accessor.openForRead(ledgerId)) {
+                final long lastEntry = ledgerId == position.ledgerId()
+                        ? Math.min(position.entryId(), ledger.getLastRecordedEntryId())
+                        : ledger.getLastRecordedEntryId();
+                if (lastEntry >= 0) {
+                    log.debug("Reading ledger {} to entry {}", ledgerId, lastEntry);
+                    lastReadEntry = ledger.consumeEntries(0, lastEntry, lastReadEntry, upToPosition, transformer);
+                }
+            }
+            if (ledgerId == position.ledgerId()) {
+                break;
+            }
+        }
+    }
+
+    /**
+     * Reads the entries committed within the given range of epoch milliseconds, from inclusive and to exclusive,
+     * without following. Ledgers whose segment metadata places them wholly outside the range are skipped, and those
+     * that overlap it are read only between the sampled entries either side of it; ledgers without metadata, such as
+     * the one still being written, are read in full.
+     *
+     * @return the last entry read, or the initial entry if there was nothing to read
+     */
+    public Entry<T> readCommittedBetween(final long fromCommittedAt, final long toCommittedAt) throws Exception {
+        if (segmentKeys == null) {
+            throw new IllegalStateException("Commit times are not known to this reader");
+        }
+
+        final LedgerCollection ledgers;
+        try {
+            ledgers = store.load();
+        } catch (KeeperException.NoNodeException nne) {
+            log.debug("No ledger collection found - nothing to read");
+            return Entry.initial();
+        }
+
+        final Consumer<Entry<T>> inRange = e -> {
+            final long committedAt = segmentKeys.committedAt(e.data());
+            if (committedAt >= fromCommittedAt && committedAt < toCommittedAt) {
+                consumer.accept(e);
+            }
+        };
+
+        Entry<T> lastReadEntry = Entry.initial();
+        for (long ledgerId : ledgers) {
+            final LedgerSegment segment = segments == null ? null : segments.read(ledgerId);
+            long firstEntry = 0;
+            long lastEntry = Long.MAX_VALUE;
+            if (segment != null) {
+                if (segment.getLastCommittedAt() < fromCommittedAt || segment.getFirstCommittedAt() >= toCommittedAt) {
+                    log.debug("Skipping ledger {} committed outside of range", ledgerId);
+                    continue;
+                }
+                firstEntry = SegmentTracker.seek(segment, fromCommittedAt);
+                lastEntry = SegmentTracker.seekEnd(segment, toCommittedAt);
+            }
+
+            try (final Ledger ledger = accessor.openForRead(ledgerId)) {
+                lastEntry = Math.min(lastEntry, ledger.getLastRecordedEntryId());
+                if (firstEntry <= lastEntry) {
+                    log.debug("Reading ledger {} from entry {} to {}", ledgerId, firstEntry, lastEntry);
+                    lastReadEntry = ledger.consumeEntries(firstEntry, lastEntry, lastReadEntry, inRange, transformer);
+                }
+            }
+        }
+
+        return lastReadEntry;
+    }
+
     protected Entry<T> readFrom(final Entry<T> entry, final boolean follow) throws Exception {
         log.info("Reading entries from {}", entry);
 
+        final Backoff backoff = new Backoff(MIN_COLLECTION_AWAIT, MAX_COLLECTION_AWAIT);
         Entry<T> lastRecordedEntry = entry;
         do {
+            long collectionMarker = follow ? store.watch() : 0;
             LedgerCollection ledgers = load(lastRecordedEntry, follow); // initial load
 
             if (ledgers == null) {
@@ -62,14 +252,18 @@ public abstract class LedgerReader<T> {
                 lastRecordedEntry = consumeUnrecorded(lastRecordedEntry, ledgers, follow);
 
                 // load any updates
+                collectionMarker = follow ? store.watch() : 0;
                 ledgers = load(lastRecordedEntry, false);
 
                 // continue until there's new no ledgers to consume (break early if we're now leader)
             } while (!isLeader() && follow && !ledgers.since(lastRecordedEntry.ledgerId()).isEmpty());
 
-            // await potential new commits to the
+            // await a change to the collection, such as a new ledger from a change of leader
             if (follow) {
-                Thread.sleep(LEDGER_COMMIT_AWAIT_MILLIS);
+                caughtUp(lastRecordedEntry);
+                if (store.awaitChange(collectionMarker, backoff.nextMillis())) {
+                    backoff.reset();
+                }
             }
         } while (!Thread.interrupted() && !isLeader() && follow);
 
@@ -77,23 +271,29 @@ public abstract class LedgerReader<T> {
     }
 
     private LedgerCollection load(final Entry<T> entry, final boolean await) throws Exception {
+        final Backoff backoff = new Backoff(MIN_COLLECTION_AWAIT, MAX_COLLECTION_AWAIT);
         LedgerCollection ledgers = null;
 
         log.info("Loading ledger collection since {}", entry.ledgerId());
 
         // wait for leader to write
         do {
+            final long collectionMarker = await ? store.watch() : 0;
             try {
                 ledgers = store.load();
                 log.debug("Loaded ledger collection {}", ledgers);
                 if (entry.exists()) { // only get ledgers that haven't been seen
-                    ledgers = ledgers.since(entry.ledgerId());
+                    // the entry's own ledger is kept, as reading may have stopped part way through it
+                    ledgers = ledgers.contains(entry.ledgerId()) ? ledgers.from(entry.ledgerId()) : ledgers.since(entry.ledgerId());
                     log.debug("Truncating ledger collection to {}", ledgers);
                 }
                 // on first load leader may not yet have created ledger collection
             } catch (KeeperException.NoNodeException nne) {
                 log.debug("No ledger collection found - awaiting initialization by leader");
-                Thread.sleep(1000);
+                if (await) {
+                    caughtUp(entry);
+                    store.awaitChange(collectionMarker, backoff.nextMillis());
+                }
             }
         } while (!isLeader() && ledgers == null && await);
 
@@ -103,47 +303,79 @@ public abstract class LedgerReader<T> {
     }
 
     private Entry<T> consumeUnrecorded(Entry<T> lastRecordedEntry,
-                                       final LedgerCollection ledgers,
+                                       LedgerCollection ledgers,
                                        final boolean follow) throws Exception {
+        // every ledger but the last has normally been closed by a change of leader, so may be replayed concurrently
+        final LedgerCollection earlierLedgers = ledgers.exceptLast();
+        if (!earlierLedgers.isEmpty()) {
+            final CatchUpReplay.Result<T> replayed = accessor.replay().replay(earlierLedgers,
+                                                                              lastRecordedEntry,
+                                                                              accessor::openForRead,
+                                                                              consumer,
+                                                                              transformer);
+            lastRecordedEntry = replayed.lastRecordedEntry();
+            ledgers = ledgers.from(replayed.stoppedAt() != null ? replayed.stoppedAt() : ledgers.last());
+        }
+
         for (long ledgerId : ledgers) {
-            long startingEntry = 0;
-            while (!isLeader()) {
-                // if the last recorded entry was part of this ledger, only read entries since then
-                if (lastRecordedEntry.ledgerId() == ledgerId) {
-                    startingEntry = lastRecordedEntry.entryId() + 1;
-                }
+            log.debug("Opening ledger {}", ledgerId);
+            try (final Ledger ledger = accessor.openForRead(ledgerId)) {
+                final Backoff backoff = new Backoff(MIN_ENTRY_AWAIT, MAX_ENTRY_AWAIT);
+                long startingEntry = 0;
+                while (!isLeader()) {
+                    // if the last recorded entry was part of this ledger, only read entries since then
+                    if (lastRecordedEntry.ledgerId() == ledgerId) {
+                        startingEntry = lastRecordedEntry.entryId() + 1;
+                    }
 
-                log.debug("Opening ledger {}", ledgerId);
-                final Ledger ledger = accessor.openForRead(ledgerId);
+                    // if there are unread entries remaining on this ledger (according to the read-only handle)
+                    if (startingEntry <= ledger.getLastRecordedEntryId()) {
+                        log.info("Reading ledger {} to consume from entry {}", ledgerId, startingEntry);
+                        // read and record the remaining entries in the ledger
+                        lastRecordedEntry = consumeEntries(ledger, lastRecordedEntry, startingEntry);
+                        log.debug("Read from ledger {} to entry {}", ledgerId, lastRecordedEntry.entryId());
+                        continue;
+                    }
 
-                // if there are unread entries remaining on this ledger (according to the read-only handle)
-                if (startingEntry <= ledger.getLastRecordedEntryId()) {
-                    log.info("Reading ledger {} to consume from entry {}", ledgerId, startingEntry);
-                    // read and record the remaining entries in the ledger
-                    lastRecordedEntry = consumeEntries(ledger, lastRecordedEntry, startingEntry);
-                    log.debug("Read from ledger {} to entry {}", ledgerId, lastRecordedEntry.entryId());
-                }
+                    // if this ledger is closed, eagerly progress to the next
+                    if (ledger.isClosed()) {
+                        log.debug("Finished reading from closed ledger {}", ledgerId);
+                        break;
+                    }
 
-                // if this ledger is closed, eagerly progress to the next
-                if (ledger.isClosed()) {
-                    log.debug("Finished reading from closed ledger {}", ledgerId);
-                    break;
-                }
+                    if (!follow) {
+                        log.debug("Eagerly breaking from no-follow open ledger {}", ledgerId);
+                        break;
+                    }
 
-                if (!follow) {
-                    log.debug("Eagerly breaking from no-follow open ledger {}", ledgerId);
-                    break;
-                }
+                    if (ledgers.isLast(ledgerId)) {
+                        caughtUp(lastRecordedEntry);
+                    }
 
-                log.debug("Awaiting new commits to open ledger {}", ledgerId);
-                // otherwise await some more entries
-                Thread.sleep(LEDGER_COMMIT_AWAIT_MILLIS);
+                    log.debug("Awaiting new commits to open ledger {}", ledgerId);
+                    // otherwise long-poll for the next entry, consuming it if it arrives, which also advances the
+                    // handle's last confirmed entry
+                    try {
+                        lastRecordedEntry = ledger.awaitEntry(startingEntry, ENTRY_LONG_POLL_MILLIS, lastRecordedEntry, consumer, transformer);
+                        backoff.reset();
+                    } catch (BKException e) {
+                        log.debug("Long-poll failed on ledger {} - backing off", ledgerId, e);
+                        backoff.await();
+                    }
+                }
             }
         }
 
         return lastRecordedEntry;
     }
 
+    /**
+     * Invoked when a following reader has consumed every entry available so far and is about to await more, or when a
+     * committer taking over has replayed every entry before its first commit.
+     */
+    protected void caughtUp(final Entry<T> lastRecordedEntry) {
+    }
+
     private Entry<T> consumeEntries(final Ledger ledger,
                                     final Entry<T> lastRecordedEntry,
                                     final long nextEntry) throws Exception {
@@ -0,0 +1,119 @@
+package dev.maynestream.ledgify.ledger.commit;
+
+import org.apache.bookkeeper.client.api.WriteHandle;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.function.LongConsumer;
+
+/**
+ * Issues asynchronous appends against a write handle, allowing a bounded number to be outstanding at once.
+ * <p>
+ * Adds complete strictly in entry id order. Once an add fails, it and every add issued after it fail with the same
+ * cause, and no further adds are accepted - the owner is expected to abandon the ledger.
+ */
+final class PipelinedAppender {
+    private final WriteHandle writeHandle;
+    private final Semaphore window;
+    private final int maxInFlight;
+    private final LedgerMetrics.TimedOperation adds;
+
+    // guarded by this
+    private final Deque<PendingAdd> pending = new ArrayDeque<>();
+    private volatile Throwable failure;
+
+    /**
+     * @param adds times each add from issue to completion
+     */
+    PipelinedAppender(final WriteHandle writeHandle, final int maxInFlight, final LedgerMetrics.TimedOperation adds) {
+        if (maxInFlight < 1) {
+            throw new IllegalArgumentException("maxInFlight must be greater than 0");
+        }
+        this.writeHandle = writeHandle;
+        this.maxInFlight = maxInFlight;
+        this.adds = adds;
+        this.window = new Semaphore(maxInFlight);
+    }
+
+    CompletableFuture<Long> append(final byte[] payload) throws InterruptedException {
+        return append(payload, null);
+    }
+
+    /**
+     * @param addNanos told how long a successful add took from being issued, excluding any wait for the window, or
+     *                 null if not of interest
+     */
+    CompletableFuture<Long> append(final byte[] payload, final LongConsumer addNanos) throws InterruptedException {
+        window.acquire();
+
+        final PendingAdd add = new PendingAdd();
+        synchronized (this) {
+            if (failure != null) {
+                window.release();
+                return CompletableFuture.failedFuture(failure);
+            }
+
+            // issue under the lock so that submission order matches the order of the pending queue
+            pending.addLast(add);
+            final long start = System.nanoTime();
+            writeHandle.appendAsync(payload).whenComplete((entryId, cause) -> {
+                adds.record(start, cause);
+                if (cause == null && addNanos != null) {
+                    addNanos.accept(System.nanoTime() - start);
+                }
+                complete(add, entryId, cause);
+            });
+        }
+        return add.result;
+    }
+
+    Throwable failure() {
+        return failure;
+    }
+
+    /**
+     * Awaits completion of every outstanding add.
+     *
+     * @return true if all adds completed within the timeout
+     */
+    boolean awaitOutstanding(final long timeout, final TimeUnit unit) throws InterruptedException {
+        if (window.tryAcquire(maxInFlight, timeout, unit)) {
+            window.release(maxInFlight);
+            return true;
+        }
+        return false;
+    }
+
+    private synchronized void complete(final PendingAdd add, final Long entryId, final Throwable cause) {
+        add.cause = cause;
+        add.entryId = entryId;
+        add.done = true;
+
+        while (!pending.isEmpty() && pending.peekFirst().done) {
+            final PendingAdd head = pending.pollFirst();
+
+            if (failure == null && head.cause != null) {
+                failure = Futures.unwrap(head.cause);
+            }
+
+            if (failure != null) {
+                head.result.completeExceptionally(failure);
+            } else {
+                head.result.complete(head.entryId);
+            }
+
+            // released only once the add's callbacks have run, so awaiting outstanding adds also awaits their effects
+            window.release();
+        }
+    }
+
+    private static final class PendingAdd {
+        private final CompletableFuture<Long> result = new CompletableFuture<>();
+        private Throwable cause;
+        private Long entryId;
+        private boolean done;
+    }
+}
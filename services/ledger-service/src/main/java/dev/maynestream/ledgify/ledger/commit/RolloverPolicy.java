@@ -0,0 +1,52 @@
+package dev.maynestream.ledgify.ledger.commit;
+
+import java.time.Duration;
+
+/**
+ * Decides when a leader should move from its current ledger to a new one, by the number of entries or bytes written
+ * to it or the time it has been open. A limit of zero is not applied.
+ * <p>
+ * The policy also reports when a ledger is nearing rollover, so that the next ledger can be created ahead of time and
+ * rollover need not wait on BookKeeper.
+ */
+final class RolloverPolicy {
+    private static final double PREPARE_AT = 0.75;
+
+    private final long maxEntries;
+    private final long maxBytes;
+    private final long maxAgeNanos;
+
+    RolloverPolicy(final long maxEntries, final long maxBytes, final Duration maxAge) {
+        if (maxEntries < 0 || maxBytes < 0 || maxAge.isNegative()) {
+            throw new IllegalArgumentException("rollover limits cannot be negative");
+        }
+        this.maxEntries = maxEntries;
+        this.maxBytes = maxBytes;
+        this.maxAgeNanos = maxAge.toNanos();
+    }
+
+    boolean isDue(final Ledger ledger) {
+        return progress(ledger) >= 1;
+    }
+
+    boolean isNear(final Ledger ledger) {
+        return progress(ledger) >= PREPARE_AT;
+    }
+
+    /**
+     * @return the greatest fraction of any limit reached by the ledger
+     */
+    private double progress(final Ledger ledger) {
+        double progress = 0;
+        if (maxEntries > 0) {
+            progress = Math.max(progress, (double) (ledger.getLastRecordedEntryId() + 1) / maxEntries);
+        }
+        if (maxBytes > 0) {
+            progress = Math.max(progress, (double) ledger.getLength() / maxBytes);
+        }
+        if (maxAgeNanos > 0) {
+            progress = Math.max(progress, (double) ledger.getAgeNanos() / maxAgeNanos);
+        }
+        return progress;
+    }
+}
@@ -0,0 +1,16 @@
+package dev.maynestream.ledgify.ledger.commit;
+
+/**
+ * Describes committed data for the segment metadata recorded for each ledger.
+ */
+public interface SegmentKeys<T> {
+    /**
+     * @return the epoch milliseconds at which the data was committed; non-decreasing within a ledger
+     */
+    long committedAt(T data);
+
+    /**
+     * @return an identifier of the data, such as a transaction id
+     */
+    String key(T data);
+}
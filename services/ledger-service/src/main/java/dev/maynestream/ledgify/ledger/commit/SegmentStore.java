@@ -0,0 +1,60 @@
+package dev.maynestream.ledgify.ledger.commit;
+
+import dev.maynestream.ledgify.ledger.LedgerSegment;
+import org.apache.curator.framework.CuratorFramework;
+import org.apache.curator.utils.ZKPaths;
+import org.apache.zookeeper.KeeperException;
+
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Segment metadata of the closed ledgers of a collection, each held in its own node so that recording one never
+ * touches the collection itself. Metadata never changes once written, so is cached after it is first read.
+ */
+public class SegmentStore {
+    private static final String LEDGERS_SEGMENTS_PATH_FORMAT = "/ledgers-segments/%s";
+
+    private final CuratorFramework curator;
+    private final String segmentsPath;
+    private final Map<Long, LedgerSegment> segments = new ConcurrentHashMap<>();
+
+    public SegmentStore(final CuratorFramework curator, final String ledgerPath) {
+        this.curator = curator;
+        this.segmentsPath = LEDGERS_SEGMENTS_PATH_FORMAT.formatted(Objects.requireNonNull(ledgerPath, "ledgerPath cannot be null"));
+    }
+
+    void write(final LedgerSegment segment) throws Exception {
+        try {
+            curator.create()
+                   .creatingParentContainersIfNeeded()
+                   .forPath(segmentPath(segment.getLedgerId()), segment.toByteArray());
+        } catch (KeeperException.NodeExistsException e) {
+            // already recorded, such as by a leader that went on to replay the ledger
+        }
+        segments.put(segment.getLedgerId(), segment);
+    }
+
+    /**
+     * @return the metadata of the ledger, or null if none has been recorded for it
+     */
+    LedgerSegment read(final long ledgerId) throws Exception {
+        final LedgerSegment cached = segments.get(ledgerId);
+        if (cached != null) {
+            return cached;
+        }
+
+        try {
+            final LedgerSegment segment = LedgerSegment.parseFrom(curator.getData().forPath(segmentPath(ledgerId)));
+            segments.put(ledgerId, segment);
+            return segment;
+        } catch (KeeperException.NoNodeException e) {
+            return null;
+        }
+    }
+
+    private String segmentPath(final long ledgerId) {
+        return ZKPaths.makePath(segmentsPath, Long.toString(ledgerId));
+    }
+}
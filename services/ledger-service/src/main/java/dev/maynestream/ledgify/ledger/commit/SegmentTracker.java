@@ -0,0 +1,116 @@
+package dev.maynestream.ledgify.ledger.commit;
+
+import dev.maynestream.ledgify.ledger.LedgerSegment;
+import dev.maynestream.ledgify.ledger.commit.Ledger.Entry;
+
+import java.util.Arrays;
+
+/**
+ * Accumulates the segment metadata of a ledger from the entries committed to it, in entry order.
+ * <p>
+ * Commit times are sampled every so many entries. Once the samples fill, every other one is dropped and the interval
+ * doubles, so the metadata stays small however long the ledger grows.
+ */
+final class SegmentTracker<T> {
+    private static final int MAX_SAMPLES = 1024;
+
+    private final long ledgerId;
+    private final SegmentKeys<T> keys;
+
+    // guarded by this
+    private final long[] sampleEntryIds = new long[MAX_SAMPLES];
+    private final long[] sampleCommittedAt = new long[MAX_SAMPLES];
+    private int samples;
+    private int sampleInterval = 1;
+    private long firstEntryId = -1;
+    private long lastEntryId = -1;
+    private long firstCommittedAt;
+    private long lastCommittedAt;
+    private String firstKey;
+    private String lastKey;
+
+    SegmentTracker(final long ledgerId, final SegmentKeys<T> keys) {
+        this.ledgerId = ledgerId;
+        this.keys = keys;
+    }
+
+    synchronized void record(final Entry<T> entry) {
+        if (entry.ledgerId() != ledgerId || entry.entryId() < lastEntryId) {
+            return;
+        }
+
+        final long committedAt = keys.committedAt(entry.data());
+        if (firstEntryId < 0) {
+            firstEntryId = entry.entryId();
+            firstCommittedAt = committedAt;
+            firstKey = keys.key(entry.data());
+        }
+        if (entry.entryId() > lastEntryId && entry.entryId() % sampleInterval == 0) {
+            sample(entry.entryId(), committedAt);
+        }
+        lastEntryId = entry.entryId();
+        lastCommittedAt = committedAt;
+        lastKey = keys.key(entry.data());
+    }
+
+    /**
+     * @return true if every entry from the first has been recorded, so the metadata describes the whole ledger
+     */
+    synchronized boolean isComplete(final long lastRecordedEntryId) {
+        return firstEntryId == 0 && lastEntryId == lastRecordedEntryId;
+    }
+
+    synchronized LedgerSegment toSegment(final long bytes) {
+        return LedgerSegment.newBuilder()
+                            .setLedgerId(ledgerId)
+                            .setEntryCount(lastEntryId + 1)
+                            .setBytes(bytes)
+                            .setFirstCommittedAt(firstCommittedAt)
+                            .setLastCommittedAt(lastCommittedAt)
+                            .setFirstKey(firstKey == null ? "" : firstKey)
+                            .setLastKey(lastKey == null ? "" : lastKey)
+                            .addAllSampleEntryIds(Arrays.stream(sampleEntryIds, 0, samples).boxed().toList())
+                            .addAllSampleCommittedAt(Arrays.stream(sampleCommittedAt, 0, samples).boxed().toList())
+                            .build();
+    }
+
+    private void sample(final long entryId, final long committedAt) {
+        if (samples == MAX_SAMPLES) {
+            for (int i = 0; i < MAX_SAMPLES / 2; i++) {
+                sampleEntryIds[i] = sampleEntryIds[i * 2];
+                sampleCommittedAt[i] = sampleCommittedAt[i * 2];
+            }
+            samples = MAX_SAMPLES / 2;
+            sampleInterval *= 2;
+            if (entryId % sampleInterval != 0) {
+                return;
+            }
+        }
+        sampleEntryIds[samples] = entryId;
+        sampleCommittedAt[samples] = committedAt;
+        samples++;
+    }
+
+    /**
+     * @return the entry from which to read a ledger for data committed at or after the given time
+     */
+    static long seek(final LedgerSegment segment, final long fromCommittedAt) {
+        long entryId = 0;
+        for (int i = 0; i < segment.getSampleEntryIdsCount() && segment.getSampleCommittedAt(i) < fromCommittedAt; i++) {
+            entryId = segment.getSampleEntryIds(i);
+        }
+        return entryId;
+    }
+
+    /**
+     * @return the last entry of a ledger that may hold data committed before the given time
+     */
+    static long seekEnd(final LedgerSegment segment, final long toCommittedAt) {
+        for (int i = 0; i < segment.getSampleEntryIdsCount(); i++) {
+            if (segment.getSampleCommittedAt(i) >= toCommittedAt) {
+                return segment.getSampleEntryIds(i) - 1;
+            }
+        }
+        return segment.getEntryCount() - 1;
+    }
+}
@@ -0,0 +1,200 @@
+package dev.maynestream.ledgify.ledger.commit;
+
+import dev.maynestream.ledgify.ledger.BookkeeperConfiguration;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.bookkeeper.client.BookKeeper;
+import org.apache.curator.framework.CuratorFramework;
+
+import java.security.SecureRandom;
+import java.time.Duration;
+import java.util.concurrent.LinkedBlockingDeque;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Node-wide pool of ledgers created ahead of need and not yet bound to any collection, so that a new leader, or a
+ * leader rolling over, claims a ledger rather than waiting on BookKeeper to select an ensemble and record its
+ * metadata. The pool is replenished in the background as ledgers are claimed.
+ * <p>
+ * Pooled ledgers are created before the collection they will join is known, so each is given a random password of its
+ * own, which {@link LedgerAccessor} records for the collection on claiming it. Each is registered in ZooKeeper until
+ * claimed, and discarded once older than the maximum age. A registration older than twice the maximum age therefore
+ * belongs to a node that has gone, and is deleted along with its ledger by whichever node finds it.
+ */
+@Slf4j
+public class StandbyLedgerPool implements AutoCloseable {
+    private static final int PASSWORD_BYTES = 32;
+    private static final Duration MIN_REPLENISH_AWAIT = Duration.ofMillis(100);
+
+    private final SecureRandom random = new SecureRandom();
+    private final LedgerAccessor accessor;
+    private final StandbyRegistry registry;
+    private final int size;
+    private final long maxAgeNanos;
+    private final LinkedBlockingDeque<Standby> standby = new LinkedBlockingDeque<>();
+    private final Thread replenisher;
+
+    private volatile boolean closed;
+
+    public StandbyLedgerPool(final BookKeeper bookKeeper,
+                             final BookkeeperConfiguration bookkeeperConfiguration,
+                             final LedgerMetrics metrics,
+                             final CuratorFramework curator) {
+        this(new LedgerAccessor(bookKeeper, bookkeeperConfiguration, metrics, null),
+             new StandbyRegistry(curator),
+             bookkeeperConfiguration);
+    }
+
+    /**
+     * @param accessor creates ledgers with the passwords given to it, and deletes them
+     */
+    StandbyLedgerPool(final LedgerAccessor accessor,
+                      final StandbyRegistry registry,
+                      final BookkeeperConfiguration bookkeeperConfiguration) {
+        this.accessor = accessor;
+        this.registry = registry;
+        this.size = bookkeeperConfiguration.getStandbyLedgerPoolSize();
+        this.maxAgeNanos = TimeUnit.SECONDS.toNanos(bookkeeperConfiguration.getStandbyLedgerMaxAgeSecs());
+        this.replenisher = Thread.ofVirtual().name("standby-ledger-pool").unstarted(this::replenish);
+        if (size > 0) {
+            replenisher.start();
+        }
+    }
+
+    /**
+     * @return a pooled ledger and its password, now bound to the caller, or null if none is available
+     */
+    Standby claim() {
+        Standby claimed;
+        while ((claimed = standby.pollFirst()) != null) {
+            // the registration is removed before the ledger is used, so that it can never be collected once bound
+            if (claimed.ledger().getAgeNanos() < maxAgeNanos && registry.unregister(claimed.ledger().getId())) {
+                LockSupport.unpark(replenisher);
+                log.info("Claimed standby ledger {}", claimed.ledger().getId());
+                return new Standby(claimed.ledger().restartAge(), claimed.password());
+            }
+            discard(claimed.ledger());
+        }
+
+        LockSupport.unpark(replenisher);
+        return null;
+    }
+
+    /**
+     * @return the number of ledgers awaiting claim
+     */
+    int available() {
+        return standby.size();
+    }
+
+    @Override
+    public void close() {
+        closed = true;
+        replenisher.interrupt();
+        discardAll();
+    }
+
+    private void replenish() {
+        long lastCollectedNanos = System.nanoTime() - maxAgeNanos;
+        while (!closed && !Thread.currentThread().isInterrupted()) {
+            try {
+                expire();
+                while (!closed && standby.size() < size) {
+                    standby.addLast(create());
+                }
+                if (System.nanoTime() - lastCollectedNanos >= maxAgeNanos) {
+                    collectOrphans();
+                    lastCollectedNanos = System.nanoTime();
+                }
+            } catch (Exception e) {
+                log.warn("Failed to replenish standby ledger pool", e);
+                LockSupport.parkNanos(MIN_REPLENISH_AWAIT.toNanos());
+            }
+
+            // woken early whenever a ledger is claimed
+            LockSupport.parkNanos(maxAgeNanos / 4);
+        }
+
+        // any created while closing
+        discardAll();
+    }
+
+    private Standby create() throws Exception {
+        final byte[] password = new byte[PASSWORD_BYTES];
+        random.nextBytes(password);
+
+        final Ledger ledger = accessor.create(password);
+        try {
+            registry.register(ledger.getId());
+        } catch (Exception e) {
+            closeAndDelete(ledger);
+            throw e;
+        }
+        log.debug("Created standby ledger {}", ledger.getId());
+        return new Standby(ledger, password);
+    }
+
+    private void expire() {
+        // ledgers are added in order of creation, so the oldest is always first
+        Standby pooled;
+        while ((pooled = standby.peekFirst()) != null && pooled.ledger().getAgeNanos() >= maxAgeNanos) {
+            if (standby.remove(pooled)) {
+                log.debug("Discarding expired standby ledger {}", pooled.ledger().getId());
+                discard(pooled.ledger());
+            }
+        }
+    }
+
+    private void collectOrphans() throws Exception {
+        final long orphanedBefore = System.currentTimeMillis() - TimeUnit.NANOSECONDS.toMillis(maxAgeNanos * 2);
+        for (long ledgerId : registry.registeredBefore(orphanedBefore)) {
+            if (registry.unregister(ledgerId)) {
+                log.info("Deleting orphaned standby ledger {}", ledgerId);
+                accessor.deleteAsync(ledgerId).whenComplete((ignore, e) -> {
+                    if (e != null) {
+                        log.warn("Failed to delete orphaned standby ledger {}", ledgerId, e);
+                    }
+                });
+            }
+        }
+    }
+
+    private void discardAll() {
+        Standby pooled;
+        while ((pooled = standby.pollFirst()) != null) {
+            discard(pooled.ledger());
+        }
+    }
+
+    /*
+     * A ledger whose registration has already gone has been collected as orphaned, such as after this node lost its
+     * session for longer than the maximum age, and is deleted by the collector.
+     */
+    private void discard(final Ledger ledger) {
+        if (registry.unregister(ledger.getId())) {
+            closeAndDelete(ledger);
+        } else {
+            closeQuietly(ledger);
+        }
+    }
+
+    private void closeAndDelete(final Ledger ledger) {
+        closeQuietly(ledger);
+        accessor.deleteAsync(ledger.getId()).whenComplete((ignore, e) -> {
+            if (e != null) {
+                log.warn("Failed to delete standby ledger {}", ledger.getId(), e);
+            }
+        });
+    }
+
+    private static void closeQuietly(final Ledger ledger) {
+        try {
+            ledger.close();
+        } catch (Exception e) {
+            log.warn("Failed to close standby ledger {}", ledger.getId(), e);
+        }
+    }
+
+    record Standby(Ledger ledger, byte[] password) {
+    }
+}
@@ -0,0 +1,69 @@
+package dev.maynestream.ledgify.ledger.commit;
+
+import lombok.extern.slf4j.Slf4j;
+import org.apache.curator.framework.CuratorFramework;
+import org.apache.curator.utils.ZKPaths;
+import org.apache.zookeeper.KeeperException;
+import org.apache.zookeeper.data.Stat;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Registrations of every node's standby ledgers, held until each ledger is claimed or discarded, by which those left
+ * by nodes that have gone are found.
+ */
+@Slf4j
+class StandbyRegistry {
+    private static final String LEDGERS_STANDBY_PATH = "/ledgers-standby";
+
+    private final CuratorFramework curator;
+
+    StandbyRegistry(final CuratorFramework curator) {
+        this.curator = curator;
+    }
+
+    void register(final long ledgerId) throws Exception {
+        curator.create().creatingParentContainersIfNeeded().forPath(standbyPath(ledgerId));
+    }
+
+    /**
+     * @return true if the registration was removed by this call, or false if it had already gone or could not be removed
+     */
+    boolean unregister(final long ledgerId) {
+        try {
+            curator.delete().forPath(standbyPath(ledgerId));
+            return true;
+        } catch (KeeperException.NoNodeException e) {
+            return false;
+        } catch (Exception e) {
+            log.warn("Failed to unregister standby ledger {}", ledgerId, e);
+            return false;
+        }
+    }
+
+    /**
+     * @return the ids of ledgers registered before the given epoch milliseconds
+     */
+    List<Long> registeredBefore(final long epochMillis) throws Exception {
+        final List<String> registered;
+        try {
+            registered = curator.getChildren().forPath(LEDGERS_STANDBY_PATH);
+        } catch (KeeperException.NoNodeException e) {
+            return List.of();
+        }
+
+        final List<Long> ledgerIds = new ArrayList<>();
+        for (String ledgerId : registered) {
+            final Stat stat = curator.checkExists().forPath(ZKPaths.makePath(LEDGERS_STANDBY_PATH, ledgerId));
+            if (stat != null && stat.getCtime() < epochMillis) {
+                ledgerIds.add(Long.parseLong(ledgerId));
+            }
+        }
+        return ledgerIds;
+    }
+
+    private static String standbyPath(final long ledgerId) {
+        return ZKPaths.makePath(LEDGERS_STANDBY_PATH, Long.toString(ledgerId));
+    }
+}
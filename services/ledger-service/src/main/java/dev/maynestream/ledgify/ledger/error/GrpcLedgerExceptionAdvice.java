@@ -1,13 +1,18 @@
 package dev.maynestream.ledgify.ledger.error;
 
 import dev.maynestream.ledgify.error.GrpcExceptionAdvice;
+import dev.maynestream.ledgify.ledger.transaction.AdmissionRejectedException;
+import io.grpc.Metadata;
 import io.grpc.Status;
+import io.grpc.StatusRuntimeException;
 import net.devh.boot.grpc.server.advice.GrpcAdvice;
 import net.devh.boot.grpc.server.advice.GrpcExceptionHandler;
 import org.apache.bookkeeper.client.BKException;
 
 @GrpcAdvice
 public class GrpcLedgerExceptionAdvice extends GrpcExceptionAdvice {
+    public static final Metadata.Key<String> RETRY_AFTER_HEADER = Metadata.Key.of("ledger-retry-after-ms",
+                                                                                 Metadata.ASCII_STRING_MARSHALLER);
 
     @GrpcExceptionHandler(BKException.BKNoSuchLedgerExistsOnMetadataServerException.class)
     public Status handleBKNoSuchLedgerExistsOnMetadataServer(BKException.BKNoSuchLedgerExistsOnMetadataServerException e) {
@@ -18,4 +23,18 @@ public class GrpcLedgerExceptionAdvice extends GrpcExceptionAdvice {
     public Status handleBKNoSuchLedgerExists(BKException.BKNoSuchLedgerExistsException e) {
         return Status.NOT_FOUND.withDescription("Ledger does not exist: " + e.getMessage()).withCause(e);
     }
-}
\ No newline at end of file
+
+    // the trailers carry a hint of when to retry, in milliseconds
+    @GrpcExceptionHandler(AdmissionRejectedException.class)
+    public StatusRuntimeException handleAdmissionRejected(AdmissionRejectedException e) {
+        final Metadata trailers = new Metadata();
+        trailers.put(RETRY_AFTER_HEADER, Long.toString(e.getRetryAfter().toMillis()));
+        return Status.RESOURCE_EXHAUSTED.withDescription(e.getMessage()).withCause(e).asRuntimeException(trailers);
+    }
+
+    // failures of requests forwarded to the owning node are relayed to the caller as they were returned, with their trailers
+    @GrpcExceptionHandler(StatusRuntimeException.class)
+    public StatusRuntimeException handleStatusRuntime(StatusRuntimeException e) {
+        return e;
+    }
+}
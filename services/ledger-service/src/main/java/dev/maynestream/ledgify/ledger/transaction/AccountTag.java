@@ -0,0 +1,60 @@
+package dev.maynestream.ledgify.ledger.transaction;
+
+import com.google.protobuf.ByteString;
+import com.google.protobuf.UnknownFieldSet;
+import dev.maynestream.ledgify.transaction.Transaction;
+
+import java.nio.ByteBuffer;
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * Tags transactions stored in shared partition ledgers with the account they were committed to.
+ * <p>
+ * The tag is written to a field number that the transaction schema reserves for it, so it is carried as an unknown
+ * field: tagged transactions serialize, parse and sit in the journal exactly as untagged ones do, and are only
+ * untagged when handed back to clients.
+ */
+final class AccountTag {
+    static final int FIELD_NUMBER = 15;
+
+    private AccountTag() {}
+
+    static Transaction tag(final UUID accountId, final Transaction transaction) {
+        final ByteString account = ByteString.copyFrom(ByteBuffer.allocate(2 * Long.BYTES)
+                                                                 .putLong(accountId.getMostSignificantBits())
+                                                                 .putLong(accountId.getLeastSignificantBits())
+                                                                 .flip());
+        return transaction.toBuilder()
+                          .setUnknownFields(UnknownFieldSet.newBuilder()
+                                                           .addField(FIELD_NUMBER,
+                                                                     UnknownFieldSet.Field.newBuilder()
+                                                                                          .addLengthDelimited(account)
+                                                                                          .build())
+                                                           .build())
+                          .build();
+    }
+
+    /**
+     * @return the account the transaction is tagged with, or null if it is untagged
+     */
+    static UUID accountOf(final Transaction transaction) {
+        if (!transaction.getUnknownFields().hasField(FIELD_NUMBER)) {
+            return null;
+        }
+
+        final List<ByteString> values = transaction.getUnknownFields().getField(FIELD_NUMBER).getLengthDelimitedList();
+        if (values.isEmpty() || values.getLast().size() != 2 * Long.BYTES) {
+            return null;
+        }
+        final ByteBuffer account = values.getLast().asReadOnlyByteBuffer();
+        return new UUID(account.getLong(), account.getLong());
+    }
+
+    static Transaction untagged(final Transaction transaction) {
+        if (transaction.getUnknownFields().asMap().isEmpty()) {
+            return transaction;
+        }
+        return transaction.toBuilder().setUnknownFields(UnknownFieldSet.getDefaultInstance()).build();
+    }
+}
@@ -0,0 +1,19 @@
+package dev.maynestream.ledgify.ledger.transaction;
+
+import lombok.Getter;
+
+import java.time.Duration;
+
+/**
+ * Thrown when a commit is refused because this node, or the account, already has as many commits in flight as it may.
+ */
+@Getter
+public class AdmissionRejectedException extends RuntimeException {
+    // how long the caller should wait before retrying
+    private final Duration retryAfter;
+
+    public AdmissionRejectedException(final String message, final Duration retryAfter) {
+        super(message);
+        this.retryAfter = retryAfter;
+    }
+}
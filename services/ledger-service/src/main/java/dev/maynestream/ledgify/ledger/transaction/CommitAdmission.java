@@ -0,0 +1,156 @@
+package dev.maynestream.ledgify.ledger.transaction;
+
+import dev.maynestream.ledgify.transaction.TransactionCommitStatus;
+
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.UUID;
+
+/**
+ * Decides whether this node takes on another commit, rather than letting commits queue without bound once BookKeeper
+ * cannot keep up.
+ * <p>
+ * The node's limit on commits in flight adapts to their observed latency: while latency stays near the least observed,
+ * few commits can be queued and the limit grows; as it rises above, commits are queuing and the limit shrinks, as it
+ * does sharply should commits time out. Each account may hold only so many commits in flight, and once the node nears
+ * its limit, only its fair share of the limit, so that one busy account cannot crowd out the rest.
+ */
+final class CommitAdmission {
+    static final int MIN_LIMIT = 8;
+
+    private static final int INITIAL_LIMIT = 64;
+    private static final double CONGESTED_AT = 0.75;
+    private static final double SMOOTHING_FACTOR = 0.1;
+    private static final double BACKOFF_RATIO = 0.9;
+    private static final int MIN_LATENCY_PROBE_SAMPLES = 1000;
+    private static final Duration MIN_RETRY_AFTER = Duration.ofMillis(10);
+    private static final Duration MAX_RETRY_AFTER = Duration.ofSeconds(5);
+
+    private final int minLimit;
+    private final int maxLimit;
+    private final int accountMaxInFlight;
+
+    // accounts with commits in flight, and how many each holds
+    private final Map<UUID, Integer> accounts = new HashMap<>();
+    private int inFlight;
+
+    private double limit;
+    private long minLatencyNanos;
+    private long probeMinLatencyNanos = Long.MAX_VALUE;
+    private double averageLatencyNanos;
+    private long samples;
+
+    CommitAdmission(final int maxLimit, final int accountMaxInFlight) {
+        if (maxLimit < 1 || accountMaxInFlight < 1) {
+            throw new IllegalArgumentException("maxLimit and accountMaxInFlight must be positive");
+        }
+        this.minLimit = Math.min(MIN_LIMIT, maxLimit);
+        this.maxLimit = maxLimit;
+        this.accountMaxInFlight = accountMaxInFlight;
+        this.limit = Math.min(INITIAL_LIMIT, maxLimit);
+    }
+
+    /**
+     * @return a permit to be released once the commit is decided
+     * @throws AdmissionRejectedException if the node or account is already at its limit
+     */
+    synchronized Permit admit(final UUID accountId) {
+        final int nodeLimit = (int) limit;
+        if (inFlight >= nodeLimit) {
+            throw new AdmissionRejectedException("Node at limit of %s commits in flight".formatted(nodeLimit), retryAfter());
+        }
+
+        final int held = accounts.getOrDefault(accountId, 0);
+        int accountLimit = accountMaxInFlight;
+        if (inFlight >= nodeLimit * CONGESTED_AT) {
+            final int active = accounts.size() + (held == 0 ? 1 : 0);
+            accountLimit = Math.min(accountLimit, Math.max(1, nodeLimit / active));
+        }
+        if (held >= accountLimit) {
+            throw new AdmissionRejectedException("Account at limit of %s commits in flight".formatted(accountLimit), retryAfter());
+        }
+
+        inFlight++;
+        accounts.put(accountId, held + 1);
+        return new Permit(accountId, System.nanoTime());
+    }
+
+    synchronized int limit() {
+        return (int) limit;
+    }
+
+    synchronized int inFlight() {
+        return inFlight;
+    }
+
+    private synchronized void release(final UUID accountId, final TransactionCommitStatus status, final long latencyNanos) {
+        inFlight--;
+        accounts.computeIfPresent(accountId, (ignore, held) -> held > 1 ? held - 1 : null);
+
+        if (status == TransactionCommitStatus.COMPLETED) {
+            sample(latencyNanos);
+        } else if (status == TransactionCommitStatus.FAILED || status == TransactionCommitStatus.UNKNOWN) {
+            // commits are only failed or left undecided by timing out, so are taken as a sign of overload
+            limit = Math.max(minLimit, limit * BACKOFF_RATIO);
+        }
+    }
+
+    /*
+     * Estimates how many commits are queued from how far latency has risen above the least observed. The least is
+     * re-measured periodically, so that the limit recovers from a lasting change in latency, such as a bookie replaced.
+     */
+    private void sample(final long latencyNanos) {
+        final long latency = Math.max(1, latencyNanos);
+        averageLatencyNanos = averageLatencyNanos == 0
+                ? latency
+                : averageLatencyNanos + SMOOTHING_FACTOR * (latency - averageLatencyNanos);
+        if (minLatencyNanos == 0 || latency < minLatencyNanos) {
+            minLatencyNanos = latency;
+        }
+        probeMinLatencyNanos = Math.min(probeMinLatencyNanos, latency);
+        if (++samples % MIN_LATENCY_PROBE_SAMPLES == 0) {
+            minLatencyNanos = probeMinLatencyNanos;
+            probeMinLatencyNanos = Long.MAX_VALUE;
+        }
+
+        final double queued = limit * (1 - (double) minLatencyNanos / latency);
+        final double step = Math.max(1, Math.log10(limit));
+        if (queued > 6 * step) {
+            limit = Math.max(minLimit, limit - step);
+        } else if (queued < 3 * step && inFlight * 2 >= limit) {
+            // grown only while in use, lest a lightly loaded node build a limit it has never shown it can bear
+            limit = Math.min(maxLimit, limit + step);
+        }
+    }
+
+    private Duration retryAfter() {
+        final long nanos = Math.clamp((long) averageLatencyNanos, MIN_RETRY_AFTER.toNanos(), MAX_RETRY_AFTER.toNanos());
+        return Duration.ofNanos(nanos);
+    }
+
+    final class Permit {
+        private final UUID accountId;
+        private final long admittedNanos;
+        private boolean released;
+
+        private Permit(final UUID accountId, final long admittedNanos) {
+            this.accountId = accountId;
+            this.admittedNanos = admittedNanos;
+        }
+
+        /**
+         * @param status the commit's status, or null if it was abandoned without one
+         */
+        void release(final TransactionCommitStatus status) {
+            release(status, System.nanoTime() - admittedNanos);
+        }
+
+        void release(final TransactionCommitStatus status, final long latencyNanos) {
+            if (!released) {
+                released = true;
+                CommitAdmission.this.release(accountId, status, latencyNanos);
+            }
+        }
+    }
+}
@@ -0,0 +1,246 @@
+package dev.maynestream.ledgify.ledger.transaction;
+
+import com.google.protobuf.InvalidProtocolBufferException;
+import dev.maynestream.ledgify.ledger.commit.Ledger.Entry;
+import dev.maynestream.ledgify.transaction.Transaction;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Append-only journal of committed transactions, ordered by ledger position.
+ * <p>
+ * Transactions are held in serialized form, packed into fixed-size chunks, and are only parsed when read. The
+ * position and location of each record are held in primitive arrays, so appends are amortised O(1) and a read from a
+ * given position is a binary search within that position's ledger. Once the memory budget is exceeded the oldest
+ * chunks are dropped, after which the journal no longer holds the complete history.
+ */
+final class CommitJournal {
+    static final int CHUNK_SIZE = 64 * 1024;
+    private static final int INITIAL_RECORDS = 256;
+    private static final int RECORD_BYTES = 3 * Long.BYTES + 3 * Integer.BYTES;
+    private static final int LEDGER_BYTES = 128; // approximate cost of a ledger's entries in the two maps
+
+    private final long maxBytes;
+
+    // guarded by this
+    private final List<byte[]> chunks = new ArrayList<>();
+    private long chunkBytes;
+    private int chunkFill;
+    private long evictedChunks;
+
+    // records are addressed by sequence, where slot = sequence - base
+    private long[] ledgerIds = new long[INITIAL_RECORDS];
+    private long[] entryIds = new long[INITIAL_RECORDS];
+    private int[] indexes = new int[INITIAL_RECORDS];
+    private long[] chunkNumbers = new long[INITIAL_RECORDS];
+    private int[] offsets = new int[INITIAL_RECORDS];
+    private int[] lengths = new int[INITIAL_RECORDS];
+    private long base;
+    private int count;
+
+    // the records of each ledger are contiguous, so a ledger's range ends where the next one starts
+    private final Map<Long, Long> ledgerStarts = new HashMap<>();
+    private final TreeMap<Long, Long> ledgersByStart = new TreeMap<>();
+
+    CommitJournal(final long maxBytes) {
+        if (maxBytes < CHUNK_SIZE) {
+            throw new IllegalArgumentException("maxBytes must be at least " + CHUNK_SIZE);
+        }
+        this.maxBytes = maxBytes;
+    }
+
+    void append(final Entry<Transaction> entry) {
+        append(entry.ledgerId(), entry.entryId(), entry.index(), entry.data().toByteArray());
+    }
+
+    synchronized void append(final long ledgerId, final long entryId, final int index, final byte[] payload) {
+        if (chunks.isEmpty() || chunkFill + payload.length > chunks.getLast().length) {
+            final byte[] chunk = new byte[Math.max(CHUNK_SIZE, payload.length)];
+            chunks.add(chunk);
+            chunkBytes += chunk.length;
+            chunkFill = 0;
+        }
+        System.arraycopy(payload, 0, chunks.getLast(), chunkFill, payload.length);
+
+        if (count == ledgerIds.length) {
+            resize(count * 2);
+        }
+
+        ledgerIds[count] = ledgerId;
+        entryIds[count] = entryId;
+        indexes[count] = index;
+        chunkNumbers[count] = evictedChunks + chunks.size() - 1;
+        offsets[count] = chunkFill;
+        lengths[count] = payload.length;
+        chunkFill += payload.length;
+
+        final long sequence = base + count++;
+        if (ledgerStarts.putIfAbsent(ledgerId, sequence) == null) {
+            ledgersByStart.put(sequence, ledgerId);
+        }
+
+        while (memoryUsage() > maxBytes && chunks.size() > 1) {
+            evictOldestChunk();
+        }
+    }
+
+    /**
+     * Reads entries in ledger order, starting from the given position within its ledger.
+     *
+     * @return up to limit entries, or null if the ledger is not held by the journal
+     */
+    List<Entry<Transaction>> read(final long ledgerId, final long entryId, final int index, final int limit) {
+        final List<Record> records;
+        synchronized (this) {
+            final Long start = ledgerStarts.get(ledgerId);
+            if (start == null) {
+                return null;
+            }
+            final int from = search(slot(start), ledgerEnd(start), entryId, index);
+            if (from == 0 && start < base && isAfter(0, entryId, index)) {
+                return null; // the records preceding the first held for this ledger have been dropped
+            }
+            records = records(from, limit);
+        }
+        return parse(records);
+    }
+
+    List<Entry<Transaction>> readFirst(final int limit) {
+        final List<Record> records;
+        synchronized (this) {
+            records = records(0, limit);
+        }
+        return parse(records);
+    }
+
+    List<Entry<Transaction>> readAll() {
+        final List<Record> records;
+        synchronized (this) {
+            records = records(0, count);
+        }
+        return parse(records);
+    }
+
+    synchronized int size() {
+        return count;
+    }
+
+    /**
+     * @return true if no entries have been dropped to stay within the memory budget
+     */
+    synchronized boolean isComplete() {
+        return evictedChunks == 0;
+    }
+
+    /**
+     * @return the approximate number of bytes held by the journal
+     */
+    synchronized long memoryUsage() {
+        return chunkBytes + (long) ledgerIds.length * RECORD_BYTES + (long) ledgerStarts.size() * LEDGER_BYTES;
+    }
+
+    private int slot(final long sequence) {
+        return (int) Math.max(0, sequence - base);
+    }
+
+    private int ledgerEnd(final long start) {
+        final Long next = ledgersByStart.higherKey(start);
+        return next == null ? count : slot(next);
+    }
+
+    private boolean isAfter(final int slot, final long entryId, final int index) {
+        return entryIds[slot] > entryId || (entryIds[slot] == entryId && indexes[slot] > index);
+    }
+
+    // first slot in [from, to) at or after the given position
+    private int search(int from, int to, final long entryId, final int index) {
+        while (from < to) {
+            final int mid = (from + to) >>> 1;
+            if (entryIds[mid] == entryId && indexes[mid] == index || isAfter(mid, entryId, index)) {
+                to = mid;
+            } else {
+                from = mid + 1;
+            }
+        }
+        return from;
+    }
+
+    private List<Record> records(final int from, final int limit) {
+        final int to = (int) Math.min(count, (long) from + limit);
+        final List<Record> records = new ArrayList<>(Math.max(0, to - from));
+        for (int slot = from; slot < to; slot++) {
+            // chunks are never written to behind the fill position, so records may be parsed outside the lock
+            records.add(new Record(ledgerIds[slot],
+                                   entryIds[slot],
+                                   indexes[slot],
+                                   chunks.get((int) (chunkNumbers[slot] - evictedChunks)),
+                                   offsets[slot],
+                                   lengths[slot]));
+        }
+        return records;
+    }
+
+    private void evictOldestChunk() {
+        final byte[] chunk = chunks.removeFirst();
+        chunkBytes -= chunk.length;
+
+        int evicted = 0;
+        while (evicted < count && chunkNumbers[evicted] == evictedChunks) {
+            evicted++;
+        }
+        evictedChunks++;
+
+        count -= evicted;
+        base += evicted;
+        System.arraycopy(ledgerIds, evicted, ledgerIds, 0, count);
+        System.arraycopy(entryIds, evicted, entryIds, 0, count);
+        System.arraycopy(indexes, evicted, indexes, 0, count);
+        System.arraycopy(chunkNumbers, evicted, chunkNumbers, 0, count);
+        System.arraycopy(offsets, evicted, offsets, 0, count);
+        System.arraycopy(lengths, evicted, lengths, 0, count);
+
+        // drop ledgers whose records have all been evicted
+        Map.Entry<Long, Long> first;
+        while ((first = ledgersByStart.firstEntry()) != null && ledgerEnd(first.getKey()) == 0) {
+            ledgersByStart.pollFirstEntry();
+            ledgerStarts.remove(first.getValue());
+        }
+
+        if (ledgerIds.length > INITIAL_RECORDS && count < ledgerIds.length / 4) {
+            resize(Math.max(INITIAL_RECORDS, ledgerIds.length / 2));
+        }
+    }
+
+    private void resize(final int capacity) {
+        ledgerIds = Arrays.copyOf(ledgerIds, capacity);
+        entryIds = Arrays.copyOf(entryIds, capacity);
+        indexes = Arrays.copyOf(indexes, capacity);
+        chunkNumbers = Arrays.copyOf(chunkNumbers, capacity);
+        offsets = Arrays.copyOf(offsets, capacity);
+        lengths = Arrays.copyOf(lengths, capacity);
+    }
+
+    private static List<Entry<Transaction>> parse(final List<Record> records) {
+        final List<Entry<Transaction>> entries = new ArrayList<>(records.size());
+        for (Record record : records) {
+            entries.add(record.parse());
+        }
+        return entries;
+    }
+
+    private record Record(long ledgerId, long entryId, int index, byte[] chunk, int offset, int length) {
+        Entry<Transaction> parse() {
+            try {
+                return new Entry<>(ledgerId, entryId, index, Transaction.parseFrom(ByteBuffer.wrap(chunk, offset, length)));
+            } catch (InvalidProtocolBufferException e) {
+                throw new IllegalStateException("Corrupt journal record at ledger %s entry %s".formatted(ledgerId, entryId), e);
+            }
+        }
+    }
+}
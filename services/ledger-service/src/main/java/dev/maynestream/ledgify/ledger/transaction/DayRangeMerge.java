@@ -0,0 +1,164 @@
+package dev.maynestream.ledgify.ledger.transaction;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.function.Consumer;
+
+/**
+ * Reads a number of days concurrently, and merges what they read into order as it arrives.
+ * <p>
+ * Each day is read into a small bounded buffer, so memory does not grow with the length of the range, and reading is
+ * limited to {@code parallelism} days at once. A day whose buffer is full gives up its permit while it waits for the
+ * merge to catch up, so a later day is never starved of the permit it needs for the merge to progress.
+ */
+final class DayRangeMerge {
+
+    @FunctionalInterface
+    interface Day<T> {
+        void read(Consumer<T> consumer) throws Exception;
+    }
+
+    private final Semaphore permits;
+    private final int bufferCapacity;
+
+    DayRangeMerge(final int parallelism, final int bufferCapacity) {
+        if (parallelism < 1 || bufferCapacity < 1) {
+            throw new IllegalArgumentException("parallelism and bufferCapacity must be positive");
+        }
+        this.permits = new Semaphore(parallelism);
+        this.bufferCapacity = bufferCapacity;
+    }
+
+    /**
+     * Hands everything read from the days to the consumer in the given order. Where items compare equal, those of
+     * earlier days come first, as do those read earlier from the same day.
+     *
+     * @throws TimeoutException if the days are not read within the timeout
+     */
+    <T> void merge(final List<Day<T>> days,
+                   final Comparator<T> order,
+                   final Duration timeout,
+                   final Consumer<T> consumer) throws Exception {
+        final long deadline = System.nanoTime() + timeout.toNanos();
+        final List<Buffer<T>> buffers = new ArrayList<>(days.size());
+        try {
+            for (Day<T> day : days) {
+                buffers.add(new Buffer<>(buffers.size(), day, this));
+            }
+
+            final PriorityQueue<Head<T>> heads = new PriorityQueue<>(Math.max(1, days.size()),
+                                                                     Comparator.<Head<T>, T>comparing(Head::item, order)
+                                                                               .thenComparingInt(Head::day));
+            for (Buffer<T> buffer : buffers) {
+                buffer.next(deadline, heads);
+            }
+
+            Head<T> head;
+            while ((head = heads.poll()) != null) {
+                consumer.accept(head.item());
+                buffers.get(head.day()).next(deadline, heads);
+            }
+        } finally {
+            buffers.forEach(Buffer::cancel);
+        }
+    }
+
+    private record Head<T>(T item, int day) {
+    }
+
+    private static final class Buffer<T> {
+        private static final Object END = new Object();
+        private static final long OFFER_TIMEOUT_MILLIS = 100;
+
+        private final int day;
+        private final BlockingQueue<Object> items;
+        private final Thread reader;
+        private volatile Exception failure;
+        private volatile boolean cancelled;
+
+        private Buffer(final int day, final Day<T> source, final DayRangeMerge merge) {
+            this.day = day;
+            this.items = new ArrayBlockingQueue<>(merge.bufferCapacity);
+            this.reader = Thread.ofVirtual().name("day-range-merge-" + day).start(() -> read(source, merge.permits));
+        }
+
+        private void read(final Day<T> source, final Semaphore permits) {
+            try {
+                permits.acquire();
+            } catch (InterruptedException e) {
+                return;
+            }
+
+            try {
+                source.read(item -> {
+                    if (!items.offer(item)) {
+                        // release the permit while waiting on the merge, which may itself be awaiting another day
+                        permits.release();
+                        try {
+                            if (!offer(item)) {
+                                throw new CancellationException();
+                            }
+                        } finally {
+                            permits.acquireUninterruptibly();
+                        }
+                    }
+                });
+            } catch (CancellationException e) {
+                return;
+            } catch (Exception e) {
+                failure = e;
+            } finally {
+                permits.release();
+            }
+
+            offer(END);
+        }
+
+        /*
+         * Waits on the merge for room in the buffer, giving up if it has been abandoned.
+         */
+        private boolean offer(final Object item) {
+            try {
+                while (!items.offer(item, OFFER_TIMEOUT_MILLIS, TimeUnit.MILLISECONDS)) {
+                    if (cancelled) {
+                        return false;
+                    }
+                }
+                return true;
+            } catch (InterruptedException e) {
+                return false;
+            }
+        }
+
+        @SuppressWarnings("unchecked")
+        private void next(final long deadline, final PriorityQueue<Head<T>> heads) throws Exception {
+            final Object item = items.poll(deadline - System.nanoTime(), TimeUnit.NANOSECONDS);
+            if (item == null) {
+                throw new TimeoutException("Timed out reading day " + day);
+            } else if (item != END) {
+                heads.add(new Head<>((T) item, day));
+            } else if (failure != null) {
+                throw failure;
+            }
+        }
+
+        private void cancel() {
+            cancelled = true;
+            reader.interrupt();
+        }
+    }
+
+    /*
+     * Unwinds a reader whose merge has been abandoned, from within a consumer that cannot throw checked exceptions.
+     */
+    private static final class CancellationException extends RuntimeException {
+    }
+}
@@ -0,0 +1,267 @@
+package dev.maynestream.ledgify.ledger.transaction;
+
+import dev.maynestream.ledgify.ledger.commit.Ledger.Entry;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.UUID;
+
+/**
+ * Maps the ids of recently committed transactions to the ledger position they were committed at.
+ * <p>
+ * Ids are held as their 128-bit UUID value alongside the position in primitive arrays, with an open-addressing
+ * table over an insertion-ordered ring. Once the configured window is full the oldest id is forgotten, so memory
+ * is bounded by the window rather than by the number of transactions committed. Storage grows with use, so idle
+ * accounts do not pay for the full window.
+ */
+final class IdempotencyIndex {
+    private static final int INITIAL_CAPACITY = 1024;
+    private static final int EMPTY = -1;
+    private static final int RECORD_BYTES = 4 * Long.BYTES + Integer.BYTES;
+
+    private final int window;
+
+    // insertion-ordered ring of recorded ids and their positions
+    private long[] mostSignificantBits;
+    private long[] leastSignificantBits;
+    private long[] ledgerIds;
+    private long[] entryIds;
+    private int[] indexes;
+    private int head;
+    private int size;
+
+    // linear probing table of ring slots, kept at most half full
+    private int[] table;
+    private int tableMask;
+
+    IdempotencyIndex(final int window) {
+        if (window < 1) {
+            throw new IllegalArgumentException("window must be greater than 0");
+        }
+        this.window = window;
+        allocate(Math.min(window, INITIAL_CAPACITY));
+    }
+
+    Position lookup(final String transactionId) {
+        return lookup(key(transactionId));
+    }
+
+    synchronized Position lookup(final UUID id) {
+        final int slot = find(id.getMostSignificantBits(), id.getLeastSignificantBits());
+        return slot == EMPTY ? null : new Position(ledgerIds[slot], entryIds[slot], indexes[slot]);
+    }
+
+    /**
+     * Records the position of a committed transaction; the first recorded position for an id is retained.
+     */
+    void record(final String transactionId, final long ledgerId, final long entryId, final int index) {
+        record(key(transactionId), ledgerId, entryId, index);
+    }
+
+    synchronized void record(final UUID id, final long ledgerId, final long entryId, final int index) {
+        record(id.getMostSignificantBits(), id.getLeastSignificantBits(), ledgerId, entryId, index);
+    }
+
+    synchronized int size() {
+        return size;
+    }
+
+    /**
+     * @return the recorded ids and their positions, oldest first, in the form read by {@link #restore(byte[])}
+     */
+    synchronized byte[] toBytes() {
+        final ByteBuffer bb = ByteBuffer.allocate(size * RECORD_BYTES);
+        for (int n = 0; n < size; n++) {
+            final int slot = (head + n) % capacity();
+            bb.putLong(mostSignificantBits[slot])
+              .putLong(leastSignificantBits[slot])
+              .putLong(ledgerIds[slot])
+              .putLong(entryIds[slot])
+              .putInt(indexes[slot]);
+        }
+        return bb.array();
+    }
+
+    /**
+     * Records the ids and positions written by {@link #toBytes()}, in their original order.
+     */
+    synchronized void restore(final byte[] bytes) {
+        if (bytes.length % RECORD_BYTES != 0) {
+            throw new IllegalArgumentException("malformed idempotency index of %s bytes".formatted(bytes.length));
+        }
+
+        final ByteBuffer bb = ByteBuffer.wrap(bytes);
+        while (bb.hasRemaining()) {
+            record(bb.getLong(), bb.getLong(), bb.getLong(), bb.getLong(), bb.getInt());
+        }
+    }
+
+    private void record(final long msb, final long lsb, final long ledgerId, final long entryId, final int index) {
+        if (find(msb, lsb) != EMPTY) {
+            return;
+        }
+
+        if (size == capacity()) {
+            if (capacity() < window) {
+                grow();
+            } else {
+                evictOldest();
+            }
+        }
+
+        final int slot = (head + size) % capacity();
+        mostSignificantBits[slot] = msb;
+        leastSignificantBits[slot] = lsb;
+        ledgerIds[slot] = ledgerId;
+        entryIds[slot] = entryId;
+        indexes[slot] = index;
+        size++;
+
+        int i = hash(msb, lsb);
+        while (table[i] != EMPTY) {
+            i = (i + 1) & tableMask;
+        }
+        table[i] = slot;
+    }
+
+    private int capacity() {
+        return ledgerIds.length;
+    }
+
+    private int find(final long msb, final long lsb) {
+        int i = hash(msb, lsb);
+        while (table[i] != EMPTY) {
+            final int slot = table[i];
+            if (mostSignificantBits[slot] == msb && leastSignificantBits[slot] == lsb) {
+                return slot;
+            }
+            i = (i + 1) & tableMask;
+        }
+        return EMPTY;
+    }
+
+    private void evictOldest() {
+        final int slot = head;
+        int i = hash(mostSignificantBits[slot], leastSignificantBits[slot]);
+        while (table[i] != slot) {
+            i = (i + 1) & tableMask;
+        }
+
+        // backward shift deletion keeps probe sequences intact without tombstones
+        int j = i;
+        while (true) {
+            j = (j + 1) & tableMask;
+            if (table[j] == EMPTY) {
+                break;
+            }
+
+            final int ideal = hash(mostSignificantBits[table[j]], leastSignificantBits[table[j]]);
+            final boolean reachable = i <= j ? (i < ideal && ideal <= j) : (i < ideal || ideal <= j);
+            if (!reachable) {
+                table[i] = table[j];
+                i = j;
+            }
+        }
+        table[i] = EMPTY;
+
+        head = (head + 1) % capacity();
+        size--;
+    }
+
+    private void grow() {
+        final long[] msbs = mostSignificantBits;
+        final long[] lsbs = leastSignificantBits;
+        final long[] ledgers = ledgerIds;
+        final long[] entries = entryIds;
+        final int[] idxs = indexes;
+        final int oldHead = head;
+        final int oldSize = size;
+        final int oldCapacity = capacity();
+
+        allocate((int) Math.min(window, oldCapacity * 2L));
+
+        for (int n = 0; n < oldSize; n++) {
+            final int from = (oldHead + n) % oldCapacity;
+            mostSignificantBits[n] = msbs[from];
+            leastSignificantBits[n] = lsbs[from];
+            ledgerIds[n] = ledgers[from];
+            entryIds[n] = entries[from];
+            indexes[n] = idxs[from];
+
+            int i = hash(msbs[from], lsbs[from]);
+            while (table[i] != EMPTY) {
+                i = (i + 1) & tableMask;
+            }
+            table[i] = n;
+        }
+        size = oldSize;
+    }
+
+    private void allocate(final int capacity) {
+        mostSignificantBits = new long[capacity];
+        leastSignificantBits = new long[capacity];
+        ledgerIds = new long[capacity];
+        entryIds = new long[capacity];
+        indexes = new int[capacity];
+        head = 0;
+        size = 0;
+
+        int tableSize = 2;
+        while (tableSize < capacity * 2) {
+            tableSize <<= 1;
+        }
+        table = new int[tableSize];
+        tableMask = tableSize - 1;
+        Arrays.fill(table, EMPTY);
+    }
+
+    private int hash(final long msb, final long lsb) {
+        long h = msb ^ lsb;
+        h ^= h >>> 33;
+        h *= 0xff51afd7ed558ccdL;
+        h ^= h >>> 33;
+        return (int) h & tableMask;
+    }
+
+    static UUID key(final String transactionId) {
+        try {
+            return UUID.fromString(transactionId);
+        } catch (IllegalArgumentException e) {
+            return UUID.nameUUIDFromBytes(transactionId.getBytes(StandardCharsets.UTF_8));
+        }
+    }
+
+    /**
+     * @return the key of a transaction committed to the given account, combining the bits of both ids so that each
+     * account's commit of the same transaction is recorded separately
+     */
+    static UUID key(final String transactionId, final UUID accountId) {
+        final UUID id = key(transactionId);
+        if (accountId == null) {
+            return id;
+        }
+        // mixed, so that a transaction and account whose ids are swapped do not share a key
+        return new UUID(id.getMostSignificantBits() ^ mix(accountId.getLeastSignificantBits()),
+                        id.getLeastSignificantBits() ^ mix(accountId.getMostSignificantBits()));
+    }
+
+    private static long mix(long bits) {
+        bits ^= bits >>> 33;
+        bits *= 0xff51afd7ed558ccdL;
+        bits ^= bits >>> 33;
+        bits *= 0xc4ceb9fe1a85ec53L;
+        bits ^= bits >>> 33;
+        return bits;
+    }
+
+    record Position(long ledgerId, long entryId, int index) {
+        <T> Entry<T> toEntry(final T data) {
+            return new Entry<>(ledgerId, entryId, index, data);
+        }
+
+        boolean isAfter(final long otherEntryId, final int otherIndex) {
+            return entryId > otherEntryId || (entryId == otherEntryId && index > otherIndex);
+        }
+    }
+}
@@ -0,0 +1,71 @@
+package dev.maynestream.ledgify.ledger.transaction;
+
+import dev.maynestream.ledgify.ledger.commit.Ledger.Entry;
+import dev.maynestream.ledgify.transaction.Transaction;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+/**
+ * Positions of each account's transactions within the ledgers of the partition it is hashed to, in commit order,
+ * so that an account's transactions can be found without scanning those of every other account in the partition.
+ * <p>
+ * Positions are held in primitive arrays per account, which start small so that the many accounts with few
+ * transactions cost little.
+ */
+final class PartitionIndex {
+    private static final int INITIAL_POSITIONS = 4;
+
+    // guarded by this
+    private final Map<UUID, Positions> accounts = new HashMap<>();
+
+    /**
+     * Records the position of a tagged transaction; untagged transactions are ignored.
+     */
+    synchronized void record(final Entry<Transaction> entry) {
+        final UUID accountId = AccountTag.accountOf(entry.data());
+        if (accountId != null) {
+            accounts.computeIfAbsent(accountId, id -> new Positions()).add(entry);
+        }
+    }
+
+    synchronized List<IdempotencyIndex.Position> positions(final UUID accountId) {
+        final Positions positions = accounts.get(accountId);
+        return positions == null ? List.of() : positions.toList();
+    }
+
+    synchronized int accountCount() {
+        return accounts.size();
+    }
+
+    private static final class Positions {
+        private long[] ledgerIds = new long[INITIAL_POSITIONS];
+        private long[] entryIds = new long[INITIAL_POSITIONS];
+        private int[] indexes = new int[INITIAL_POSITIONS];
+        private int count;
+
+        private void add(final Entry<?> entry) {
+            if (count == ledgerIds.length) {
+                ledgerIds = Arrays.copyOf(ledgerIds, count * 2);
+                entryIds = Arrays.copyOf(entryIds, count * 2);
+                indexes = Arrays.copyOf(indexes, count * 2);
+            }
+            ledgerIds[count] = entry.ledgerId();
+            entryIds[count] = entry.entryId();
+            indexes[count] = entry.index();
+            count++;
+        }
+
+        private List<IdempotencyIndex.Position> toList() {
+            final List<IdempotencyIndex.Position> positions = new ArrayList<>(count);
+            for (int i = 0; i < count; i++) {
+                positions.add(new IdempotencyIndex.Position(ledgerIds[i], entryIds[i], indexes[i]));
+            }
+            return positions;
+        }
+    }
+}
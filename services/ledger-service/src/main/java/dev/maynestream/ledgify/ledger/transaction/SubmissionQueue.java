@@ -0,0 +1,149 @@
+package dev.maynestream.ledgify.ledger.transaction;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.locks.LockSupport;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Bounded multi-producer, single-consumer ring buffer.
+ * <p>
+ * Producers claim slots with a single CAS on the tail and publish through a per-slot sequence, so any number of
+ * threads may offer concurrently without blocking one another. Consumption is serialised by a lock, which is only
+ * contended during a change of leader, when the outgoing and incoming committers may briefly overlap.
+ */
+final class SubmissionQueue<E> {
+    private static final long FULL_BACKOFF_NANOS = TimeUnit.MICROSECONDS.toNanos(50);
+
+    private final int mask;
+    private final AtomicReferenceArray<E> buffer;
+    private final AtomicLongArray sequences;
+    private final AtomicLong tail = new AtomicLong();
+    private final ReentrantLock consumerLock = new ReentrantLock();
+
+    // guarded by consumerLock
+    private long head;
+    private volatile Thread waitingConsumer;
+
+    SubmissionQueue(final int capacity) {
+        if (capacity < 1) {
+            throw new IllegalArgumentException("capacity must be greater than 0");
+        }
+
+        int size = 1;
+        while (size < capacity) {
+            size <<= 1;
+        }
+
+        this.mask = size - 1;
+        this.buffer = new AtomicReferenceArray<>(size);
+        this.sequences = new AtomicLongArray(size);
+        for (int i = 0; i < size; i++) {
+            sequences.set(i, i);
+        }
+    }
+
+    boolean offer(final E element) {
+        long position = tail.get();
+        int index;
+        while (true) {
+            index = (int) (position & mask);
+            final long difference = sequences.get(index) - position;
+            if (difference == 0) {
+                if (tail.compareAndSet(position, position + 1)) {
+                    break;
+                }
+                position = tail.get();
+            } else if (difference < 0) {
+                return false; // full
+            } else {
+                position = tail.get();
+            }
+        }
+
+        buffer.set(index, element);
+        sequences.set(index, position + 1);
+
+        final Thread consumer = waitingConsumer;
+        if (consumer != null) {
+            LockSupport.unpark(consumer);
+        }
+        return true;
+    }
+
+    boolean offer(final E element, final long timeout, final TimeUnit unit) throws InterruptedException {
+        final long deadline = System.nanoTime() + unit.toNanos(timeout);
+        while (!offer(element)) {
+            final long remaining = deadline - System.nanoTime();
+            if (remaining <= 0) {
+                return false;
+            }
+
+            LockSupport.parkNanos(this, Math.min(remaining, FULL_BACKOFF_NANOS));
+            if (Thread.interrupted()) {
+                throw new InterruptedException();
+            }
+        }
+        return true;
+    }
+
+    E poll() {
+        if (!consumerLock.tryLock()) {
+            return null;
+        }
+        try {
+            return take();
+        } finally {
+            consumerLock.unlock();
+        }
+    }
+
+    E poll(final long timeout, final TimeUnit unit) throws InterruptedException {
+        final long deadline = System.nanoTime() + unit.toNanos(timeout);
+        if (!consumerLock.tryLock(timeout, unit)) {
+            return null;
+        }
+        try {
+            E element = take();
+            if (element != null) {
+                return element;
+            }
+
+            waitingConsumer = Thread.currentThread();
+            try {
+                // re-check after registering as the waiter so that a concurrent publish cannot be missed
+                while ((element = take()) == null) {
+                    final long remaining = deadline - System.nanoTime();
+                    if (remaining <= 0) {
+                        return null;
+                    }
+
+                    LockSupport.parkNanos(this, remaining);
+                    if (Thread.interrupted()) {
+                        throw new InterruptedException();
+                    }
+                }
+                return element;
+            } finally {
+                waitingConsumer = null;
+            }
+        } finally {
+            consumerLock.unlock();
+        }
+    }
+
+    private E take() {
+        final int index = (int) (head & mask);
+        if (sequences.get(index) != head + 1) {
+            return null; // empty, or the claiming producer has yet to publish
+        }
+
+        final E element = buffer.get(index);
+        buffer.set(index, null);
+        sequences.set(index, head + mask + 1);
+        head++;
+        return element;
+    }
+}
@@ -1,45 +1,133 @@
 package dev.maynestream.ledgify.ledger.transaction;
 
 import dev.maynestream.ledgify.ledger.BookkeeperConfiguration;
+import dev.maynestream.ledgify.ledger.commit.AdaptiveLinger;
+import dev.maynestream.ledgify.ledger.commit.CheckpointStore;
 import dev.maynestream.ledgify.ledger.commit.CuratorLeaderFlag;
+import dev.maynestream.ledgify.ledger.commit.LeaderFlag;
 import dev.maynestream.ledgify.ledger.commit.Ledger;
 import dev.maynestream.ledgify.ledger.commit.Ledger.Entry;
 import dev.maynestream.ledgify.ledger.commit.Ledger.LedgerException;
 import dev.maynestream.ledgify.ledger.commit.LedgerAccessor;
 import dev.maynestream.ledgify.ledger.commit.LedgerCollectionStore;
 import dev.maynestream.ledgify.ledger.commit.LedgerCommitter;
+import dev.maynestream.ledgify.ledger.commit.LedgerHandleCache;
+import dev.maynestream.ledgify.ledger.commit.LedgerMetrics;
+import dev.maynestream.ledgify.ledger.commit.LedgerPasswordStore;
+import dev.maynestream.ledgify.ledger.commit.SegmentKeys;
+import dev.maynestream.ledgify.ledger.commit.SegmentStore;
+import dev.maynestream.ledgify.ledger.commit.StandbyLedgerPool;
 import dev.maynestream.ledgify.ledger.transaction.logging.TransactionLoggingContext;
 import dev.maynestream.ledgify.transaction.Transaction;
+import io.micrometer.core.instrument.Tags;
 import lombok.SneakyThrows;
 import org.apache.bookkeeper.client.BookKeeper;
 import org.apache.curator.framework.CuratorFramework;
 
+import java.nio.ByteBuffer;
+import java.time.Duration;
 import java.time.LocalDate;
 import java.util.UUID;
-import java.util.concurrent.atomic.AtomicReference;
 
 public class TransactionCommitter extends LedgerCommitter<Transaction> {
 
     private static final String DAILY_LEDGER_PATH_FORMAT = "%s/%s";
 
+    static final SegmentKeys<Transaction> SEGMENT_KEYS = new SegmentKeys<>() {
+        @Override
+        public long committedAt(final Transaction transaction) {
+            return transaction.getCommittedAt();
+        }
+
+        @Override
+        public String key(final Transaction transaction) {
+            return transaction.getTransactionId();
+        }
+    };
+
     private final TransactionLog transactions;
     private final UUID accountId;
+    private final int groupCommitMaxEntries;
+    private final int groupCommitMaxBytes;
+    private final AdaptiveLinger linger;
+    private final boolean accountMetricTags;
+    private volatile Entry<Transaction> confirmedEntry;
+    private long lastCommittedAt;
+
+    public TransactionCommitter(final UUID uniqueId,
+                                final BookKeeper bookKeeper,
+                                final BookkeeperConfiguration bookkeeperConfiguration,
+                                final LedgerMetrics metrics,
+                                final CuratorFramework curator,
+                                final TransactionLog log,
+                                final UUID accountId,
+                                final LocalDate date) {
+        this(uniqueId, bookKeeper, bookkeeperConfiguration, metrics, null, curator, log, accountId, date);
+    }
 
     public TransactionCommitter(final UUID uniqueId,
                                 final BookKeeper bookKeeper,
                                 final BookkeeperConfiguration bookkeeperConfiguration,
+                                final LedgerMetrics metrics,
+                                final LedgerHandleCache readHandleCache,
                                 final CuratorFramework curator,
                                 final TransactionLog log,
                                 final UUID accountId,
                                 final LocalDate date) {
+        this(uniqueId, bookKeeper, bookkeeperConfiguration, metrics, readHandleCache, null, curator, log, accountId, date);
+    }
+
+    public TransactionCommitter(final UUID uniqueId,
+                                final BookKeeper bookKeeper,
+                                final BookkeeperConfiguration bookkeeperConfiguration,
+                                final LedgerMetrics metrics,
+                                final LedgerHandleCache readHandleCache,
+                                final StandbyLedgerPool standbyPool,
+                                final CuratorFramework curator,
+                                final TransactionLog log,
+                                final UUID accountId,
+                                final LocalDate date) {
+        this(uniqueId,
+             new LedgerAccessor(bookKeeper,
+                                bookkeeperConfiguration,
+                                metrics,
+                                accountId.toString().getBytes(),
+                                readHandleCache,
+                                standbyPool,
+                                new LedgerPasswordStore(curator, DAILY_LEDGER_PATH_FORMAT.formatted(accountId, date))),
+             curator,
+             new CuratorLeaderFlag(curator, accountId, uniqueId),
+             bookkeeperConfiguration,
+             metrics,
+             log,
+             accountId,
+             date);
+    }
+
+    TransactionCommitter(final UUID uniqueId,
+                         final LedgerAccessor accessor,
+                         final CuratorFramework curator,
+                         final LeaderFlag flag,
+                         final BookkeeperConfiguration bookkeeperConfiguration,
+                         final LedgerMetrics metrics,
+                         final TransactionLog log,
+                         final UUID accountId,
+                         final LocalDate date) {
         super(uniqueId,
-              new LedgerAccessor(bookKeeper, bookkeeperConfiguration, accountId.toString().getBytes()),
-              new LedgerCollectionStore(curator, DAILY_LEDGER_PATH_FORMAT.formatted(accountId, date)),
-              new CuratorLeaderFlag(curator, accountId, uniqueId),
-              t -> { },
+              accessor,
+              new LedgerCollectionStore(curator, DAILY_LEDGER_PATH_FORMAT.formatted(accountId, date), metrics),
+              new SegmentStore(curator, DAILY_LEDGER_PATH_FORMAT.formatted(accountId, date)),
+              SEGMENT_KEYS,
+              new CheckpointStore(curator, DAILY_LEDGER_PATH_FORMAT.formatted(accountId, date)),
+              flag,
+              log::recordCommitted,
               TransactionCommitter::parse);
         this.transactions = log;
         this.accountId = accountId;
+        this.groupCommitMaxEntries = bookkeeperConfiguration.getGroupCommitMaxEntries();
+        this.groupCommitMaxBytes = bookkeeperConfiguration.getGroupCommitMaxBytes();
+        this.linger = new AdaptiveLinger(Duration.ofNanos(bookkeeperConfiguration.getGroupCommitMaxLingerMicros() * 1000));
+        this.accountMetricTags = bookkeeperConfiguration.isMetricsAccountTags();
     }
 
     @Override
@@ -50,29 +138,98 @@ public class TransactionCommitter extends LedgerCommitter<Transaction> {
     }
 
     @Override
-    protected Entry<Transaction> attemptCommit(final Ledger ledger, Entry<Transaction> lastRecordedEntry) {
-        log.info("Attempting to commit transaction to ledger {}", ledger.getId());
-        final AtomicReference<Entry<Transaction>> committedEntry = new AtomicReference<>(lastRecordedEntry);
-        doCommit(ledger, committedEntry);
-        return committedEntry.get();
+    protected Entry<Transaction> attemptCommit(final Ledger ledger, final Entry<Transaction> lastRecordedEntry) {
+        log.info("Attempting to commit transactions to ledger {}", ledger.getId());
+        doCommit(ledger, lastRecordedEntry);
+        return lastConfirmedEntry(ledger, lastRecordedEntry);
     }
 
-    private void doCommit(final Ledger ledger, final AtomicReference<Entry<Transaction>> committedEntry) {
+    @Override
+    protected Tags metricTags() {
+        return accountMetricTags ? Tags.of("account", accountId.toString()) : Tags.empty();
+    }
+
+    @Override
+    protected Entry<byte[]> checkpoint() {
+        return transactions.checkpoint();
+    }
+
+    @Override
+    protected void restore(final Entry<byte[]> checkpoint) {
+        transactions.restore(checkpoint);
+    }
+
+    @Override
+    protected void caughtUp(final Entry<Transaction> lastRecordedEntry) {
+        transactions.caughtUp();
+
+        final TransactionLog.Backfill backfill = transactions.backfill();
+        if (backfill != null) {
+            Thread.ofVirtual().name("transaction-backfill-" + accountId).start(() -> backfill(backfill));
+        }
+    }
+
+    /*
+     * A log restored from a checkpoint holds only the commits after it, so those before it are read back in the
+     * background for the day's history to be served from memory again.
+     */
+    private void backfill(final TransactionLog.Backfill backfill) {
+        try (final var ignore = TransactionLoggingContext.account(accountId)) {
+            log.info("Backfilling commits to checkpoint at {}", backfill.until());
+            readUntil(backfill.until(), backfill);
+            backfill.complete();
+        } catch (Exception e) {
+            log.warn("Failed to backfill commits to checkpoint at {}", backfill.until(), e);
+            backfill.abandon();
+        }
+    }
+
+    private void doCommit(final Ledger ledger, final Entry<Transaction> lastRecordedEntry) {
+        final Throwable appendFailure = ledger.getAppendFailure();
+        if (appendFailure != null) {
+            log.warn("Abandoning ledger {} after failed append", ledger.getId(), appendFailure);
+            throw new LedgerException(lastConfirmedEntry(ledger, lastRecordedEntry), new IllegalStateException(appendFailure));
+        }
+
         try {
-            transactions.awaitCommit(commitAttempt -> {
-                final Entry<Transaction> entry = ledger.addEntry(commitAttempt.transaction(), Transaction::toByteArray);
-                committedEntry.set(entry);
-                commitAttempt.entryId().set(entry.entryId());
-                log.info("Committed transaction as entry {}", entry.entryId());
+            transactions.awaitCommits(groupCommitMaxEntries, groupCommitMaxBytes, linger.lingerNanos(), commitAttempts -> {
+                final long committedAt = nextCommittedAt();
+                // timed from issue, so that waiting on the pipeline under backpressure does not lengthen the linger
+                return ledger.addEntriesAsync(commitAttempts.stream()
+                                                            .map(a -> a.transaction().toBuilder().setCommittedAt(committedAt).build())
+                                                            .toList(),
+                                              Transaction::toByteArray,
+                                              linger::record)
+                             .thenApply(entries -> {
+                                 committed(entries);
+                                 confirmedEntry = entries.getLast();
+                                 log.info("Committed {} transaction(s) as entry {}", entries.size(), confirmedEntry.entryId());
+                                 return entries;
+                             });
             });
         } catch (Exception e) {
             log.warn("Failed to commit transaction", e);
-            throw new LedgerException(committedEntry.get(), e);
+            throw new LedgerException(lastConfirmedEntry(ledger, lastRecordedEntry), e);
         }
     }
 
+    /*
+     * Commit times never go backwards within a leadership, so that they are ordered within each ledger and segment
+     * metadata can be used to seek by them.
+     */
+    private long nextCommittedAt() {
+        lastCommittedAt = Math.max(lastCommittedAt, System.currentTimeMillis());
+        return lastCommittedAt;
+    }
+
+    // appends complete asynchronously, so only entries confirmed on the current ledger advance the recorded position
+    private Entry<Transaction> lastConfirmedEntry(final Ledger ledger, final Entry<Transaction> lastRecordedEntry) {
+        final Entry<Transaction> entry = confirmedEntry;
+        return entry != null && entry.ledgerId() == ledger.getId() ? entry : lastRecordedEntry;
+    }
+
     @SneakyThrows
-    private static Transaction parse(byte[] bytes) {
-        return Transaction.parseFrom(bytes);
+    private static Transaction parse(ByteBuffer buffer) {
+        return Transaction.parseFrom(buffer);
     }
 }
@@ -2,42 +2,71 @@ package dev.maynestream.ledgify.ledger.transaction;
 
 import dev.maynestream.ledgify.ledger.BookkeeperConfiguration;
 import dev.maynestream.ledgify.ledger.commit.Ledger.Entry;
+import dev.maynestream.ledgify.ledger.commit.LedgerHandleCache;
+import dev.maynestream.ledgify.ledger.commit.LedgerMetrics;
+import dev.maynestream.ledgify.ledger.commit.StandbyLedgerPool;
 import dev.maynestream.ledgify.transaction.Transaction;
 import org.apache.bookkeeper.client.BookKeeper;
 import org.apache.curator.framework.CuratorFramework;
 import org.springframework.stereotype.Service;
 
 import java.time.LocalDate;
-import java.util.List;
 import java.util.UUID;
-import java.util.concurrent.CopyOnWriteArrayList;
 import java.util.function.Consumer;
 
 @Service
-public class TransactionCommitterFactory implements AutoCloseable {
-
-    private final List<TransactionCommitter> committers = new CopyOnWriteArrayList<>();
+public class TransactionCommitterFactory {
 
     private final BookKeeper bookkeeper;
     private final BookkeeperConfiguration bookkeeperConfiguration;
+    private final LedgerMetrics metrics;
+    private final LedgerHandleCache readHandleCache;
+    private final StandbyLedgerPool standbyPool;
     private final CuratorFramework curator;
 
     public TransactionCommitterFactory(final BookKeeper bookkeeper,
                                        final BookkeeperConfiguration bookkeeperConfiguration,
+                                       final LedgerMetrics metrics,
+                                       final LedgerHandleCache readHandleCache,
+                                       final StandbyLedgerPool standbyPool,
                                        final CuratorFramework curator) {
         this.bookkeeper = bookkeeper;
         this.bookkeeperConfiguration = bookkeeperConfiguration;
+        this.metrics = metrics;
+        this.readHandleCache = readHandleCache;
+        this.standbyPool = standbyPool;
         this.curator = curator;
     }
 
+    public TransactionLog createLog(final UUID accountId) {
+        return new TransactionLog(accountId,
+                                  bookkeeperConfiguration.getIdempotencyWindow(),
+                                  bookkeeperConfiguration.getCommitJournalMaxBytes(),
+                                  metrics);
+    }
+
+    TransactionLog createPartitionLog(final UUID partitionId) {
+        return new TransactionLog(partitionId,
+                                  bookkeeperConfiguration.getIdempotencyWindow(),
+                                  bookkeeperConfiguration.getCommitJournalMaxBytes(),
+                                  true,
+                                  metrics);
+    }
+
+    /**
+     * @return a committer owned by the caller, which is responsible for closing it
+     */
     public TransactionCommitter create(final TransactionLog log, final UUID accountId, final LocalDate date) {
-        return track(new TransactionCommitter(UUID.randomUUID(),
-                                              bookkeeper,
-                                              bookkeeperConfiguration,
-                                              curator,
-                                              log,
-                                              accountId,
-                                              date));
+        return new TransactionCommitter(UUID.randomUUID(),
+                                        bookkeeper,
+                                        bookkeeperConfiguration,
+                                        metrics,
+                                        readHandleCache,
+                                        standbyPool,
+                                        curator,
+                                        log,
+                                        accountId,
+                                        date);
     }
 
     public TransactionReader createReader(final UUID accountId,
@@ -46,24 +75,11 @@ public class TransactionCommitterFactory implements AutoCloseable {
         return new TransactionReader(UUID.randomUUID(),
                                      bookkeeper,
                                      bookkeeperConfiguration,
+                                     metrics,
+                                     readHandleCache,
                                      curator,
                                      accountId,
                                      date,
                                      consumer);
     }
-
-    @Override
-    public void close() {
-        for (TransactionCommitter committer : committers) {
-            try {
-                committer.close();
-            } catch (Exception ignored) {
-            }
-        }
-    }
-
-    private TransactionCommitter track(final TransactionCommitter committer) {
-        committers.add(committer);
-        return committer;
-    }
 }
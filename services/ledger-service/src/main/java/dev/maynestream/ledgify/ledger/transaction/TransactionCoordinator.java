@@ -3,25 +3,39 @@ package dev.maynestream.ledgify.ledger.transaction;
 import com.google.common.cache.CacheBuilder;
 import com.google.common.cache.CacheLoader;
 import com.google.common.cache.LoadingCache;
+import com.google.common.cache.RemovalCause;
 import com.google.common.cache.RemovalListener;
+import com.google.common.cache.RemovalListeners;
+import dev.maynestream.ledgify.ledger.BookkeeperConfiguration;
 import dev.maynestream.ledgify.ledger.LedgerCommitResponse;
+import dev.maynestream.ledgify.ledger.cluster.ClusterMembership;
+import dev.maynestream.ledgify.ledger.commit.Ledger.Entry;
 import dev.maynestream.ledgify.transaction.Transaction;
 import dev.maynestream.ledgify.transaction.TransactionCommitState;
+import dev.maynestream.ledgify.transaction.TransactionCommitStatus;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.GuavaCacheMetrics;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.stereotype.Service;
 
 import java.io.Closeable;
 import java.time.Duration;
 import java.time.LocalDate;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
 import java.util.Collection;
-import java.util.SortedSet;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Objects;
 import java.util.UUID;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ExecutionException;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
-import java.util.concurrent.TimeUnit;
-import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Consumer;
+import java.util.function.Function;
 import java.util.stream.Stream;
 
 @Slf4j
@@ -34,49 +48,387 @@ public class TransactionCoordinator implements Closeable {
         });
     }
 
-    public static final int DEFAULT_RESILIENCE_FACTOR = 3;
+    public static final int SUBSCRIBER_BUFFER_CAPACITY = 1024;
+    public static final int MAX_LIST_DAYS = 366;
+    public static final int LIST_DAY_BUFFER_CAPACITY = 256;
+    public static final Duration LIST_DAYS_TIMEOUT = Duration.ofSeconds(60);
 
-    private final LoadingCache<UUID, TransactionHandler> accountHandlers = CacheBuilder.newBuilder()
-//                                                                                       .expireAfterAccess(1, TimeUnit.SECONDS)
-                                                                                       .removalListener((RemovalListener<UUID, TransactionHandler>) notification -> {
-                                                                                           notification.getValue().close();
-                                                                                       })
-                                                                                       .build(new TransactionHandlerLoader());
+    private static final Comparator<Transaction> COMMIT_ORDER = Comparator.comparingLong(Transaction::getCommittedAt);
+    private static final Duration MAX_HIBERNATION_SWEEP = Duration.ofSeconds(30);
+
+    private final LoadingCache<UUID, TransactionHandler> accountHandlers;
+    private final Thread hibernation;
+
+    // closes removed handlers, each of which may await its committers' outstanding appends, away from the thread
+    // that removed them: a rebalance listener, the hibernation sweep or a request
+    private final ExecutorService handlerCloser = Executors.newVirtualThreadPerTaskExecutor();
+
+    private final ConcurrentHashMap<UUID, TransactionFeed> feeds = new ConcurrentHashMap<>();
 
     private final TransactionCommitterFactory committerFactory;
+    private final TransactionProjections projections;
+    private final ClusterMembership membership;
+    private final DayRangeMerge dayRangeMerge;
+    private final CommitAdmission admission;
+    private final int committersPerAccount;
 
-    public TransactionCoordinator(final TransactionCommitterFactory committerFactory) {
+    // maps accounts onto shared partition ledgers, or null if each account has its own
+    private final TransactionPartitioner partitioner;
+
+    public TransactionCoordinator(final TransactionCommitterFactory committerFactory,
+                                  final TransactionProjections projections,
+                                  final BookkeeperConfiguration bookkeeperConfiguration,
+                                  final ClusterMembership membership,
+                                  final MeterRegistry meterRegistry) {
         this.committerFactory = committerFactory;
+        this.projections = projections;
+        this.membership = membership;
+        this.dayRangeMerge = new DayRangeMerge(bookkeeperConfiguration.getRangeQueryParallelism(), LIST_DAY_BUFFER_CAPACITY);
+        this.admission = new CommitAdmission(bookkeeperConfiguration.getAdmissionMaxInFlight(),
+                                             bookkeeperConfiguration.getAdmissionAccountMaxInFlight());
+        this.committersPerAccount = bookkeeperConfiguration.getCommittersPerAccount();
+        this.partitioner = bookkeeperConfiguration.getPartitionCount() > 0
+                ? new TransactionPartitioner(bookkeeperConfiguration.getPartitionCount())
+                : null;
+
+        final Duration idle = Duration.ofSeconds(bookkeeperConfiguration.getHandlerIdleSecs());
+        final CacheBuilder<Object, Object> handlers = CacheBuilder.newBuilder().recordStats();
+        if (idle.isPositive()) {
+            handlers.expireAfterAccess(idle);
+        }
+        final RemovalListener<UUID, TransactionHandler> closeHandler = notification -> {
+            if (notification.getCause() == RemovalCause.EXPIRED) {
+                log.info("Hibernating idle handler for {}", notification.getKey());
+            }
+            notification.getValue().close();
+        };
+        this.accountHandlers = handlers.removalListener(RemovalListeners.asynchronous(closeHandler, handlerCloser))
+                                       .build(new TransactionHandlerLoader());
+        GuavaCacheMetrics.monitor(meterRegistry, accountHandlers, "ledgify.transaction.handlers");
+        Gauge.builder("ledgify.transaction.admission.limit", admission, CommitAdmission::limit)
+             .description("Commits this node currently admits in flight at once")
+             .register(meterRegistry);
+        Gauge.builder("ledgify.transaction.admission.in.flight", admission, CommitAdmission::inFlight)
+             .description("Commits admitted and not yet decided")
+             .register(meterRegistry);
+        this.hibernation = Thread.ofVirtual().name("handler-hibernation").unstarted(() -> hibernateIdle(idle));
+        if (idle.isPositive()) {
+            hibernation.start();
+        }
+
+        membership.onRebalance(this::releaseUnowned);
+    }
+
+    /**
+     * Ownership is decided by the key the account's ledgers are held under, so that every account of a partition is
+     * owned by the same node.
+     *
+     * @return the address of the node that owns the account, or null if it is owned by this node
+     */
+    public String remoteOwnerOf(final UUID accountId) {
+        return membership.remoteOwnerOf(ledgerKey(accountId));
     }
 
+    /**
+     * Commits that fail to be handled count against the node's limit as those that fail to commit do. Their latency is
+     * timed from when the account's handler is obtained, so that waking a hibernated account is not taken as
+     * congestion.
+     *
+     * @throws AdmissionRejectedException if this node or the account already has as many commits in flight as it may
+     */
     public LedgerCommitResponse routeTransaction(final UUID accountId, final Transaction transaction) throws InterruptedException, ExecutionException {
-        return accountHandlers.get(accountId).handle(transaction);
+        final CommitAdmission.Permit permit = admission.admit(accountId);
+        TransactionCommitStatus status = TransactionCommitStatus.FAILED;
+        long latencyNanos = 0;
+        try {
+            final TransactionHandler handler = accountHandlers.get(ledgerKey(accountId));
+            final long handledAt = System.nanoTime();
+            try {
+                final LedgerCommitResponse response = handler.handle(partitioner != null ? AccountTag.tag(accountId, transaction) : transaction);
+                status = response.getState().getStatus();
+                return response;
+            } finally {
+                latencyNanos = System.nanoTime() - handledAt;
+            }
+        } catch (InterruptedException | IllegalArgumentException e) {
+            status = null; // abandoned, or refused as invalid, neither of which says anything of the node's load
+            throw e;
+        } finally {
+            permit.release(status, latencyNanos);
+        }
+    }
+
+    public List<Transaction> listTransactions(final UUID accountId) throws InterruptedException, ExecutionException {
+        return listTransactions(accountId, 0, Long.MAX_VALUE);
     }
 
-    public SortedSet<Transaction> listTransactions(final UUID accountId) throws InterruptedException, ExecutionException {
-        final TransactionHandler handler = accountHandlers.getIfPresent(accountId);
+    /**
+     * Lists the account's transactions committed within the given range of epoch milliseconds, from inclusive and to
+     * exclusive. Where they are not all held in memory, a bounded range is read from only the ledgers and entries
+     * that segment metadata places within it.
+     */
+    public List<Transaction> listTransactions(final UUID accountId,
+                                              final long fromCommittedAt,
+                                              final long toCommittedAt) throws InterruptedException, ExecutionException {
+        final boolean bounded = fromCommittedAt > 0 || toCommittedAt < Long.MAX_VALUE;
+        final UUID ledgerKey = ledgerKey(accountId);
+        final TransactionHandler handler = accountHandlers.getIfPresent(ledgerKey);
 
-        if (handler != null) {
-            return handler.log.getCommits();
+        // in partitioned mode, the partition's handler indexes the positions of each account's transactions
+        if (handler != null && handler.log.hasCompleteHistory()) {
+            final List<Transaction> commits = partitioner == null ? handler.log.getCommits() : handler.log.getCommits(accountId);
+            return bounded ? committedBetween(commits, fromCommittedAt, toCommittedAt) : commits;
+        }
+
+        if (partitioner == null && !bounded) {
+            final List<Transaction> projected = projections.listTransactions(accountId);
+            if (projected != null) {
+                return projected;
+            }
         }
 
-        final ConcurrentHashMap<Transaction, Long> commits = new ConcurrentHashMap<>();
-        final TransactionReader reader = committerFactory.createReader(accountId,
+        final Function<Entry<Transaction>, Transaction> view = transactionView(accountId);
+        return bounded
+                ? readTransactions(ledgerKey, view, reader -> () -> reader.readBetween(fromCommittedAt, toCommittedAt))
+                : readTransactions(ledgerKey, view, reader -> reader);
+    }
+
+    /**
+     * Lists the account's transactions from the daily ledgers of the given range of dates, inclusive, that were
+     * committed within the given range of epoch milliseconds. Each day is read concurrently with the others, and
+     * their transactions are merged into commit order as they arrive, so a range costs about as much as its slowest
+     * day. Today is listed as by {@link #listTransactions(UUID, long, long)}.
+     */
+    public List<Transaction> listTransactions(final UUID accountId,
+                                              final LocalDate fromDate,
+                                              final LocalDate toDate,
+                                              final long fromCommittedAt,
+                                              final long toCommittedAt) throws Exception {
+        if (fromDate.isAfter(toDate)) {
+            throw new IllegalArgumentException("fromDate cannot be after toDate");
+        } else if (ChronoUnit.DAYS.between(fromDate, toDate) >= MAX_LIST_DAYS) {
+            throw new IllegalArgumentException("Cannot list more than %s days".formatted(MAX_LIST_DAYS));
+        }
+
+        final LocalDate today = LocalDate.now();
+        if (fromDate.equals(today) && toDate.equals(today)) {
+            return listTransactions(accountId, fromCommittedAt, toCommittedAt);
+        }
+
+        // no ledgers have yet been written for days after today
+        final List<DayRangeMerge.Day<Transaction>> days = new ArrayList<>();
+        for (LocalDate date = fromDate; !date.isAfter(toDate) && !date.isAfter(today); date = date.plusDays(1)) {
+            final LocalDate day = date;
+            days.add(day.equals(today)
+                             ? consumer -> listTransactions(accountId, fromCommittedAt, toCommittedAt).forEach(consumer)
+                             : consumer -> readDay(accountId, day, fromCommittedAt, toCommittedAt, consumer));
+        }
+
+        final List<Transaction> transactions = new ArrayList<>();
+        dayRangeMerge.merge(days, COMMIT_ORDER, LIST_DAYS_TIMEOUT, transactions::add);
+        return transactions;
+    }
+
+    private static List<Transaction> committedBetween(final List<Transaction> commits,
+                                                      final long fromCommittedAt,
+                                                      final long toCommittedAt) {
+        return commits.stream()
+                      .filter(t -> t.getCommittedAt() >= fromCommittedAt && t.getCommittedAt() < toCommittedAt)
+                      .toList();
+    }
+
+    private void readDay(final UUID accountId,
+                         final LocalDate date,
+                         final long fromCommittedAt,
+                         final long toCommittedAt,
+                         final Consumer<Transaction> consumer) {
+        final Function<Entry<Transaction>, Transaction> view = transactionView(accountId);
+        final TransactionReader reader = committerFactory.createReader(ledgerKey(accountId), date, e -> {
+            final Transaction transaction = view.apply(e);
+            if (transaction != null) {
+                consumer.accept(transaction);
+            }
+        });
+
+        if (fromCommittedAt > 0 || toCommittedAt < Long.MAX_VALUE) {
+            reader.readBetween(fromCommittedAt, toCommittedAt);
+        } else {
+            reader.run();
+        }
+    }
+
+    private List<Transaction> readTransactions(final UUID ledgerKey,
+                                               final Function<Entry<Transaction>, Transaction> view,
+                                               final Function<TransactionReader, Runnable> read) throws InterruptedException {
+        final List<Transaction> commits = new ArrayList<>();
+        final TransactionReader reader = committerFactory.createReader(ledgerKey,
                                                                        LocalDate.now(),
-                                                                       e -> commits.put(e.data(), e.entryId()));
-        final Thread readerThread = new Thread(reader);
-        readerThread.start();
+                                                                       e -> {
+                                                                           final Transaction transaction = view.apply(e);
+                                                                           if (transaction != null) {
+                                                                               synchronized (commits) {
+                                                                                   commits.add(transaction);
+                                                                               }
+                                                                           }
+                                                                       });
+        final Thread readerThread = Thread.ofVirtual().start(read.apply(reader));
         readerThread.join(Duration.ofSeconds(20));
-        return TransactionLog.sort(commits);
+        synchronized (commits) {
+            return List.copyOf(commits);
+        }
+    }
+
+    /**
+     * Streams the transactions committed after the given position in pages of at most pageSize, in ledger order.
+     * Pages are served from memory where the account's handler holds them, and are otherwise read from the ledger.
+     */
+    public void streamTransactions(final UUID accountId,
+                                   final Entry<Transaction> after,
+                                   final int pageSize,
+                                   final Consumer<List<Entry<Transaction>>> accountPageConsumer) throws Exception {
+        final UUID ledgerKey = ledgerKey(accountId);
+        final TransactionHandler handler = accountHandlers.getIfPresent(ledgerKey);
+
+        // pages of a partition are filtered to the account, but positions are still taken from the unfiltered page
+        final Consumer<List<Entry<Transaction>>> pageConsumer = partitioner == null ? accountPageConsumer : page -> {
+            final List<Entry<Transaction>> accountPage = page.stream()
+                                                             .map(e -> accountView(accountId, e))
+                                                             .filter(Objects::nonNull)
+                                                             .toList();
+            if (!accountPage.isEmpty()) {
+                accountPageConsumer.accept(accountPage);
+            }
+        };
+
+        Entry<Transaction> position = after;
+        if (handler != null) {
+            List<Entry<Transaction>> page;
+            while ((page = handler.log.getCommitsAfter(position, pageSize)) != null) {
+                if (page.isEmpty()) {
+                    return;
+                }
+                pageConsumer.accept(page);
+                position = page.getLast();
+            }
+            // the position is not (or is no longer) held in memory, so continue from the ledger
+        }
+
+        final List<Entry<Transaction>> page = new ArrayList<>(pageSize);
+        final TransactionReader reader = committerFactory.createReader(ledgerKey, LocalDate.now(), e -> {
+            page.add(e);
+            if (page.size() == pageSize) {
+                pageConsumer.accept(List.copyOf(page));
+                page.clear();
+            }
+        });
+        reader.readAfter(position);
+        if (!page.isEmpty()) {
+            pageConsumer.accept(List.copyOf(page));
+        }
+    }
+
+    /**
+     * Subscribes to transactions for the account as they are read from its ledgers. Subscribers to an account share a
+     * single feed, which is stopped once its last subscriber has closed. In partitioned mode the feed is shared by
+     * subscribers to every account of the partition, and each subscription sees only its own account's entries.
+     */
+    public TransactionFeed.Subscription subscribe(final UUID accountId) {
+        final AtomicReference<TransactionFeed.Subscription> subscription = new AtomicReference<>();
+        feeds.compute(ledgerKey(accountId), (id, feed) -> {
+            if (feed == null) {
+                feed = new TransactionFeed(id, committerFactory, this::stopFeed);
+                feed.start();
+            }
+            subscription.set(partitioner == null
+                                     ? feed.subscribe(SUBSCRIBER_BUFFER_CAPACITY, e -> e)
+                                     : feed.subscribe(SUBSCRIBER_BUFFER_CAPACITY, e -> accountView(accountId, e)));
+            return feed;
+        });
+        return subscription.get();
+    }
+
+    /*
+     * The key under which an account's ledgers, handler and feed are held: its own id, or that of its partition.
+     */
+    private UUID ledgerKey(final UUID accountId) {
+        return partitioner == null ? accountId : partitioner.partitionOf(accountId);
+    }
+
+    /**
+     * @return a view of the account's transactions as read from its ledgers, giving null for those of other accounts
+     */
+    private Function<Entry<Transaction>, Transaction> transactionView(final UUID accountId) {
+        return partitioner == null ? Entry::data : e -> {
+            final Entry<Transaction> entry = accountView(accountId, e);
+            return entry == null ? null : entry.data();
+        };
+    }
+
+    /**
+     * @return the entry untagged if it was committed to the account, otherwise null
+     */
+    private static Entry<Transaction> accountView(final UUID accountId, final Entry<Transaction> entry) {
+        if (!accountId.equals(AccountTag.accountOf(entry.data()))) {
+            return null;
+        }
+        return new Entry<>(entry.ledgerId(), entry.entryId(), entry.index(), AccountTag.untagged(entry.data()));
+    }
+
+    /*
+     * Stops committing for accounts that have moved to another node, leaving their leadership free for the new owner.
+     */
+    private void releaseUnowned() {
+        accountHandlers.asMap().keySet().removeIf(key -> {
+            if (membership.isLocal(key)) {
+                return false;
+            }
+            log.info("Releasing handler for {} - owned by {}", key, membership.remoteOwnerOf(key));
+            return true;
+        });
+    }
+
+    /*
+     * Expired handlers are otherwise only removed as the cache is used, which a node whose accounts have all gone
+     * idle may never do.
+     */
+    private void hibernateIdle(final Duration idle) {
+        final Duration sweep = idle.dividedBy(2).compareTo(MAX_HIBERNATION_SWEEP) < 0 ? idle.dividedBy(2) : MAX_HIBERNATION_SWEEP;
+        while (!Thread.currentThread().isInterrupted()) {
+            try {
+                Thread.sleep(sweep);
+                accountHandlers.cleanUp();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            } catch (Exception e) {
+                log.warn("Failed to hibernate idle handlers", e);
+            }
+        }
+    }
+
+    private void stopFeed(final TransactionFeed idleFeed) {
+        feeds.computeIfPresent(idleFeed.getAccountId(), (id, feed) -> {
+            if (feed == idleFeed && !feed.hasSubscribers()) {
+                feed.close();
+                return null;
+            }
+            return feed;
+        });
     }
 
     private TransactionHandler createHandler(final UUID uuid) {
-        return new TransactionHandler(uuid, LocalDate.now(), committerFactory, DEFAULT_RESILIENCE_FACTOR);
+        final TransactionLog log = partitioner == null
+                ? committerFactory.createLog(uuid)
+                : committerFactory.createPartitionLog(uuid);
+        return new TransactionHandler(log, LocalDate.now(), committerFactory, committersPerAccount);
     }
 
     @Override
     public void close() {
+        hibernation.interrupt();
+        feeds.values().forEach(TransactionFeed::close);
+        projections.close();
         accountHandlers.invalidateAll();
+        handlerCloser.close(); // awaits the closes
     }
 
     static class TransactionHandler implements Closeable {
@@ -85,27 +437,33 @@ public class TransactionCoordinator implements Closeable {
         private final TransactionLog log;
         private final Collection<TransactionCommitter> committers;
 
-        TransactionHandler(final UUID accountId,
+        TransactionHandler(final TransactionLog log,
                            final LocalDate date,
                            final TransactionCommitterFactory committerFactory,
                            final int resilienceFactor) {
-            this.log = new TransactionLog(accountId);
+            this.log = log;
 
             if (resilienceFactor < 1) {
                 throw new IllegalArgumentException("Resilience factor must be greater than 0");
             }
 
-            this.committers = Stream.generate(() -> committerFactory.create(log, accountId, date))
+            this.committers = Stream.generate(() -> committerFactory.create(log, log.getAccountId(), date))
                                     .limit(resilienceFactor)
                                     .toList();
 
             this.committers.forEach(executor::submit);
         }
 
-        synchronized LedgerCommitResponse handle(final Transaction transaction) throws InterruptedException {
-            final AtomicLong entryId = new AtomicLong(0);
-            final TransactionCommitState result = log.submit(new TransactionLog.CommitAttempt(transaction, entryId));
-            return LedgerCommitResponse.newBuilder().setEntryId(entryId.get()).setState(result).build();
+        LedgerCommitResponse handle(final Transaction transaction) throws InterruptedException {
+            final TransactionLog.CommitAttempt commitAttempt = TransactionLog.CommitAttempt.forTransaction(transaction);
+            final TransactionCommitState result = log.submit(commitAttempt);
+            final LedgerCommitResponse.Builder response = LedgerCommitResponse.newBuilder().setState(result);
+
+            final Entry<Transaction> entry = commitAttempt.committedEntry();
+            if (entry != null) {
+                response.setEntryId(entry.entryId()).setEntryIndex(entry.index());
+            }
+            return response.build();
         }
 
         @Override
@@ -0,0 +1,203 @@
+package dev.maynestream.ledgify.ledger.transaction;
+
+import dev.maynestream.ledgify.ledger.commit.Ledger.Entry;
+import dev.maynestream.ledgify.ledger.transaction.logging.TransactionLoggingContext;
+import dev.maynestream.ledgify.transaction.Transaction;
+import lombok.Getter;
+import lombok.extern.slf4j.Slf4j;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArraySet;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+import java.util.function.UnaryOperator;
+
+/**
+ * Tails an account's ledgers on behalf of any number of subscribers, so that each node reads an account's entries
+ * once regardless of how many clients are subscribed to it.
+ * <p>
+ * The feed publishes only entries confirmed after it starts, from the tail of the ledgers as they then stand; any
+ * earlier history a subscriber wants is read separately, once the feed has started, so that the two meet.
+ * <p>
+ * Each subscription has a bounded buffer. A subscriber that falls so far behind that its buffer fills is dropped,
+ * rather than being allowed to stall the feed for everyone else.
+ */
+@Slf4j
+public class TransactionFeed implements AutoCloseable {
+
+    @Getter
+    private final UUID accountId;
+    private final Set<Subscription> subscriptions = new CopyOnWriteArraySet<>();
+    private final Thread readerThread;
+    private final Consumer<TransactionFeed> onIdle;
+
+    // ledgers in the order they were read, so that positions in different ledgers can be compared
+    private final List<Long> ledgerOrder = new ArrayList<>();
+
+    // completed with the position the feed publishes after, once it has found the tail of the ledgers
+    private final CompletableFuture<Entry<Transaction>> started = new CompletableFuture<>();
+
+    TransactionFeed(final UUID accountId,
+                    final TransactionCommitterFactory committerFactory,
+                    final Consumer<TransactionFeed> onIdle) {
+        this.accountId = accountId;
+        this.onIdle = onIdle;
+        final TransactionReader reader = committerFactory.createReader(accountId, LocalDate.now(), this::publish);
+        this.readerThread = Thread.ofVirtual().name("transaction-feed-" + accountId).unstarted(() -> follow(reader));
+    }
+
+    void start() {
+        readerThread.start();
+    }
+
+    /**
+     * @param view applied to each entry before it is buffered for the subscriber, returning null to skip the entry
+     */
+    Subscription subscribe(final int bufferCapacity, final UnaryOperator<Entry<Transaction>> view) {
+        final Subscription subscription = new Subscription(bufferCapacity, view);
+        subscriptions.add(subscription);
+        return subscription;
+    }
+
+    boolean hasSubscribers() {
+        return !subscriptions.isEmpty();
+    }
+
+    @Override
+    public void close() {
+        readerThread.interrupt();
+        subscriptions.forEach(s -> s.cancel(false));
+    }
+
+    private void follow(final TransactionReader reader) {
+        try (final var ignore = TransactionLoggingContext.account(accountId)) {
+            final Entry<Transaction> tail = reader.tail();
+            if (tail.exists()) {
+                synchronized (ledgerOrder) {
+                    ledgerOrder.add(tail.ledgerId());
+                }
+            }
+            log.debug("Following transaction feed from {}", tail);
+            started.complete(tail);
+            reader.followFrom(tail);
+        } catch (InterruptedException e) {
+            started.completeExceptionally(e);
+            log.debug("Transaction feed stopped");
+        } catch (Exception e) {
+            started.completeExceptionally(e);
+            log.error("Transaction feed failed", e);
+            subscriptions.forEach(s -> s.cancel(false));
+        }
+    }
+
+    private void publish(final Entry<Transaction> entry) {
+        synchronized (ledgerOrder) {
+            if (ledgerOrder.isEmpty() || ledgerOrder.getLast() != entry.ledgerId()) {
+                ledgerOrder.add(entry.ledgerId());
+            }
+        }
+
+        for (Subscription subscription : subscriptions) {
+            final Entry<Transaction> viewed = subscription.view.apply(entry);
+            if (viewed != null && !subscription.buffer.offer(viewed)) {
+                log.warn("Dropping subscriber to transaction feed - buffer of {} entries full", subscription.capacity);
+                subscription.cancel(true);
+            }
+        }
+    }
+
+    /**
+     * @return true if the entry follows the given position in ledger order
+     */
+    boolean isAfter(final Entry<?> entry, final Entry<?> position) {
+        if (entry.ledgerId() == position.ledgerId()) {
+            return entry.entryId() > position.entryId()
+                    || (entry.entryId() == position.entryId() && entry.index() > position.index());
+        }
+
+        // a position in a ledger the feed has yet to reach must follow everything the feed has published
+        synchronized (ledgerOrder) {
+            final int positionOrder = ledgerOrder.indexOf(position.ledgerId());
+            return positionOrder >= 0 && ledgerOrder.indexOf(entry.ledgerId()) > positionOrder;
+        }
+    }
+
+    public class Subscription implements AutoCloseable {
+        private final int capacity;
+        private final BlockingQueue<Entry<Transaction>> buffer;
+        private final UnaryOperator<Entry<Transaction>> view;
+        private volatile boolean cancelled;
+        private volatile boolean overflowed;
+
+        private Subscription(final int capacity, final UnaryOperator<Entry<Transaction>> view) {
+            this.capacity = capacity;
+            this.buffer = new ArrayBlockingQueue<>(capacity);
+            this.view = view;
+        }
+
+        /**
+         * Awaits the next entry, then takes any others immediately available, up to the given maximum.
+         *
+         * @return the entries taken, or an empty list if none arrived within the timeout or the subscription ended
+         */
+        public List<Entry<Transaction>> poll(final int max, final long timeout, final TimeUnit unit) throws InterruptedException {
+            final List<Entry<Transaction>> entries = new ArrayList<>();
+            if (cancelled) {
+                return entries;
+            }
+
+            final Entry<Transaction> entry = buffer.poll(timeout, unit);
+            if (entry != null && !cancelled) {
+                entries.add(entry);
+                buffer.drainTo(entries, max - 1);
+            }
+            return entries;
+        }
+
+        /**
+         * Awaits the feed finding the tail of the ledgers, before which history read by the subscriber might end short
+         * of the first entry the feed publishes.
+         *
+         * @return the position the feed publishes after
+         */
+        public Entry<Transaction> awaitStarted(final long timeout, final TimeUnit unit) throws Exception {
+            return started.get(timeout, unit);
+        }
+
+        public boolean isAfter(final Entry<?> entry, final Entry<?> position) {
+            return TransactionFeed.this.isAfter(entry, position);
+        }
+
+        public boolean isActive() {
+            return !cancelled;
+        }
+
+        /**
+         * @return true if the subscription was dropped for falling behind the feed
+         */
+        public boolean isOverflowed() {
+            return overflowed;
+        }
+
+        @Override
+        public void close() {
+            cancel(false);
+        }
+
+        private void cancel(final boolean overflow) {
+            overflowed |= overflow;
+            cancelled = true;
+            buffer.clear();
+            if (subscriptions.remove(this) && subscriptions.isEmpty()) {
+                onIdle.accept(TransactionFeed.this);
+            }
+        }
+    }
+}
@@ -1,22 +1,30 @@
 package dev.maynestream.ledgify.ledger.transaction;
 
+import dev.maynestream.ledgify.ledger.commit.Ledger.Entry;
+import dev.maynestream.ledgify.ledger.commit.LedgerMetrics;
 import dev.maynestream.ledgify.ledger.transaction.logging.TransactionLoggingContext;
 import dev.maynestream.ledgify.transaction.Transaction;
 import dev.maynestream.ledgify.transaction.TransactionCommitState;
 import dev.maynestream.ledgify.transaction.TransactionCommitStatus;
+import io.micrometer.core.instrument.Tags;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
 import lombok.Getter;
 import lombok.extern.slf4j.Slf4j;
 
-import java.util.Comparator;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
 import java.util.Objects;
-import java.util.SortedSet;
-import java.util.TreeSet;
 import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.ConcurrentHashMap;
-import java.util.concurrent.CountDownLatch;
-import java.util.concurrent.SynchronousQueue;
+import java.util.concurrent.ExecutionException;
 import java.util.concurrent.TimeUnit;
-import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
 
 import static dev.maynestream.ledgify.transaction.TransactionCommitStatus.COMPLETED;
 import static dev.maynestream.ledgify.transaction.TransactionCommitStatus.FAILED;
@@ -27,21 +35,134 @@ public class TransactionLog {
     public static final int SUBMIT_TRANSACTION_TIMEOUT_SECS = 5;
     public static final int COMMIT_TRANSACTION_TIMEOUT_SECS = 10;
     public static final int AWAIT_TRANSACTION_TIMEOUT_SECS = 1;
+    public static final int SUBMISSION_QUEUE_CAPACITY = 1024;
+    public static final int DEFAULT_IDEMPOTENCY_WINDOW = 100_000;
+    public static final long DEFAULT_JOURNAL_MAX_BYTES = 64L * 1024 * 1024;
 
-    private final SynchronousQueue<CommitAttempt> submitted = new SynchronousQueue<>(true);
-    private final CountDownLatch latch = new CountDownLatch(1);
+    private final SubmissionQueue<CommitAttempt> submitted = new SubmissionQueue<>(SUBMISSION_QUEUE_CAPACITY);
 
-    private final ConcurrentHashMap<Transaction, Long> commits = new ConcurrentHashMap<>();
+    private final Timer submitWait;
+    private final Timer commitHandoff;
+
+    private final long journalMaxBytes;
+    private volatile CommitJournal journal;
+
+    // attempts claimed by a committer but not yet completed, so that retries can follow the original
+    private final ConcurrentHashMap<UUID, CommitAttempt> inFlight = new ConcurrentHashMap<>();
+
+    // guarded by this
+    private final IdempotencyIndex idempotencyIndex;
+    private final Map<Long, IdempotencyIndex.Position> recordedPositions = new HashMap<>();
+    private IdempotencyIndex.Position lastRecordedPosition;
+
+    // set once a committer has consumed the ledgers as they stood, until when the journal may lack earlier commits
+    private volatile boolean caughtUp;
+
+    // the checkpoint the log was restored from until the commits preceding it are backfilled, otherwise null
+    private volatile IdempotencyIndex.Position resumedAt;
+    // guarded by this
+    private boolean backfilling;
+
+    // positions of each account's transactions when this log is shared by a partition of accounts, otherwise null
+    private volatile PartitionIndex partitionIndex;
 
     @Getter
     private final UUID accountId;
 
+    /**
+     * Creates a log whose meters are kept in a registry of its own, and so are not published.
+     */
     public TransactionLog(final UUID accountId) {
+        this(accountId, DEFAULT_IDEMPOTENCY_WINDOW, DEFAULT_JOURNAL_MAX_BYTES, new LedgerMetrics(new SimpleMeterRegistry()));
+    }
+
+    public TransactionLog(final UUID accountId,
+                          final int idempotencyWindow,
+                          final long journalMaxBytes,
+                          final LedgerMetrics metrics) {
+        this(accountId, idempotencyWindow, journalMaxBytes, false, metrics);
+    }
+
+    /**
+     * @param partitioned true if the log is shared by the accounts of a partition, in which case its id is that of the
+     *                    partition and each transaction must be tagged with the account it is committed to
+     */
+    TransactionLog(final UUID accountId,
+                   final int idempotencyWindow,
+                   final long journalMaxBytes,
+                   final boolean partitioned,
+                   final LedgerMetrics metrics) {
         this.accountId = Objects.requireNonNull(accountId, "accountId cannot be null");
+        this.submitWait = metrics.timer("ledgify.transaction.submit.wait",
+                                        "Time from submission to being claimed by a leader",
+                                        Tags.empty());
+        this.commitHandoff = metrics.timer("ledgify.transaction.commit.handoff",
+                                           "Time from being claimed by a leader to being durable",
+                                           Tags.empty());
+        this.idempotencyIndex = new IdempotencyIndex(idempotencyWindow);
+        this.journalMaxBytes = journalMaxBytes;
+        this.journal = new CommitJournal(journalMaxBytes);
+        this.partitionIndex = partitioned ? new PartitionIndex() : null;
+    }
+
+    public List<Transaction> getCommits() {
+        return journal.readAll().stream().map(Entry::data).toList();
+    }
+
+    /**
+     * @return the untagged commits of one account of a partitioned log, in ledger order
+     */
+    List<Transaction> getCommits(final UUID accountId) {
+        if (partitionIndex == null) {
+            throw new IllegalStateException("transaction log is not partitioned");
+        }
+
+        final List<Transaction> commits = new ArrayList<>();
+        for (IdempotencyIndex.Position position : partitionIndex.positions(accountId)) {
+            final List<Entry<Transaction>> entry = journal.read(position.ledgerId(), position.entryId(), position.index(), 1);
+            if (entry != null && !entry.isEmpty()) {
+                commits.add(AccountTag.untagged(entry.getFirst().data()));
+            }
+        }
+        return commits;
+    }
+
+    public boolean isPartitioned() {
+        return partitionIndex != null;
+    }
+
+    /**
+     * @return up to limit commits in ledger order following the given position, or null if the position is not held
+     * or the log has yet to catch up with its ledgers
+     */
+    public List<Entry<Transaction>> getCommitsAfter(final Entry<?> position, final int limit) {
+        if (!caughtUp) {
+            return null;
+        } else if (!position.exists()) {
+            final CommitJournal journal = this.journal;
+            return resumedAt == null && journal.isComplete() ? journal.readFirst(limit) : null;
+        }
+        return journal.read(position.ledgerId(), position.entryId(), position.index() + 1, limit);
+    }
+
+    /**
+     * @return false if older commits have been dropped from memory, or have yet to be replayed into it, in which case
+     * they must be read from the ledger
+     */
+    public boolean hasCompleteHistory() {
+        return caughtUp && resumedAt == null && journal.isComplete();
+    }
+
+    /**
+     * Marks the log as holding every commit made before its committer last caught up with its ledgers, whether by
+     * following them or by replaying them on taking over.
+     */
+    void caughtUp() {
+        caughtUp = true;
     }
 
-    public SortedSet<Transaction> getCommits() {
-        return sort(commits);
+    public long getMemoryUsage() {
+        return journal.memoryUsage();
     }
 
     TransactionCommitState submit(final CommitAttempt commitAttempt) throws InterruptedException {
@@ -50,22 +171,26 @@ public class TransactionLog {
         validateTransaction(transaction);
 
         try (final var ignore = TransactionLoggingContext.account(accountId).transaction(transaction.getTransactionId())) {
+            final IdempotencyIndex.Position position = idempotencyIndex.lookup(idempotencyKey(transaction));
+            if (position != null) {
+                log.info("Transaction already committed to ledger {} entry {}", position.ledgerId(), position.entryId());
+                commitAttempt.committed.complete(position.toEntry(transaction));
+                return state(transaction, COMPLETED, "Transaction already committed");
+            }
+
             try {
                 log.info("Submitting transaction...");
+                commitAttempt.submittedAt = System.nanoTime();
+                final long submitDeadline = commitAttempt.submittedAt + TimeUnit.SECONDS.toNanos(SUBMIT_TRANSACTION_TIMEOUT_SECS);
                 if (submitted.offer(commitAttempt, SUBMIT_TRANSACTION_TIMEOUT_SECS, TimeUnit.SECONDS)) {
                     log.info("Awaiting commit of submitted transaction...");
-                    if (latch.await(COMMIT_TRANSACTION_TIMEOUT_SECS, TimeUnit.SECONDS)) {
-                        log.info("Transaction committed");
-                        return state(transaction, COMPLETED, "Transaction successfully committed");
-                    } else {
-                        log.info("Commit timeout for transaction");
-                        return state(transaction, UNKNOWN, "Transaction took too long to commit");
-                    }
+                    return awaitCommitted(commitAttempt, submitDeadline);
                 } else {
-                    log.warn("Submit timeout for transaction");
-                    return state(transaction, FAILED, "Failed to submit transaction - no committers available");
+                    log.warn("Submit timeout for transaction - submission queue full");
+                    return state(transaction, FAILED, "Failed to submit transaction - submission queue full");
                 }
             } catch (InterruptedException e) {
+                commitAttempt.cancel();
                 log.warn("Submit interrupted for transaction");
                 throw e;
             } catch (Exception e) {
@@ -76,32 +201,253 @@ public class TransactionLog {
     }
 
     void awaitCommit(CommitAction consumer) throws Exception {
+        awaitCommits(1, Integer.MAX_VALUE, 0, commitAttempts -> {
+            return CompletableFuture.completedFuture(List.of(consumer.commit(commitAttempts.getFirst())));
+        });
+    }
+
+    void awaitCommits(final int maxCount,
+                      final int maxBytes,
+                      final long lingerNanos,
+                      final CommitBatchAction consumer) throws Exception {
         try (var ignoreAcc = TransactionLoggingContext.account(accountId)) {
-            log.debug("Awaiting transaction...");
-            final CommitAttempt commitAttempt = submitted.poll(AWAIT_TRANSACTION_TIMEOUT_SECS, TimeUnit.SECONDS);
+            log.debug("Awaiting transactions...");
+            final CommitAttempt commitAttempt = claim(AWAIT_TRANSACTION_TIMEOUT_SECS, TimeUnit.SECONDS);
 
             if (commitAttempt != null) {
-                validateTransaction(commitAttempt.transaction);
+                final List<CommitAttempt> batch = drain(commitAttempt, maxCount, maxBytes, lingerNanos);
+                if (batch.isEmpty()) {
+                    return;
+                }
+
+                log.debug("Committing batch of {} transaction(s)", batch.size());
+                final CompletableFuture<List<Entry<Transaction>>> committed;
+                try {
+                    committed = consumer.commit(batch);
+                } catch (Exception e) {
+                    fail(batch, e);
+                    throw e;
+                }
+
+                // completions arrive in commit order, so recording on completion preserves ordering
+                committed.whenComplete((entries, e) -> {
+                    if (e != null) {
+                        log.warn("Failed to commit batch of {} transaction(s)", batch.size(), e);
+                        fail(batch, e);
+                    } else {
+                        complete(batch, entries);
+                    }
+                });
+            }
+        }
+    }
 
-                try (var ignoreTx = ignoreAcc.transaction(commitAttempt.transaction.getTransactionId())) {
-                    consumer.commit(commitAttempt);
-                    commits.put(commitAttempt.transaction, System.currentTimeMillis());
-                    latch.countDown();
+    /**
+     * Records an entry read back from the ledger, such as during replay by a new leader. Entries at or before the
+     * last position recorded for their ledger are ignored, so entries may be recorded more than once.
+     *
+     * @return true if the entry had not previously been recorded
+     */
+    synchronized boolean recordCommitted(final Entry<Transaction> entry) {
+        final IdempotencyIndex.Position recorded = recordedPositions.get(entry.ledgerId());
+        if (recorded != null && !new IdempotencyIndex.Position(entry.ledgerId(), entry.entryId(), entry.index())
+                .isAfter(recorded.entryId(), recorded.index())) {
+            return false;
+        }
+
+        lastRecordedPosition = new IdempotencyIndex.Position(entry.ledgerId(), entry.entryId(), entry.index());
+        recordedPositions.put(entry.ledgerId(), lastRecordedPosition);
+        journal.append(entry);
+        idempotencyIndex.record(idempotencyKey(entry.data()), entry.ledgerId(), entry.entryId(), entry.index());
+        if (partitionIndex != null) {
+            partitionIndex.record(entry);
+        }
+        return true;
+    }
+
+    /**
+     * @return the idempotency window as of the last recorded entry, positioned at that entry, or null if nothing has
+     * been recorded
+     */
+    synchronized Entry<byte[]> checkpoint() {
+        return lastRecordedPosition == null ? null : lastRecordedPosition.toEntry(idempotencyIndex.toBytes());
+    }
+
+    /**
+     * Restores the idempotency window from a checkpoint, before any entry following it is recorded. Commits before the
+     * checkpoint are not held until they are backfilled, so must meanwhile be read from the ledger.
+     * <p>
+     * Each of the log's committers restores the checkpoint it finds on starting, so only the first is taken: once the
+     * log holds state, a later checkpoint would move it backwards and an earlier one would add nothing.
+     */
+    synchronized void restore(final Entry<byte[]> checkpoint) {
+        if (lastRecordedPosition != null) {
+            log.debug("Not restoring checkpoint at ledger {} entry {} - log already holds state to ledger {} entry {}",
+                      checkpoint.ledgerId(), checkpoint.entryId(), lastRecordedPosition.ledgerId(), lastRecordedPosition.entryId());
+            return;
+        }
+
+        idempotencyIndex.restore(checkpoint.data());
+        lastRecordedPosition = new IdempotencyIndex.Position(checkpoint.ledgerId(), checkpoint.entryId(), checkpoint.index());
+        recordedPositions.put(checkpoint.ledgerId(), lastRecordedPosition);
+        resumedAt = lastRecordedPosition;
+    }
+
+    /**
+     * Claims the backfill of the commits preceding the checkpoint the log was restored from, after which the log again
+     * holds the day's complete history.
+     *
+     * @return the backfill to hand every commit up to and including the checkpoint, or null if the log holds them or
+     * another committer has claimed it
+     */
+    synchronized Backfill backfill() {
+        if (resumedAt == null || backfilling) {
+            return null;
+        }
+        backfilling = true;
+        return new Backfill(resumedAt);
+    }
+
+    /*
+     * A transfer between two accounts of the same partition is committed to it once for each account, so the
+     * account is part of the key in a partitioned log.
+     */
+    private UUID idempotencyKey(final Transaction transaction) {
+        if (partitionIndex == null) {
+            return IdempotencyIndex.key(transaction.getTransactionId());
+        }
+        return IdempotencyIndex.key(transaction.getTransactionId(), AccountTag.accountOf(transaction));
+    }
+
+    private TransactionCommitState awaitCommitted(final CommitAttempt commitAttempt,
+                                                  final long submitDeadline) throws InterruptedException {
+        final Transaction transaction = commitAttempt.transaction;
+        try {
+            try {
+                commitAttempt.committed.get(submitDeadline - System.nanoTime(), TimeUnit.NANOSECONDS);
+            } catch (TimeoutException e) {
+                if (commitAttempt.cancel()) {
+                    log.warn("Submit timeout for transaction");
+                    return state(transaction, FAILED, "Failed to submit transaction - no committers available");
                 }
+
+                // a committer has claimed the attempt, so allow it the full commit timeout from that point
+                final long commitDeadline = commitAttempt.claimedAt + TimeUnit.SECONDS.toNanos(COMMIT_TRANSACTION_TIMEOUT_SECS);
+                commitAttempt.committed.get(commitDeadline - System.nanoTime(), TimeUnit.NANOSECONDS);
+            }
+
+            log.info("Transaction committed");
+            return state(transaction, COMPLETED, "Transaction successfully committed");
+        } catch (TimeoutException e) {
+            log.info("Commit timeout for transaction");
+            return state(transaction, UNKNOWN, "Transaction took too long to commit");
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof IllegalArgumentException iae) {
+                throw iae;
+            }
+            log.warn("Commit failed for transaction", e.getCause());
+            return state(transaction, UNKNOWN, "Transaction commit could not be confirmed");
+        }
+    }
+
+    private CommitAttempt claim(final long timeout, final TimeUnit unit) throws InterruptedException {
+        final long deadline = System.nanoTime() + unit.toNanos(timeout);
+        CommitAttempt commitAttempt;
+        do {
+            commitAttempt = submitted.poll(deadline - System.nanoTime(), TimeUnit.NANOSECONDS);
+        } while (commitAttempt != null && !commitAttempt.claim(submitWait));
+        return commitAttempt;
+    }
+
+    /*
+     * The byte limit is soft: draining stops once it has been reached, as a claimed attempt cannot be returned.
+     */
+    private List<CommitAttempt> drain(final CommitAttempt first,
+                                      final int maxCount,
+                                      final int maxBytes,
+                                      final long lingerNanos) throws InterruptedException {
+        final List<CommitAttempt> batch = new ArrayList<>();
+
+        final long deadline = System.nanoTime() + lingerNanos;
+        int bytes = 0;
+        CommitAttempt next = first;
+        while (next != null) {
+            final String transactionId = next.transaction.getTransactionId();
+            final UUID key = idempotencyKey(next.transaction);
+            final IdempotencyIndex.Position position = idempotencyIndex.lookup(key);
+            final CommitAttempt original = position == null ? inFlight.putIfAbsent(key, next) : null;
+            if (position != null) {
+                log.info("Transaction {} already committed to ledger {} entry {}", transactionId, position.ledgerId(), position.entryId());
+                next.committed.complete(position.toEntry(next.transaction));
+            } else if (original != null) {
+                log.info("Transaction {} already being committed", transactionId);
+                follow(next, original);
+            } else {
+                batch.add(next);
+                bytes += next.transaction.getSerializedSize();
             }
+
+            if (batch.size() >= maxCount || bytes >= maxBytes) {
+                break;
+            }
+
+            final long remaining = deadline - System.nanoTime();
+            next = remaining > 0 ? claim(remaining, TimeUnit.NANOSECONDS) : claimNow();
+        }
+
+        return batch;
+    }
+
+    private CommitAttempt claimNow() {
+        CommitAttempt commitAttempt;
+        do {
+            commitAttempt = submitted.poll();
+        } while (commitAttempt != null && !commitAttempt.claim(submitWait));
+        return commitAttempt;
+    }
+
+    private void complete(final List<CommitAttempt> batch, final List<Entry<Transaction>> entries) {
+        for (int i = 0; i < batch.size(); i++) {
+            final CommitAttempt attempt = batch.get(i);
+            final Entry<Transaction> entry = entries.get(i);
+            // the entry holds the transaction as committed, stamped with its commit time
+            recordCommitted(entry);
+            inFlight.remove(idempotencyKey(attempt.transaction), attempt);
+            commitHandoff.record(System.nanoTime() - attempt.claimedAt, TimeUnit.NANOSECONDS);
+            attempt.committed.complete(entry);
+        }
+    }
+
+    private void fail(final List<CommitAttempt> batch, final Throwable cause) {
+        for (CommitAttempt attempt : batch) {
+            inFlight.remove(idempotencyKey(attempt.transaction), attempt);
+            attempt.committed.completeExceptionally(cause);
         }
     }
 
+    private static void follow(final CommitAttempt duplicate, final CommitAttempt original) {
+        original.committed.whenComplete((entry, e) -> {
+            if (e != null) {
+                duplicate.committed.completeExceptionally(e);
+            } else {
+                duplicate.committed.complete(new Entry<>(entry.ledgerId(), entry.entryId(), entry.index(), duplicate.transaction));
+            }
+        });
+    }
+
     private void validateTransaction(final Transaction transaction) {
         if (transaction == null) {
             throw new IllegalArgumentException("transaction cannot be null");
-        } else if (!accountId.equals(UUID.fromString(transaction.getDetails()
-                                                                .getDebitAccountId()))
-                && !accountId.equals(UUID.fromString(transaction.getDetails()
-                                                                .getCreditAccountId()))) {
+        }
+
+        final UUID account = partitionIndex == null ? accountId : AccountTag.accountOf(transaction);
+        if (account == null) {
+            throw new IllegalArgumentException("transaction submitted to partition without account");
+        } else if (!account.equals(UUID.fromString(transaction.getDetails()
+                                                              .getDebitAccountId()))
+                && !account.equals(UUID.fromString(transaction.getDetails()
+                                                              .getCreditAccountId()))) {
             throw new IllegalArgumentException("transaction submitted for incorrect account");
-        } else if (commits.keySet().stream().anyMatch(t -> t.getTransactionId().equals(transaction.getTransactionId()))) {
-            throw new IllegalArgumentException("transaction has already been submitted");
         }
     }
 
@@ -117,18 +463,117 @@ public class TransactionLog {
     }
 
     interface CommitAction {
-        void commit(CommitAttempt commitAttempt) throws Exception;
+        Entry<Transaction> commit(CommitAttempt commitAttempt) throws Exception;
     }
 
-    public record CommitAttempt(Transaction transaction, AtomicLong entryId) {
-        static CommitAttempt forTransaction(final Transaction transaction) {
-            return new CommitAttempt(transaction, new AtomicLong(0));
+    interface CommitBatchAction {
+        CompletableFuture<List<Entry<Transaction>>> commit(List<CommitAttempt> commitAttempts) throws Exception;
+    }
+
+    /**
+     * Gathers the commits preceding a restored checkpoint into a journal of their own, which the log's current one is
+     * then appended to and replaced by.
+     */
+    final class Backfill implements Consumer<Entry<Transaction>> {
+        private final IdempotencyIndex.Position until;
+        private final CommitJournal backfilled = new CommitJournal(journalMaxBytes);
+        private final PartitionIndex backfilledPositions = partitionIndex == null ? null : new PartitionIndex();
+
+        private Backfill(final IdempotencyIndex.Position until) {
+            this.until = until;
+        }
+
+        /**
+         * @return the position of the restored checkpoint, the last commit to backfill
+         */
+        Entry<Void> until() {
+            return until.toEntry(null);
+        }
+
+        @Override
+        public void accept(final Entry<Transaction> entry) {
+            backfilled.append(entry);
+            if (backfilledPositions != null) {
+                backfilledPositions.record(entry);
+            }
+        }
+
+        void complete() {
+            synchronized (TransactionLog.this) {
+                // commits dropped since the restore cannot be recovered, so neither journal holds the complete history
+                if (!journal.isComplete()) {
+                    log.info("Not completing backfill - later commits have since been dropped from memory");
+                    return;
+                }
+                journal.readAll().forEach(this);
+                journal = backfilled;
+                partitionIndex = backfilledPositions;
+                resumedAt = null;
+                backfilling = false;
+            }
+        }
+
+        void abandon() {
+            synchronized (TransactionLog.this) {
+                backfilling = false;
+            }
         }
     }
 
-    public static SortedSet<Transaction> sort(final ConcurrentHashMap<Transaction, Long> commits) {
-        final SortedSet<Transaction> transactions = new TreeSet<>(Comparator.comparing(commits::get));
-        transactions.addAll(commits.keySet());
-        return transactions;
+    /**
+     * A submitted transaction awaiting commit. Each attempt is claimed by at most one committer, or cancelled by its
+     * submitter if no committer claims it in time, and is completed with its own position once durable.
+     */
+    public static final class CommitAttempt {
+        private static final int QUEUED = 0;
+        private static final int CLAIMED = 1;
+        private static final int CANCELLED = 2;
+
+        private final Transaction transaction;
+        private final CompletableFuture<Entry<Transaction>> committed = new CompletableFuture<>();
+        private final AtomicInteger state = new AtomicInteger(QUEUED);
+        private volatile long submittedAt;
+        private volatile long claimedAt;
+
+        private CommitAttempt(final Transaction transaction) {
+            this.transaction = transaction;
+        }
+
+        static CommitAttempt forTransaction(final Transaction transaction) {
+            return new CommitAttempt(transaction);
+        }
+
+        public Transaction transaction() {
+            return transaction;
+        }
+
+        public CompletableFuture<Entry<Transaction>> committed() {
+            return committed;
+        }
+
+        /**
+         * @return the committed entry, or null if the attempt has not (yet) been successfully committed
+         */
+        public Entry<Transaction> committedEntry() {
+            return committed.isDone() && !committed.isCompletedExceptionally() ? committed.join() : null;
+        }
+
+        /**
+         * @param submitWait told how long the attempt waited from submission to being claimed
+         */
+        private boolean claim(final Timer submitWait) {
+            claimedAt = System.nanoTime();
+            if (!state.compareAndSet(QUEUED, CLAIMED)) {
+                return false;
+            }
+            if (submittedAt != 0) {
+                submitWait.record(claimedAt - submittedAt, TimeUnit.NANOSECONDS);
+            }
+            return true;
+        }
+
+        private boolean cancel() {
+            return state.compareAndSet(QUEUED, CANCELLED);
+        }
     }
 }
@@ -0,0 +1,45 @@
+package dev.maynestream.ledgify.ledger.transaction;
+
+import com.google.common.hash.HashFunction;
+import com.google.common.hash.Hashing;
+
+import java.nio.charset.StandardCharsets;
+import java.util.UUID;
+
+/**
+ * Maps accounts onto a fixed number of partitions, each of which has a single leader, ledger collection and stream
+ * of ledgers shared by every account hashed to it.
+ * <p>
+ * Partition ids embed the partition count, so changing it starts a fresh set of partitions rather than reading
+ * another layout's ledgers under the wrong accounts.
+ */
+final class TransactionPartitioner {
+    private static final HashFunction HASH = Hashing.murmur3_128();
+
+    private final int partitionCount;
+
+    TransactionPartitioner(final int partitionCount) {
+        if (partitionCount < 1) {
+            throw new IllegalArgumentException("partitionCount must be greater than 0");
+        }
+        this.partitionCount = partitionCount;
+    }
+
+    UUID partitionOf(final UUID accountId) {
+        final int partition = Hashing.consistentHash(HASH.newHasher()
+                                                         .putLong(accountId.getMostSignificantBits())
+                                                         .putLong(accountId.getLeastSignificantBits())
+                                                         .hash(),
+                                                     partitionCount);
+        return partitionId(partition);
+    }
+
+    UUID partitionId(final int partition) {
+        return UUID.nameUUIDFromBytes("partition-%d-of-%d".formatted(partition, partitionCount)
+                                                          .getBytes(StandardCharsets.UTF_8));
+    }
+
+    int partitionCount() {
+        return partitionCount;
+    }
+}
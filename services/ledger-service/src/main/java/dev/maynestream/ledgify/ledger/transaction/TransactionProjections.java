@@ -0,0 +1,253 @@
+package dev.maynestream.ledgify.ledger.transaction;
+
+import dev.maynestream.ledgify.ledger.BookkeeperConfiguration;
+import dev.maynestream.ledgify.ledger.commit.Ledger.Entry;
+import dev.maynestream.ledgify.ledger.transaction.logging.TransactionLoggingContext;
+import dev.maynestream.ledgify.transaction.Transaction;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Service;
+
+import java.time.Duration;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * Node-wide, in-memory views of the day's transactions for accounts that are listed without being committed to on
+ * this node.
+ * <p>
+ * Each view is kept current by a single following reader, so concurrent requests for an account share one load and
+ * later requests are served from memory. Views are evicted least recently used first once their combined memory,
+ * including the transactions they have materialised, exceeds the configured budget. Views not listed for a while,
+ * and those of past days, stop following and are dropped.
+ */
+@Slf4j
+@Service
+public class TransactionProjections implements AutoCloseable {
+    private static final Duration CATCH_UP_TIMEOUT = Duration.ofSeconds(20);
+    private static final Duration MAX_EXPIRY_SWEEP = Duration.ofSeconds(30);
+    // approximate cost of a parsed transaction beyond its serialized size, including its slot in a snapshot
+    private static final int TRANSACTION_OVERHEAD_BYTES = 64;
+
+    private final TransactionCommitterFactory committerFactory;
+    private final long maxBytes;
+    private final long journalMaxBytes;
+    private final Duration idle;
+    private final Thread expiry;
+
+    // access ordered, guarded by itself
+    private final LinkedHashMap<Key, Projection> projections = new LinkedHashMap<>(16, 0.75f, true);
+
+    public TransactionProjections(final TransactionCommitterFactory committerFactory,
+                                  final BookkeeperConfiguration bookkeeperConfiguration) {
+        this.committerFactory = committerFactory;
+        this.maxBytes = bookkeeperConfiguration.getProjectionMaxBytes();
+        this.journalMaxBytes = bookkeeperConfiguration.getCommitJournalMaxBytes();
+        this.idle = Duration.ofSeconds(bookkeeperConfiguration.getProjectionIdleSecs());
+        this.expiry = Thread.ofVirtual().name("projection-expiry").start(this::expireIdle);
+    }
+
+    /**
+     * Lists the account's transactions for the day, awaiting the initial load of its view if necessary.
+     *
+     * @return the transactions, or null if the view has yet to load or can no longer hold the complete history
+     */
+    public List<Transaction> listTransactions(final UUID accountId) throws InterruptedException {
+        final Projection projection = projection(new Key(accountId, LocalDate.now()));
+        try {
+            projection.reader.caughtUp().get(CATCH_UP_TIMEOUT.toMillis(), TimeUnit.MILLISECONDS);
+        } catch (TimeoutException e) {
+            log.warn("Timed out awaiting transaction projection for account {}", accountId);
+            return null;
+        } catch (Exception e) {
+            log.warn("Transaction projection failed for account {}", accountId, e);
+            return null;
+        }
+
+        final List<Transaction> transactions = projection.snapshot();
+        evictBeyondBudget(projection); // the snapshot may have grown
+        return transactions;
+    }
+
+    public long memoryUsage() {
+        synchronized (projections) {
+            return projections.values().stream().mapToLong(Projection::memoryUsage).sum();
+        }
+    }
+
+    @Override
+    public void close() {
+        expiry.interrupt();
+        synchronized (projections) {
+            projections.values().forEach(Projection::close);
+            projections.clear();
+        }
+    }
+
+    /**
+     * Drops views of days before the given one, and those last listed before the idle timeout preceding the given time.
+     */
+    void expire(final LocalDate today, final long nowNanos) {
+        final List<Projection> expired = new ArrayList<>();
+        synchronized (projections) {
+            projections.values().removeIf(projection -> {
+                if (projection.key.date().isBefore(today) || nowNanos - projection.lastListedAt > idle.toNanos()) {
+                    expired.add(projection);
+                    return true;
+                }
+                return false;
+            });
+        }
+
+        expired.forEach(projection -> {
+            log.info("Dropping transaction projection for account {} on {}", projection.key.accountId(), projection.key.date());
+            projection.close();
+        });
+    }
+
+    private Projection projection(final Key key) {
+        final Projection projection;
+        synchronized (projections) {
+            projection = projections.computeIfAbsent(key, this::createProjection);
+            projection.lastListedAt = System.nanoTime();
+        }
+
+        evictBeyondBudget(projection);
+        return projection;
+    }
+
+    private void evictBeyondBudget(final Projection retained) {
+        final List<Projection> evicted = new ArrayList<>();
+        synchronized (projections) {
+            long memoryUsage = projections.values().stream().mapToLong(Projection::memoryUsage).sum();
+            final Iterator<Map.Entry<Key, Projection>> eldest = projections.entrySet().iterator();
+            while (memoryUsage > maxBytes && eldest.hasNext()) {
+                final Projection candidate = eldest.next().getValue();
+                if (candidate != retained) {
+                    memoryUsage -= candidate.memoryUsage();
+                    evicted.add(candidate);
+                    eldest.remove();
+                }
+            }
+        }
+
+        evicted.forEach(Projection::close);
+    }
+
+    private Projection createProjection(final Key key) {
+        log.info("Creating transaction projection for account {}", key.accountId());
+        final Projection projection = new Projection(key, new CommitJournal(journalMaxBytes));
+        projection.start();
+        return projection;
+    }
+
+    /*
+     * Views are otherwise only dropped as others are listed, which a node whose listings have all gone quiet may
+     * never do, and a view left of yesterday would follow its ledgers indefinitely.
+     */
+    private void expireIdle() {
+        final Duration sweep = idle.dividedBy(2).compareTo(MAX_EXPIRY_SWEEP) < 0 ? idle.dividedBy(2) : MAX_EXPIRY_SWEEP;
+        while (!Thread.currentThread().isInterrupted()) {
+            try {
+                Thread.sleep(sweep);
+                expire(LocalDate.now(), System.nanoTime());
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            } catch (Exception e) {
+                log.warn("Failed to expire idle transaction projections", e);
+            }
+        }
+    }
+
+    private record Key(UUID accountId, LocalDate date) {
+    }
+
+    private final class Projection implements AutoCloseable {
+        private final Key key;
+        private final CommitJournal journal;
+        private final TransactionReader reader;
+        private final Thread readerThread;
+        private volatile long lastListedAt = System.nanoTime();
+
+        // transactions materialised so far, appended to as the journal grows. Slots below the count are never written
+        // again, so a snapshot of them remains valid as later ones are appended or the array is replaced to grow
+        // guarded by this
+        private Transaction[] transactions = new Transaction[0];
+        private int count;
+        private Entry<Transaction> lastMaterialised = Entry.initial();
+        private volatile long materialisedBytes;
+
+        private Projection(final Key key, final CommitJournal journal) {
+            this.key = key;
+            this.journal = journal;
+            this.reader = committerFactory.createReader(key.accountId(), key.date(), journal::append);
+            this.readerThread = Thread.ofVirtual().name("transaction-projection-" + key.accountId()).unstarted(this::follow);
+        }
+
+        private void start() {
+            readerThread.start();
+        }
+
+        private long memoryUsage() {
+            return journal.memoryUsage() + materialisedBytes;
+        }
+
+        /**
+         * @return the transactions held, parsing only those appended since the last snapshot, or null if earlier ones
+         * have been dropped
+         */
+        private synchronized List<Transaction> snapshot() {
+            if (!journal.isComplete()) {
+                return null;
+            }
+
+            final List<Entry<Transaction>> appended = lastMaterialised.exists()
+                    ? journal.read(lastMaterialised.ledgerId(), lastMaterialised.entryId(), lastMaterialised.index() + 1, Integer.MAX_VALUE)
+                    : journal.readFirst(Integer.MAX_VALUE);
+            if (appended == null) {
+                return null;
+            }
+
+            if (!appended.isEmpty()) {
+                if (count + appended.size() > transactions.length) {
+                    transactions = Arrays.copyOf(transactions, Math.max(count + appended.size(), transactions.length * 2));
+                }
+                long bytes = 0;
+                for (Entry<Transaction> entry : appended) {
+                    transactions[count++] = entry.data();
+                    bytes += entry.data().getSerializedSize() + TRANSACTION_OVERHEAD_BYTES;
+                }
+                lastMaterialised = appended.getLast();
+                materialisedBytes += bytes;
+            }
+            return Collections.unmodifiableList(Arrays.asList(transactions).subList(0, count));
+        }
+
+        private void follow() {
+            try (final var ignore = TransactionLoggingContext.account(key.accountId())) {
+                reader.follow();
+            } catch (InterruptedException e) {
+                log.debug("Transaction projection stopped");
+            } catch (Exception e) {
+                log.error("Transaction projection failed", e);
+                reader.caughtUp().completeExceptionally(e);
+                synchronized (projections) {
+                    projections.remove(key, this);
+                }
+            }
+        }
+
+        @Override
+        public void close() {
+            readerThread.interrupt();
+        }
+    }
+}
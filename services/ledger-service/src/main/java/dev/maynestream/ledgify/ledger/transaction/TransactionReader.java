@@ -4,7 +4,11 @@ import dev.maynestream.ledgify.ledger.BookkeeperConfiguration;
 import dev.maynestream.ledgify.ledger.commit.Ledger.Entry;
 import dev.maynestream.ledgify.ledger.commit.LedgerAccessor;
 import dev.maynestream.ledgify.ledger.commit.LedgerCollectionStore;
+import dev.maynestream.ledgify.ledger.commit.LedgerHandleCache;
+import dev.maynestream.ledgify.ledger.commit.LedgerMetrics;
+import dev.maynestream.ledgify.ledger.commit.LedgerPasswordStore;
 import dev.maynestream.ledgify.ledger.commit.LedgerReader;
+import dev.maynestream.ledgify.ledger.commit.SegmentStore;
 import dev.maynestream.ledgify.ledger.transaction.logging.TransactionLoggingContext;
 import dev.maynestream.ledgify.transaction.Transaction;
 import lombok.SneakyThrows;
@@ -12,8 +16,10 @@ import lombok.extern.slf4j.Slf4j;
 import org.apache.bookkeeper.client.BookKeeper;
 import org.apache.curator.framework.CuratorFramework;
 
+import java.nio.ByteBuffer;
 import java.time.LocalDate;
 import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
 import java.util.function.Consumer;
 
 import static java.util.Objects.requireNonNull;
@@ -24,17 +30,39 @@ public class TransactionReader extends LedgerReader<Transaction> implements Runn
     private static final String DAILY_LEDGER_PATH_FORMAT = "%s/%s";
 
     private final UUID accountId;
+    private final CompletableFuture<Entry<Transaction>> caughtUp = new CompletableFuture<>();
 
     public TransactionReader(final UUID uniqueId,
                              final BookKeeper bookKeeper,
                              final BookkeeperConfiguration bookkeeperConfiguration,
+                             final LedgerMetrics metrics,
+                             final CuratorFramework curator,
+                             final UUID accountId,
+                             final LocalDate date,
+                             final Consumer<Entry<Transaction>> consumer) {
+        this(uniqueId, bookKeeper, bookkeeperConfiguration, metrics, null, curator, accountId, date, consumer);
+    }
+
+    public TransactionReader(final UUID uniqueId,
+                             final BookKeeper bookKeeper,
+                             final BookkeeperConfiguration bookkeeperConfiguration,
+                             final LedgerMetrics metrics,
+                             final LedgerHandleCache readHandleCache,
                              final CuratorFramework curator,
                              final UUID accountId,
                              final LocalDate date,
                              final Consumer<Entry<Transaction>> consumer) {
         super(uniqueId,
-              new LedgerAccessor(bookKeeper, bookkeeperConfiguration, requireNonNull(accountId).toString().getBytes()),
-              new LedgerCollectionStore(curator, DAILY_LEDGER_PATH_FORMAT.formatted(accountId, date)),
+              new LedgerAccessor(bookKeeper,
+                                 bookkeeperConfiguration,
+                                 metrics,
+                                 requireNonNull(accountId).toString().getBytes(),
+                                 readHandleCache,
+                                 null,
+                                 new LedgerPasswordStore(curator, DAILY_LEDGER_PATH_FORMAT.formatted(accountId, date))),
+              new LedgerCollectionStore(curator, DAILY_LEDGER_PATH_FORMAT.formatted(accountId, date), metrics),
+              new SegmentStore(curator, DAILY_LEDGER_PATH_FORMAT.formatted(accountId, date)),
+              TransactionCommitter.SEGMENT_KEYS,
               consumer,
               TransactionReader::parse);
         this.accountId = accountId;
@@ -48,8 +76,44 @@ public class TransactionReader extends LedgerReader<Transaction> implements Runn
         }
     }
 
+    /**
+     * Reads the transactions committed within the given range of epoch milliseconds, from inclusive and to exclusive.
+     */
+    @SneakyThrows
+    public void readBetween(final long fromCommittedAt, final long toCommittedAt) {
+        try (final var ignore = TransactionLoggingContext.account(accountId)) {
+            readCommittedBetween(fromCommittedAt, toCommittedAt);
+        }
+    }
+
+    /**
+     * Reads all entries and then follows the ledgers for new ones until interrupted.
+     */
+    public void follow() throws Exception {
+        readAll(true);
+    }
+
+    /**
+     * Reads entries after the given position and then follows the ledgers for new ones until interrupted.
+     */
+    public void followFrom(final Entry<Transaction> position) throws Exception {
+        readFrom(position, true);
+    }
+
+    /**
+     * @return completed with the last entry read once a following reader has first read every available entry
+     */
+    public CompletableFuture<Entry<Transaction>> caughtUp() {
+        return caughtUp;
+    }
+
+    @Override
+    protected void caughtUp(final Entry<Transaction> lastRecordedEntry) {
+        caughtUp.complete(lastRecordedEntry);
+    }
+
     @SneakyThrows
-    private static Transaction parse(byte[] bytes) {
-        return Transaction.parseFrom(bytes);
+    private static Transaction parse(ByteBuffer buffer) {
+        return Transaction.parseFrom(buffer);
     }
 }
@@ -0,0 +1,71 @@
+package dev.maynestream.ledgify.ledger.cluster;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.everyItem;
+import static org.hamcrest.Matchers.greaterThan;
+import static org.hamcrest.Matchers.lessThan;
+import static org.hamcrest.Matchers.nullValue;
+
+class HashRingTest {
+    private static final int VIRTUAL_NODES = 128;
+
+    @Test
+    void shouldOwnNothingWithoutNodes() {
+        // given
+        final HashRing ring = new HashRing(List.of(), VIRTUAL_NODES);
+
+        // when
+        final String owner = ring.ownerOf(UUID.randomUUID());
+
+        // then
+        assertThat(owner, nullValue());
+    }
+
+    @Test
+    void shouldSpreadKeysAcrossNodes() {
+        // given
+        final List<String> nodes = List.of("ledger-0:9091", "ledger-1:9091", "ledger-2:9091", "ledger-3:9091");
+        final HashRing ring = new HashRing(nodes, VIRTUAL_NODES);
+        final int keyCount = 100_000;
+
+        // when
+        final Map<String, Long> keysPerNode = Stream.generate(UUID::randomUUID)
+                                                    .limit(keyCount)
+                                                    .map(ring::ownerOf)
+                                                    .collect(Collectors.groupingBy(Function.identity(),
+                                                                                   Collectors.counting()));
+
+        // then
+        final long expected = keyCount / nodes.size();
+        assertThat(keysPerNode.size(), equalTo(nodes.size()));
+        assertThat(keysPerNode.values(), everyItem(greaterThan(expected * 7 / 10)));
+        assertThat(keysPerNode.values(), everyItem(lessThan(expected * 13 / 10)));
+    }
+
+    @Test
+    void shouldOnlyMoveKeysToJoiningNode() {
+        // given
+        final List<String> nodes = List.of("ledger-0:9091", "ledger-1:9091", "ledger-2:9091");
+        final HashRing before = new HashRing(nodes, VIRTUAL_NODES);
+        final HashRing after = new HashRing(Stream.concat(nodes.stream(), Stream.of("ledger-3:9091")).toList(),
+                                            VIRTUAL_NODES);
+        final List<UUID> keys = Stream.generate(UUID::randomUUID).limit(100_000).toList();
+
+        // when
+        final List<UUID> moved = keys.stream().filter(k -> !before.ownerOf(k).equals(after.ownerOf(k))).toList();
+
+        // then
+        assertThat(moved.stream().map(after::ownerOf).distinct().toList(), equalTo(List.of("ledger-3:9091")));
+        assertThat(moved.size(), lessThan(keys.size() * 35 / 100));
+    }
+}
@@ -0,0 +1,106 @@
+package dev.maynestream.ledgify.ledger.commit;
+
+import dev.maynestream.ledgify.ledger.commit.Ledger.Entry;
+import dev.maynestream.ledgify.ledger.commit.Ledger.LedgerException;
+import org.junit.jupiter.api.Test;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.Function;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.contains;
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.nullValue;
+import static org.hamcrest.Matchers.sameInstance;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class CatchUpReplayTest {
+
+    private static final Function<ByteBuffer, String> TEXT = b -> StandardCharsets.UTF_8.decode(b).toString();
+
+    // a segment of a single entry, so that every entry is fetched separately
+    private final CatchUpReplay replay = new CatchUpReplay(2, 1);
+
+    @Test
+    void shouldReplayLedgersInOrderFromLastRecordedEntry() throws Exception {
+        // given
+        final Map<Long, InMemoryLedgerHandle> handles = Map.of(1L, InMemoryLedgerHandle.closedWith(1, text("a"), text("b"), text("c")),
+                                                               2L, InMemoryLedgerHandle.closedWith(2, text("d"), text("e")));
+        final List<String> consumed = new CopyOnWriteArrayList<>();
+
+        // when
+        final CatchUpReplay.Result<String> result = replay.replay(List.of(1L, 2L),
+                                                                  new Entry<>(1, 0, "a"),
+                                                                  id -> new Ledger(handles.get(id)),
+                                                                  e -> consumed.add(e.data()),
+                                                                  TEXT);
+
+        // then
+        assertThat(consumed, contains("b", "c", "d", "e"));
+        assertThat(result.lastRecordedEntry(), equalTo(new Entry<>(2, 1, "e")));
+        assertThat(result.stoppedAt(), nullValue());
+        assertThat(handles.get(1L).closes(), equalTo(1));
+        assertThat(handles.get(2L).closes(), equalTo(1));
+    }
+
+    @Test
+    void shouldStopAtFirstLedgerNotYetClosed() throws Exception {
+        // given
+        final InMemoryLedgerHandle open = new InMemoryLedgerHandle(2);
+        open.appendAsync(text("c"));
+        final Map<Long, InMemoryLedgerHandle> handles = Map.of(1L, InMemoryLedgerHandle.closedWith(1, text("a"), text("b")),
+                                                               2L, open,
+                                                               3L, InMemoryLedgerHandle.closedWith(3, text("d")));
+        final List<Long> opened = new CopyOnWriteArrayList<>();
+        final List<String> consumed = new CopyOnWriteArrayList<>();
+
+        // when
+        final CatchUpReplay.Result<String> result = replay.replay(List.of(1L, 2L, 3L),
+                                                                  Entry.initial(),
+                                                                  id -> {
+                                                                      opened.add(id);
+                                                                      return new Ledger(handles.get(id));
+                                                                  },
+                                                                  e -> consumed.add(e.data()),
+                                                                  TEXT);
+
+        // then
+        assertThat(consumed, contains("a", "b"));
+        assertThat(result.lastRecordedEntry(), equalTo(new Entry<>(1, 1, "b")));
+        assertThat(result.stoppedAt(), equalTo(2L));
+        assertThat(opened, contains(1L, 2L));
+        assertThat(open.closes(), equalTo(1));
+    }
+
+    @Test
+    void shouldCarryProgressWhenReplayFails() {
+        // given
+        final InMemoryLedgerHandle first = InMemoryLedgerHandle.closedWith(1, text("a"), text("b"));
+        final IllegalStateException cause = new IllegalStateException("bookies unavailable");
+
+        // when
+        final LedgerException failure = assertThrows(LedgerException.class, () -> replay.replay(List.of(1L, 2L),
+                                                                                             Entry.initial(),
+                                                                                             id -> {
+                                                                                                 if (id == 2L) {
+                                                                                                     throw cause;
+                                                                                                 }
+                                                                                                 return new Ledger(first);
+                                                                                             },
+                                                                                             e -> {},
+                                                                                             TEXT));
+
+        // then
+        assertThat(failure.getCause(), sameInstance(cause));
+        assertThat(failure.getLastRecordedEntry(), equalTo(new Entry<>(1, 1, "b")));
+        assertThat(first.closes(), equalTo(1));
+    }
+
+    private static byte[] text(final String payload) {
+        return payload.getBytes(StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,53 @@
+package dev.maynestream.ledgify.ledger.commit;
+
+import dev.maynestream.ledgify.ledger.BookkeeperConfiguration;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.equalTo;
+
+class CheckpointStoreTest {
+
+    private final LedgerMetrics metrics = new LedgerMetrics(new SimpleMeterRegistry());
+    private final Map<Long, InMemoryLedgerHandle> handles = new ConcurrentHashMap<>();
+    private final AtomicLong nextLedgerId = new AtomicLong(1);
+
+    @Test
+    void shouldRoundTripStateSpanningSeveralEntries() throws Exception {
+        // given
+        final byte[] state = new byte[2 * CheckpointStore.STATE_ENTRY_BYTES + 100];
+        for (int i = 0; i < state.length; i++) {
+            state[i] = (byte) i; // so that each entry's chunk starts with what looks like a batch frame
+        }
+        final CheckpointStore store = new CheckpointStore(null, "test");
+        final LedgerAccessor accessor = accessor();
+
+        // when
+        final long stateLedgerId = store.writeState(accessor, state);
+
+        // then
+        assertThat(handles.get(stateLedgerId).getLastAddConfirmed(), equalTo(2L));
+        assertThat(CheckpointStore.readState(accessor, stateLedgerId), equalTo(state));
+    }
+
+    private LedgerAccessor accessor() {
+        return new LedgerAccessor(null, new BookkeeperConfiguration(), metrics, new byte[0]) {
+            @Override
+            Ledger create() {
+                final InMemoryLedgerHandle handle = new InMemoryLedgerHandle(nextLedgerId.getAndIncrement());
+                handles.put(handle.getId(), handle);
+                return new Ledger(handle, 4, metrics.add);
+            }
+
+            @Override
+            Ledger openForRead(final long ledgerId) {
+                return new Ledger(handles.get(ledgerId));
+            }
+        };
+    }
+}
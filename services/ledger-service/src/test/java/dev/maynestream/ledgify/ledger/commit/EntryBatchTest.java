@@ -0,0 +1,114 @@
+package dev.maynestream.ledgify.ledger.commit;
+
+import dev.maynestream.ledgify.transaction.Transaction;
+import dev.maynestream.ledgify.transaction.TransactionTestFixtures;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.function.Executable;
+
+import java.nio.ByteBuffer;
+import java.util.List;
+import java.util.stream.Stream;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.contains;
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.sameInstance;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class EntryBatchTest {
+
+    @Test
+    void shouldWriteSinglePayloadUnframed() {
+        // given
+        final byte[] payload = TransactionTestFixtures.transaction().build().toByteArray();
+
+        // when
+        final byte[] packed = EntryBatch.pack(List.of(payload));
+
+        // then
+        assertThat(packed, sameInstance(payload));
+        assertThat(EntryBatch.isBatch(packed), is(false));
+    }
+
+    @Test
+    void shouldUnpackFramedPayloadStartingWithMarker() {
+        // given
+        final byte[] payload = {0, 0, 0, 0, 0, 0, 1, 2};
+
+        // when
+        final List<byte[]> unpacked = EntryBatch.unpack(EntryBatch.frame(payload));
+
+        // then
+        assertThat(unpacked, contains(payload));
+    }
+
+    @Test
+    void shouldUnpackPayloadsInOrder() throws Exception {
+        // given
+        final List<Transaction> transactions = Stream.generate(() -> TransactionTestFixtures.transaction().build())
+                                                     .limit(5)
+                                                     .toList();
+
+        // when
+        final byte[] packed = EntryBatch.pack(transactions.stream().map(Transaction::toByteArray).toList());
+        final List<byte[]> unpacked = EntryBatch.unpack(packed);
+
+        // then
+        assertThat(EntryBatch.isBatch(packed), is(true));
+        assertThat(unpacked.size(), equalTo(transactions.size()));
+        for (int i = 0; i < transactions.size(); i++) {
+            assertThat(Transaction.parseFrom(unpacked.get(i)), equalTo(transactions.get(i)));
+        }
+    }
+
+    @Test
+    void shouldUnpackUnframedPayloadAsSingleEntry() throws Exception {
+        // given
+        final Transaction transaction = TransactionTestFixtures.transaction().build();
+
+        // when
+        final List<byte[]> unpacked = EntryBatch.unpack(transaction.toByteArray());
+
+        // then
+        assertThat(unpacked.stream().map(EntryBatchTest::parse).toList(), contains(transaction));
+    }
+
+    @Test
+    void shouldUnpackPayloadsAsViewsOfDirectBuffer() throws Exception {
+        // given
+        final List<Transaction> transactions = Stream.generate(() -> TransactionTestFixtures.transaction().build())
+                                                     .limit(5)
+                                                     .toList();
+        final byte[] packed = EntryBatch.pack(transactions.stream().map(Transaction::toByteArray).toList());
+        final ByteBuffer buffer = ByteBuffer.allocateDirect(packed.length).put(packed).flip();
+
+        // when
+        final List<ByteBuffer> unpacked = EntryBatch.unpack(buffer);
+
+        // then
+        assertThat(buffer.position(), equalTo(0));
+        assertThat(unpacked.size(), equalTo(transactions.size()));
+        for (int i = 0; i < transactions.size(); i++) {
+            assertThat(unpacked.get(i).isDirect(), is(true));
+            assertThat(Transaction.parseFrom(unpacked.get(i)), equalTo(transactions.get(i)));
+        }
+    }
+
+    @Test
+    void shouldThrowExceptionWhenPackingNoPayloads() {
+        // when
+        final Executable pack = () -> EntryBatch.pack(List.of());
+
+        // then
+        assertThrows(IllegalArgumentException.class, pack);
+    }
+
+    private static Transaction parse(final byte[] bytes) {
+        try {
+            return Transaction.parseFrom(bytes);
+        } catch (Exception e) {
+            throw new RuntimeException(e);
+        }
+    }
+}
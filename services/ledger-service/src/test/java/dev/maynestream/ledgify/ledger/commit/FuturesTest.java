@@ -0,0 +1,80 @@
+package dev.maynestream.ledgify.ledger.commit;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutionException;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.instanceOf;
+import static org.hamcrest.Matchers.sameInstance;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class FuturesTest {
+
+    @Test
+    void shouldReturnResultOfCompletedFuture() throws Exception {
+        // given
+        final CompletableFuture<Long> future = CompletableFuture.completedFuture(5L);
+
+        // when
+        final Long result = Futures.await(future);
+
+        // then
+        assertThat(result, equalTo(5L));
+    }
+
+    @Test
+    void shouldRethrowCauseOfFailureRatherThanItsWrapper() {
+        // given
+        final Exception cause = new Exception("bookie unavailable");
+        final CompletableFuture<Long> future = CompletableFuture.<Long>failedFuture(cause).thenApply(id -> id + 1);
+
+        // when
+        final Exception thrown = assertThrows(Exception.class, () -> Futures.await(future));
+        final Exception thrownUnchecked = assertThrows(Exception.class, () -> Futures.awaitUnchecked(future));
+
+        // then
+        assertThat(thrown, sameInstance(cause));
+        assertThat(thrownUnchecked, sameInstance(cause));
+    }
+
+    @Test
+    void shouldUnwrapNestedWrappers() {
+        // given
+        final IllegalStateException cause = new IllegalStateException("ledger closed");
+
+        // when
+        final Exception unwrapped = Futures.unwrap(new ExecutionException(new CompletionException(cause)));
+
+        // then
+        assertThat(unwrapped, sameInstance(cause));
+    }
+
+    @Test
+    void shouldWrapErrorsRatherThanRethrowThemAsExceptions() {
+        // given
+        final AssertionError cause = new AssertionError("unexpected");
+
+        // when
+        final Exception unwrapped = Futures.unwrap(new CompletionException(cause));
+
+        // then
+        assertThat(unwrapped, instanceOf(ExecutionException.class));
+        assertThat(unwrapped.getCause(), sameInstance(cause));
+    }
+
+    @Test
+    void shouldKeepWrapperWithoutCause() {
+        // given
+        final CompletionException wrapper = new CompletionException("cancelled", null);
+
+        // when
+        final Exception unwrapped = Futures.unwrap(wrapper);
+
+        // then
+        assertThat(unwrapped, sameInstance(wrapper));
+    }
+}
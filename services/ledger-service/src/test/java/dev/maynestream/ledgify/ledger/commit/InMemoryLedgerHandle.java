@@ -0,0 +1,211 @@
+package dev.maynestream.ledgify.ledger.commit;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
+import org.apache.bookkeeper.client.api.LastConfirmedAndEntry;
+import org.apache.bookkeeper.client.api.LedgerEntries;
+import org.apache.bookkeeper.client.api.LedgerEntry;
+import org.apache.bookkeeper.client.api.LedgerMetadata;
+import org.apache.bookkeeper.client.api.WriteHandle;
+import org.apache.bookkeeper.client.impl.LedgerEntriesImpl;
+import org.apache.bookkeeper.client.impl.LedgerEntryImpl;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * A ledger held in memory in place of a BookKeeper handle. Adds are confirmed as they are made, unless held, in which
+ * case each completes only once the test completes or fails it, in whatever order the test chooses.
+ */
+final class InMemoryLedgerHandle implements WriteHandle {
+    private final long ledgerId;
+
+    // guarded by this
+    private final List<byte[]> entries = new ArrayList<>();
+    private final List<CompletableFuture<Long>> heldAdds = new ArrayList<>();
+    private final List<long[]> reads = new ArrayList<>();
+    private long lastAddConfirmed = -1;
+    private long length;
+    private boolean holdAdds;
+
+    private final AtomicInteger closes = new AtomicInteger();
+    private final AtomicInteger lastAddConfirmedReads = new AtomicInteger();
+    private volatile boolean closed;
+
+    InMemoryLedgerHandle(final long ledgerId) {
+        this.ledgerId = ledgerId;
+    }
+
+    static InMemoryLedgerHandle closedWith(final long ledgerId, final byte[]... entries) {
+        final InMemoryLedgerHandle handle = new InMemoryLedgerHandle(ledgerId);
+        for (byte[] entry : entries) {
+            handle.appendAsync(entry);
+        }
+        handle.closed = true;
+        return handle;
+    }
+
+    synchronized InMemoryLedgerHandle holdAdds() {
+        holdAdds = true;
+        return this;
+    }
+
+    synchronized int addsIssued() {
+        return entries.size();
+    }
+
+    synchronized void completeAdd(final int entryId) {
+        lastAddConfirmed = Math.max(lastAddConfirmed, entryId);
+        heldAdds.get(entryId).complete((long) entryId);
+    }
+
+    synchronized void failAdd(final int entryId, final Throwable cause) {
+        heldAdds.get(entryId).completeExceptionally(cause);
+    }
+
+    /**
+     * @return the inclusive ranges read, in the order they were requested
+     */
+    synchronized List<long[]> reads() {
+        return List.copyOf(reads);
+    }
+
+    int closes() {
+        return closes.get();
+    }
+
+    int lastAddConfirmedReads() {
+        return lastAddConfirmedReads.get();
+    }
+
+    @Override
+    public synchronized CompletableFuture<Long> appendAsync(final ByteBuf data) {
+        final byte[] bytes = new byte[data.readableBytes()];
+        data.readBytes(bytes);
+        return appendAsync(bytes);
+    }
+
+    @Override
+    public synchronized CompletableFuture<Long> appendAsync(final byte[] data) {
+        if (closed) {
+            return CompletableFuture.failedFuture(new IllegalStateException("ledger closed"));
+        }
+
+        final long entryId = entries.size();
+        entries.add(data);
+        length += data.length;
+        if (holdAdds) {
+            final CompletableFuture<Long> add = new CompletableFuture<>();
+            heldAdds.add(add);
+            return add;
+        }
+        lastAddConfirmed = entryId;
+        return CompletableFuture.completedFuture(entryId);
+    }
+
+    @Override
+    public synchronized long getLastAddPushed() {
+        return entries.size() - 1;
+    }
+
+    @Override
+    public synchronized CompletableFuture<LedgerEntries> readAsync(final long firstEntry, final long lastEntry) {
+        reads.add(new long[]{firstEntry, lastEntry});
+        final List<LedgerEntry> read = new ArrayList<>();
+        for (long entryId = firstEntry; entryId <= lastEntry; entryId++) {
+            read.add(entry(entryId));
+        }
+        return CompletableFuture.completedFuture(LedgerEntriesImpl.create(read));
+    }
+
+    @Override
+    public CompletableFuture<LedgerEntries> readUnconfirmedAsync(final long firstEntry, final long lastEntry) {
+        return readAsync(firstEntry, lastEntry);
+    }
+
+    @Override
+    public synchronized CompletableFuture<Long> readLastAddConfirmedAsync() {
+        lastAddConfirmedReads.incrementAndGet();
+        return CompletableFuture.completedFuture(lastAddConfirmed);
+    }
+
+    @Override
+    public CompletableFuture<Long> tryReadLastAddConfirmedAsync() {
+        return readLastAddConfirmedAsync();
+    }
+
+    @Override
+    public synchronized long getLastAddConfirmed() {
+        return lastAddConfirmed;
+    }
+
+    @Override
+    public synchronized long getLength() {
+        return length;
+    }
+
+    @Override
+    public boolean isClosed() {
+        return closed;
+    }
+
+    @Override
+    public synchronized CompletableFuture<LastConfirmedAndEntry> readLastAddConfirmedAndEntryAsync(final long entryId,
+                                                                                                   final long timeOutInMillis,
+                                                                                                   final boolean parallel) {
+        final long confirmed = lastAddConfirmed;
+        final LedgerEntry entry = entryId <= confirmed ? entry(entryId) : null;
+        return CompletableFuture.completedFuture(new LastConfirmedAndEntry() {
+            @Override
+            public long getLastAddConfirmed() {
+                return confirmed;
+            }
+
+            @Override
+            public boolean hasEntry() {
+                return entry != null;
+            }
+
+            @Override
+            public LedgerEntry getEntry() {
+                return entry;
+            }
+
+            @Override
+            public void close() {
+                if (entry != null) {
+                    entry.close();
+                }
+            }
+        });
+    }
+
+    @Override
+    public long getId() {
+        return ledgerId;
+    }
+
+    @Override
+    public CompletableFuture<Void> closeAsync() {
+        closed = true;
+        closes.incrementAndGet();
+        return CompletableFuture.completedFuture(null);
+    }
+
+    @Override
+    public LedgerMetadata getLedgerMetadata() {
+        return null;
+    }
+
+    @Override
+    public CompletableFuture<Void> force() {
+        return CompletableFuture.completedFuture(null);
+    }
+
+    private LedgerEntry entry(final long entryId) {
+        final byte[] data = entries.get((int) entryId);
+        return LedgerEntryImpl.create(ledgerId, entryId, data.length, Unpooled.wrappedBuffer(data));
+    }
+}
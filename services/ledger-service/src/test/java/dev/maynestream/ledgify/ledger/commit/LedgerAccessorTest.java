@@ -0,0 +1,164 @@
+package dev.maynestream.ledgify.ledger.commit;
+
+import dev.maynestream.ledgify.ledger.BookkeeperConfiguration;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.apache.bookkeeper.client.api.ReadHandle;
+import org.junit.jupiter.api.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.contains;
+import static org.hamcrest.Matchers.empty;
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.sameInstance;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class LedgerAccessorTest {
+
+    private static final byte[] ACCOUNT_PASSWORD = "account".getBytes(StandardCharsets.UTF_8);
+    private static final byte[] STANDBY_PASSWORD = "standby".getBytes(StandardCharsets.UTF_8);
+    private static final LedgerMetrics METRICS = new LedgerMetrics(new SimpleMeterRegistry());
+
+    private final Map<Long, byte[]> recorded = new ConcurrentHashMap<>();
+    private final Map<Long, byte[]> openedWith = new ConcurrentHashMap<>();
+    private final List<Long> created = new CopyOnWriteArrayList<>();
+    private final List<Long> deleted = new CopyOnWriteArrayList<>();
+
+    @Test
+    void shouldRecordPasswordOfClaimedStandbyLedger() throws Exception {
+        // given
+        final InMemoryLedgerHandle handle = new InMemoryLedgerHandle(7);
+        final LedgerAccessor accessor = accessor(standby(handle), new FakePasswordStore());
+
+        // when
+        final Ledger claimed = accessor.claimAsync().get();
+
+        // then
+        assertThat(claimed.getId(), equalTo(7L));
+        assertThat(recorded.get(7L), equalTo(STANDBY_PASSWORD));
+        assertThat(created, empty());
+    }
+
+    @Test
+    void shouldOpenWithRecordedPasswordOrElseCollections() throws Exception {
+        // given
+        recorded.put(7L, STANDBY_PASSWORD);
+        final LedgerAccessor accessor = accessor(null, new FakePasswordStore());
+
+        // when
+        accessor.openAsLeader(7);
+        accessor.openForRead(8);
+
+        // then
+        assertThat(openedWith.get(7L), equalTo(STANDBY_PASSWORD));
+        assertThat(openedWith.get(8L), equalTo(ACCOUNT_PASSWORD));
+    }
+
+    @Test
+    void shouldDeleteClaimedLedgerWhosePasswordCannotBeRecorded() {
+        // given
+        final InMemoryLedgerHandle handle = new InMemoryLedgerHandle(7);
+        final IllegalStateException cause = new IllegalStateException("connection loss");
+        final LedgerAccessor accessor = accessor(standby(handle), new FakePasswordStore() {
+            @Override
+            void write(final long ledgerId, final byte[] password) {
+                throw cause;
+            }
+        });
+
+        // when
+        final Exception thrown = assertThrows(Exception.class, accessor::claim);
+
+        // then
+        assertThat(thrown, sameInstance(cause));
+        assertThat(handle.isClosed(), equalTo(true));
+        assertThat(deleted, contains(7L));
+    }
+
+    @Test
+    void shouldCreateRatherThanClaimWhereNoPasswordCanBeRecorded() throws Exception {
+        // given
+        final LedgerAccessor accessor = accessor(standby(new InMemoryLedgerHandle(7)), null);
+
+        // when
+        final Ledger ledger = accessor.claim();
+
+        // then
+        assertThat(ledger.getId(), equalTo(1L));
+        assertThat(created, contains(1L));
+    }
+
+    @Test
+    void shouldDeleteRecordedPasswordOfDiscardedLedger() throws Exception {
+        // given
+        final LedgerAccessor accessor = accessor(standby(new InMemoryLedgerHandle(7)), new FakePasswordStore());
+        final Ledger claimed = accessor.claim();
+
+        // when
+        accessor.discardAsync(claimed.getId()).get();
+
+        // then
+        assertThat(deleted, contains(7L));
+        assertThat(recorded.containsKey(7L), equalTo(false));
+    }
+
+    private LedgerAccessor accessor(final StandbyLedgerPool standbyPool, final LedgerPasswordStore passwords) {
+        return new LedgerAccessor(null, new BookkeeperConfiguration(), METRICS, ACCOUNT_PASSWORD, null, standbyPool, passwords) {
+            @Override
+            CompletableFuture<Ledger> createAsync(final byte[] password) {
+                created.add(1L);
+                return CompletableFuture.completedFuture(new Ledger(new InMemoryLedgerHandle(1), 1, METRICS.add));
+            }
+
+            @Override
+            CompletableFuture<Void> deleteAsync(final long ledgerId) {
+                deleted.add(ledgerId);
+                return CompletableFuture.completedFuture(null);
+            }
+
+            @Override
+            CompletableFuture<ReadHandle> open(final long ledgerId, final boolean recovery, final byte[] password) {
+                openedWith.put(ledgerId, password);
+                return CompletableFuture.completedFuture(new InMemoryLedgerHandle(ledgerId));
+            }
+        };
+    }
+
+    private static StandbyLedgerPool standby(final InMemoryLedgerHandle handle) {
+        final BookkeeperConfiguration configuration = new BookkeeperConfiguration();
+        configuration.setStandbyLedgerPoolSize(0);
+        return new StandbyLedgerPool(null, null, configuration) {
+            @Override
+            Standby claim() {
+                return new Standby(new Ledger(handle, 1, METRICS.add), STANDBY_PASSWORD);
+            }
+        };
+    }
+
+    private class FakePasswordStore extends LedgerPasswordStore {
+        private FakePasswordStore() {
+            super(null, "test");
+        }
+
+        @Override
+        void write(final long ledgerId, final byte[] password) {
+            recorded.put(ledgerId, password);
+        }
+
+        @Override
+        void delete(final long ledgerId) {
+            recorded.remove(ledgerId);
+        }
+
+        @Override
+        byte[] read(final long ledgerId) {
+            return recorded.get(ledgerId);
+        }
+    }
+}
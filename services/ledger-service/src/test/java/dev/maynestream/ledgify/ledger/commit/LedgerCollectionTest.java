@@ -0,0 +1,97 @@
+package dev.maynestream.ledgify.ledger.commit;
+
+import org.junit.jupiter.api.Test;
+
+import java.nio.ByteBuffer;
+import java.util.List;
+import java.util.stream.StreamSupport;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.contains;
+import static org.hamcrest.Matchers.empty;
+import static org.hamcrest.Matchers.lessThan;
+
+class LedgerCollectionTest {
+
+    @Test
+    void shouldDecodeChunkedIdsInAppendOrder() {
+        // given
+        final LedgerCollection ledgers = collectionOf(7L, 8L, 3L, Long.MAX_VALUE, 0L, 9L);
+
+        // when
+        final LedgerCollection decoded = new LedgerCollection();
+        decoded.appendChunk(ledgers.encodeChunk(0, 3), 3);
+        decoded.appendChunk(ledgers.encodeChunk(3, 6), 3);
+
+        // then
+        assertThat(ids(decoded), contains(7L, 8L, 3L, Long.MAX_VALUE, 0L, 9L));
+    }
+
+    @Test
+    void shouldEncodeSequentialIdsCompactly() {
+        // given
+        final LedgerCollection ledgers = new LedgerCollection();
+        for (long id = 1_000_000; id < 1_001_000; id++) {
+            ledgers.append(id);
+        }
+
+        // when
+        final byte[] chunk = ledgers.encodeChunk(0, ledgers.size());
+
+        // then
+        assertThat(chunk.length, lessThan(ledgers.size() + 8));
+    }
+
+    @Test
+    void shouldDecodeOnlyIdsWithinLimit() {
+        // given
+        final byte[] chunk = collectionOf(1L, 2L, 3L).encodeChunk(0, 3);
+
+        // when
+        final LedgerCollection decoded = new LedgerCollection();
+        decoded.appendChunk(chunk, 2);
+
+        // then
+        assertThat(ids(decoded), contains(1L, 2L));
+    }
+
+    @Test
+    void shouldReadOriginalFormat() {
+        // given
+        final byte[] bytes = ByteBuffer.allocate(3 * Long.BYTES).putLong(4).putLong(5).putLong(6).array();
+
+        // when
+        final LedgerCollection ledgers = LedgerCollection.fromBytes(bytes);
+
+        // then
+        assertThat(ids(ledgers), contains(4L, 5L, 6L));
+    }
+
+    @Test
+    void shouldSliceFromAndSinceLedger() {
+        // given
+        final LedgerCollection ledgers = collectionOf(1L, 2L, 3L, 4L);
+
+        // when
+        final LedgerCollection from = ledgers.from(3);
+        final LedgerCollection since = ledgers.since(3);
+
+        // then
+        assertThat(ids(from), contains(3L, 4L));
+        assertThat(ids(since), contains(4L));
+        assertThat(ids(ledgers.since(4)), empty());
+        assertThat(ids(ledgers.exceptLast()), contains(1L, 2L, 3L));
+    }
+
+    private static LedgerCollection collectionOf(final Long... ids) {
+        final LedgerCollection ledgers = new LedgerCollection();
+        for (long id : ids) {
+            ledgers.append(id);
+        }
+        return ledgers;
+    }
+
+    private static List<Long> ids(final LedgerCollection ledgers) {
+        return StreamSupport.stream(ledgers.spliterator(), false).toList();
+    }
+}
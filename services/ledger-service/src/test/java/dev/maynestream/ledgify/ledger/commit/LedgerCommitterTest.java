@@ -0,0 +1,319 @@
+package dev.maynestream.ledgify.ledger.commit;
+
+import dev.maynestream.ledgify.ledger.BookkeeperConfiguration;
+import dev.maynestream.ledgify.ledger.commit.Ledger.Entry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.apache.zookeeper.KeeperException;
+import org.apache.zookeeper.data.Stat;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Function;
+
+import static org.awaitility.Awaitility.await;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.contains;
+import static org.hamcrest.Matchers.empty;
+import static org.hamcrest.Matchers.equalTo;
+
+class LedgerCommitterTest {
+
+    private static final Duration TIMEOUT = Duration.ofSeconds(5);
+    private static final Function<ByteBuffer, String> TEXT = b -> StandardCharsets.UTF_8.decode(b).toString();
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private final LedgerMetrics metrics = new LedgerMetrics(meterRegistry);
+    private final Map<Long, InMemoryLedgerHandle> handles = new ConcurrentHashMap<>();
+    private final AtomicLong nextLedgerId = new AtomicLong(1);
+    private final LedgerCollection ledgers = new LedgerCollection();
+    private final AtomicReference<Entry<byte[]>> checkpoint = new AtomicReference<>();
+    private final List<Long> deleted = new CopyOnWriteArrayList<>();
+    private final AtomicInteger conflicts = new AtomicInteger();
+    private final Map<StateCommitter, Thread> threads = new ConcurrentHashMap<>();
+
+    @AfterEach
+    void tearDown() throws InterruptedException {
+        for (Thread thread : threads.values()) {
+            thread.interrupt();
+            thread.join(TIMEOUT);
+        }
+    }
+
+    @Test
+    void shouldCheckpointLedgerClosedByItsLeaderOnClose() throws Exception {
+        // given
+        final StateCommitter committer = start();
+        committer.commit("a", "b");
+
+        // when
+        stop(committer);
+
+        // then
+        await().atMost(TIMEOUT).until(() -> checkpoint.get() != null);
+        assertThat(handles.get(1L).isClosed(), equalTo(true));
+        assertThat(checkpoint.get().ledgerId(), equalTo(1L));
+        assertThat(checkpoint.get().entryId(), equalTo(1L));
+        assertThat(new String(checkpoint.get().data(), StandardCharsets.UTF_8), equalTo("a,b"));
+    }
+
+    @Test
+    void shouldResumeFromCheckpointWithoutReplayingItsLedger() throws Exception {
+        // given
+        final StateCommitter hibernated = start();
+        hibernated.commit("a", "b");
+        stop(hibernated);
+        await().atMost(TIMEOUT).until(() -> checkpoint.get() != null);
+
+        // when
+        final StateCommitter woken = start();
+        woken.commit("c");
+
+        // then
+        assertThat(woken.restored, contains("a", "b"));
+        assertThat(woken.replayed, empty());
+        assertThat(woken.caughtUpAt.get(), equalTo(new Entry<String>(1, 1, null)));
+        assertThat(woken.state, contains("a", "b", "c"));
+        assertThat(ledgers, contains(1L, 2L));
+    }
+
+    @Test
+    void shouldReplayLedgersAfterCheckpointOnWake() throws Exception {
+        // given
+        final StateCommitter hibernated = start();
+        hibernated.commit("a");
+        stop(hibernated);
+        await().atMost(TIMEOUT).until(() -> checkpoint.get() != null);
+        final Entry<byte[]> taken = checkpoint.getAndSet(null);
+
+        final StateCommitter unCheckpointed = start();
+        unCheckpointed.commit("b");
+        stop(unCheckpointed);
+        await().atMost(TIMEOUT).until(() -> checkpoint.get() != null);
+        checkpoint.set(taken); // as though the later checkpoint had not been written
+
+        // when
+        final StateCommitter woken = start();
+        woken.commit("c");
+
+        // then
+        assertThat(woken.restored, contains("a"));
+        assertThat(woken.replayed, contains("b"));
+        assertThat(woken.state, contains("a", "b", "c"));
+    }
+
+    @Test
+    void shouldCountEachCommitterTakingTheLead() throws Exception {
+        // given
+        final StateCommitter first = start();
+        first.commit("a");
+        stop(first);
+
+        // when
+        final StateCommitter second = start();
+        second.commit("b");
+
+        // then
+        assertThat(meterRegistry.get("ledgify.ledger.leader.transitions").tag("role", "leader").counter().count(), equalTo(2.0));
+    }
+
+    @Test
+    void shouldDiscardClaimedLedgerThatFailsToJoinCollection() throws Exception {
+        // given
+        conflicts.set(1);
+
+        // when
+        final StateCommitter committer = start();
+        committer.commit("a");
+
+        // then
+        assertThat(handles.get(1L).isClosed(), equalTo(true));
+        await().atMost(TIMEOUT).until(() -> deleted.contains(1L));
+        assertThat(ledgers, contains(2L));
+    }
+
+    private StateCommitter start() {
+        final StateCommitter committer = new StateCommitter();
+        threads.put(committer, Thread.ofVirtual().start(committer));
+        await().atMost(TIMEOUT).until(() -> committer.caughtUpAt.get() != null);
+        return committer;
+    }
+
+    private void stop(final StateCommitter committer) throws InterruptedException {
+        committer.close();
+        threads.get(committer).join(TIMEOUT);
+    }
+
+    private LedgerAccessor accessor() {
+        return new LedgerAccessor(null, new BookkeeperConfiguration(), metrics, new byte[0]) {
+            @Override
+            CompletableFuture<Ledger> createAsync(final byte[] password) {
+                final InMemoryLedgerHandle handle = new InMemoryLedgerHandle(nextLedgerId.getAndIncrement());
+                handles.put(handle.getId(), handle);
+                return CompletableFuture.completedFuture(new Ledger(handle, 1, metrics.add));
+            }
+
+            @Override
+            CompletableFuture<Void> deleteAsync(final long ledgerId) {
+                deleted.add(ledgerId);
+                return CompletableFuture.completedFuture(null);
+            }
+
+            @Override
+            Ledger openAsLeader(final long ledgerId) {
+                return new Ledger(handles.get(ledgerId));
+            }
+
+            @Override
+            Ledger openForRead(final long ledgerId) {
+                return new Ledger(handles.get(ledgerId));
+            }
+        };
+    }
+
+    private LedgerCollectionStore store() {
+        return new LedgerCollectionStore(null, "test", metrics) {
+            @Override
+            void create(final Stat stat, final LedgerCollection updated) throws Exception {
+                update(stat, updated);
+            }
+
+            @Override
+            void update(final Stat stat, final LedgerCollection updated) throws Exception {
+                if (conflicts.getAndUpdate(c -> Math.max(0, c - 1)) > 0) {
+                    throw new KeeperException.BadVersionException("test");
+                }
+                synchronized (ledgers) {
+                    for (long ledgerId : updated) {
+                        if (!ledgers.contains(ledgerId)) {
+                            ledgers.append(ledgerId);
+                        }
+                    }
+                }
+            }
+
+            @Override
+            LedgerCollection load(final Stat stat) {
+                return load();
+            }
+
+            @Override
+            LedgerCollection load() {
+                synchronized (ledgers) {
+                    final LedgerCollection copy = new LedgerCollection();
+                    ledgers.forEach(copy::append);
+                    return copy;
+                }
+            }
+        };
+    }
+
+    private CheckpointStore checkpoints() {
+        return new CheckpointStore(null, "test") {
+            @Override
+            void write(final LedgerAccessor accessor, final Entry<byte[]> written) {
+                checkpoint.set(written);
+            }
+
+            @Override
+            Entry<byte[]> read(final LedgerAccessor accessor) {
+                return checkpoint.get();
+            }
+        };
+    }
+
+    /**
+     * Leads until closed, committing what the test hands it and holding everything committed as its state.
+     */
+    private final class StateCommitter extends LedgerCommitter<String> {
+        private final BlockingQueue<String> pending = new LinkedBlockingQueue<>();
+        private final List<String> state = new CopyOnWriteArrayList<>();
+        private final List<String> restored = new CopyOnWriteArrayList<>();
+        private final List<String> replayed;
+        private final AtomicReference<Entry<String>> caughtUpAt = new AtomicReference<>();
+        private volatile Entry<String> lastConsumed = Entry.initial();
+
+        private StateCommitter() {
+            this(new CopyOnWriteArrayList<>());
+        }
+
+        private StateCommitter(final List<String> replayed) {
+            super(UUID.randomUUID(), accessor(), store(), null, null, checkpoints(), new LeaderFlag() {
+                private volatile boolean left;
+
+                @Override
+                public boolean isLeader() {
+                    return !left;
+                }
+
+                @Override
+                public void interrupted() {
+                }
+
+                @Override
+                public void close() {
+                    left = true;
+                }
+            }, e -> replayed.add(e.data()), TEXT);
+            this.replayed = replayed;
+        }
+
+        void commit(final String... data) {
+            pending.addAll(Arrays.asList(data));
+            await().atMost(TIMEOUT).until(() -> pending.isEmpty() && state.containsAll(Arrays.asList(data)));
+        }
+
+        @Override
+        protected Entry<String> attemptCommit(final Ledger ledger, final Entry<String> lastRecordedEntry) {
+            try {
+                final String data = pending.poll(10, TimeUnit.MILLISECONDS);
+                if (data == null) {
+                    return lastRecordedEntry;
+                }
+                final Entry<String> entry = ledger.addEntry(data, s -> s.getBytes(StandardCharsets.UTF_8));
+                state.add(data);
+                lastConsumed = entry;
+                return entry;
+            } catch (Exception e) {
+                throw new Ledger.LedgerException(lastRecordedEntry, e);
+            }
+        }
+
+        @Override
+        protected Entry<byte[]> checkpoint() {
+            final Entry<String> entry = lastConsumed;
+            if (!entry.exists()) {
+                return null;
+            }
+            return new Entry<>(entry.ledgerId(), entry.entryId(), entry.index(), String.join(",", state).getBytes(StandardCharsets.UTF_8));
+        }
+
+        @Override
+        protected void restore(final Entry<byte[]> checkpoint) {
+            final List<String> data = List.of(new String(checkpoint.data(), StandardCharsets.UTF_8).split(","));
+            restored.addAll(data);
+            state.addAll(data);
+        }
+
+        @Override
+        protected void caughtUp(final Entry<String> lastRecordedEntry) {
+            state.addAll(replayed);
+            caughtUpAt.set(lastRecordedEntry);
+        }
+    }
+}
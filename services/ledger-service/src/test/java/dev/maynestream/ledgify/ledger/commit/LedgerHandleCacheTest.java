@@ -0,0 +1,118 @@
+package dev.maynestream.ledgify.ledger.commit;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.not;
+import static org.hamcrest.Matchers.sameInstance;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class LedgerHandleCacheTest {
+
+    @Test
+    void shouldShareOneHandlePerLedger() throws Exception {
+        // given
+        final LedgerHandleCache cache = new LedgerHandleCache(10);
+        final AtomicInteger opens = new AtomicInteger();
+
+        // when
+        try (final LedgerHandleCache.Lease first = cache.acquire(1, () -> opened(opens, new InMemoryLedgerHandle(1)));
+             final LedgerHandleCache.Lease second = cache.acquire(1, () -> opened(opens, new InMemoryLedgerHandle(1)))) {
+
+            // then
+            assertThat(second.handle(), sameInstance(first.handle()));
+            assertThat(opens.get(), equalTo(1));
+            assertThat(cache.stats().hitCount(), equalTo(1L));
+        }
+    }
+
+    @Test
+    void shouldCloseEvictedHandleOnlyOnceLastLeaseIsReleased() throws Exception {
+        // given
+        final LedgerHandleCache cache = new LedgerHandleCache(1);
+        final InMemoryLedgerHandle evicted = new InMemoryLedgerHandle(1);
+        final LedgerHandleCache.Lease first = cache.acquire(1, () -> evicted);
+        final LedgerHandleCache.Lease second = cache.acquire(1, () -> evicted);
+
+        // when
+        cache.acquire(2, () -> new InMemoryLedgerHandle(2)).close();
+        first.close();
+        first.close();
+
+        // then
+        assertThat(evicted.closes(), equalTo(0));
+
+        // when
+        second.close();
+
+        // then
+        assertThat(evicted.closes(), equalTo(1));
+    }
+
+    @Test
+    void shouldReopenLedgerOnceItsHandleIsEvicted() throws Exception {
+        // given
+        final LedgerHandleCache cache = new LedgerHandleCache(1);
+        final InMemoryLedgerHandle evicted = new InMemoryLedgerHandle(1);
+        cache.acquire(1, () -> evicted).close();
+        cache.acquire(2, () -> new InMemoryLedgerHandle(2)).close();
+
+        // when
+        try (final LedgerHandleCache.Lease lease = cache.acquire(1, () -> new InMemoryLedgerHandle(1))) {
+
+            // then
+            assertThat(lease.handle(), not(sameInstance(evicted)));
+            assertThat(evicted.closes(), equalTo(1));
+        }
+    }
+
+    @Test
+    void shouldRefreshLastConfirmedEntryOfOpenLedgerOnlyWhenReused() throws Exception {
+        // given
+        final LedgerHandleCache cache = new LedgerHandleCache(10);
+        final InMemoryLedgerHandle open = new InMemoryLedgerHandle(1);
+        final InMemoryLedgerHandle closed = InMemoryLedgerHandle.closedWith(2, new byte[]{1});
+
+        // when
+        cache.acquire(1, () -> open).close();
+        cache.acquire(2, () -> closed).close();
+
+        // then
+        assertThat(open.lastAddConfirmedReads(), equalTo(0));
+
+        // when
+        cache.acquire(1, () -> open).close();
+        cache.acquire(2, () -> closed).close();
+
+        // then
+        assertThat(open.lastAddConfirmedReads(), equalTo(1));
+        assertThat(closed.lastAddConfirmedReads(), equalTo(0));
+    }
+
+    @Test
+    void shouldNotCacheFailureToOpen() throws Exception {
+        // given
+        final LedgerHandleCache cache = new LedgerHandleCache(10);
+        final IllegalStateException cause = new IllegalStateException("no such ledger");
+
+        // when
+        final Exception thrown = assertThrows(Exception.class, () -> cache.acquire(1, () -> {
+            throw cause;
+        }));
+
+        // then
+        assertThat(thrown, sameInstance(cause));
+        assertThat(cache.size(), equalTo(0L));
+        try (final LedgerHandleCache.Lease lease = cache.acquire(1, () -> new InMemoryLedgerHandle(1))) {
+            assertThat(lease.handle().getId(), equalTo(1L));
+        }
+    }
+
+    private static InMemoryLedgerHandle opened(final AtomicInteger opens, final InMemoryLedgerHandle handle) {
+        opens.incrementAndGet();
+        return handle;
+    }
+}
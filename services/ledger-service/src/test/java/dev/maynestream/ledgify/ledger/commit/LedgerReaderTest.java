@@ -0,0 +1,91 @@
+package dev.maynestream.ledgify.ledger.commit;
+
+import dev.maynestream.ledgify.ledger.BookkeeperConfiguration;
+import dev.maynestream.ledgify.ledger.commit.Ledger.Entry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.Function;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.contains;
+import static org.hamcrest.Matchers.empty;
+import static org.hamcrest.Matchers.equalTo;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class LedgerReaderTest {
+
+    private static final Function<ByteBuffer, String> TEXT = b -> StandardCharsets.UTF_8.decode(b).toString();
+
+    private final LedgerMetrics metrics = new LedgerMetrics(new SimpleMeterRegistry());
+    private final List<Long> opened = new CopyOnWriteArrayList<>();
+    private final List<String> ownConsumer = new CopyOnWriteArrayList<>();
+
+    @Test
+    void shouldReadEveryEntryUpToAndIncludingPosition() throws Exception {
+        // given
+        final Map<Long, InMemoryLedgerHandle> handles = Map.of(1L, InMemoryLedgerHandle.closedWith(1, batch("a"), batch("b", "c")),
+                                                               2L, InMemoryLedgerHandle.closedWith(2, batch("d", "e"), batch("f")),
+                                                               3L, InMemoryLedgerHandle.closedWith(3, batch("g")));
+        final LedgerReader<String> reader = reader(handles, 1L, 2L, 3L);
+        final List<String> preceding = new ArrayList<>();
+
+        // when
+        reader.readUntil(new Entry<>(2, 0, 0, null), e -> preceding.add(e.data()));
+
+        // then
+        assertThat(preceding, contains("a", "b", "c", "d"));
+        assertThat(opened, contains(1L, 2L));
+        assertThat(handles.get(2L).reads(), contains(equalTo(new long[]{0, 0})));
+        assertThat(ownConsumer, empty());
+    }
+
+    @Test
+    void shouldThrowExceptionWhenPositionIsNotInCollection() {
+        // given
+        final LedgerReader<String> reader = reader(Map.of(1L, InMemoryLedgerHandle.closedWith(1, batch("a"))), 1L);
+
+        // when
+        assertThrows(IllegalArgumentException.class, () -> reader.readUntil(new Entry<>(2, 0, 0, null), e -> {}));
+
+        // then
+        assertThat(opened, empty());
+    }
+
+    private LedgerReader<String> reader(final Map<Long, InMemoryLedgerHandle> handles, final long... ledgerIds) {
+        final LedgerCollection ledgers = new LedgerCollection();
+        for (long ledgerId : ledgerIds) {
+            ledgers.append(ledgerId);
+        }
+        final LedgerCollectionStore store = new LedgerCollectionStore(null, "test", metrics) {
+            @Override
+            LedgerCollection load() {
+                return ledgers;
+            }
+        };
+        final LedgerAccessor accessor = new LedgerAccessor(null, new BookkeeperConfiguration(), metrics, new byte[0]) {
+            @Override
+            Ledger openForRead(final long ledgerId) {
+                opened.add(ledgerId);
+                return new Ledger(handles.get(ledgerId));
+            }
+        };
+        return new LedgerReader<>(UUID.randomUUID(), accessor, store, e -> ownConsumer.add(e.data()), TEXT) {
+        };
+    }
+
+    private static byte[] batch(final String... payloads) {
+        final List<byte[]> bytes = new ArrayList<>();
+        for (String payload : payloads) {
+            bytes.add(payload.getBytes(StandardCharsets.UTF_8));
+        }
+        return EntryBatch.pack(bytes);
+    }
+}
@@ -0,0 +1,130 @@
+package dev.maynestream.ledgify.ledger.commit;
+
+import dev.maynestream.ledgify.ledger.commit.Ledger.Entry;
+import org.hamcrest.Matcher;
+import org.junit.jupiter.api.Test;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Function;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.contains;
+import static org.hamcrest.Matchers.empty;
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.sameInstance;
+
+class LedgerTest {
+
+    private static final Function<ByteBuffer, String> TEXT = b -> StandardCharsets.UTF_8.decode(b).toString();
+
+    @Test
+    void shouldConsumeEntryReturnedByLongPollWithoutReadingItAgain() throws Exception {
+        // given
+        final InMemoryLedgerHandle handle = new InMemoryLedgerHandle(7);
+        handle.appendAsync(batch("a"));
+        handle.appendAsync(batch("b", "c"));
+        final Ledger ledger = new Ledger(handle);
+        final Entry<String> lastRecordedEntry = new Entry<>(7, 0, "a");
+        final List<Entry<String>> consumed = new ArrayList<>();
+
+        // when
+        final Entry<String> lastEntry = ledger.awaitEntry(1, 10, lastRecordedEntry, consumed::add, TEXT);
+
+        // then
+        assertThat(consumed, contains(new Entry<>(7, 1, 0, "b"), new Entry<>(7, 1, 1, "c")));
+        assertThat(lastEntry, equalTo(new Entry<>(7, 1, 1, "c")));
+        assertThat(handle.reads(), empty());
+    }
+
+    @Test
+    void shouldConsumeNothingWhenLongPollEndsBeforeEntryIsConfirmed() throws Exception {
+        // given
+        final InMemoryLedgerHandle handle = new InMemoryLedgerHandle(7);
+        handle.appendAsync(batch("a"));
+        final Ledger ledger = new Ledger(handle);
+        final Entry<String> lastRecordedEntry = new Entry<>(7, 0, "a");
+        final List<Entry<String>> consumed = new ArrayList<>();
+
+        // when
+        final Entry<String> lastEntry = ledger.awaitEntry(1, 10, lastRecordedEntry, consumed::add, TEXT);
+
+        // then
+        assertThat(consumed, empty());
+        assertThat(lastEntry, sameInstance(lastRecordedEntry));
+    }
+
+    @Test
+    void shouldStreamEntriesInChunksSizedFromAverageEntrySize() throws Exception {
+        // given
+        final InMemoryLedgerHandle handle = new InMemoryLedgerHandle(7);
+        for (int i = 0; i < 10; i++) {
+            handle.appendAsync(payloadOf(300 * 1024, i));
+        }
+        final Ledger ledger = new Ledger(handle);
+        final List<Entry<Integer>> consumed = new ArrayList<>();
+
+        // when
+        final Entry<Integer> lastEntry = ledger.consumeEntries(0, Entry.initial(), consumed::add, b -> (int) b.get(1));
+
+        // then
+        assertThat(consumed.stream().map(Entry::data).toList(), contains(0, 1, 2, 3, 4, 5, 6, 7, 8, 9));
+        assertThat(lastEntry.entryId(), equalTo(9L));
+        assertThat(handle.reads(), contains(range(0, 2), range(3, 5), range(6, 8), range(9, 9)));
+    }
+
+    @Test
+    void shouldReadNoFurtherThanLastEntryRequested() throws Exception {
+        // given
+        final InMemoryLedgerHandle handle = new InMemoryLedgerHandle(7);
+        for (String payload : List.of("a", "b", "c", "d", "e", "f")) {
+            handle.appendAsync(batch(payload));
+        }
+        final Ledger ledger = new Ledger(handle);
+        final List<Entry<String>> consumed = new ArrayList<>();
+
+        // when
+        ledger.consumeEntries(2, 4, Entry.initial(), consumed::add, TEXT);
+
+        // then
+        assertThat(consumed.stream().map(Entry::data).toList(), contains("c", "d", "e"));
+        assertThat(handle.reads(), contains(range(2, 4)));
+    }
+
+    @Test
+    void shouldReturnLastRecordedEntryWhenNothingIsLeftToConsume() throws Exception {
+        // given
+        final InMemoryLedgerHandle handle = new InMemoryLedgerHandle(7);
+        handle.appendAsync(batch("a"));
+        final Ledger ledger = new Ledger(handle);
+        final Entry<String> lastRecordedEntry = new Entry<>(7, 0, "a");
+
+        // when
+        final Entry<String> lastEntry = ledger.consumeEntries(1, lastRecordedEntry, e -> {}, TEXT);
+
+        // then
+        assertThat(lastEntry, sameInstance(lastRecordedEntry));
+        assertThat(handle.reads(), empty());
+    }
+
+    private static byte[] batch(final String... payloads) {
+        final List<byte[]> bytes = new ArrayList<>();
+        for (String payload : payloads) {
+            bytes.add(payload.getBytes(StandardCharsets.UTF_8));
+        }
+        return EntryBatch.pack(bytes);
+    }
+
+    private static byte[] payloadOf(final int length, final int marker) {
+        final byte[] payload = new byte[length];
+        payload[0] = 1; // not a batch frame, which starts with a zero byte
+        payload[1] = (byte) marker;
+        return payload;
+    }
+
+    private static Matcher<long[]> range(final long first, final long last) {
+        return equalTo(new long[]{first, last});
+    }
+}
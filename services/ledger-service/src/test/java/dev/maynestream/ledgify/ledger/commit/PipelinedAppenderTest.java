@@ -0,0 +1,153 @@
+package dev.maynestream.ledgify.ledger.commit;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.contains;
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.lessThan;
+import static org.hamcrest.Matchers.sameInstance;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class PipelinedAppenderTest {
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private final LedgerMetrics metrics = new LedgerMetrics(meterRegistry);
+
+    @Test
+    void shouldCompleteAddsInEntryOrder() throws Exception {
+        // given
+        final InMemoryLedgerHandle handle = new InMemoryLedgerHandle(1).holdAdds();
+        final PipelinedAppender appender = new PipelinedAppender(handle, 4, metrics.add);
+        final List<Long> completed = new CopyOnWriteArrayList<>();
+        final CompletableFuture<Long> first = appender.append(new byte[]{0});
+        final CompletableFuture<Long> second = appender.append(new byte[]{1});
+        first.thenAccept(completed::add);
+        second.thenAccept(completed::add);
+
+        // when
+        handle.completeAdd(1);
+
+        // then
+        assertThat(second.isDone(), is(false));
+
+        // when
+        handle.completeAdd(0);
+
+        // then
+        assertThat(completed, contains(0L, 1L));
+    }
+
+    @Test
+    void shouldFailEveryAddFromFirstFailure() throws Exception {
+        // given
+        final InMemoryLedgerHandle handle = new InMemoryLedgerHandle(1).holdAdds();
+        final PipelinedAppender appender = new PipelinedAppender(handle, 4, metrics.add);
+        final CompletableFuture<Long> first = appender.append(new byte[]{0});
+        final CompletableFuture<Long> second = appender.append(new byte[]{1});
+        final IllegalStateException cause = new IllegalStateException("bookie unavailable");
+
+        // when
+        handle.completeAdd(1);
+        handle.failAdd(0, cause);
+
+        // then
+        assertThat(causeOf(first), sameInstance(cause));
+        assertThat(causeOf(second), sameInstance(cause));
+        assertThat(appender.failure(), sameInstance(cause));
+        assertThat(causeOf(appender.append(new byte[]{2})), sameInstance(cause));
+        assertThat(handle.addsIssued(), equalTo(2));
+    }
+
+    @Test
+    void shouldBlockAddsBeyondWindowUntilEarlierComplete() throws Exception {
+        // given
+        final InMemoryLedgerHandle handle = new InMemoryLedgerHandle(1).holdAdds();
+        final PipelinedAppender appender = new PipelinedAppender(handle, 1, metrics.add);
+        appender.append(new byte[]{0});
+        final CompletableFuture<CompletableFuture<Long>> blocked = new CompletableFuture<>();
+        Thread.ofVirtual().start(() -> {
+            try {
+                blocked.complete(appender.append(new byte[]{1}));
+            } catch (InterruptedException e) {
+                blocked.completeExceptionally(e);
+            }
+        });
+
+        // when
+        Thread.sleep(100);
+
+        // then
+        assertThat(blocked.isDone(), is(false));
+        assertThat(handle.addsIssued(), equalTo(1));
+
+        // when
+        handle.completeAdd(0);
+
+        // then
+        blocked.get(5, TimeUnit.SECONDS);
+        assertThat(handle.addsIssued(), equalTo(2));
+        assertThat(appender.awaitOutstanding(10, TimeUnit.MILLISECONDS), is(false));
+    }
+
+    @Test
+    void shouldTimeAddFromIssueRatherThanFromWaitingOnWindow() throws Exception {
+        // given
+        final Duration blockedFor = Duration.ofMillis(300);
+        final InMemoryLedgerHandle handle = new InMemoryLedgerHandle(1).holdAdds();
+        final PipelinedAppender appender = new PipelinedAppender(handle, 1, metrics.add);
+        final AtomicLong addNanos = new AtomicLong(-1);
+        appender.append(new byte[]{0});
+        final CompletableFuture<CompletableFuture<Long>> blocked = new CompletableFuture<>();
+        Thread.ofVirtual().start(() -> {
+            try {
+                blocked.complete(appender.append(new byte[]{1}, addNanos::set));
+            } catch (InterruptedException e) {
+                blocked.completeExceptionally(e);
+            }
+        });
+        Thread.sleep(blockedFor.toMillis());
+
+        // when
+        handle.completeAdd(0);
+        blocked.get(5, TimeUnit.SECONDS);
+        handle.completeAdd(1);
+
+        // then
+        assertThat(addNanos.get() >= 0, is(true));
+        assertThat(addNanos.get(), lessThan(blockedFor.toNanos()));
+    }
+
+    @Test
+    void shouldTimeAddsByOutcome() throws Exception {
+        // given
+        final InMemoryLedgerHandle handle = new InMemoryLedgerHandle(1).holdAdds();
+        final PipelinedAppender appender = new PipelinedAppender(handle, 4, metrics.add);
+        final CompletableFuture<Long> succeeded = appender.append(new byte[]{0});
+        final CompletableFuture<Long> failed = appender.append(new byte[]{1});
+
+        // when
+        handle.completeAdd(0);
+        handle.failAdd(1, new IllegalStateException("bookie unavailable"));
+
+        // then
+        succeeded.get(5, TimeUnit.SECONDS);
+        causeOf(failed);
+        assertThat(meterRegistry.get("ledgify.ledger.add").tag("outcome", "success").timer().count(), equalTo(1L));
+        assertThat(meterRegistry.get("ledgify.ledger.add").tag("outcome", "failure").timer().count(), equalTo(1L));
+    }
+
+    private static Throwable causeOf(final CompletableFuture<?> future) {
+        return assertThrows(ExecutionException.class, () -> future.get(5, TimeUnit.SECONDS)).getCause();
+    }
+}
@@ -0,0 +1,123 @@
+package dev.maynestream.ledgify.ledger.commit;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.equalTo;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class RolloverPolicyTest {
+
+    @Test
+    void shouldThrowExceptionWhenLimitIsNegative() {
+        assertThrows(IllegalArgumentException.class, () -> new RolloverPolicy(-1, 0, Duration.ZERO));
+        assertThrows(IllegalArgumentException.class, () -> new RolloverPolicy(0, -1, Duration.ZERO));
+        assertThrows(IllegalArgumentException.class, () -> new RolloverPolicy(0, 0, Duration.ofSeconds(-1)));
+    }
+
+    @Test
+    void shouldBeNeitherNearNorDueBelowThreeQuartersOfEntryLimit() {
+        // given
+        final RolloverPolicy policy = new RolloverPolicy(8, 0, Duration.ZERO);
+
+        // when
+        final Ledger ledger = ledgerOf(5, 1);
+
+        // then
+        assertThat(policy.isNear(ledger), equalTo(false));
+        assertThat(policy.isDue(ledger), equalTo(false));
+    }
+
+    @Test
+    void shouldBeNearFromThreeQuartersOfEntryLimit() {
+        // given
+        final RolloverPolicy policy = new RolloverPolicy(8, 0, Duration.ZERO);
+
+        // when
+        final Ledger ledger = ledgerOf(6, 1);
+
+        // then
+        assertThat(policy.isNear(ledger), equalTo(true));
+        assertThat(policy.isDue(ledger), equalTo(false));
+    }
+
+    @Test
+    void shouldBeDueOnceEntryLimitIsReached() {
+        // given
+        final RolloverPolicy policy = new RolloverPolicy(8, 0, Duration.ZERO);
+
+        // when
+        final Ledger ledger = ledgerOf(8, 1);
+
+        // then
+        assertThat(policy.isNear(ledger), equalTo(true));
+        assertThat(policy.isDue(ledger), equalTo(true));
+    }
+
+    @Test
+    void shouldBeNearAndDueAtBoundariesOfByteLimit() {
+        // given
+        final RolloverPolicy policy = new RolloverPolicy(0, 100, Duration.ZERO);
+
+        // when
+        final Ledger belowNear = ledgerOf(74, 1);
+        final Ledger near = ledgerOf(75, 1);
+        final Ledger belowDue = ledgerOf(99, 1);
+        final Ledger due = ledgerOf(100, 1);
+
+        // then
+        assertThat(policy.isNear(belowNear), equalTo(false));
+        assertThat(policy.isNear(near), equalTo(true));
+        assertThat(policy.isDue(belowDue), equalTo(false));
+        assertThat(policy.isDue(due), equalTo(true));
+    }
+
+    @Test
+    void shouldBeDueOnceLedgerIsOlderThanAgeLimit() {
+        // given
+        final RolloverPolicy expired = new RolloverPolicy(0, 0, Duration.ofNanos(1));
+        final RolloverPolicy fresh = new RolloverPolicy(0, 0, Duration.ofDays(1));
+
+        // when
+        final Ledger ledger = ledgerOf(1, 1);
+
+        // then
+        assertThat(expired.isDue(ledger), equalTo(true));
+        assertThat(fresh.isNear(ledger), equalTo(false));
+    }
+
+    @Test
+    void shouldBeDueWhenAnyLimitIsReached() {
+        // given
+        final RolloverPolicy policy = new RolloverPolicy(1000, 100, Duration.ofDays(1));
+
+        // when
+        final Ledger ledger = ledgerOf(2, 50);
+
+        // then
+        assertThat(policy.isDue(ledger), equalTo(true));
+    }
+
+    @Test
+    void shouldNotApplyLimitsOfZero() {
+        // given
+        final RolloverPolicy policy = new RolloverPolicy(0, 0, Duration.ZERO);
+
+        // when
+        final Ledger ledger = ledgerOf(1000, 1000);
+
+        // then
+        assertThat(policy.isNear(ledger), equalTo(false));
+        assertThat(policy.isDue(ledger), equalTo(false));
+    }
+
+    private static Ledger ledgerOf(final int entries, final int entrySize) {
+        final InMemoryLedgerHandle handle = new InMemoryLedgerHandle(1);
+        for (int i = 0; i < entries; i++) {
+            handle.appendAsync(new byte[entrySize]);
+        }
+        return new Ledger(handle);
+    }
+}
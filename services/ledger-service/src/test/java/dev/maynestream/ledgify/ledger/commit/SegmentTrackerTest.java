@@ -0,0 +1,81 @@
+package dev.maynestream.ledgify.ledger.commit;
+
+import dev.maynestream.ledgify.ledger.LedgerSegment;
+import dev.maynestream.ledgify.ledger.commit.Ledger.Entry;
+import org.junit.jupiter.api.Test;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.greaterThan;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.lessThanOrEqualTo;
+
+class SegmentTrackerTest {
+    private static final SegmentKeys<Long> KEYS = new SegmentKeys<>() {
+        @Override
+        public long committedAt(final Long data) {
+            return data;
+        }
+
+        @Override
+        public String key(final Long data) {
+            return String.valueOf(data);
+        }
+    };
+
+    @Test
+    void shouldDescribeWholeLedger() {
+        // given
+        final SegmentTracker<Long> tracker = trackerOf(1, 100);
+
+        // when
+        final LedgerSegment segment = tracker.toSegment(1234);
+
+        // then
+        assertThat(tracker.isComplete(99), is(true));
+        assertThat(segment.getEntryCount(), equalTo(100L));
+        assertThat(segment.getBytes(), equalTo(1234L));
+        assertThat(segment.getFirstCommittedAt(), equalTo(1000L));
+        assertThat(segment.getLastCommittedAt(), equalTo(1990L));
+        assertThat(segment.getFirstKey(), equalTo("1000"));
+        assertThat(segment.getLastKey(), equalTo("1990"));
+    }
+
+    @Test
+    void shouldSeekToEntriesBracketingTimeRange() {
+        // given
+        final LedgerSegment segment = trackerOf(1, 100).toSegment(0);
+
+        // when
+        final long first = SegmentTracker.seek(segment, 1505);
+        final long last = SegmentTracker.seekEnd(segment, 1605);
+
+        // then
+        assertThat(first, equalTo(50L));
+        assertThat(last, equalTo(60L));
+    }
+
+    @Test
+    void shouldBoundSamplesOfLongLedgers() {
+        // given
+        final LedgerSegment segment = trackerOf(1, 10_000).toSegment(0);
+
+        // when
+        final long first = SegmentTracker.seek(segment, 1000 + 5_000 * 10);
+        final long last = SegmentTracker.seekEnd(segment, 1000 + 5_000 * 10);
+
+        // then
+        assertThat(segment.getSampleEntryIdsCount(), lessThanOrEqualTo(1024));
+        assertThat(first, lessThanOrEqualTo(4_999L));
+        assertThat(last, greaterThan(first));
+        assertThat(last - first, lessThanOrEqualTo(32L));
+    }
+
+    private static SegmentTracker<Long> trackerOf(final long ledgerId, final int entries) {
+        final SegmentTracker<Long> tracker = new SegmentTracker<>(ledgerId, KEYS);
+        for (int i = 0; i < entries; i++) {
+            tracker.record(new Entry<>(ledgerId, i, 1000L + i * 10L));
+        }
+        return tracker;
+    }
+}
@@ -0,0 +1,176 @@
+package dev.maynestream.ledgify.ledger.commit;
+
+import dev.maynestream.ledgify.ledger.BookkeeperConfiguration;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.awaitility.Awaitility.await;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.contains;
+import static org.hamcrest.Matchers.empty;
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.not;
+import static org.hamcrest.Matchers.nullValue;
+
+class StandbyLedgerPoolTest {
+
+    private static final Duration TIMEOUT = Duration.ofSeconds(5);
+
+    private final AtomicLong nextLedgerId = new AtomicLong(1);
+    private final Map<Long, byte[]> created = new ConcurrentHashMap<>();
+    private final List<Long> deleted = new CopyOnWriteArrayList<>();
+    private final LedgerMetrics metrics = new LedgerMetrics(new SimpleMeterRegistry());
+    private final FakeRegistry registry = new FakeRegistry();
+    private StandbyLedgerPool pool;
+
+    @AfterEach
+    void tearDown() {
+        pool.close();
+    }
+
+    @Test
+    void shouldCreateEachStandbyLedgerWithPasswordOfItsOwn() {
+        // given
+        pool = pool(2);
+        await().atMost(TIMEOUT).until(() -> pool.available() == 2);
+
+        // when
+        final StandbyLedgerPool.Standby first = pool.claim();
+        final StandbyLedgerPool.Standby second = pool.claim();
+
+        // then
+        assertThat(first.password(), equalTo(created.get(first.ledger().getId())));
+        assertThat(second.password(), equalTo(created.get(second.ledger().getId())));
+        assertThat(first.password(), not(equalTo(second.password())));
+    }
+
+    @Test
+    void shouldUnregisterClaimedLedgerAndReplenish() {
+        // given
+        pool = pool(1);
+        await().atMost(TIMEOUT).until(() -> pool.available() == 1);
+
+        // when
+        final StandbyLedgerPool.Standby claimed = pool.claim();
+
+        // then
+        assertThat(registry.registered.contains(claimed.ledger().getId()), equalTo(false));
+        await().atMost(TIMEOUT).until(() -> pool.available() == 1);
+        assertThat(created.size(), equalTo(2));
+        assertThat(deleted, empty());
+    }
+
+    @Test
+    void shouldNotClaimLedgerWhoseRegistrationHasGone() {
+        // given
+        pool = pool(1);
+        await().atMost(TIMEOUT).until(() -> pool.available() == 1);
+        final long collected = registry.registered.iterator().next();
+        registry.registered.remove(collected);
+
+        // when
+        final StandbyLedgerPool.Standby claimed = pool.claim();
+
+        // then
+        assertThat(claimed, nullValue());
+        assertThat(deleted, empty()); // left to its collector
+    }
+
+    @Test
+    void shouldDeleteOrphanedRegistrations() {
+        // given
+        registry.registered.add(99L);
+        registry.orphaned.add(99L);
+
+        // when
+        pool = pool(1);
+
+        // then
+        await().atMost(TIMEOUT).until(() -> deleted.contains(99L));
+        assertThat(registry.registered.contains(99L), equalTo(false));
+    }
+
+    @Test
+    void shouldClaimNothingWhenPoolIsEmpty() {
+        // given
+        pool = pool(0);
+
+        // when
+        final StandbyLedgerPool.Standby claimed = pool.claim();
+
+        // then
+        assertThat(claimed, nullValue());
+        assertThat(created.keySet(), empty());
+    }
+
+    @Test
+    void shouldDeleteUnclaimedLedgersOnClose() {
+        // given
+        pool = pool(1);
+        await().atMost(TIMEOUT).until(() -> pool.available() == 1);
+        final long unclaimed = registry.registered.iterator().next();
+
+        // when
+        pool.close();
+
+        // then
+        await().atMost(TIMEOUT).until(() -> !deleted.isEmpty()); // by whichever of close and the replenisher takes it
+        assertThat(deleted, contains(unclaimed));
+        assertThat(registry.registered, empty());
+        assertThat(pool.claim(), nullValue());
+    }
+
+    private StandbyLedgerPool pool(final int size) {
+        final BookkeeperConfiguration configuration = new BookkeeperConfiguration();
+        configuration.setStandbyLedgerPoolSize(size);
+        final LedgerAccessor accessor = new LedgerAccessor(null, configuration, metrics, new byte[0]) {
+            @Override
+            CompletableFuture<Ledger> createAsync(final byte[] password) {
+                final long ledgerId = nextLedgerId.getAndIncrement();
+                created.put(ledgerId, password);
+                return CompletableFuture.completedFuture(new Ledger(new InMemoryLedgerHandle(ledgerId), 1, metrics.add));
+            }
+
+            @Override
+            CompletableFuture<Void> deleteAsync(final long ledgerId) {
+                deleted.add(ledgerId);
+                return CompletableFuture.completedFuture(null);
+            }
+        };
+        return new StandbyLedgerPool(accessor, registry, configuration);
+    }
+
+    private static final class FakeRegistry extends StandbyRegistry {
+        private final Set<Long> registered = ConcurrentHashMap.newKeySet();
+        private final Set<Long> orphaned = ConcurrentHashMap.newKeySet();
+
+        private FakeRegistry() {
+            super(null);
+        }
+
+        @Override
+        void register(final long ledgerId) {
+            registered.add(ledgerId);
+        }
+
+        @Override
+        boolean unregister(final long ledgerId) {
+            return registered.remove(ledgerId);
+        }
+
+        @Override
+        List<Long> registeredBefore(final long epochMillis) {
+            return orphaned.stream().filter(registered::contains).toList();
+        }
+    }
+}
@@ -0,0 +1,76 @@
+package dev.maynestream.ledgify.ledger.transaction;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+
+import static dev.maynestream.ledgify.transaction.TransactionCommitStatus.COMPLETED;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.greaterThanOrEqualTo;
+import static org.hamcrest.Matchers.lessThan;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class CommitAdmissionTest {
+
+    @Test
+    void shouldRejectCommitsBeyondAccountLimit() {
+        // given
+        final CommitAdmission admission = new CommitAdmission(100, 2);
+        final UUID busy = UUID.randomUUID();
+        admission.admit(busy);
+        admission.admit(busy);
+
+        // when
+        final AdmissionRejectedException rejected = assertThrows(AdmissionRejectedException.class, () -> admission.admit(busy));
+        admission.admit(UUID.randomUUID());
+
+        // then
+        assertThat(admission.inFlight(), equalTo(3));
+        assertThat(rejected.getRetryAfter().compareTo(Duration.ZERO) > 0, equalTo(true));
+    }
+
+    @Test
+    void shouldHoldBusyAccountToFairShareOnceCongested() {
+        // given
+        final CommitAdmission admission = new CommitAdmission(8, 8);
+        final UUID busy = UUID.randomUUID();
+        final UUID quiet = UUID.randomUUID();
+        final List<CommitAdmission.Permit> busyPermits = new ArrayList<>();
+        for (int i = 0; i < 7; i++) {
+            busyPermits.add(admission.admit(busy));
+        }
+        admission.admit(quiet);
+        assertThrows(AdmissionRejectedException.class, () -> admission.admit(quiet));
+
+        // when
+        busyPermits.getFirst().release(null);
+
+        // then
+        assertThrows(AdmissionRejectedException.class, () -> admission.admit(busy));
+        admission.admit(quiet);
+        assertThat(admission.inFlight(), equalTo(8));
+    }
+
+    @Test
+    void shouldLowerLimitAsLatencyRises() {
+        // given
+        final CommitAdmission admission = new CommitAdmission(1000, 1000);
+        final UUID accountId = UUID.randomUUID();
+        final int initialLimit = admission.limit();
+        admission.admit(accountId).release(COMPLETED, Duration.ofMillis(1).toNanos());
+
+        // when
+        for (int i = 0; i < 10; i++) {
+            admission.admit(accountId).release(COMPLETED, Duration.ofMillis(10).toNanos());
+        }
+
+        // then
+        assertThat(admission.limit(), lessThan(initialLimit));
+        assertThat(admission.limit(), greaterThanOrEqualTo(CommitAdmission.MIN_LIMIT));
+        assertThat(admission.inFlight(), equalTo(0));
+    }
+}
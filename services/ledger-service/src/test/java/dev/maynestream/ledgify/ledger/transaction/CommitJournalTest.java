@@ -0,0 +1,80 @@
+package dev.maynestream.ledgify.ledger.transaction;
+
+import dev.maynestream.ledgify.ledger.commit.Ledger.Entry;
+import dev.maynestream.ledgify.transaction.Transaction;
+import dev.maynestream.ledgify.transaction.TransactionTestFixtures;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.contains;
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.lessThanOrEqualTo;
+import static org.hamcrest.Matchers.nullValue;
+
+class CommitJournalTest {
+
+    @Test
+    void shouldReadEntriesInAppendOrder() {
+        // given
+        final CommitJournal journal = new CommitJournal(CommitJournal.CHUNK_SIZE * 4L);
+        final List<Entry<Transaction>> entries = List.of(entry(9, 0, 0), entry(9, 0, 1), entry(4, 0, 0));
+
+        // when
+        entries.forEach(journal::append);
+
+        // then
+        assertThat(journal.readAll(), contains(entries.toArray()));
+        assertThat(journal.isComplete(), is(true));
+    }
+
+    @Test
+    void shouldReadFromPositionWithinLedger() {
+        // given
+        final CommitJournal journal = new CommitJournal(CommitJournal.CHUNK_SIZE * 4L);
+        final List<Entry<Transaction>> entries = new ArrayList<>();
+        for (int entryId = 0; entryId < 10; entryId++) {
+            entries.add(entry(2, entryId, 0));
+            entries.add(entry(2, entryId, 1));
+        }
+        entries.add(entry(1, 0, 0));
+        entries.forEach(journal::append);
+
+        // when
+        final List<Entry<Transaction>> read = journal.read(2, 9, 1, 5);
+
+        // then
+        assertThat(read, contains(entries.get(19), entries.get(20)));
+        assertThat(journal.read(3, 0, 0, 5), nullValue());
+    }
+
+    @Test
+    void shouldDropOldestEntriesWhenMemoryBudgetExceeded() {
+        // given
+        final long maxBytes = CommitJournal.CHUNK_SIZE * 2L;
+        final CommitJournal journal = new CommitJournal(maxBytes);
+
+        // when
+        int entryId = 0;
+        while (journal.isComplete()) {
+            journal.append(entry(1, entryId++, 0));
+        }
+        final Entry<Transaction> last = entry(1, entryId, 0);
+        journal.append(last);
+
+        // then
+        assertThat(journal.memoryUsage(), lessThanOrEqualTo(maxBytes));
+        assertThat(journal.readAll().getLast(), equalTo(last));
+        assertThat(journal.read(1, 0, 0, 1), nullValue());
+
+        final Entry<Transaction> first = journal.readAll().getFirst();
+        assertThat(journal.read(1, first.entryId(), 0, 1), contains(first));
+    }
+
+    private static Entry<Transaction> entry(final long ledgerId, final long entryId, final int index) {
+        return new Entry<>(ledgerId, entryId, index, TransactionTestFixtures.transaction().build());
+    }
+}
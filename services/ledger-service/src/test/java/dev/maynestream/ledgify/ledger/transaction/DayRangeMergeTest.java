@@ -0,0 +1,77 @@
+package dev.maynestream.ledgify.ledger.transaction;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.function.Executable;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.stream.IntStream;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.contains;
+import static org.hamcrest.Matchers.equalTo;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class DayRangeMergeTest {
+
+    @Test
+    void shouldMergeDaysIntoOrder() throws Exception {
+        // given
+        final DayRangeMerge merge = new DayRangeMerge(2, 4);
+        final List<DayRangeMerge.Day<Integer>> days = List.of(dayOf(1, 4, 7), dayOf(2, 5, 8), dayOf(3, 6, 9));
+
+        // when
+        final List<Integer> merged = new ArrayList<>();
+        merge.merge(days, Comparator.naturalOrder(), Duration.ofSeconds(5), merged::add);
+
+        // then
+        assertThat(merged, contains(1, 2, 3, 4, 5, 6, 7, 8, 9));
+    }
+
+    @Test
+    void shouldMergeMoreDaysThanParallelismWithFullBuffers() throws Exception {
+        // given
+        final DayRangeMerge merge = new DayRangeMerge(1, 1);
+        final List<DayRangeMerge.Day<Integer>> days = IntStream.range(0, 30)
+                                                               .mapToObj(day -> dayOf(IntStream.range(0, 100)
+                                                                                               .map(i -> i * 30 + day)
+                                                                                               .toArray()))
+                                                               .toList();
+
+        // when
+        final List<Integer> merged = new ArrayList<>();
+        merge.merge(days, Comparator.naturalOrder(), Duration.ofSeconds(10), merged::add);
+
+        // then
+        assertThat(merged, equalTo(IntStream.range(0, 3000).boxed().toList()));
+    }
+
+    @Test
+    void shouldFailMergeWhenDayFails() {
+        // given
+        final DayRangeMerge merge = new DayRangeMerge(2, 4);
+        final DayRangeMerge.Day<Integer> failing = consumer -> {
+            consumer.accept(2);
+            throw new IllegalStateException("unreadable");
+        };
+
+        // when
+        final Executable merging = () -> merge.merge(List.of(dayOf(1, 3), failing),
+                                                     Comparator.naturalOrder(),
+                                                     Duration.ofSeconds(5),
+                                                     ignore -> {});
+
+        // then
+        assertThrows(IllegalStateException.class, merging);
+    }
+
+    private static DayRangeMerge.Day<Integer> dayOf(final int... items) {
+        return consumer -> {
+            for (int item : items) {
+                consumer.accept(item);
+            }
+        };
+    }
+}
@@ -0,0 +1,124 @@
+package dev.maynestream.ledgify.ledger.transaction;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.UUID;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.not;
+import static org.hamcrest.Matchers.nullValue;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class IdempotencyIndexTest {
+
+    @Test
+    void shouldThrowExceptionWhenWindowIsNotPositive() {
+        assertThrows(IllegalArgumentException.class, () -> new IdempotencyIndex(0));
+    }
+
+    @Test
+    void shouldRetainFirstPositionRecordedForTransaction() {
+        // given
+        final IdempotencyIndex index = new IdempotencyIndex(10);
+        final String transactionId = UUID.randomUUID().toString();
+
+        // when
+        index.record(transactionId, 1, 2, 3);
+        index.record(transactionId, 4, 5, 6);
+
+        // then
+        assertThat(index.size(), equalTo(1));
+        assertThat(index.lookup(transactionId), equalTo(new IdempotencyIndex.Position(1, 2, 3)));
+    }
+
+    @Test
+    void shouldForgetOldestTransactionsBeyondIdempotencyWindow() {
+        // given
+        final IdempotencyIndex index = new IdempotencyIndex(2);
+        final List<String> transactionIds = Stream.generate(() -> UUID.randomUUID().toString()).limit(3).toList();
+
+        // when
+        for (int i = 0; i < transactionIds.size(); i++) {
+            index.record(transactionIds.get(i), 1, i, 0);
+        }
+
+        // then
+        assertThat(index.size(), equalTo(2));
+        assertThat(index.lookup(transactionIds.get(0)), nullValue());
+        assertThat(index.lookup(transactionIds.get(2)).entryId(), equalTo(2L));
+    }
+
+    @Test
+    void shouldGrowBeyondInitialCapacityWithinWindow() {
+        // given
+        final IdempotencyIndex index = new IdempotencyIndex(5000);
+        final List<String> transactionIds = Stream.generate(() -> UUID.randomUUID().toString()).limit(3000).toList();
+
+        // when
+        IntStream.range(0, transactionIds.size()).forEach(i -> index.record(transactionIds.get(i), 1, i, 0));
+
+        // then
+        assertThat(index.size(), equalTo(transactionIds.size()));
+        IntStream.range(0, transactionIds.size())
+                 .forEach(i -> assertThat(index.lookup(transactionIds.get(i)).entryId(), equalTo((long) i)));
+    }
+
+    @Test
+    void shouldRestoreRecordsInOriginalOrder() {
+        // given
+        final IdempotencyIndex index = new IdempotencyIndex(3);
+        final List<String> transactionIds = Stream.generate(() -> UUID.randomUUID().toString()).limit(3).toList();
+        IntStream.range(0, transactionIds.size()).forEach(i -> index.record(transactionIds.get(i), 7, i, i));
+
+        // when
+        final IdempotencyIndex restored = new IdempotencyIndex(3);
+        restored.restore(index.toBytes());
+        restored.record(UUID.randomUUID().toString(), 8, 0, 0);
+
+        // then
+        assertThat(restored.size(), equalTo(3));
+        assertThat(restored.lookup(transactionIds.get(0)), nullValue());
+        assertThat(restored.lookup(transactionIds.get(2)), equalTo(new IdempotencyIndex.Position(7, 2, 2)));
+    }
+
+    @Test
+    void shouldThrowExceptionWhenRestoringMalformedBytes() {
+        assertThrows(IllegalArgumentException.class, () -> new IdempotencyIndex(3).restore(new byte[7]));
+    }
+
+    @Test
+    void shouldRecordTransactionSeparatelyForEachAccount() {
+        // given
+        final IdempotencyIndex index = new IdempotencyIndex(10);
+        final String transactionId = UUID.randomUUID().toString();
+        final UUID debited = UUID.randomUUID();
+        final UUID credited = UUID.randomUUID();
+
+        // when
+        index.record(IdempotencyIndex.key(transactionId, debited), 1, 2, 0);
+
+        // then
+        assertThat(index.lookup(IdempotencyIndex.key(transactionId, debited)), equalTo(new IdempotencyIndex.Position(1, 2, 0)));
+        assertThat(index.lookup(IdempotencyIndex.key(transactionId, credited)), nullValue());
+        assertThat(index.lookup(transactionId), nullValue());
+    }
+
+    @Test
+    void shouldNotShareKeyWhenTransactionAndAccountIdsAreSwapped() {
+        // given
+        final UUID first = UUID.randomUUID();
+        final UUID second = UUID.randomUUID();
+
+        // when
+        final UUID key = IdempotencyIndex.key(first.toString(), second);
+        final UUID swapped = IdempotencyIndex.key(second.toString(), first);
+
+        // then
+        assertThat(key, not(equalTo(swapped)));
+        assertThat(IdempotencyIndex.key(first.toString(), second), equalTo(key));
+    }
+}
@@ -3,6 +3,7 @@ package dev.maynestream.ledgify.ledger.transaction;
 import dev.maynestream.ledgify.ledger.BookkeeperConfiguration;
 import dev.maynestream.ledgify.ledger.TestcontainersConfiguration;
 import dev.maynestream.ledgify.ledger.commit.Ledger;
+import dev.maynestream.ledgify.ledger.commit.LedgerMetrics;
 import dev.maynestream.ledgify.ledger.transaction.TransactionLog.CommitAttempt;
 import dev.maynestream.ledgify.transaction.Transaction;
 import dev.maynestream.ledgify.transaction.TransactionCommitStatus;
@@ -41,6 +42,9 @@ class TransactionCommitterTest {
     @Autowired
     private BookkeeperConfiguration bookkeeperConfiguration;
 
+    @Autowired
+    private LedgerMetrics ledgerMetrics;
+
     @Autowired
     private CuratorFramework curator;
 
@@ -197,6 +201,7 @@ class TransactionCommitterTest {
         return new TransactionCommitter(UUID.randomUUID(),
                                         bookkeeper,
                                         bookkeeperConfiguration,
+                                        ledgerMetrics,
                                         curator,
                                         log,
                                         accountId,
@@ -207,6 +212,7 @@ class TransactionCommitterTest {
         return new TransactionReader(UUID.randomUUID(),
                                      bookkeeper,
                                      bookkeeperConfiguration,
+                                     ledgerMetrics,
                                      curator,
                                      accountId,
                                      LocalDate.now(),
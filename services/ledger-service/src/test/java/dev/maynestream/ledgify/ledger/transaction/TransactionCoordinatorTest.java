@@ -0,0 +1,230 @@
+package dev.maynestream.ledgify.ledger.transaction;
+
+import dev.maynestream.ledgify.ledger.BookkeeperConfiguration;
+import dev.maynestream.ledgify.ledger.LedgerCommitResponse;
+import dev.maynestream.ledgify.ledger.cluster.ClusterMembership;
+import dev.maynestream.ledgify.ledger.commit.LeaderFlag;
+import dev.maynestream.ledgify.ledger.commit.Ledger.Entry;
+import dev.maynestream.ledgify.ledger.commit.LedgerAccessor;
+import dev.maynestream.ledgify.ledger.commit.LedgerMetrics;
+import dev.maynestream.ledgify.transaction.Transaction;
+import dev.maynestream.ledgify.transaction.TransactionCommitStatus;
+import dev.maynestream.ledgify.transaction.TransactionTestFixtures;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.time.LocalDate;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.awaitility.Awaitility.await;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.hasSize;
+import static org.hamcrest.Matchers.not;
+import static org.hamcrest.Matchers.sameInstance;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class TransactionCoordinatorTest {
+
+    private static final Duration TIMEOUT = Duration.ofSeconds(10);
+    private static final LedgerMetrics METRICS = new LedgerMetrics(new SimpleMeterRegistry());
+
+    private final List<FakeCommitter> committers = new CopyOnWriteArrayList<>();
+    private final AtomicInteger holding = new AtomicInteger();
+    private volatile CountDownLatch hold = new CountDownLatch(0);
+    private volatile boolean failCreating;
+    private TransactionCoordinator coordinator;
+
+    @AfterEach
+    void tearDown() {
+        hold.countDown();
+        coordinator.close();
+    }
+
+    @Test
+    void shouldHibernateHandlerIdleBeyondTimeout() throws Exception {
+        // given
+        coordinator = coordinator(1);
+        final Transaction transaction = TransactionTestFixtures.transaction().build();
+        coordinator.routeTransaction(accountOf(transaction), transaction);
+
+        // when
+        await().atMost(TIMEOUT).until(() -> committers.getFirst().closed);
+
+        // then
+        assertThat(committers, hasSize(1));
+    }
+
+    @Test
+    void shouldNotHibernateHandlerInUse() throws Exception {
+        // given
+        coordinator = coordinator(2);
+        final Transaction first = TransactionTestFixtures.transaction().build();
+        final UUID accountId = accountOf(first);
+        coordinator.routeTransaction(accountId, first);
+
+        // when
+        for (int i = 0; i < 6; i++) {
+            Thread.sleep(500);
+            coordinator.routeTransaction(accountId, TransactionTestFixtures.transaction().setDetails(first.getDetails()).build());
+        }
+
+        // then
+        assertThat(committers, hasSize(1));
+        assertThat(committers.getFirst().closed, equalTo(false));
+    }
+
+    @Test
+    void shouldWakeHibernatedHandlerOnNextCommit() throws Exception {
+        // given
+        coordinator = coordinator(1);
+        final Transaction first = TransactionTestFixtures.transaction().build();
+        final UUID accountId = accountOf(first);
+        coordinator.routeTransaction(accountId, first);
+        await().atMost(TIMEOUT).until(() -> committers.getFirst().closed);
+
+        // when
+        final LedgerCommitResponse response = coordinator.routeTransaction(accountId, TransactionTestFixtures.transaction()
+                                                                                                         .setDetails(first.getDetails())
+                                                                                                         .build());
+
+        // then
+        assertThat(response.getState().getStatus(), equalTo(TransactionCommitStatus.COMPLETED));
+        assertThat(committers, hasSize(2));
+        assertThat(committers.get(1).closed, equalTo(false));
+        assertThat(committers.get(1).log, not(sameInstance(committers.getFirst().log)));
+    }
+
+    @Test
+    void shouldCountCommitsThatFailToBeHandledAgainstAdmissionLimit() throws Exception {
+        // given
+        final BookkeeperConfiguration bookkeeperConfiguration = new BookkeeperConfiguration();
+        bookkeeperConfiguration.setAdmissionMaxInFlight(CommitAdmission.MIN_LIMIT + 1);
+        bookkeeperConfiguration.setAdmissionAccountMaxInFlight(CommitAdmission.MIN_LIMIT + 1);
+        coordinator = coordinator(bookkeeperConfiguration);
+        failCreating = true;
+        final Transaction failed = TransactionTestFixtures.transaction().build();
+        assertThrows(Exception.class, () -> coordinator.routeTransaction(accountOf(failed), failed));
+        failCreating = false;
+
+        // when
+        hold = new CountDownLatch(1);
+        for (int i = 0; i < CommitAdmission.MIN_LIMIT; i++) {
+            final Transaction held = TransactionTestFixtures.transaction().build();
+            Thread.ofVirtual().start(() -> {
+                try {
+                    coordinator.routeTransaction(accountOf(held), held);
+                } catch (Exception ignored) {
+                }
+            });
+        }
+        await().atMost(TIMEOUT).until(() -> holding.get() == CommitAdmission.MIN_LIMIT);
+
+        // then
+        final Transaction beyondLimit = TransactionTestFixtures.transaction().build();
+        assertThrows(AdmissionRejectedException.class, () -> coordinator.routeTransaction(accountOf(beyondLimit), beyondLimit));
+    }
+
+    private TransactionCoordinator coordinator(final long handlerIdleSecs) throws InterruptedException {
+        final BookkeeperConfiguration bookkeeperConfiguration = new BookkeeperConfiguration();
+        bookkeeperConfiguration.setHandlerIdleSecs(handlerIdleSecs);
+        return coordinator(bookkeeperConfiguration);
+    }
+
+    private TransactionCoordinator coordinator(final BookkeeperConfiguration bookkeeperConfiguration) throws InterruptedException {
+        bookkeeperConfiguration.setCommittersPerAccount(1);
+        final TransactionCommitterFactory committerFactory = new TransactionCommitterFactory(null, bookkeeperConfiguration, METRICS, null, null, null) {
+            @Override
+            public TransactionCommitter create(final TransactionLog log, final UUID accountId, final LocalDate date) {
+                if (failCreating) {
+                    throw new IllegalStateException("election unavailable");
+                }
+                final FakeCommitter committer = new FakeCommitter(bookkeeperConfiguration, log, accountId, date);
+                committers.add(committer);
+                return committer;
+            }
+        };
+        return new TransactionCoordinator(committerFactory,
+                                          new TransactionProjections(committerFactory, bookkeeperConfiguration),
+                                          bookkeeperConfiguration,
+                                          new ClusterMembership(null, bookkeeperConfiguration),
+                                          new SimpleMeterRegistry());
+    }
+
+    private static UUID accountOf(final Transaction transaction) {
+        return UUID.fromString(transaction.getDetails().getDebitAccountId());
+    }
+
+    /**
+     * Commits every transaction submitted to its log as an entry of its own, once any hold is released, until closed.
+     */
+    private final class FakeCommitter extends TransactionCommitter {
+        private final AtomicLong nextEntryId = new AtomicLong();
+        private final TransactionLog log;
+        private volatile Thread thread;
+        private volatile boolean closed;
+
+        private FakeCommitter(final BookkeeperConfiguration bookkeeperConfiguration,
+                              final TransactionLog log,
+                              final UUID accountId,
+                              final LocalDate date) {
+            super(UUID.randomUUID(),
+                  new LedgerAccessor(null, bookkeeperConfiguration, METRICS, new byte[0]),
+                  null,
+                  new LeaderFlag() {
+                      @Override
+                      public boolean isLeader() {
+                          return true;
+                      }
+
+                      @Override
+                      public void interrupted() {
+                      }
+
+                      @Override
+                      public void close() {
+                      }
+                  },
+                  bookkeeperConfiguration,
+                  METRICS,
+                  log,
+                  accountId,
+                  date);
+            this.log = log;
+        }
+
+        @Override
+        public void run() {
+            thread = Thread.currentThread();
+            while (!closed) {
+                try {
+                    log.awaitCommit(attempt -> {
+                        holding.incrementAndGet();
+                        hold.await();
+                        return new Entry<>(1, nextEntryId.getAndIncrement(), attempt.transaction());
+                    });
+                } catch (InterruptedException e) {
+                    return;
+                } catch (Exception e) {
+                    throw new IllegalStateException(e);
+                }
+            }
+        }
+
+        @Override
+        public void close() {
+            closed = true;
+            final Thread running = thread;
+            if (running != null) {
+                running.interrupt();
+            }
+        }
+    }
+}
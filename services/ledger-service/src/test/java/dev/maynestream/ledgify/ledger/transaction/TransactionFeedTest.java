@@ -0,0 +1,91 @@
+package dev.maynestream.ledgify.ledger.transaction;
+
+import dev.maynestream.ledgify.ledger.TestcontainersConfiguration;
+import dev.maynestream.ledgify.ledger.commit.Ledger.Entry;
+import dev.maynestream.ledgify.ledger.transaction.TransactionLog.CommitAttempt;
+import dev.maynestream.ledgify.transaction.Transaction;
+import dev.maynestream.ledgify.transaction.TransactionCommitStatus;
+import dev.maynestream.ledgify.transaction.TransactionTestFixtures;
+import lombok.SneakyThrows;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.context.annotation.Import;
+
+import java.time.Duration;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+import static dev.maynestream.ledgify.CommonTestFixtures.randomId;
+import static org.awaitility.Awaitility.await;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.contains;
+import static org.hamcrest.Matchers.equalTo;
+
+@Import(TestcontainersConfiguration.class)
+@SpringBootTest
+class TransactionFeedTest {
+
+    private static final int BUFFER_CAPACITY = 8;
+
+    @Autowired
+    private TransactionCommitterFactory committerFactory;
+
+    @Test
+    void shouldPublishOnlyTransactionsCommittedAfterStartingOnAccountWithHistory() throws Exception {
+        // given
+        final UUID accountId = randomId();
+        final TransactionLog log = new TransactionLog(accountId);
+        final List<Transaction> history = generateTransactions(accountId, BUFFER_CAPACITY * 4);
+        final List<Transaction> expected = generateTransactions(accountId, BUFFER_CAPACITY / 2);
+        final List<Transaction> actual = new ArrayList<>();
+
+        try (final TransactionCommitter committer = committerFactory.create(log, accountId, LocalDate.now())) {
+            new Thread(committer).start();
+            history.forEach(t -> submit(log, t));
+            await().atMost(Duration.ofSeconds(20)).until(() -> log.getCommits().size() == history.size());
+            final Entry<byte[]> lastOfHistory = log.checkpoint();
+
+            // when
+            try (final TransactionFeed feed = new TransactionFeed(accountId, committerFactory, f -> {})) {
+                final TransactionFeed.Subscription subscription = feed.subscribe(BUFFER_CAPACITY, e -> e);
+                feed.start();
+                final Entry<Transaction> started = subscription.awaitStarted(10, TimeUnit.SECONDS);
+
+                expected.forEach(t -> submit(log, t));
+                await().atMost(Duration.ofSeconds(20)).until(() -> {
+                    subscription.poll(BUFFER_CAPACITY, 100, TimeUnit.MILLISECONDS).forEach(e -> actual.add(e.data()));
+                    return actual.size() >= expected.size() || !subscription.isActive();
+                });
+
+                // then
+                assertThat(started.ledgerId(), equalTo(lastOfHistory.ledgerId()));
+                assertThat(started.entryId(), equalTo(lastOfHistory.entryId()));
+                assertThat(subscription.isOverflowed(), equalTo(false));
+                assertThat(actual, contains(log.getCommits().subList(history.size(), log.getCommits().size()).toArray()));
+            }
+        }
+    }
+
+    private static List<Transaction> generateTransactions(final UUID accountId, final int transactionCount) {
+        return Stream.generate(() -> pendingTransactionForAccount(accountId))
+                     .limit(transactionCount)
+                     .toList();
+    }
+
+    private static Transaction pendingTransactionForAccount(final UUID accountId) {
+        final Transaction.Builder transaction = TransactionTestFixtures.transaction();
+        transaction.getDetailsBuilder().setDebitAccountId(accountId.toString()).build();
+        transaction.getCommitStateBuilder().setContext("").setStatus(TransactionCommitStatus.PENDING);
+        return transaction.build();
+    }
+
+    @SneakyThrows
+    private static void submit(final TransactionLog log, final Transaction transaction) {
+        log.submit(CommitAttempt.forTransaction(transaction));
+    }
+}
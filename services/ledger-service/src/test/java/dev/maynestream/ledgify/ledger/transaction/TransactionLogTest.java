@@ -1,26 +1,45 @@
 package dev.maynestream.ledgify.ledger.transaction;
 
+import dev.maynestream.ledgify.ledger.commit.Ledger.Entry;
+import dev.maynestream.ledgify.ledger.commit.LedgerMetrics;
 import dev.maynestream.ledgify.ledger.transaction.TransactionLog.CommitAttempt;
 import dev.maynestream.ledgify.transaction.Transaction;
 import dev.maynestream.ledgify.transaction.TransactionCommitState;
 import dev.maynestream.ledgify.transaction.TransactionCommitStatus;
 import dev.maynestream.ledgify.transaction.TransactionTestFixtures;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.function.Executable;
 
 import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
 
 import static dev.maynestream.ledgify.ledger.transaction.TransactionLog.COMMIT_TRANSACTION_TIMEOUT_SECS;
 import static dev.maynestream.ledgify.ledger.transaction.TransactionLog.SUBMIT_TRANSACTION_TIMEOUT_SECS;
 import static java.time.Duration.ofMillis;
 import static java.time.Duration.ofSeconds;
 import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.contains;
+import static org.hamcrest.Matchers.empty;
 import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.everyItem;
+import static org.hamcrest.Matchers.hasProperty;
+import static org.hamcrest.Matchers.nullValue;
 import static org.junit.jupiter.api.Assertions.assertThrows;
 
 class TransactionLogTest {
 
+    private static final LedgerMetrics METRICS = new LedgerMetrics(new SimpleMeterRegistry());
+
     @Test
     void shouldThrowExceptionWhenInstantiatedWithNullAccount() {
         // given
@@ -92,6 +111,7 @@ class TransactionLogTest {
                 log.awaitCommit(t -> {
                     // simulate long commit time
                     Thread.sleep(ofSeconds(COMMIT_TRANSACTION_TIMEOUT_SECS + 1));
+                    return committed(t);
                 });
             });
 
@@ -130,6 +150,7 @@ class TransactionLogTest {
             log.awaitCommit(t -> {
                 // simulate long commit time
                 Thread.sleep(ofSeconds(COMMIT_TRANSACTION_TIMEOUT_SECS + 1));
+                return committed(t);
             });
         });
 
@@ -147,7 +168,7 @@ class TransactionLogTest {
 
         // when
         doConcurrentlyWithDelay(ofSeconds(0), () -> {
-            log.awaitCommit(t -> { });
+            log.awaitCommit(TransactionLogTest::committed);
         });
 
         final TransactionCommitState state = log.submit(CommitAttempt.forTransaction(transaction));
@@ -155,6 +176,29 @@ class TransactionLogTest {
         assertThat(state.getStatus(), equalTo(TransactionCommitStatus.COMPLETED));
     }
 
+    @Test
+    void shouldTimeSubmitWaitAndCommitHandoff() throws InterruptedException {
+        // given
+        final UUID accountId = UUID.randomUUID();
+        final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+        final TransactionLog log = new TransactionLog(accountId,
+                                                      TransactionLog.DEFAULT_IDEMPOTENCY_WINDOW,
+                                                      TransactionLog.DEFAULT_JOURNAL_MAX_BYTES,
+                                                      new LedgerMetrics(meterRegistry));
+        final Transaction transaction = transactionForAccountDebit(accountId).build();
+
+        // when
+        doConcurrentlyWithDelay(ofSeconds(0), () -> {
+            log.awaitCommit(TransactionLogTest::committed);
+        });
+
+        log.submit(CommitAttempt.forTransaction(transaction));
+
+        // then
+        assertThat(meterRegistry.get("ledgify.transaction.submit.wait").timer().count(), equalTo(1L));
+        assertThat(meterRegistry.get("ledgify.transaction.commit.handoff").timer().count(), equalTo(1L));
+    }
+
     @Test
     void shouldThrowExceptionWhenAwaitTransactionInterrupted() {
         // given
@@ -166,13 +210,311 @@ class TransactionLogTest {
             final Thread currentThread = Thread.currentThread();
             doConcurrentlyWithDelay(ofMillis(500), currentThread::interrupt);
 
-            log.awaitCommit(transaction -> { });
+            log.awaitCommit(TransactionLogTest::committed);
         };
 
         // then
         assertThrows(InterruptedException.class, await);
     }
 
+    @Test
+    void shouldCompleteConcurrentSubmissionsWithTheirOwnEntries() throws Exception {
+        // given
+        final UUID accountId = UUID.randomUUID();
+        final TransactionLog log = new TransactionLog(accountId);
+        final int transactionCount = 50;
+        final List<CommitAttempt> attempts = Stream.generate(() -> transactionForAccountDebit(accountId).build())
+                                                   .limit(transactionCount)
+                                                   .map(CommitAttempt::forTransaction)
+                                                   .toList();
+        final AtomicLong nextEntryId = new AtomicLong();
+
+        // when
+        doConcurrentlyWithDelay(ofSeconds(0), () -> {
+            while (nextEntryId.get() < transactionCount) {
+                log.awaitCommits(8, Integer.MAX_VALUE, 0, batch -> {
+                    final long entryId = nextEntryId.getAndAdd(batch.size());
+                    return CompletableFuture.completedFuture(IntStream.range(0, batch.size())
+                                                                      .mapToObj(i -> new Entry<>(0, entryId + i, batch.get(i).transaction()))
+                                                                      .toList());
+                });
+            }
+        });
+
+        final List<TransactionCommitState> states = new ArrayList<>();
+        try (final ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor()) {
+            final List<Future<TransactionCommitState>> submissions = attempts.stream()
+                                                                             .map(a -> executor.submit(() -> log.submit(a)))
+                                                                             .toList();
+            for (Future<TransactionCommitState> submission : submissions) {
+                states.add(submission.get());
+            }
+        }
+
+        // then
+        assertThat(states, everyItem(hasProperty("status", equalTo(TransactionCommitStatus.COMPLETED))));
+        assertThat(attempts.stream().map(a -> a.committedEntry().data()).toList(),
+                   contains(attempts.stream().map(CommitAttempt::transaction).toArray()));
+        assertThat(attempts.stream().map(a -> a.committedEntry().entryId()).distinct().count(),
+                   equalTo((long) transactionCount));
+        assertThat(log.getCommits().size(), equalTo(transactionCount));
+    }
+
+    @Test
+    void shouldReturnOriginalPositionWhenCommittedTransactionRetried() throws Exception {
+        // given
+        final UUID accountId = UUID.randomUUID();
+        final TransactionLog log = new TransactionLog(accountId);
+        final Transaction transaction = transactionForAccountDebit(accountId).build();
+        final AtomicLong commits = new AtomicLong();
+
+        doConcurrentlyWithDelay(ofSeconds(0), () -> {
+            log.awaitCommit(attempt -> {
+                commits.incrementAndGet();
+                return new Entry<>(3, 7, attempt.transaction());
+            });
+        });
+        log.submit(CommitAttempt.forTransaction(transaction));
+
+        // when
+        final CommitAttempt retry = CommitAttempt.forTransaction(transaction);
+        final TransactionCommitState state = log.submit(retry);
+
+        // then
+        assertThat(state.getStatus(), equalTo(TransactionCommitStatus.COMPLETED));
+        assertThat(retry.committedEntry().ledgerId(), equalTo(3L));
+        assertThat(retry.committedEntry().entryId(), equalTo(7L));
+        assertThat(commits.get(), equalTo(1L));
+    }
+
+    @Test
+    void shouldReturnOriginalPositionForTransactionRecordedFromLedger() throws Exception {
+        // given
+        final UUID accountId = UUID.randomUUID();
+        final TransactionLog log = new TransactionLog(accountId);
+        final Transaction transaction = transactionForAccountDebit(accountId).build();
+        log.recordCommitted(new Entry<>(5, 2, 1, transaction));
+
+        // when
+        final CommitAttempt retry = CommitAttempt.forTransaction(transaction);
+        final TransactionCommitState state = log.submit(retry);
+
+        // then
+        assertThat(state.getStatus(), equalTo(TransactionCommitStatus.COMPLETED));
+        assertThat(retry.committedEntry().entryId(), equalTo(2L));
+        assertThat(retry.committedEntry().index(), equalTo(1));
+    }
+
+    @Test
+    void shouldIgnoreEntriesRecordedMoreThanOnce() {
+        // given
+        final UUID accountId = UUID.randomUUID();
+        final TransactionLog log = new TransactionLog(accountId);
+        final Entry<Transaction> first = new Entry<>(5, 0, transactionForAccountDebit(accountId).build());
+        final Entry<Transaction> second = new Entry<>(5, 1, transactionForAccountDebit(accountId).build());
+
+        // when
+        log.recordCommitted(first);
+        log.recordCommitted(second);
+        final boolean recorded = log.recordCommitted(first);
+
+        // then
+        assertThat(recorded, equalTo(false));
+        assertThat(log.getCommits(), contains(first.data(), second.data()));
+    }
+
+    @Test
+    void shouldReturnCommitsAfterPositionWithinBatchedEntry() {
+        // given
+        final UUID accountId = UUID.randomUUID();
+        final TransactionLog log = new TransactionLog(accountId);
+        final List<Entry<Transaction>> entries = List.of(new Entry<>(5, 0, 0, transactionForAccountDebit(accountId).build()),
+                                                         new Entry<>(5, 0, 1, transactionForAccountDebit(accountId).build()),
+                                                         new Entry<>(5, 1, 0, transactionForAccountDebit(accountId).build()));
+        entries.forEach(log::recordCommitted);
+        log.caughtUp();
+
+        // when
+        final List<Entry<Transaction>> commits = log.getCommitsAfter(entries.getFirst(), 10);
+
+        // then
+        assertThat(commits, contains(entries.get(1), entries.get(2)));
+        assertThat(log.getCommitsAfter(Entry.initial(), 1), contains(entries.getFirst()));
+    }
+
+    @Test
+    void shouldNotServeCommitsUntilCaughtUpWithLedgers() {
+        // given
+        final UUID accountId = UUID.randomUUID();
+        final TransactionLog log = new TransactionLog(accountId);
+        final Entry<Transaction> replayed = new Entry<>(5, 0, 0, transactionForAccountDebit(accountId).build());
+
+        // when
+        log.recordCommitted(replayed);
+
+        // then
+        assertThat(log.hasCompleteHistory(), equalTo(false));
+        assertThat(log.getCommitsAfter(Entry.initial(), 10), nullValue());
+        assertThat(log.getCommitsAfter(replayed, 10), nullValue());
+
+        // when
+        log.caughtUp();
+
+        // then
+        assertThat(log.hasCompleteHistory(), equalTo(true));
+        assertThat(log.getCommitsAfter(Entry.initial(), 10), contains(replayed));
+        assertThat(log.getCommitsAfter(replayed, 10), empty());
+    }
+
+    @Test
+    void shouldRecogniseTransactionsCommittedBeforeRestoredCheckpoint() throws Exception {
+        // given
+        final UUID accountId = UUID.randomUUID();
+        final TransactionLog log = new TransactionLog(accountId);
+        final Transaction transaction = transactionForAccountDebit(accountId).build();
+        log.recordCommitted(new Entry<>(5, 2, 1, transaction));
+        log.recordCommitted(new Entry<>(5, 3, 0, transactionForAccountDebit(accountId).build()));
+
+        // when
+        final TransactionLog restored = new TransactionLog(accountId);
+        restored.restore(log.checkpoint());
+        final CommitAttempt retry = CommitAttempt.forTransaction(transaction);
+        final TransactionCommitState state = restored.submit(retry);
+
+        // then
+        assertThat(state.getStatus(), equalTo(TransactionCommitStatus.COMPLETED));
+        assertThat(retry.committedEntry().entryId(), equalTo(2L));
+        assertThat(retry.committedEntry().index(), equalTo(1));
+        assertThat(restored.checkpoint().entryId(), equalTo(3L));
+        assertThat(restored.hasCompleteHistory(), equalTo(false));
+        assertThat(restored.recordCommitted(new Entry<>(5, 3, 0, transactionForAccountDebit(accountId).build())), equalTo(false));
+    }
+
+    @Test
+    void shouldServeCompleteHistoryOnceCommitsBeforeRestoredCheckpointAreBackfilled() {
+        // given
+        final UUID accountId = UUID.randomUUID();
+        final TransactionLog log = new TransactionLog(accountId);
+        final List<Entry<Transaction>> preceding = List.of(new Entry<>(5, 0, 0, transactionForAccountDebit(accountId).build()),
+                                                           new Entry<>(5, 1, 0, transactionForAccountDebit(accountId).build()));
+        preceding.forEach(log::recordCommitted);
+        final TransactionLog restored = new TransactionLog(accountId);
+        restored.restore(log.checkpoint());
+        final Entry<Transaction> following = new Entry<>(6, 0, 0, transactionForAccountDebit(accountId).build());
+        restored.recordCommitted(following);
+        restored.caughtUp();
+
+        // when
+        final TransactionLog.Backfill backfill = restored.backfill();
+
+        // then
+        assertThat(restored.hasCompleteHistory(), equalTo(false));
+        assertThat(restored.getCommitsAfter(Entry.initial(), 10), nullValue());
+        assertThat(backfill.until(), equalTo(new Entry<>(5, 1, 0, null)));
+        assertThat(restored.backfill(), nullValue());
+
+        // when
+        preceding.forEach(backfill);
+        backfill.complete();
+
+        // then
+        assertThat(restored.hasCompleteHistory(), equalTo(true));
+        assertThat(restored.getCommitsAfter(Entry.initial(), 10), contains(preceding.get(0), preceding.get(1), following));
+        assertThat(restored.backfill(), nullValue());
+    }
+
+    @Test
+    void shouldIndexBackfilledCommitsOfPartitionedLog() {
+        // given
+        final UUID partitionId = UUID.randomUUID();
+        final UUID accountId = UUID.randomUUID();
+        final TransactionLog log = new TransactionLog(partitionId, 100, TransactionLog.DEFAULT_JOURNAL_MAX_BYTES, true, METRICS);
+        final Transaction first = transactionForAccountDebit(accountId).build();
+        final Transaction second = transactionForAccountDebit(accountId).build();
+        final Entry<Transaction> preceding = new Entry<>(5, 0, 0, AccountTag.tag(accountId, first));
+        log.recordCommitted(preceding);
+        final TransactionLog restored = new TransactionLog(partitionId, 100, TransactionLog.DEFAULT_JOURNAL_MAX_BYTES, true, METRICS);
+        restored.restore(log.checkpoint());
+        restored.recordCommitted(new Entry<>(6, 0, 0, AccountTag.tag(accountId, second)));
+        restored.caughtUp();
+
+        // when
+        final TransactionLog.Backfill backfill = restored.backfill();
+        backfill.accept(preceding);
+        backfill.complete();
+
+        // then
+        assertThat(restored.hasCompleteHistory(), equalTo(true));
+        assertThat(restored.getCommits(accountId), contains(first, second));
+    }
+
+    @Test
+    void shouldNotCompleteBackfillOnceLaterCommitsHaveBeenDropped() {
+        // given
+        final UUID accountId = UUID.randomUUID();
+        final TransactionLog log = new TransactionLog(accountId);
+        final Entry<Transaction> preceding = new Entry<>(5, 0, 0, transactionForAccountDebit(accountId).build());
+        log.recordCommitted(preceding);
+        final TransactionLog restored = new TransactionLog(accountId, 100, CommitJournal.CHUNK_SIZE, METRICS);
+        restored.restore(log.checkpoint());
+        IntStream.range(0, 1000)
+                 .forEach(i -> restored.recordCommitted(new Entry<>(6, i, 0, transactionForAccountDebit(accountId).build())));
+        restored.caughtUp();
+
+        // when
+        final TransactionLog.Backfill backfill = restored.backfill();
+        backfill.accept(preceding);
+        backfill.complete();
+
+        // then
+        assertThat(restored.hasCompleteHistory(), equalTo(false));
+        assertThat(restored.backfill(), nullValue());
+    }
+
+    @Test
+    void shouldRestoreCheckpointOnlyBeforeLogHoldsState() {
+        // given
+        final UUID accountId = UUID.randomUUID();
+        final TransactionLog log = new TransactionLog(accountId);
+        log.recordCommitted(new Entry<>(5, 0, 0, transactionForAccountDebit(accountId).build()));
+        final Entry<byte[]> earlierCheckpoint = log.checkpoint();
+        log.recordCommitted(new Entry<>(6, 0, 0, transactionForAccountDebit(accountId).build()));
+        log.caughtUp();
+
+        // when
+        log.restore(earlierCheckpoint);
+
+        // then
+        assertThat(log.checkpoint().ledgerId(), equalTo(6L));
+        assertThat(log.hasCompleteHistory(), equalTo(true));
+        assertThat(log.backfill(), nullValue());
+    }
+
+    @Test
+    void shouldListEachAccountsUntaggedCommitsFromPartitionedLog() {
+        // given
+        final UUID partitionId = UUID.randomUUID();
+        final UUID firstAccount = UUID.randomUUID();
+        final UUID secondAccount = UUID.randomUUID();
+        final TransactionLog log = new TransactionLog(partitionId, 100, TransactionLog.DEFAULT_JOURNAL_MAX_BYTES, true, METRICS);
+        final Transaction first = transactionForAccountDebit(firstAccount).build();
+        final Transaction second = transactionForAccountDebit(secondAccount).build();
+        final Transaction third = transactionForAccountDebit(firstAccount).build();
+
+        // when
+        log.recordCommitted(new Entry<>(5, 0, 0, AccountTag.tag(firstAccount, first)));
+        log.recordCommitted(new Entry<>(5, 0, 1, AccountTag.tag(secondAccount, second)));
+        log.recordCommitted(new Entry<>(5, 1, 0, AccountTag.tag(firstAccount, third)));
+
+        // then
+        assertThat(log.getCommits(firstAccount), contains(first, third));
+        assertThat(log.getCommits(secondAccount), contains(second));
+    }
+
+    private static Entry<Transaction> committed(final CommitAttempt commitAttempt) {
+        return new Entry<>(0, 0, commitAttempt.transaction());
+    }
+
     private static Transaction.Builder transactionForAccountDebit(final UUID accountId) {
         return TransactionTestFixtures.transaction()
                                       .mergeDetails(TransactionTestFixtures.transactionDetails()
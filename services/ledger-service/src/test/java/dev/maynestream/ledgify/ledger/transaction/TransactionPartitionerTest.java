@@ -0,0 +1,65 @@
+package dev.maynestream.ledgify.ledger.transaction;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.function.Executable;
+
+import java.util.Map;
+import java.util.UUID;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.everyItem;
+import static org.hamcrest.Matchers.greaterThan;
+import static org.hamcrest.Matchers.lessThan;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class TransactionPartitionerTest {
+
+    @Test
+    void shouldThrowExceptionWhenInstantiatedWithoutPartitions() {
+        // given
+        final int partitionCount = 0;
+
+        // when
+        final Executable init = () -> new TransactionPartitioner(partitionCount);
+
+        // then
+        assertThrows(IllegalArgumentException.class, init);
+    }
+
+    @Test
+    void shouldSpreadManyAccountsEvenlyOverFixedPartitions() {
+        // given
+        final int partitionCount = 64;
+        final int accountCount = 100_000;
+        final TransactionPartitioner partitioner = new TransactionPartitioner(partitionCount);
+
+        // when
+        final Map<UUID, Long> accountsPerPartition = Stream.generate(UUID::randomUUID)
+                                                           .limit(accountCount)
+                                                           .map(partitioner::partitionOf)
+                                                           .collect(Collectors.groupingBy(Function.identity(),
+                                                                                          Collectors.counting()));
+
+        // then
+        final long expected = accountCount / partitionCount;
+        assertThat(accountsPerPartition.size(), equalTo(partitionCount));
+        assertThat(accountsPerPartition.values(), everyItem(greaterThan(expected * 8 / 10)));
+        assertThat(accountsPerPartition.values(), everyItem(lessThan(expected * 12 / 10)));
+    }
+
+    @Test
+    void shouldMapAccountToSamePartitionEachTime() {
+        // given
+        final UUID accountId = UUID.randomUUID();
+
+        // when
+        final UUID partitionId = new TransactionPartitioner(16).partitionOf(accountId);
+
+        // then
+        assertThat(new TransactionPartitioner(16).partitionOf(accountId), equalTo(partitionId));
+    }
+}
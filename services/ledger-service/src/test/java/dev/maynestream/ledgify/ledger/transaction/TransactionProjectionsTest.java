@@ -0,0 +1,195 @@
+package dev.maynestream.ledgify.ledger.transaction;
+
+import dev.maynestream.ledgify.ledger.BookkeeperConfiguration;
+import dev.maynestream.ledgify.ledger.commit.Ledger.Entry;
+import dev.maynestream.ledgify.ledger.commit.LedgerMetrics;
+import dev.maynestream.ledgify.transaction.Transaction;
+import dev.maynestream.ledgify.transaction.TransactionTestFixtures;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.time.LocalDate;
+import java.util.Arrays;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+import java.util.stream.IntStream;
+
+import static org.awaitility.Awaitility.await;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.contains;
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.greaterThan;
+import static org.hamcrest.Matchers.hasSize;
+
+class TransactionProjectionsTest {
+
+    private static final LedgerMetrics METRICS = new LedgerMetrics(new SimpleMeterRegistry());
+
+    private final List<ScriptedReader> readers = new CopyOnWriteArrayList<>();
+    private TransactionProjections projections;
+
+    @AfterEach
+    void tearDown() {
+        projections.close();
+    }
+
+    @Test
+    void shouldServeListingsFromOneReaderAppendingAsJournalGrows() throws Exception {
+        // given
+        final UUID accountId = UUID.randomUUID();
+        final List<Entry<Transaction>> history = entries(0, 3);
+        projections = projections(BookkeeperConfiguration::new, history);
+        final List<Transaction> first = projections.listTransactions(accountId);
+
+        // when
+        final List<Entry<Transaction>> appended = entries(3, 2);
+        appended.forEach(readers.getFirst()::publish);
+        final List<Transaction> second = projections.listTransactions(accountId);
+
+        // then
+        assertThat(first, contains(transactions(history)));
+        assertThat(second, contains(transactions(history, appended)));
+        assertThat(readers, hasSize(1));
+    }
+
+    @Test
+    void shouldCountMaterialisedTransactionsAgainstBudget() throws Exception {
+        // given
+        final List<Entry<Transaction>> history = entries(0, 100);
+        final CommitJournal journal = new CommitJournal(TransactionLog.DEFAULT_JOURNAL_MAX_BYTES);
+        history.forEach(journal::append);
+        projections = projections(BookkeeperConfiguration::new, history);
+
+        // when
+        projections.listTransactions(UUID.randomUUID());
+
+        // then
+        assertThat(projections.memoryUsage(), greaterThan(journal.memoryUsage()));
+    }
+
+    @Test
+    void shouldEvictLeastRecentlyListedBeyondBudget() throws Exception {
+        // given
+        projections = projections(() -> {
+            final BookkeeperConfiguration configuration = new BookkeeperConfiguration();
+            configuration.setProjectionMaxBytes(CommitJournal.CHUNK_SIZE + 1);
+            return configuration;
+        }, entries(0, 1));
+        final UUID first = UUID.randomUUID();
+        projections.listTransactions(first);
+
+        // when
+        projections.listTransactions(UUID.randomUUID());
+
+        // then
+        await().atMost(Duration.ofSeconds(5)).until(() -> readers.getFirst().stopped);
+        assertThat(readers.get(1).stopped, equalTo(false));
+
+        // when
+        projections.listTransactions(first);
+
+        // then
+        assertThat(readers, hasSize(3));
+    }
+
+    @Test
+    void shouldDropProjectionsNotListedWithinIdleTimeout() throws Exception {
+        // given
+        projections = projections(BookkeeperConfiguration::new, entries(0, 1));
+        projections.listTransactions(UUID.randomUUID());
+        final long idle = Duration.ofSeconds(new BookkeeperConfiguration().getProjectionIdleSecs()).toNanos();
+
+        // when
+        projections.expire(LocalDate.now(), System.nanoTime());
+
+        // then
+        assertThat(readers.getFirst().stopped, equalTo(false));
+
+        // when
+        projections.expire(LocalDate.now(), System.nanoTime() + idle + 1);
+
+        // then
+        await().atMost(Duration.ofSeconds(5)).until(() -> readers.getFirst().stopped);
+        assertThat(projections.memoryUsage(), equalTo(0L));
+    }
+
+    @Test
+    void shouldDropProjectionsOfPastDays() throws Exception {
+        // given
+        projections = projections(BookkeeperConfiguration::new, entries(0, 1));
+        projections.listTransactions(UUID.randomUUID());
+
+        // when
+        projections.expire(LocalDate.now().plusDays(1), System.nanoTime());
+
+        // then
+        await().atMost(Duration.ofSeconds(5)).until(() -> readers.getFirst().stopped);
+        assertThat(projections.memoryUsage(), equalTo(0L));
+    }
+
+    private TransactionProjections projections(final Supplier<BookkeeperConfiguration> configuration,
+                                               final List<Entry<Transaction>> history) {
+        final BookkeeperConfiguration bookkeeperConfiguration = configuration.get();
+        final TransactionCommitterFactory committerFactory = new TransactionCommitterFactory(null, bookkeeperConfiguration, METRICS, null, null, null) {
+            @Override
+            public TransactionReader createReader(final UUID accountId,
+                                                  final LocalDate date,
+                                                  final Consumer<Entry<Transaction>> consumer) {
+                final ScriptedReader reader = new ScriptedReader(bookkeeperConfiguration, accountId, date, consumer, history);
+                readers.add(reader);
+                return reader;
+            }
+        };
+        return new TransactionProjections(committerFactory, bookkeeperConfiguration);
+    }
+
+    private static List<Entry<Transaction>> entries(final int firstEntry, final int count) {
+        return IntStream.range(firstEntry, firstEntry + count)
+                        .mapToObj(entryId -> new Entry<>(1, entryId, TransactionTestFixtures.transaction().build()))
+                        .toList();
+    }
+
+    @SafeVarargs
+    private static Transaction[] transactions(final List<Entry<Transaction>>... entries) {
+        return Arrays.stream(entries).flatMap(List::stream).map(Entry::data).toArray(Transaction[]::new);
+    }
+
+    /**
+     * Consumes the given history, then publishes only what the test hands it, until stopped.
+     */
+    private static final class ScriptedReader extends TransactionReader {
+        private final Consumer<Entry<Transaction>> consumer;
+        private final List<Entry<Transaction>> history;
+        private volatile boolean stopped;
+
+        private ScriptedReader(final BookkeeperConfiguration bookkeeperConfiguration,
+                               final UUID accountId,
+                               final LocalDate date,
+                               final Consumer<Entry<Transaction>> consumer,
+                               final List<Entry<Transaction>> history) {
+            super(UUID.randomUUID(), null, bookkeeperConfiguration, METRICS, null, accountId, date, consumer);
+            this.consumer = consumer;
+            this.history = history;
+        }
+
+        void publish(final Entry<Transaction> entry) {
+            consumer.accept(entry);
+        }
+
+        @Override
+        public void follow() throws Exception {
+            history.forEach(consumer);
+            caughtUp(history.isEmpty() ? Entry.initial() : history.getLast());
+            try {
+                Thread.sleep(Long.MAX_VALUE);
+            } finally {
+                stopped = true;
+            }
+        }
+    }
+}